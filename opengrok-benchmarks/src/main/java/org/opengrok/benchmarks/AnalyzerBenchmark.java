@@ -0,0 +1,111 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opengrok.indexer.analysis.AnalyzerGuru;
+import org.opengrok.indexer.analysis.FileAnalyzer;
+import org.opengrok.indexer.analysis.FileAnalyzerFactory;
+import org.opengrok.indexer.analysis.WriteXrefArgs;
+import org.opengrok.indexer.analysis.Xrefer;
+import org.opengrok.indexer.search.QueryBuilder;
+import org.opengrok.indexer.util.NullWriter;
+
+/**
+ * Throughput of the language analyzers over the test sources: tokenizing for
+ * the full text and symbol fields, and generating the xref. The score is the
+ * number of times the whole file is processed per second, the file sizes are
+ * in {@code testdata/sources}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"c/sample.c", "c/sample.cxx", "java/Main.java", "javascript/testlong.js",
+        "perl/main.pl", "python/main.py", "rust/main.rs", "scala/computeserver.scala",
+        "sql/test.sql"})
+    public String file;
+
+    private String content;
+    private FileAnalyzer analyzer;
+
+    @Setup
+    public void setup() throws IOException {
+        content = TestData.read(file);
+        FileAnalyzerFactory factory = AnalyzerGuru.find(file);
+        if (factory == null) {
+            throw new IllegalStateException("No analyzer for " + file);
+        }
+        analyzer = factory.getAnalyzer();
+    }
+
+    private int tokenize(String field) throws IOException {
+        int count = 0;
+        try (TokenStream ts = analyzer.tokenStream(field, new StringReader(content))) {
+            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                count += term.length();
+            }
+            ts.end();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int full() throws IOException {
+        return tokenize(QueryBuilder.FULL);
+    }
+
+    @Benchmark
+    public int refs() throws IOException {
+        return tokenize(QueryBuilder.REFS);
+    }
+
+    @Benchmark
+    public void xref(Blackhole bh) throws IOException {
+        Xrefer xref = analyzer.writeXref(new WriteXrefArgs(new StringReader(content),
+                new NullWriter()));
+        bh.consume(xref.getLOC());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.configuration.Configuration;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+
+/**
+ * Reading of configuration values through {@link RuntimeEnvironment}, which
+ * is done many times for every indexed file and every web request. Each
+ * benchmark reads the same three values.
+ * <p>
+ * {@code typedGetters} calls the typed getters and
+ * {@code configurationValue} the generic getter used by the REST API.
+ * {@code lockedIntrospection} is the baseline of how both worked before:
+ * taking the read lock and resolving the getter via
+ * {@link PropertyDescriptor} on every call. The state is shared, so running
+ * with more threads (e.g. {@code -t 4}) shows the contention on the lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationGetterBenchmark {
+
+    private RuntimeEnvironment env;
+    private Configuration configuration;
+    private ReentrantReadWriteLock lock;
+
+    @Setup
+    public void setup() {
+        env = RuntimeEnvironment.getInstance();
+        configuration = new Configuration();
+        env.setConfiguration(configuration);
+        lock = new ReentrantReadWriteLock();
+    }
+
+    @Benchmark
+    public int typedGetters() {
+        int value = env.getTabSize() + env.getHitsPerPage();
+        return env.isCompressXref() ? value : -value;
+    }
+
+    @Benchmark
+    public int configurationValue() {
+        int value = (Integer) env.getConfigurationValue("tabSize") +
+                (Integer) env.getConfigurationValue("hitsPerPage");
+        return (Boolean) env.getConfigurationValue("compressXref") ? value : -value;
+    }
+
+    @Benchmark
+    public int lockedIntrospection() throws Exception {
+        int value = (Integer) getLocked("tabSize") +
+                (Integer) getLocked("hitsPerPage");
+        return (Boolean) getLocked("compressXref") ? value : -value;
+    }
+
+    private Object getLocked(String name) throws IntrospectionException,
+            IllegalAccessException, InvocationTargetException {
+        lock.readLock().lock();
+        try {
+            return new PropertyDescriptor(name, Configuration.class)
+                    .getReadMethod().invoke(configuration);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.analysis.Definitions;
+
+/**
+ * Serialization of {@link Definitions}, which is done for every indexed file
+ * with ctags definitions and read back for every search result and xref.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefinitionsBenchmark {
+
+    @Param({"100", "10000"})
+    public int tags;
+
+    private Definitions defs;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        defs = new Definitions();
+        for (int i = 0; i < tags; i++) {
+            int line = i * 3 + 1;
+            // symbols repeat like overloaded functions do
+            String symbol = "symbol" + (i % (tags / 4 + 1));
+            defs.addTag(line, symbol, i % 2 == 0 ? "function" : "variable",
+                    "static int " + symbol + "(const char *arg" + i + ")", line, line + 2);
+        }
+        serialized = defs.serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return defs.serialize();
+    }
+
+    @Benchmark
+    public Definitions deserialize() throws IOException, ClassNotFoundException {
+        return Definitions.deserialize(serialized);
+    }
+}
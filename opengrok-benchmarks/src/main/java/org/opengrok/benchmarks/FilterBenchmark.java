@@ -0,0 +1,197 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.index.Filter;
+import org.opengrok.indexer.index.IgnoredNames;
+
+/**
+ * Matching of the file names against the include filter and the default
+ * ignored names, which is done for every file and directory of the source
+ * tree during indexing. The score is for matching all the files of
+ * {@code testdata/sources}.
+ * <p>
+ * The {@code manyPatterns} benchmarks compare {@link Filter} against trying
+ * the same 200 patterns one by one as regular expressions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    private File[] files;
+    private Filter filter;
+    private IgnoredNames ignoredNames;
+    private Filter manyPatterns;
+    private RegexFilter manyPatternsRegex;
+
+    @Setup
+    public void setup() throws IOException {
+        List<File> list = TestData.listFiles();
+        files = list.toArray(new File[0]);
+
+        filter = new Filter();
+        for (String pattern : new String[]{"*.c", "*.h", "*.cxx", "*.java",
+                "*.py", "*.js", "Makefile", "*test*", "sources/sql/*.sql"}) {
+            filter.add(pattern);
+        }
+        ignoredNames = new IgnoredNames();
+
+        List<String> patterns = createPatterns();
+        manyPatterns = new Filter();
+        manyPatternsRegex = new RegexFilter();
+        for (String pattern : patterns) {
+            manyPatterns.add(pattern);
+            manyPatternsRegex.add(pattern);
+        }
+    }
+
+    /**
+     * @return 200 patterns of all kinds: extensions and other globs, exact
+     * names and paths
+     */
+    private static List<String> createPatterns() {
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            patterns.add("*.x" + i);
+            patterns.add("name" + i);
+        }
+        for (int i = 0; i < 40; i++) {
+            patterns.add(".tmp" + i + ".*");
+        }
+        for (int i = 0; i < 20; i++) {
+            patterns.add("usr/src/dir" + i);
+            patterns.add("*/build" + i + "/*.o");
+        }
+        return patterns;
+    }
+
+    @Benchmark
+    public int filter() {
+        int count = 0;
+        for (File file : files) {
+            if (filter.match(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int manyPatterns() {
+        int count = 0;
+        for (File file : files) {
+            if (manyPatterns.match(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int manyPatternsRegex() {
+        int count = 0;
+        for (File file : files) {
+            if (manyPatternsRegex.match(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int ignoredNames() {
+        int count = 0;
+        for (File file : files) {
+            if (ignoredNames.ignore(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Filter which tries the patterns one after another as regular
+     * expressions, as {@link Filter} did before the patterns were compiled
+     * into automata.
+     */
+    private static final class RegexFilter {
+        private final Set<String> filenames = new HashSet<>();
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+
+        void add(String pattern) {
+            if (pattern.contains("*") || pattern.contains("?")) {
+                patterns.add(Pattern.compile(pattern.replace(".", "\\.").
+                        replace("*", ".*").replace("?", ".")));
+            } else if (pattern.contains(File.separator)) {
+                paths.add(File.separator + pattern);
+            } else {
+                filenames.add(pattern);
+            }
+        }
+
+        boolean match(File file) {
+            String fileName = file.getName();
+            String absolute = file.getAbsolutePath();
+            if (filenames.contains(fileName)) {
+                return true;
+            }
+            for (Pattern p : patterns) {
+                if (p.matcher(fileName).matches()) {
+                    return true;
+                }
+                if (p.pattern().contains("/") && p.matcher(absolute).matches()) {
+                    return true;
+                }
+            }
+            for (String path : paths) {
+                if (absolute.endsWith(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
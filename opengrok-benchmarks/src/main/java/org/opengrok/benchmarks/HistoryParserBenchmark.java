@@ -0,0 +1,132 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.History;
+import org.opengrok.indexer.history.HistoryParsers;
+import org.opengrok.indexer.util.IOUtils;
+
+/**
+ * Throughput of the history parsers over logs of the given number of
+ * commits. The logs are generated in the setup in the format of the log
+ * commands run by the repositories.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryParserBenchmark {
+
+    private static final int FILES_PER_COMMIT = 4;
+
+    @Param({"1000"})
+    public int commits;
+
+    private Path sourceRoot;
+    private String gitLog;
+    private String subversionLog;
+
+    @Setup
+    public void setup() throws IOException {
+        sourceRoot = Files.createTempDirectory("opengrok-history");
+        RuntimeEnvironment.getInstance().setSourceRoot(sourceRoot.toString());
+
+        StringBuilder git = new StringBuilder();
+        StringBuilder svn = new StringBuilder("<?xml version=\"1.0\"?>\n<log>\n");
+        for (int i = commits; i > 0; i--) {
+            String author = "user" + (i % 7) + " <user" + (i % 7) + "@example.com>";
+            String date = String.format("2018-%02d-%02dT%02d:%02d:05+02:00",
+                    i % 12 + 1, i % 28 + 1, i % 24, i % 60);
+            git.append("commit ").append(String.format("%040x", i)).append('\n').
+                    append("Author:     ").append(author).append('\n').
+                    append("AuthorDate: ").append(date).append('\n').
+                    append("Commit:     ").append(author).append('\n').
+                    append("CommitDate: ").append(date).append('\n').
+                    append('\n').
+                    append("    Fix issue #").append(i).append(" in the parser\n").
+                    append("    \n").
+                    append("    The longer description of the change which spans\n").
+                    append("    more than a single line.\n").
+                    append('\n');
+            for (int f = 0; f < FILES_PER_COMMIT; f++) {
+                git.append("src/module").append((i + f) % 50).append("/file").
+                        append(f).append(".c\n");
+            }
+            if (i > 1) {
+                // git does not end the output with an empty line
+                git.append('\n');
+            }
+
+            svn.append("<logentry\n   revision=\"").append(i).append("\">\n").
+                    append("<author>user").append(i % 7).append("</author>\n").
+                    append("<date>").append(date, 0, 19).append(".123456Z</date>\n").
+                    append("<paths>\n");
+            for (int f = 0; f < FILES_PER_COMMIT; f++) {
+                svn.append("<path\n   action=\"M\">/trunk/src/module").append((i + f) % 50).
+                        append("/file").append(f).append(".c</path>\n");
+            }
+            svn.append("</paths>\n").
+                    append("<msg>Fix issue #").append(i).append(" in the parser\n\n").
+                    append("The longer description of the change which spans\n").
+                    append("more than a single line.</msg>\n").
+                    append("</logentry>\n");
+        }
+        svn.append("</log>\n");
+        gitLog = git.toString();
+        subversionLog = svn.toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        IOUtils.removeRecursive(sourceRoot);
+    }
+
+    @Benchmark
+    public History git() throws IOException {
+        return HistoryParsers.parseGitLog(gitLog);
+    }
+
+    @Benchmark
+    public History subversion() throws IOException {
+        return HistoryParsers.parseSubversionLog(subversionLog);
+    }
+}
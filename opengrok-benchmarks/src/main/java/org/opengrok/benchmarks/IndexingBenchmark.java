@@ -0,0 +1,374 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Level;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.opengrok.indexer.configuration.Configuration;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.HistoryGuru;
+import org.opengrok.indexer.history.RepositoryFactory;
+import org.opengrok.indexer.index.Indexer;
+import org.opengrok.indexer.index.IndexerException;
+import org.opengrok.indexer.index.IndexingProfiler;
+import org.opengrok.indexer.index.IndexingProfiler.Stage;
+import org.opengrok.indexer.logger.LoggerUtil;
+import org.opengrok.indexer.util.IOUtils;
+import org.opengrok.indexer.util.OptionParser;
+
+/**
+ * End-to-end benchmark of the indexer. It creates a synthetic source root
+ * from the files in {@code testdata/sources} with a configurable size and
+ * language mix, optionally with Git history, and runs the same steps as
+ * {@link Indexer#main(String[])} with projects enabled: a full indexing into
+ * an empty data root and an incremental one after changing some of the
+ * files. For every run it reports the throughput, the peak heap usage and the
+ * time of the stages recorded by {@link IndexingProfiler}.
+ * <p>
+ * The thread pools of the history cache are created once per JVM, so each
+ * combination of the parallelism settings should be measured by a separate
+ * invocation.
+ */
+@SuppressWarnings("PMD.SystemPrintln")
+public final class IndexingBenchmark {
+
+    private int files = 2000;
+    private int projects = 4;
+    private String mix = "c=4,java=3,python=2,javascript=1,perl=1,sql=1";
+    private int history;
+    private int filesPerCommit = 10;
+    private boolean testRepositories;
+    private int changes = -1;
+    private int seed = 42;
+    private String ctags;
+    private String git = "git";
+    private int indexingParallelism;
+    private int historyParallelism;
+    private double ramBufferSize = Configuration.defaultRamBufferSize;
+    private boolean optimize = true;
+    private File workDir;
+    private boolean keep;
+    private boolean verbose;
+    private File report = new File("indexing-result.json");
+
+    private IndexingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        IndexingBenchmark benchmark = new IndexingBenchmark();
+        try {
+            if (!benchmark.parse(args)) {
+                return;
+            }
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        benchmark.run();
+    }
+
+    private boolean parse(String[] args) throws ParseException {
+        boolean[] help = {false};
+        OptionParser parser = OptionParser.Do(p -> {
+            p.setPrologue(String.format("%nUsage: java -cp benchmarks.jar %s [options]%n",
+                    IndexingBenchmark.class.getName()));
+
+            p.on("-h", "--help", "Display this usage summary.").Do(v -> help[0] = true);
+
+            p.on("--files", "=number", Integer.class,
+                "Number of files in the synthetic source root. Default is 2000.").Do(v ->
+                files = positive("--files", (Integer) v));
+
+            p.on("--projects", "=number", Integer.class,
+                "Number of projects the files are spread over. Default is 4.").Do(v ->
+                projects = positive("--projects", (Integer) v));
+
+            p.on("--mix", "=lang=weight,...",
+                "Weights of the languages, i.e. the directories of testdata/sources.",
+                "Default is " + mix + ".").Do(v -> mix = (String) v);
+
+            p.on("--history", "=number", Integer.class,
+                "Make each project a Git repository with the number of commits.",
+                "Default is 0, i.e. no history.").Do(v ->
+                history = notNegative("--history", (Integer) v));
+
+            p.on("--filesPerCommit", "=number", Integer.class,
+                "Number of files changed by each but the first commit. Default is 10.").Do(v ->
+                filesPerCommit = positive("--filesPerCommit", (Integer) v));
+
+            p.on("--testRepositories",
+                "Add the Git and Mercurial repositories of testdata/repositories",
+                "as projects.").Do(v -> testRepositories = true);
+
+            p.on("--changes", "=number", Integer.class,
+                "Number of files changed before the incremental run.",
+                "Default is 5% of the files.").Do(v ->
+                changes = notNegative("--changes", (Integer) v));
+
+            p.on("--seed", "=number", Integer.class,
+                "Seed of the random choices. Default is 42.").Do(v -> seed = (Integer) v);
+
+            p.on("-c", "--ctags", "=/path/to/ctags",
+                "Path to Universal Ctags. By default the indexer looks it up.").Do(v ->
+                ctags = (String) v);
+
+            p.on("--git", "=/path/to/git", "Path to git. Default is git.").Do(v -> git = (String) v);
+
+            p.on("--indexingParallelism", "=number", Integer.class,
+                "Indexing parallelism. Default is the number of CPUs.").Do(v ->
+                indexingParallelism = positive("--indexingParallelism", (Integer) v));
+
+            p.on("--historyParallelism", "=number", Integer.class,
+                "History cache parallelism. Default is the number of CPUs.").Do(v ->
+                historyParallelism = positive("--historyParallelism", (Integer) v));
+
+            p.on("-m", "--memory", "=number", Double.class,
+                "Lucene RAM buffer size in MB. Default is "
+                + Configuration.defaultRamBufferSize + ".").Do(v ->
+                ramBufferSize = (Double) v);
+
+            p.on("--noOptimize", "Do not optimize the index after indexing.").Do(v ->
+                optimize = false);
+
+            p.on("--workDir", "=/path/to/dir",
+                "Directory for the sources and the data. Default is a temporary",
+                "directory which is removed at the end.").Do(v ->
+                workDir = new File((String) v));
+
+            p.on("--keep", "Keep the sources and the data.").Do(v -> keep = true);
+
+            p.on("-v", "--verbose", "Log the messages of the indexer.").Do(v -> verbose = true);
+
+            p.on("-o", "--output", "=/path/to/report.json",
+                "File to write the JSON report to. Default is indexing-result.json.").Do(v ->
+                report = new File((String) v));
+        });
+        parser.parse(args);
+        if (help[0]) {
+            parser.help();
+            return false;
+        }
+        return true;
+    }
+
+    private static int positive(String option, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(option + " must be positive");
+        }
+        return value;
+    }
+
+    private static int notNegative(String option, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(option + " must not be negative");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() throws Exception {
+        LoggerUtil.getBaseLogger().setLevel(verbose ? Level.INFO : Level.WARNING);
+
+        boolean temporary = workDir == null;
+        File work = temporary
+                ? Files.createTempDirectory("opengrok-indexing").toFile() : workDir;
+        File sourceRoot = new File(work, "src");
+        File dataRoot = new File(work, "data");
+        if (sourceRoot.exists() || dataRoot.exists()) {
+            throw new IOException(work + " already contains src or data");
+        }
+
+        SyntheticSources sources = new SyntheticSources(sourceRoot, seed);
+        try {
+            Map<String, Integer> weights = SyntheticSources.parseMix(mix);
+            sources.create(weights, files, projects);
+            if (testRepositories) {
+                sources.addTestRepositories();
+            }
+            if (history > 0) {
+                sources.createGitHistory(git, history, filesPerCommit);
+            }
+            if (!dataRoot.mkdirs()) {
+                throw new IOException("cannot create " + dataRoot);
+            }
+
+            configure(sourceRoot, dataRoot);
+
+            JSONObject result = new JSONObject();
+            result.put("settings", settingsJson(weights));
+            result.put("sources", sourcesJson(sources));
+            JSONArray runs = new JSONArray();
+            result.put("runs", runs);
+
+            runs.add(index("full"));
+            sources.change(history > 0 ? git : null,
+                    changes >= 0 ? changes : Math.max(1, files / 20));
+            runs.add(index("incremental"));
+
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(report),
+                    StandardCharsets.UTF_8)) {
+                result.writeJSONString(out);
+            }
+            System.out.println("Report written to " + report);
+        } finally {
+            if (keep || !temporary) {
+                System.out.println("Sources and data kept in " + work);
+            } else {
+                IOUtils.removeRecursive(work.toPath());
+            }
+        }
+    }
+
+    private void configure(File sourceRoot, File dataRoot) throws IOException {
+        Configuration cfg = new Configuration();
+        cfg.setSourceRoot(sourceRoot.getCanonicalPath());
+        cfg.setDataRoot(dataRoot.getCanonicalPath());
+        if (ctags != null) {
+            cfg.setCtags(ctags);
+        }
+        cfg.setHistoryEnabled(history > 0 || testRepositories);
+        cfg.setProjectsEnabled(true);
+        cfg.setIndexingParallelism(indexingParallelism);
+        cfg.setHistoryParallelism(historyParallelism);
+        cfg.setRamBufferSize(ramBufferSize);
+        cfg.setOptimizeDatabase(optimize);
+
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        env.setConfiguration(cfg);
+        RepositoryFactory.initializeIgnoredNames(env);
+    }
+
+    /**
+     * Run the history cache and the indexing phase of the indexer.
+     * @param mode name of the run
+     * @return the results of the run
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject index(String mode) throws IOException, IndexerException {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        HistoryGuru.getInstance().setDeferCacheCompletion(false);
+        Indexer.getInstance().prepareIndexer(env, true, true, null, false, false,
+                Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), false);
+        long historyCache = System.nanoTime() - start;
+
+        IndexingProfiler.start(0);
+        IndexingProfiler profiler;
+        try {
+            Indexer.getInstance().doIndexerExecution(true, new ArrayList<>(), null);
+        } finally {
+            profiler = IndexingProfiler.stop();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        double seconds = elapsed / 1e9;
+        JSONObject run = new JSONObject();
+        run.put("mode", mode);
+        run.put("elapsed_ms", toMillis(elapsed));
+        run.put("files", profiler.getFileCount());
+        run.put("bytes", profiler.getByteCount());
+        run.put("files_per_s", profiler.getFileCount() / seconds);
+        run.put("bytes_per_s", profiler.getByteCount() / seconds);
+        run.put("peak_heap_bytes", peakHeap);
+
+        JSONObject stages = new JSONObject();
+        stages.put("history_cache_ms", toMillis(historyCache));
+        for (Stage stage : Stage.values()) {
+            stages.put(stage.getKey() + "_ms", toMillis(profiler.getStageTime(stage)));
+        }
+        run.put("stages", stages);
+        run.put("profile", profiler.toJson());
+
+        System.out.printf("%-12s %8d files %12d bytes %10.1f files/s %12.0f bytes/s"
+                + " %6d MB peak heap%n", mode, profiler.getFileCount(),
+                profiler.getByteCount(), profiler.getFileCount() / seconds,
+                profiler.getByteCount() / seconds, peakHeap >> 20);
+        System.out.printf("%-12s history cache %.1f ms", "", toMillis(historyCache));
+        for (Stage stage : Stage.values()) {
+            System.out.printf(", %s %.1f ms", stage.getKey(), toMillis(profiler.getStageTime(stage)));
+        }
+        System.out.println();
+        return run;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject settingsJson(Map<String, Integer> weights) {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        JSONObject settings = new JSONObject();
+        JSONObject languages = new JSONObject();
+        languages.putAll(weights);
+        settings.put("mix", languages);
+        settings.put("seed", seed);
+        settings.put("indexing_parallelism", env.getIndexingParallelism());
+        settings.put("history_parallelism", env.getHistoryParallelism());
+        settings.put("ram_buffer_size_mb", env.getRamBufferSize());
+        settings.put("optimize", optimize);
+        settings.put("available_processors", Runtime.getRuntime().availableProcessors());
+        settings.put("max_heap_bytes", Runtime.getRuntime().maxMemory());
+        settings.put("java_version", System.getProperty("java.version"));
+        return settings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject sourcesJson(SyntheticSources sources) {
+        JSONObject json = new JSONObject();
+        json.put("files", sources.getFileCount());
+        json.put("bytes", sources.getBytes());
+        json.put("projects", sources.getProjectCount());
+        json.put("commits", sources.getCommits());
+        json.put("test_repositories", testRepositories);
+        return json;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.search.QueryBuilder;
+import org.opengrok.indexer.search.context.Context;
+
+/**
+ * Latency of the full text search over the index of the test sources:
+ * building the query, searching, and searching including the context of the
+ * hits as shown on the search results page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int HITS = 25;
+
+    @Param({"main", "int", "\"return 0\"", "get*"})
+    public String freetext;
+
+    private QueryBuilder builder;
+    private Query query;
+
+    @Setup
+    public void setup() throws ParseException {
+        builder = new QueryBuilder().setFreetext(freetext);
+        query = builder.build();
+    }
+
+    @Benchmark
+    public Query buildQuery() throws ParseException {
+        return new QueryBuilder().setFreetext(freetext).build();
+    }
+
+    @Benchmark
+    public TopDocs search(SourceIndex index) throws IOException {
+        return index.getSearcher().search(query, HITS);
+    }
+
+    @Benchmark
+    public int searchWithContext(SourceIndex index) throws IOException {
+        IndexSearcher searcher = index.getSearcher();
+        TopDocs top = searcher.search(query, HITS);
+        Context context = new Context(query, builder);
+        StringBuilder out = new StringBuilder();
+        for (ScoreDoc hit : top.scoreDocs) {
+            context.getContext2(RuntimeEnvironment.getInstance(), searcher, hit.doc, out,
+                    "/source", null, true, 0);
+        }
+        return out.length();
+    }
+}
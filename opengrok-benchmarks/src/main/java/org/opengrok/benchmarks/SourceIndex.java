@@ -0,0 +1,122 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.opengrok.indexer.analysis.AnalyzerGuru;
+import org.opengrok.indexer.analysis.FileAnalyzer;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.index.IndexDatabase;
+import org.opengrok.indexer.util.IOUtils;
+
+/**
+ * Index of {@code testdata/sources} shared by the search benchmarks. The
+ * documents are created the same way as by {@link IndexDatabase}, without
+ * ctags and history, in a temporary data root.
+ */
+@State(Scope.Benchmark)
+public class SourceIndex {
+
+    private Path dataRoot;
+    private Directory directory;
+    private IndexReader reader;
+    private IndexSearcher searcher;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File sourceRoot = TestData.getSourceRoot();
+        dataRoot = Files.createTempDirectory("opengrok-benchmarks");
+
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        env.setSourceRoot(sourceRoot.getPath());
+        env.setDataRoot(dataRoot.toString());
+        env.setHistoryEnabled(false);
+        env.setProjectsEnabled(false);
+
+        Path indexDir = getIndexDir();
+        AnalyzerGuru guru = new AnalyzerGuru();
+        directory = FSDirectory.open(indexDir);
+        try (IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(AnalyzerGuru.getAnalyzer()))) {
+            for (File file : TestData.listFiles()) {
+                String path = "/" + sourceRoot.toPath().relativize(file.toPath()).
+                        toString().replace(File.separatorChar, '/');
+                try {
+                    FileAnalyzer fa;
+                    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                        fa = AnalyzerGuru.getAnalyzer(in, path);
+                    }
+                    fa.setScopesEnabled(env.isScopesEnabled());
+                    Document doc = new Document();
+                    guru.populateDocument(doc, file, path, fa, null);
+                    writer.addDocument(doc);
+                } catch (Exception e) {
+                    // the analyzer does not understand the file, skip it
+                }
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+        IOUtils.removeRecursive(dataRoot);
+    }
+
+    /**
+     * @return the directory of the index
+     */
+    Path getIndexDir() {
+        return dataRoot.resolve(IndexDatabase.INDEX_DIR);
+    }
+
+    IndexReader getReader() {
+        return reader;
+    }
+
+    IndexSearcher getSearcher() {
+        return searcher;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.search.QueryBuilder;
+import org.opengrok.indexer.util.IOUtils;
+import org.opengrok.suggest.Suggester;
+import org.opengrok.suggest.query.SuggesterPrefixQuery;
+
+/**
+ * Latency of the suggester lookups over the index of the test sources: a
+ * lone prefix, which is served from the WFST data, and a prefix combined
+ * with another query, which searches the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggesterBenchmark {
+
+    private static final String NAME = "sources";
+
+    @Param({"m", "ge", "pri"})
+    public String prefix;
+
+    private Path suggesterDir;
+    private Suggester suggester;
+    private List<Suggester.NamedIndexReader> readers;
+    private Query query;
+
+    @Setup(Level.Trial)
+    public void setup(SourceIndex index) throws IOException {
+        suggesterDir = Files.createTempDirectory("opengrok-suggester");
+        suggester = new Suggester(suggesterDir.toFile(), 10, Duration.ofMinutes(5), false, false,
+                new HashSet<>(Arrays.asList(QueryBuilder.FULL, QueryBuilder.PATH)), Integer.MAX_VALUE);
+        suggester.init(Collections.singleton(new Suggester.NamedIndexDir(NAME, index.getIndexDir())));
+        readers = Collections.singletonList(new Suggester.NamedIndexReader(NAME, index.getReader()));
+        query = new TermQuery(new Term(QueryBuilder.FULL, "main"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        suggester.close();
+        IOUtils.removeRecursive(suggesterDir);
+    }
+
+    @Benchmark
+    public Suggester.Suggestions prefix() {
+        return suggester.search(readers, new SuggesterPrefixQuery(new Term(QueryBuilder.FULL, prefix)), null);
+    }
+
+    @Benchmark
+    public Suggester.Suggestions prefixWithQuery() {
+        return suggester.search(readers, new SuggesterPrefixQuery(new Term(QueryBuilder.FULL, prefix)), query);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.opengrok.indexer.util.Executor;
+
+/**
+ * Synthetic source root made of copies of the files in
+ * {@code testdata/sources}. The files are picked from the language
+ * directories according to the weights of the mix and spread over the
+ * projects; with a fixed seed the same tree is generated on every run.
+ * Each project can be made a Git repository with a number of commits which
+ * change some of its files.
+ */
+final class SyntheticSources {
+
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    private static final String[] GIT_IDENTITY = {
+        "-c", "user.name=OpenGrok Benchmark", "-c", "user.email=benchmark@opengrok.org"
+    };
+
+    private final File root;
+    private final Random random;
+    private final List<File> projects = new ArrayList<>();
+    private final List<Path> files = new ArrayList<>();
+    private long bytes;
+    private int commits;
+
+    /**
+     * @param root directory to create the sources in
+     * @param seed seed of the random choices
+     */
+    SyntheticSources(File root, long seed) {
+        this.root = root;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Parse the language mix.
+     * @param mix comma separated {@code language=weight} pairs, where the
+     * language is a directory in {@code testdata/sources}; the weight may be
+     * omitted and defaults to 1
+     * @return map of the language directories to their weights
+     * @throws IOException if a language directory does not exist
+     */
+    static Map<String, Integer> parseMix(String mix) throws IOException {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=", 2);
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight of " + pair[0] + " must be positive");
+            }
+            File dir = new File(TestData.getSourceRoot(), pair[0].trim());
+            if (!dir.isDirectory()) {
+                throw new FileNotFoundException("no language directory " + dir);
+            }
+            weights.put(pair[0].trim(), weight);
+        }
+        return weights;
+    }
+
+    /**
+     * Create the files of the projects.
+     * @param mix language directories and their weights
+     * @param fileCount total number of files
+     * @param projectCount number of projects
+     * @throws IOException if the files cannot be created
+     */
+    void create(Map<String, Integer> mix, int fileCount, int projectCount) throws IOException {
+        List<List<Path>> pools = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int totalWeight = 0;
+        Path sources = TestData.getSourceRoot().toPath();
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            try (Stream<Path> paths = Files.walk(sources.resolve(entry.getKey()))) {
+                List<Path> pool = paths.filter(Files::isRegularFile).sorted().
+                        collect(Collectors.toList());
+                if (!pool.isEmpty()) {
+                    pools.add(pool);
+                    weights.add(entry.getValue());
+                    totalWeight += entry.getValue();
+                }
+            }
+        }
+        if (pools.isEmpty()) {
+            throw new FileNotFoundException("no files for the language mix " + mix.keySet());
+        }
+
+        for (int p = 0; p < projectCount; p++) {
+            File project = new File(root, String.format("project%02d", p));
+            if (!project.mkdirs()) {
+                throw new IOException("cannot create " + project);
+            }
+            projects.add(project);
+        }
+
+        for (int i = 0; i < fileCount; i++) {
+            int pick = random.nextInt(totalWeight);
+            int lang = 0;
+            while (pick >= weights.get(lang)) {
+                pick -= weights.get(lang++);
+            }
+            List<Path> pool = pools.get(lang);
+            Path source = pool.get(random.nextInt(pool.size()));
+
+            File project = projects.get(i % projectCount);
+            int index = i / projectCount;
+            Path dir = project.toPath().resolve(String.format("dir%03d",
+                    index / FILES_PER_DIRECTORY));
+            Files.createDirectories(dir);
+            Path target = dir.resolve(String.format("f%05d_%s", index, source.getFileName()));
+            Files.copy(source, target);
+            files.add(target);
+            bytes += Files.size(target);
+        }
+    }
+
+    /**
+     * Copy the Git and Mercurial repositories of {@code testdata/repositories}
+     * to the source root as additional projects.
+     * @throws IOException if the repositories cannot be copied
+     */
+    void addTestRepositories() throws IOException {
+        File repositories = new File(TestData.getSourceRoot().getParentFile(), "repositories");
+        // the metadata directories are stored under names without the dot
+        copyRepository(new File(repositories, "git"), "git-testdata", "git", ".git");
+        copyRepository(new File(repositories, "mercurial"), "mercurial-testdata", "hg", ".hg");
+        Path hgignore = new File(root, "mercurial-testdata/hgignore").toPath();
+        if (Files.exists(hgignore)) {
+            Files.move(hgignore, hgignore.resolveSibling(".hgignore"));
+        }
+    }
+
+    private void copyRepository(File source, String name, String metadata,
+            String dotMetadata) throws IOException {
+        if (!source.isDirectory()) {
+            throw new FileNotFoundException(source.toString());
+        }
+        Path from = source.toPath();
+        Path target = new File(root, name).toPath();
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                Path relative = from.relativize(path);
+                Path dest = target.resolve(relative.toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(dest);
+                } else {
+                    Files.copy(path, dest);
+                    if (!relative.startsWith(metadata)) {
+                        bytes += Files.size(dest);
+                    }
+                }
+            }
+        }
+        Files.move(target.resolve(metadata), target.resolve(dotMetadata));
+        projects.add(target.toFile());
+    }
+
+    /**
+     * Make every generated project a Git repository. The first commit adds
+     * all the files, each further commit changes a few of them.
+     * @param git the git binary
+     * @param history number of commits per project
+     * @param filesPerCommit number of files changed by each further commit
+     * @throws IOException if a git command fails
+     */
+    void createGitHistory(String git, int history, int filesPerCommit) throws IOException {
+        for (File project : projects) {
+            if (new File(project, ".git").exists() || new File(project, ".hg").exists()) {
+                continue;
+            }
+            git(git, project, "init", "-q");
+            commit(git, project, "Initial import");
+            List<Path> own = filesOf(project);
+            for (int c = 1; c < history; c++) {
+                touch(own, filesPerCommit);
+                commit(git, project, "Change " + c);
+            }
+        }
+    }
+
+    /**
+     * Change files for an incremental run. The changes are committed to the
+     * Git repositories created by {@link #createGitHistory(String, int, int)}.
+     * @param git the git binary or {@code null} if there is no history
+     * @param count number of files to change
+     * @throws IOException if the files cannot be changed
+     */
+    void change(String git, int count) throws IOException {
+        for (File project : projects) {
+            List<Path> own = filesOf(project);
+            if (own.isEmpty()) {
+                continue;
+            }
+            touch(own, Math.max(1, count / projects.size()));
+            if (git != null && new File(project, ".git").isDirectory()) {
+                commit(git, project, "Incremental change");
+            }
+        }
+    }
+
+    private List<Path> filesOf(File project) {
+        Path dir = project.toPath();
+        return files.stream().filter(f -> f.startsWith(dir)).collect(Collectors.toList());
+    }
+
+    private void touch(List<Path> candidates, int count) throws IOException {
+        byte[] line = "\n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < count && !candidates.isEmpty(); i++) {
+            Path file = candidates.get(random.nextInt(candidates.size()));
+            Files.write(file, line, StandardOpenOption.APPEND);
+            bytes += line.length;
+        }
+    }
+
+    private void commit(String git, File project, String message) throws IOException {
+        git(git, project, "add", "-A");
+        List<String> args = new ArrayList<>(Arrays.asList(GIT_IDENTITY));
+        args.addAll(Arrays.asList("commit", "-q", "-m", message));
+        git(git, project, args.toArray(new String[0]));
+        commits++;
+    }
+
+    private static void git(String git, File dir, String... args) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(git);
+        cmd.addAll(Arrays.asList(args));
+        Executor executor = new Executor(cmd, dir, false);
+        if (executor.exec(false) != 0) {
+            throw new IOException(String.join(" ", cmd) + " failed in " + dir + ": "
+                    + executor.getErrorString());
+        }
+    }
+
+    File getRoot() {
+        return root;
+    }
+
+    int getProjectCount() {
+        return projects.size();
+    }
+
+    int getFileCount() {
+        return files.size();
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getCommits() {
+        return commits;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Access to the sources in {@code testdata/sources} of the OpenGrok
+ * repository. The directory is looked up in the current working directory
+ * and its parent, or it can be given with the
+ * {@code opengrok.benchmarks.sources} system property.
+ */
+final class TestData {
+
+    static final String SOURCES_PROPERTY = "opengrok.benchmarks.sources";
+
+    private TestData() {
+    }
+
+    /**
+     * @return the directory with the test sources
+     * @throws FileNotFoundException if the directory does not exist
+     */
+    static File getSourceRoot() throws FileNotFoundException {
+        String dir = System.getProperty(SOURCES_PROPERTY);
+        if (dir != null) {
+            File root = new File(dir);
+            if (!root.isDirectory()) {
+                throw new FileNotFoundException(root + " is not a directory");
+            }
+            return root.getAbsoluteFile();
+        }
+        for (String candidate : new String[]{"testdata/sources",
+                "../testdata/sources"}) {
+            File root = new File(candidate);
+            if (root.isDirectory()) {
+                return root.getAbsoluteFile();
+            }
+        }
+        throw new FileNotFoundException("testdata/sources not found, set the "
+                + SOURCES_PROPERTY + " system property");
+    }
+
+    /**
+     * @param path path relative to the source root
+     * @return the file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    static File getFile(String path) throws FileNotFoundException {
+        File file = new File(getSourceRoot(), path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.toString());
+        }
+        return file;
+    }
+
+    /**
+     * @param path path relative to the source root
+     * @return content of the file decoded as UTF-8
+     * @throws IOException if the file cannot be read
+     */
+    static String read(String path) throws IOException {
+        return new String(Files.readAllBytes(getFile(path).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return all regular files under the source root
+     * @throws IOException if the source root cannot be traversed
+     */
+    static List<File> listFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(getSourceRoot().toPath())) {
+            return paths.filter(Files::isRegularFile).map(Path::toFile).
+                    sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengrok.indexer.analysis.AnalyzerGuru;
+import org.opengrok.indexer.analysis.FileAnalyzer;
+import org.opengrok.indexer.analysis.WriteXrefArgs;
+import org.opengrok.indexer.util.Utf8Writer;
+import org.opengrok.indexer.web.Util;
+
+/**
+ * Cost of writing the xref output: HTML escaping with
+ * {@link Util#htmlize(CharSequence, Appendable, boolean)} and the writer
+ * stack of the xref files, i.e. {@link Utf8Writer} compared to
+ * {@link BufferedWriter} over {@link OutputStreamWriter}, optionally
+ * compressed with the given level ({@code none} for plain files, -1 for the
+ * default level). The compressed bytes are discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XrefWriterBenchmark {
+
+    @Param({"c/sample.cxx", "javascript/testlong.js", "perl/main.pl"})
+    public String file;
+
+    @Param({"none", "1", "-1"})
+    public String compression;
+
+    private String content;
+    private FileAnalyzer analyzer;
+
+    /**
+     * Output stream which throws everything away.
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        content = TestData.read(file);
+        analyzer = AnalyzerGuru.find(file).getAnalyzer();
+    }
+
+    private OutputStream newStream() throws IOException {
+        OutputStream out = new NullOutputStream();
+        if (!"none".equals(compression)) {
+            out = new LeveledGZIPOutputStream(out, Integer.parseInt(compression));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public void htmlizeBufferedWriter() throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(newStream(),
+                StandardCharsets.UTF_8))) {
+            Util.htmlize(content, out, true);
+        }
+    }
+
+    @Benchmark
+    public void htmlizeUtf8Writer() throws IOException {
+        try (Writer out = new Utf8Writer(newStream())) {
+            Util.htmlize(content, out, true);
+        }
+    }
+
+    @Benchmark
+    public void xrefBufferedWriter() throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(newStream(),
+                StandardCharsets.UTF_8))) {
+            analyzer.writeXref(new WriteXrefArgs(new StringReader(content), out));
+        }
+    }
+
+    @Benchmark
+    public void xrefUtf8Writer() throws IOException {
+        try (Writer out = new Utf8Writer(newStream())) {
+            analyzer.writeXref(new WriteXrefArgs(new StringReader(content), out));
+        }
+    }
+}
@@ -23,7 +23,7 @@
  */
 package org.opengrok.indexer.analysis;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -110,6 +110,7 @@ import org.opengrok.indexer.history.Annotation;
 import org.opengrok.indexer.history.HistoryException;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.history.HistoryReader;
+import org.opengrok.indexer.index.IndexingProfiler;
 import org.opengrok.indexer.logger.LoggerFactory;
 import org.opengrok.indexer.search.QueryBuilder;
 import org.opengrok.indexer.util.ForbiddenSymlinkException;
@@ -134,11 +135,12 @@ public class AnalyzerGuru {
     private static final int OPENING_MAX_CHARS = 100;
 
     /**
-     * Set to 16K -- though debugging shows it would do with only 8K+3
-     * (standard buffer for Java BufferedInputStream plus 3 bytes for largest
-     * UTF BOM) 
+     * The number of bytes read once from the start of the stream and shared by
+     * magic number and magic string analysis: enough for
+     * <code>OPENING_MAX_CHARS</code> in any supported UTF encoding plus the
+     * largest UTF BOM.
      */
-    private static final int MARK_READ_LIMIT = 1024 * 16;
+    private static final int PREFIX_BYTES_NUM = 4 * OPENING_MAX_CHARS + 4;
 
     /**
      * The number of bytes read from the start of the file for magic number or
@@ -537,6 +539,7 @@ public class AnalyzerGuru {
                 new BytesRef(file.getAbsolutePath())));
 
         if (RuntimeEnvironment.getInstance().isHistoryEnabled()) {
+            IndexingProfiler.enter(IndexingProfiler.Phase.HISTORY);
             try {
                 HistoryReader hr = HistoryGuru.getInstance().getHistoryReader(file);
                 if (hr != null) {
@@ -545,6 +548,8 @@ public class AnalyzerGuru {
                 }
             } catch (HistoryException e) {
                 LOGGER.log(Level.WARNING, "An error occurred while reading history: ", e);
+            } finally {
+                IndexingProfiler.exit();
             }
         }
         doc.add(new Field(QueryBuilder.DATE, date, string_ft_stored_nanalyzed_norms));
@@ -576,7 +581,12 @@ public class AnalyzerGuru {
             if (g == Genre.PLAIN || g == Genre.XREFABLE || g == Genre.HTML) {
                 doc.add(new Field(QueryBuilder.T, g.typeName(), string_ft_stored_nanalyzed_norms));
             }
-            fa.analyze(doc, StreamSource.fromFile(file), xrefOut);
+            IndexingProfiler.enter(IndexingProfiler.Phase.ANALYSIS);
+            try {
+                fa.analyze(doc, StreamSource.fromFile(file), xrefOut);
+            } finally {
+                IndexingProfiler.exit();
+            }
 
             String type = fa.getFileTypeName();
             doc.add(new StringField(QueryBuilder.TYPE, type, Store.YES));
@@ -925,20 +935,23 @@ public class AnalyzerGuru {
     private static FileAnalyzerFactory findForStream(InputStream in,
         String file) throws IOException {
 
-        in.mark(MAGIC_BYTES_NUM);
-        byte[] content = new byte[MAGIC_BYTES_NUM];
-        int len = in.read(content);
+        /*
+         * Read the start of the stream once, and use it both for the magic
+         * bytes and for the opening string.
+         */
+        byte[] prefix = new byte[PREFIX_BYTES_NUM];
+        in.mark(PREFIX_BYTES_NUM);
+        int prefixLen = readFully(in, prefix);
         in.reset();
 
-        if (len < MAGIC_BYTES_NUM) {
-            /*
-             * Need at least 4 bytes to perform magic string matching.
-             */
-            if (len < 4) {
-                return null;
-            }
-            content = Arrays.copyOf(content, len);
+        /*
+         * Need at least 4 bytes to perform magic string matching.
+         */
+        if (prefixLen < 4) {
+            return null;
         }
+        byte[] content = Arrays.copyOf(prefix,
+                Math.min(prefixLen, MAGIC_BYTES_NUM));
 
         FileAnalyzerFactory fac;
 
@@ -958,7 +971,7 @@ public class AnalyzerGuru {
         }
 
         // Next, look for magic strings
-        String opening = readOpening(in, content);
+        String opening = readOpening(prefix, prefixLen, content);
         fac = findMagicString(opening, file);
         if (fac != null) {
             return fac;
@@ -1056,29 +1069,51 @@ public class AnalyzerGuru {
     }
 
     /**
-     * Extract an opening string from the input stream, past any BOM, and past
-     * any initial whitespace, but only up to <code>OPENING_MAX_CHARS</code> or
-     * to the first <code>\n</code> after any non-whitespace. (Hashbang, #!,
-     * openings will have superfluous space removed.)
+     * Read from the input stream until the buffer is full or the end of the
+     * stream is reached.
      *
      * @param in The input stream containing the data
-     * @param sig The initial sequence of bytes in the input stream
-     * @return The extracted string or <code>""</code>
+     * @param buf The buffer to fill
+     * @return The number of bytes read
      * @throws java.io.IOException in case of any read error
      */
-    private static String readOpening(InputStream in, byte[] sig)
+    private static int readFully(InputStream in, byte[] buf)
         throws IOException {
 
-        in.mark(MARK_READ_LIMIT);
+        int len = 0;
+        int n;
+        while (len < buf.length &&
+                (n = in.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+        }
+        return len;
+    }
+
+    /**
+     * Extract an opening string from the start of the data, past any BOM, and
+     * past any initial whitespace, but only up to
+     * <code>OPENING_MAX_CHARS</code> or to the first <code>\n</code> after any
+     * non-whitespace. (Hashbang, #!, openings will have superfluous space
+     * removed.)
+     *
+     * @param prefix The initial bytes of the data, as read by
+     * {@link #findForStream(java.io.InputStream, java.lang.String)}
+     * @param prefixLen The number of valid bytes in {@code prefix}
+     * @param sig The initial sequence of bytes in the input stream
+     * @return The extracted string or <code>""</code>
+     * @throws java.io.IOException in case of any decoding error
+     */
+    private static String readOpening(byte[] prefix, int prefixLen, byte[] sig)
+        throws IOException {
 
         String encoding = IOUtils.findBOMEncoding(sig);
+        int skipForBOM = 0;
         if (encoding == null) {
             // SRCROOT is read with UTF-8 as a default.
             encoding = StandardCharsets.UTF_8.name();
         } else {
-            int skipForBOM = IOUtils.skipForBOM(sig);
-            if (in.skip(skipForBOM) < skipForBOM) {
-                in.reset();
+            skipForBOM = IOUtils.skipForBOM(sig);
+            if (prefixLen < skipForBOM) {
                 return "";
             }
         }
@@ -1090,8 +1125,8 @@ public class AnalyzerGuru {
         int r;
 
         StringBuilder opening = new StringBuilder();
-        BufferedReader readr = new BufferedReader(
-            new InputStreamReader(in, encoding), OPENING_MAX_CHARS);
+        Reader readr = new InputStreamReader(new ByteArrayInputStream(prefix,
+            skipForBOM, prefixLen - skipForBOM), encoding);
         while ((r = readr.read()) != -1) {
             if (++nRead > OPENING_MAX_CHARS) {
                 break;
@@ -1130,7 +1165,6 @@ public class AnalyzerGuru {
             }
         }
 
-        in.reset();
         return opening.toString();
     }
 
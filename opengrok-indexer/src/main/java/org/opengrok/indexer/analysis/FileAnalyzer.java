@@ -66,6 +66,7 @@ public class FileAnalyzer extends Analyzer {
     protected Ctags ctags;
     protected boolean scopesEnabled;
     protected boolean foldingEnabled;
+    protected boolean jointLexingEnabled;
     private final FileAnalyzerFactory factory;
 
     /**
@@ -173,6 +174,22 @@ public class FileAnalyzer extends Analyzer {
         return false;
     }
 
+    public void setJointLexingEnabled(boolean jointLexingEnabled) {
+        this.jointLexingEnabled = supportsJointLexing() && jointLexingEnabled;
+    }
+
+    /**
+     * Subclasses should override to indicate that the symbols matched by
+     * their xref lexer are exactly the tokens of their symbol tokenizer, so
+     * the source needs to be lexed only once. The symbol tokenizer is still
+     * used if the xrefer cannot collect the symbols, see
+     * {@link Xrefer#canCollectSymbols()}.
+     * @return {@code false}
+     */
+    protected boolean supportsJointLexing() {
+        return false;
+    }
+
     /**
      * Get the factory which created this analyzer.
      *
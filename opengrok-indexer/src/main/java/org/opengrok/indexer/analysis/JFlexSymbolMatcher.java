@@ -37,6 +37,7 @@ public abstract class JFlexSymbolMatcher extends JFlexStateStacker
     private SymbolMatchedListener symbolListener;
     private NonSymbolMatchedListener nonSymbolListener;
     private String disjointSpanClassName;
+    private SymbolMatchedEvent reusedSymbolEvent;
 
     /**
      * Associates the specified listener, replacing the former one.
@@ -103,6 +104,32 @@ public abstract class JFlexSymbolMatcher extends JFlexStateStacker
         }
     }
 
+    /**
+     * Raises
+     * {@link SymbolMatchedListener#symbolMatched(org.opengrok.indexer.analysis.SymbolMatchedEvent)}
+     * for a subscribed listener with the symbol given as a range of the
+     * scanner buffer. No string is created unless the listener asks for it
+     * and the event instance is reused.
+     * @param buffer the scanner buffer (i.e. {@code zzBuffer})
+     * @param offset the symbol offset in {@code buffer} (i.e.
+     * {@code zzStartRead})
+     * @param length the symbol length
+     * @param start the symbol start position
+     */
+    protected void onSymbolMatched(char[] buffer, int offset, int length,
+        int start) {
+        SymbolMatchedListener l = symbolListener;
+        if (l != null) {
+            SymbolMatchedEvent evt = reusedSymbolEvent;
+            if (evt == null) {
+                evt = new SymbolMatchedEvent(this);
+                reusedSymbolEvent = evt;
+            }
+            evt.set(buffer, offset, length, start);
+            l.symbolMatched(evt);
+        }
+    }
+
     /**
      * Raises
      * {@link SymbolMatchedListener#sourceCodeSeen(org.opengrok.indexer.analysis.SourceCodeSeenEvent)}
@@ -99,13 +99,21 @@ public class JFlexTokenizer extends Tokenizer
     }
 
     /**
-     * Calls {@link #setAttribs(java.lang.String, int, int)} on the publishing
-     * of a {@link SymbolMatchedEvent}.
+     * Calls {@link #setAttribs(char[], int, int, int)} or
+     * {@link #setAttribs(java.lang.String, int, int)} on the publishing of a
+     * {@link SymbolMatchedEvent}, depending on whether the symbol is given as
+     * a range of the scanner buffer or as a string.
      * @param evt the event raised
      */
     @Override
     public void symbolMatched(SymbolMatchedEvent evt) {
-        setAttribs(evt.getStr(), evt.getStart(), evt.getEnd());
+        char[] buffer = evt.getBuffer();
+        if (buffer != null) {
+            setAttribs(buffer, evt.getBufferOffset(), evt.getStart(),
+                evt.getEnd());
+        } else {
+            setAttribs(evt.getStr(), evt.getStart(), evt.getEnd());
+        }
     }
 
     /**
@@ -132,4 +140,19 @@ public class JFlexTokenizer extends Tokenizer
         this.termAtt.append(str);
         this.offsetAtt.setOffset(start, end);
     }
+
+    /**
+     * Clears, and then resets the instances attributes per the specified
+     * arguments, copying the symbol directly from the scanner buffer.
+     * @param buffer the scanner buffer
+     * @param offset the symbol offset in {@code buffer}
+     * @param start the match start position
+     * @param end the match end position
+     */
+    protected void setAttribs(char[] buffer, int offset, int start, int end) {
+        clearAttributes();
+        this.posIncrAtt.setPositionIncrement(1);
+        this.termAtt.copyBuffer(buffer, offset, end - start);
+        this.offsetAtt.setOffset(start, end);
+    }
 }
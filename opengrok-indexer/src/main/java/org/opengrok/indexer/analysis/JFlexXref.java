@@ -27,6 +27,7 @@ package org.opengrok.indexer.analysis;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
 import org.opengrok.indexer.analysis.Scopes.Scope;
 import org.opengrok.indexer.configuration.Project;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
@@ -54,6 +55,7 @@ public class JFlexXref implements Xrefer, SymbolMatchedListener,
     private Definitions defs;
     private boolean scopesEnabled;
     private boolean foldingEnabled;
+    private List<PendingToken> symbols;
 
     private boolean scopeOpen;
     private Scopes scopes = new Scopes();
@@ -199,8 +201,31 @@ public class JFlexXref implements Xrefer, SymbolMatchedListener,
         this.foldingEnabled = foldingEnabled;
     }
 
+    /**
+     * @return {@code true}, the symbols are reported by the lexer through
+     * {@link #symbolMatched(SymbolMatchedEvent)}
+     */
+    @Override
+    public boolean canCollectSymbols() {
+        return true;
+    }
+
+    /**
+     * Set the list receiving the symbols matched by the lexer, which are the
+     * same as those produced by the symbol tokenizer of languages supporting
+     * joint lexing.
+     * @param symbols a defined instance or {@code null}
+     */
+    @Override
+    public void setSymbolCollector(List<PendingToken> symbols) {
+        this.symbols = symbols;
+    }
+
     @Override
     public void symbolMatched(SymbolMatchedEvent evt) {
+        if (symbols != null) {
+            symbols.add(new PendingToken(evt.getStr(), evt.getStart(), evt.getEnd()));
+        }
         try {
             JFlexXrefUtils.writeSymbol(out, defs, urlPrefix, project,
                 evt.getStr(), null, matcher.getLineNumber(), false, false);
@@ -35,9 +35,11 @@ package org.opengrok.indexer.analysis;
 public class SymbolMatchedEvent {
 
     private final Object source;
-    private final String str;
-    private final int start;
-    private final int end;
+    private String str;
+    private char[] buffer;
+    private int bufferOffset;
+    private int start;
+    private int end;
 
     /**
      * Initializes an immutable instance of {@link SymbolMatchedEvent}.
@@ -53,6 +55,31 @@ public class SymbolMatchedEvent {
         this.end = end;
     }
 
+    /**
+     * Initializes an instance of {@link SymbolMatchedEvent} which is reused
+     * for symbols given as ranges of a scanner buffer, see
+     * {@link #set(char[], int, int, int)}.
+     * @param source the event source
+     */
+    SymbolMatchedEvent(Object source) {
+        this.source = source;
+    }
+
+    /**
+     * Sets the symbol to the range of the scanner buffer.
+     * @param buffer the scanner buffer
+     * @param offset offset of the symbol in {@code buffer}
+     * @param length the symbol length
+     * @param start the symbol start position
+     */
+    void set(char[] buffer, int offset, int length, int start) {
+        this.str = null;
+        this.buffer = buffer;
+        this.bufferOffset = offset;
+        this.start = start;
+        this.end = start + length;
+    }
+
     /**
      * Gets the event source.
      * @return the initial value
@@ -62,13 +89,35 @@ public class SymbolMatchedEvent {
     }
 
     /**
-     * Gets the symbol string.
+     * Gets the symbol string. For an event raised for a range of the scanner
+     * buffer the string is created on the first call.
      * @return the initial value
      */
     public String getStr() {
+        if (str == null && buffer != null) {
+            str = new String(buffer, bufferOffset, end - start);
+        }
         return str;
     }
 
+    /**
+     * Gets the scanner buffer holding the symbol. Its content is valid only
+     * while the event is being delivered, and so is the event itself.
+     * @return a defined instance or {@code null} if the event was
+     * initialized with a string
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the offset of the symbol in {@link #getBuffer()}.
+     * @return the offset
+     */
+    public int getBufferOffset() {
+        return bufferOffset;
+    }
+
     /**
      * Gets the symbol start position.
      * @return the initial value
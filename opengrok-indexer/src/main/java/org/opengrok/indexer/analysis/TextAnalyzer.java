@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import org.opengrok.indexer.index.IndexingProfiler;
 import org.opengrok.indexer.util.IOUtils;
 
 public abstract class TextAnalyzer extends FileAnalyzer {
@@ -77,7 +78,15 @@ public abstract class TextAnalyzer extends FileAnalyzer {
         xref.setFoldingEnabled(foldingEnabled);
         xref.setAnnotation(args.getAnnotation());
         xref.setProject(args.getProject());
-        xref.write(args.getOut());
+        if (xref.canCollectSymbols()) {
+            xref.setSymbolCollector(args.getSymbols());
+        }
+        IndexingProfiler.enter(IndexingProfiler.Phase.XREF);
+        try {
+            xref.write(args.getOut());
+        } finally {
+            IndexingProfiler.exit();
+        }
         return xref;
     }
 
@@ -24,6 +24,7 @@ package org.opengrok.indexer.analysis;
 
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
 import org.opengrok.indexer.configuration.Project;
 import org.opengrok.indexer.history.Annotation;
 
@@ -38,6 +39,7 @@ public class WriteXrefArgs {
     private Definitions defs;
     private Annotation annotation;
     private Project project;
+    private List<PendingToken> symbols;
 
     /**
      * Initializes an instance of {@link WriteXrefArgs} for the required
@@ -68,4 +70,18 @@ public class WriteXrefArgs {
 
     public Project getProject() { return project; }
     public void setProject(Project value) { project = value; }
+
+    /**
+     * Gets the list receiving the symbols matched while writing the xref.
+     * @return a defined instance or {@code null} if the symbols are not
+     * collected
+     */
+    public List<PendingToken> getSymbols() { return symbols; }
+
+    /**
+     * Sets the list receiving the symbols matched while writing the xref, so
+     * that they do not have to be tokenized in a separate pass.
+     * @param value a defined instance or {@code null}
+     */
+    public void setSymbols(List<PendingToken> value) { symbols = value; }
 }
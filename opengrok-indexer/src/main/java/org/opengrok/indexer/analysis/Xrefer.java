@@ -27,6 +27,7 @@ package org.opengrok.indexer.analysis;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import org.opengrok.indexer.configuration.Project;
 import org.opengrok.indexer.history.Annotation;
 
@@ -75,6 +76,23 @@ public interface Xrefer extends Resettable {
      */
     void setScopesEnabled(boolean scopesEnabled);
 
+    /**
+     * Can the xrefer collect the symbols it matches while writing the xref,
+     * see {@link #setSymbolCollector(List)}?
+     * @return {@code false}
+     */
+    default boolean canCollectSymbols() {
+        return false;
+    }
+
+    /**
+     * Set the list receiving the symbols matched while writing the xref.
+     * Only used if {@link #canCollectSymbols()} returns {@code true}.
+     * @param symbols a defined instance or {@code null} not to collect them
+     */
+    default void setSymbolCollector(List<PendingToken> symbols) {
+    }
+
     /**
      * Write xref to the specified {@code Writer}.
      *
@@ -73,4 +73,9 @@ public class CAnalyzer extends AbstractSourceCodeAnalyzer {
     protected boolean supportsScopes() {
         return true;
     }
+
+    @Override
+    protected boolean supportsJointLexing() {
+        return true;
+    }
 }
@@ -71,4 +71,9 @@ public class CxxAnalyzer extends AbstractSourceCodeAnalyzer {
     protected boolean supportsScopes() {
         return true;
     }
+
+    @Override
+    protected boolean supportsJointLexing() {
+        return true;
+    }
 }
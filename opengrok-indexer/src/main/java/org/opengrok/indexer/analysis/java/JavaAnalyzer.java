@@ -71,4 +71,8 @@ public class JavaAnalyzer extends AbstractSourceCodeAnalyzer {
         return true;
     }
 
+    @Override
+    protected boolean supportsJointLexing() {
+        return true;
+    }
 }
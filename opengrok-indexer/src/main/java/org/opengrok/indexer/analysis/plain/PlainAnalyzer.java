@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.StoredField;
 import org.opengrok.indexer.analysis.Definitions;
@@ -36,11 +38,13 @@ import org.opengrok.indexer.analysis.JFlexTokenizer;
 import org.opengrok.indexer.analysis.JFlexXref;
 import org.opengrok.indexer.analysis.OGKTextField;
 import org.opengrok.indexer.analysis.OGKTextVecField;
+import org.opengrok.indexer.analysis.PendingToken;
 import org.opengrok.indexer.analysis.Scopes;
 import org.opengrok.indexer.analysis.StreamSource;
 import org.opengrok.indexer.analysis.TextAnalyzer;
 import org.opengrok.indexer.analysis.WriteXrefArgs;
 import org.opengrok.indexer.analysis.Xrefer;
+import org.opengrok.indexer.index.IndexingProfiler;
 import org.opengrok.indexer.search.QueryBuilder;
 import org.opengrok.indexer.util.NullWriter;
 
@@ -99,30 +103,38 @@ public class PlainAnalyzer extends TextAnalyzer {
     public void analyze(Document doc, StreamSource src, Writer xrefOut)
             throws IOException, InterruptedException {
         Definitions defs = null;
+        boolean addRefs = false;
+        List<PendingToken> symbols = null;
 
         doc.add(new OGKTextField(QueryBuilder.FULL,
             getReader(src.getStream())));
 
         String fullpath = doc.get(QueryBuilder.FULLPATH);
         if (fullpath != null && ctags != null) {
-            defs = ctags.doCtags(fullpath);
+            IndexingProfiler.enter(IndexingProfiler.Phase.CTAGS);
+            try {
+                defs = ctags.doCtags(fullpath);
+            } finally {
+                IndexingProfiler.exit();
+            }
             if (defs != null && defs.numberOfSymbols() > 0) {
                 tryAddingDefs(doc, defs, src, fullpath);
-                //this is to explicitly use appropriate analyzers tokenstream to workaround #1376 symbols search works like full text search 
-                OGKTextField ref = new OGKTextField(QueryBuilder.REFS,
-                    this.symbolTokenizer);
-                this.symbolTokenizer.setReader(getReader(src.getStream()));
-                doc.add(ref);
+                addRefs = true;
+                if (jointLexingEnabled) {
+                    // The symbols are collected while writing the xref below.
+                    symbols = new ArrayList<>();
+                }
                 byte[] tags = defs.serialize();
                 doc.add(new StoredField(QueryBuilder.TAGS, tags));                
             }
         }
         
-        if (scopesEnabled && xrefOut == null) {
+        if ((scopesEnabled || symbols != null) && xrefOut == null) {
             /*
-             * Scopes are generated during xref generation. If xrefs are
-             * turned off we still need to run writeXref to produce scopes,
-             * we use a dummy writer that will throw away any xref output.
+             * Scopes (and the symbols in joint lexing mode) are generated
+             * during xref generation. If xrefs are turned off we still need
+             * to run writeXref to produce them, we use a dummy writer that
+             * will throw away any xref output.
              */
             xrefOut = new NullWriter();
         }
@@ -132,7 +144,12 @@ public class PlainAnalyzer extends TextAnalyzer {
                 WriteXrefArgs args = new WriteXrefArgs(in, xrefOut);
                 args.setDefs(defs);
                 args.setProject(project);
+                args.setSymbols(symbols);
                 Xrefer xref = writeXref(args);
+                if (!xref.canCollectSymbols()) {
+                    // fall back to the symbol tokenizer
+                    symbols = null;
+                }
             
                 Scopes scopes = xref.getScopes();
                 if (scopes.size() > 0) {
@@ -145,6 +162,19 @@ public class PlainAnalyzer extends TextAnalyzer {
                 addLOC(doc, xref.getLOC());
             }
         }
+
+        if (addRefs) {
+            //this is to explicitly use appropriate analyzers tokenstream to workaround #1376 symbols search works like full text search 
+            if (symbols != null) {
+                doc.add(new OGKTextField(QueryBuilder.REFS,
+                    new SymbolsTokenStream(symbols)));
+            } else {
+                OGKTextField ref = new OGKTextField(QueryBuilder.REFS,
+                    this.symbolTokenizer);
+                this.symbolTokenizer.setReader(getReader(src.getStream()));
+                doc.add(ref);
+            }
+        }
     }
 
     private void tryAddingDefs(Document doc, Definitions defs, StreamSource src,
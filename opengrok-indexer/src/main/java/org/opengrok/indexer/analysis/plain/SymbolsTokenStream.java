@@ -0,0 +1,86 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.analysis.plain;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.opengrok.indexer.analysis.PendingToken;
+
+/**
+ * Represents a token stream of symbols collected while writing the xref, see
+ * {@link org.opengrok.indexer.analysis.WriteXrefArgs#setSymbols(java.util.List)}.
+ * The list is read only when the stream is consumed, i.e. it can be filled
+ * after the stream was added to a document.
+ */
+public class SymbolsTokenStream extends TokenStream {
+
+    private final List<PendingToken> symbols;
+
+    private final CharTermAttribute termAtt = addAttribute(
+        CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(
+        OffsetAttribute.class);
+    private final PositionIncrementAttribute posIncrAtt = addAttribute(
+        PositionIncrementAttribute.class);
+
+    private int offset;
+
+    /**
+     * Initializes the stream for the specified list.
+     * @param symbols a defined instance
+     */
+    public SymbolsTokenStream(List<PendingToken> symbols) {
+        if (symbols == null) {
+            throw new IllegalArgumentException("`symbols' is null");
+        }
+        this.symbols = symbols;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        offset = 0;
+    }
+
+    /**
+     * Publishes the next symbol, if one is available.
+     * @return false if no more tokens; otherwise true
+     * @throws IOException in case of I/O error
+     */
+    @Override
+    public final boolean incrementToken() throws IOException {
+        clearAttributes();
+        if (offset < symbols.size()) {
+            PendingToken tok = symbols.get(offset++);
+            posIncrAtt.setPositionIncrement(1);
+            termAtt.append(tok.str);
+            offsetAtt.setOffset(tok.start, tok.end);
+            return true;
+        }
+        return false;
+    }
+}
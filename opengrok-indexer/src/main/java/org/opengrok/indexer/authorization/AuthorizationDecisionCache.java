@@ -0,0 +1,136 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.authorization;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of authorization decisions shared across requests. The decisions are
+ * cached per user session with a limited time to live and the number of
+ * entries is bounded, evicting the least recently used entries first.
+ * <p>
+ * Each entry remembers the plugin version of the framework it was computed
+ * with, so entries computed by a check which raced with a reload of the
+ * plugins are never returned.
+ */
+final class AuthorizationDecisionCache {
+
+    private static final class Entry {
+        final boolean decision;
+        final long version;
+        final long expires;
+
+        Entry(boolean decision, long version, long expires) {
+            this.decision = decision;
+            this.version = version;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile int maxSize;
+    private volatile long ttlNanos;
+
+    /**
+     * Set the limits of the cache. Entries exceeding the new size are evicted.
+     * @param maxSize maximum number of entries
+     * @param ttlSeconds time to live of the entries in seconds, 0 disables
+     * the cache
+     */
+    synchronized void configure(int maxSize, int ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        if (!isEnabled()) {
+            entries.clear();
+        }
+        trim();
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Get the key of the decision.
+     * @param sessionId identifier of the HTTP session
+     * @param user name of the authenticated user or {@code null}
+     * @param cache name of the entity cache (projects or groups)
+     * @param entity name of the project or group
+     * @return the key
+     */
+    static String key(String sessionId, String user, String cache, String entity) {
+        return sessionId + '\0' + (user == null ? "" : user) + '\0' + cache + '\0' + entity;
+    }
+
+    /**
+     * Get the cached decision.
+     * @param key the key
+     * @param version current plugin version of the framework
+     * @return the decision or {@code null} if it is not cached or expired
+     */
+    synchronized Boolean get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.version != version || entry.expires - System.nanoTime() <= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.decision;
+    }
+
+    /**
+     * Store the decision.
+     * @param key the key
+     * @param decision the decision
+     * @param version plugin version of the framework which made the decision
+     */
+    synchronized void put(String key, boolean decision, long version) {
+        if (!isEnabled()) {
+            return;
+        }
+        entries.put(key, new Entry(decision, version, System.nanoTime() + ttlNanos));
+        trim();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void trim() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
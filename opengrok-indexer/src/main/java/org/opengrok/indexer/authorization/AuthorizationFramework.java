@@ -94,6 +94,12 @@ public final class AuthorizationFramework {
      */
     private long pluginVersion = 0;
 
+    /**
+     * Decisions cached across requests of the same user session. Configured
+     * on every {@code reload()}.
+     */
+    private final AuthorizationDecisionCache decisionCache = new AuthorizationDecisionCache();
+
     /**
      * Whether to load plugins from class files and jar files.
      */
@@ -588,6 +594,9 @@ public final class AuthorizationFramework {
      */
     @SuppressWarnings("unchecked")
     public void reload() {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        decisionCache.configure(env.getAuthorizationCacheSize(), env.getAuthorizationCacheTTL());
+
         if (pluginDirectory == null || !pluginDirectory.isDirectory() || !pluginDirectory.canRead()) {
             LOGGER.log(Level.WARNING, "Plugin directory not found or not readable: {0}. "
                     + "All requests allowed.", pluginDirectory);
@@ -643,11 +652,12 @@ public final class AuthorizationFramework {
             
             // increase the current plugin version tracked by the framework
             increasePluginVersion();
+            decisionCache.clear();
         } finally {
             lock.writeLock().unlock();
         }
 
-        Statistics stats = RuntimeEnvironment.getInstance().getStatistics();
+        Statistics stats = env.getStatistics();
         stats.addRequest("authorization_stack_reload");
         
         // clean the old stack
@@ -701,7 +711,9 @@ public final class AuthorizationFramework {
      *
      * <p>
      * Internally performed with a predicate. Using cache in request
-     * attributes.</p>
+     * attributes and, if {@code authorizationCacheTTL} is set, a cache of
+     * decisions shared by the requests of the same user session. The latter
+     * is invalidated by every reload of the plugins.</p>
      *
      * <h3>Order of plugin invocation</h3>
      *
@@ -779,11 +791,29 @@ public final class AuthorizationFramework {
                 session.invalidate();
                 stats.addRequest("authorization_sessions_invalidated");
             }
-            request.getSession().setAttribute(SESSION_VERSION, getPluginVersion());
+            session = request.getSession();
+            session.setAttribute(SESSION_VERSION, getPluginVersion());
+
+            String key = null;
+            if (decisionCache.isEnabled()) {
+                key = AuthorizationDecisionCache.key(session.getId(), request.getRemoteUser(),
+                        cache, entity.getName());
+                if ((val = decisionCache.get(key, getPluginVersion())) != null) {
+                    stats.addRequest("authorization_decision_cache_hits");
+                    m.put(entity.getName(), val);
+                    request.setAttribute(cache, m);
+                    return val;
+                }
+                stats.addRequest("authorization_decision_cache_misses");
+            }
 
             time = System.currentTimeMillis();
 
             overallDecision = performCheck(entity, pluginPredicate, skippingPredicate);
+
+            if (key != null) {
+                decisionCache.put(key, overallDecision, getPluginVersion());
+            }
         } finally {
             lock.readLock().unlock();
         }
@@ -53,6 +53,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.zip.Deflater;
 import org.opengrok.indexer.authorization.AuthControlFlag;
 import org.opengrok.indexer.authorization.AuthorizationStack;
 import org.opengrok.indexer.history.RepositoryInfo;
@@ -118,6 +119,24 @@ public final class Configuration {
      * Should the history log be cached?
      */
     private boolean historyCache;
+    /**
+     * Should the file annotations be cached?
+     */
+    private boolean annotationCache;
+    /**
+     * Number of the most viewed files whose annotation cache entries are
+     * rebuilt in the background after reindex.
+     */
+    private int annotationCachePrefetch;
+    /**
+     * Should the changesets be indexed for history search and directory
+     * history?
+     */
+    private boolean changesetIndex;
+    /**
+     * Maximum number of source lines held by the cache of computed diffs.
+     */
+    private int diffCacheLines;
     /**
      * The maximum time in milliseconds {@code HistoryCache.get()} can take
      * before its result is cached.
@@ -144,6 +163,16 @@ public final class Configuration {
      * for development.
      */
     private boolean authorizationWatchdogEnabled;
+    /**
+     * Maximum number of authorization decisions cached across requests.
+     */
+    private int authorizationCacheSize;
+    /**
+     * Time in seconds an authorization decision is cached for a user session.
+     * Zero disables the cache so that the plugins are consulted on every
+     * request.
+     */
+    private int authorizationCacheTTL;
     private AuthorizationStack pluginStack;
     private Map<String,Project> projects; // project name -> Project
     private Set<Group> groups;
@@ -187,7 +216,17 @@ public final class Configuration {
 
     private LuceneLockName luceneLocking = LuceneLockName.OFF;
     private boolean compressXref;
+    /**
+     * Compression level (0-9) of the xref files, or -1 for the default level
+     * of {@link java.util.zip.Deflater}.
+     */
+    private int xrefCompressionLevel;
     private boolean indexVersionedFilesOnly;
+    /**
+     * Should the symbols of the languages supporting it be collected while
+     * writing the xref instead of tokenizing the file again?
+     */
+    private boolean jointLexing;
     private int indexingParallelism;
     private int historyParallelism;
     private int historyRenamedParallelism;
@@ -199,6 +238,16 @@ public final class Configuration {
     private boolean lastEditedDisplayMode;
     private String CTagsExtraOptionsFile;
     private int scanningDepth;
+    /**
+     * Whether to discover repositories by a parallel walk which recognizes
+     * them by marker entries (e.g. {@code .git}).
+     */
+    private boolean fastRepositoryDiscovery;
+    /**
+     * Whether to cache parent, branch and current version of repositories
+     * across indexer runs.
+     */
+    private boolean repositoryMetadataCache;
     private Set<String> allowedSymlinks;
     private boolean obfuscatingEMailAddresses;
     private boolean chattyStatusPage;
@@ -339,6 +388,22 @@ public final class Configuration {
         this.scanningDepth = scanningDepth;
     }
 
+    public boolean isFastRepositoryDiscovery() {
+        return fastRepositoryDiscovery;
+    }
+
+    public void setFastRepositoryDiscovery(boolean fastRepositoryDiscovery) {
+        this.fastRepositoryDiscovery = fastRepositoryDiscovery;
+    }
+
+    public boolean isRepositoryMetadataCache() {
+        return repositoryMetadataCache;
+    }
+
+    public void setRepositoryMetadataCache(boolean repositoryMetadataCache) {
+        this.repositoryMetadataCache = repositoryMetadataCache;
+    }
+
     public int getCommandTimeout() {
         return commandTimeout;
     }
@@ -419,7 +484,12 @@ public final class Configuration {
         // defaults for an opengrok instance configuration
         cmds = new HashMap<>();
         setAllowedSymlinks(new HashSet<>());
+        setAnnotationCache(false);
+        setAnnotationCachePrefetch(0);
+        setAuthorizationCacheSize(10000);
+        setAuthorizationCacheTTL(0);
         setAuthorizationWatchdogEnabled(false);
+        setChangesetIndex(false);
         //setBugPage("http://bugs.myserver.org/bugdatabase/view_bug.do?bug_id=");
         setBugPattern("\\b([12456789][0-9]{6})\\b");
         setCachePages(5);
@@ -431,7 +501,9 @@ public final class Configuration {
         //ctags is default(String)
         setCurrentIndexedCollapseThreshold(27);
         setDataRoot(null);
+        setDiffCacheLines(200000);
         setDisplayRepositories(true);
+        setFastRepositoryDiscovery(false);
         setFetchHistoryWhenNotInCache(true);
         setFoldingEnabled(true);
         setGenerateHtml(true);
@@ -445,6 +517,7 @@ public final class Configuration {
         setIgnoredNames(new IgnoredNames());
         setIncludedNames(new Filter());
         setIndexVersionedFilesOnly(false);
+        setJointLexing(false);
         setLastEditedDisplayMode(true);
         //luceneLocking default is OFF
         //mandoc is default(String)
@@ -461,6 +534,7 @@ public final class Configuration {
         setRamBufferSize(defaultRamBufferSize); //MB
         setRemoteScmSupported(RemoteSCM.OFF);
         setRepositories(new ArrayList<>());
+        setRepositoryMetadataCache(false);
         //setReviewPage("http://arc.myserver.org/caselog/PSARC/");
         setReviewPattern("\\b(\\d{4}/\\d{3})\\b"); // in form e.g. PSARC 2008/305
         setRevisionMessageCollapseThreshold(200);
@@ -475,6 +549,7 @@ public final class Configuration {
         // unconditionally later.
         setUserPageSuffix("");
         setWebappLAF("default");
+        setXrefCompressionLevel(Deflater.DEFAULT_COMPRESSION);
     }
 
     public String getRepoCmd(String clazzName) {
@@ -535,6 +610,43 @@ public final class Configuration {
         this.authorizationWatchdogEnabled = authorizationWatchdogEnabled;
     }
 
+    public int getAuthorizationCacheSize() {
+        return authorizationCacheSize;
+    }
+
+    /**
+     * Set the maximum number of authorization decisions cached across
+     * requests.
+     *
+     * @param authorizationCacheSize number of decisions
+     * @throws IllegalArgumentException when the number is negative
+     */
+    public void setAuthorizationCacheSize(int authorizationCacheSize) throws IllegalArgumentException {
+        if (authorizationCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    String.format(NEGATIVE_NUMBER_ERROR, "authorizationCacheSize", authorizationCacheSize));
+        }
+        this.authorizationCacheSize = authorizationCacheSize;
+    }
+
+    public int getAuthorizationCacheTTL() {
+        return authorizationCacheTTL;
+    }
+
+    /**
+     * Set the time an authorization decision is cached for a user session.
+     *
+     * @param authorizationCacheTTL time in seconds, 0 disables the cache
+     * @throws IllegalArgumentException when the number is negative
+     */
+    public void setAuthorizationCacheTTL(int authorizationCacheTTL) throws IllegalArgumentException {
+        if (authorizationCacheTTL < 0) {
+            throw new IllegalArgumentException(
+                    String.format(NEGATIVE_NUMBER_ERROR, "authorizationCacheTTL", authorizationCacheTTL));
+        }
+        this.authorizationCacheTTL = authorizationCacheTTL;
+    }
+
     public AuthorizationStack getPluginStack() {
         return pluginStack;
     }
@@ -721,6 +833,88 @@ public final class Configuration {
         this.historyCacheTime = historyCacheTime;
     }
 
+    /**
+     * Should the file annotations be cached? The annotation cache is used
+     * only together with the history cache.
+     *
+     * @return {@code true} if the annotation cache should be used
+     */
+    public boolean isAnnotationCache() {
+        return annotationCache;
+    }
+
+    /**
+     * Set whether file annotations should be cached.
+     *
+     * @param annotationCache if {@code true} enable annotation cache
+     */
+    public void setAnnotationCache(boolean annotationCache) {
+        this.annotationCache = annotationCache;
+    }
+
+    /**
+     * Get the number of the most viewed files whose annotations are cached in
+     * the background after reindex.
+     *
+     * @return number of files
+     */
+    public int getAnnotationCachePrefetch() {
+        return annotationCachePrefetch;
+    }
+
+    /**
+     * Set the number of the most viewed files whose annotations are cached
+     * in the background after reindex.
+     *
+     * @param annotationCachePrefetch number of files, 0 disables prefetching
+     * @throws IllegalArgumentException when the number is negative
+     */
+    public void setAnnotationCachePrefetch(int annotationCachePrefetch) throws IllegalArgumentException {
+        if (annotationCachePrefetch < 0) {
+            throw new IllegalArgumentException(
+                    String.format(NEGATIVE_NUMBER_ERROR, "annotationCachePrefetch", annotationCachePrefetch));
+        }
+        this.annotationCachePrefetch = annotationCachePrefetch;
+    }
+
+    /**
+     * Should the changesets be stored in separate index with one document
+     * per changeset? The index is built along with the history cache.
+     *
+     * @return {@code true} if the changeset index should be used
+     */
+    public boolean isChangesetIndex() {
+        return changesetIndex;
+    }
+
+    /**
+     * Set whether the changesets should be indexed.
+     *
+     * @param changesetIndex if {@code true} enable changeset index
+     */
+    public void setChangesetIndex(boolean changesetIndex) {
+        this.changesetIndex = changesetIndex;
+    }
+
+    public int getDiffCacheLines() {
+        return diffCacheLines;
+    }
+
+    /**
+     * Set the maximum number of source lines held by the cache of computed
+     * diffs.
+     *
+     * @param diffCacheLines number of lines, 0 disables the cache
+     * @throws IllegalArgumentException when the number is negative
+     */
+    public void setDiffCacheLines(int diffCacheLines) throws IllegalArgumentException {
+        if (diffCacheLines < 0) {
+            throw new IllegalArgumentException(
+                    String.format(NEGATIVE_NUMBER_ERROR, "diffCacheLines", diffCacheLines));
+        }
+        this.diffCacheLines = diffCacheLines;
+    }
+
     public boolean isFetchHistoryWhenNotInCache() {
         return fetchHistoryWhenNotInCache;
     }
@@ -1019,6 +1213,25 @@ public final class Configuration {
         return compressXref;
     }
 
+    public int getXrefCompressionLevel() {
+        return xrefCompressionLevel;
+    }
+
+    /**
+     * Set the compression level of the xref files.
+     *
+     * @param level 0-9, or -1 for the default level
+     * @throws IllegalArgumentException when the level is out of range
+     */
+    public void setXrefCompressionLevel(int level) throws IllegalArgumentException {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid value for \"xrefCompressionLevel\" - \"%d\". Expected value between -1 and 9",
+                    level));
+        }
+        this.xrefCompressionLevel = level;
+    }
+
     public boolean isIndexVersionedFilesOnly() {
         return indexVersionedFilesOnly;
     }
@@ -1027,6 +1240,14 @@ public final class Configuration {
         this.indexVersionedFilesOnly = indexVersionedFilesOnly;
     }
 
+    public boolean isJointLexing() {
+        return jointLexing;
+    }
+
+    public void setJointLexing(boolean jointLexing) {
+        this.jointLexing = jointLexing;
+    }
+
     public int getIndexingParallelism() {
         return indexingParallelism;
     }
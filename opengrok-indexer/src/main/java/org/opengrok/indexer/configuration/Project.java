@@ -182,6 +182,7 @@ public class Project implements Comparable<Project>, Nameable, Serializable {
      */
     public void setPath(String path) {
         this.path = path;
+        ProjectPathIndex.invalidate();
     }
 
     public void setIndexed(boolean flag) {
@@ -329,27 +330,10 @@ public class Project implements Comparable<Project>, Nameable, Serializable {
      * doesn't belong to a project)
      */
     public static Project getProject(String path) {
-        // Try to match each project path as prefix of the given path.
         final RuntimeEnvironment env = RuntimeEnvironment.getInstance();
         if (env.hasProjects()) {
-            final String lpath = path.replace(File.separatorChar, '/');
-            for (Project p : env.getProjectList()) {
-                String projectPath = p.getPath();
-                if (projectPath == null) {
-                    LOGGER.log(Level.WARNING, "Path of project {0} is not set", p.getName());
-                    return null;
-                }
-
-                // Check if the project's path is a prefix of the given
-                // path. It has to be an exact match, or the project's path
-                // must be immediately followed by a separator. "/foo" is
-                // a prefix for "/foo" and "/foo/bar", but not for "/foof".
-                if (lpath.startsWith(projectPath)
-                        && (projectPath.length() == lpath.length()
-                        || lpath.charAt(projectPath.length()) == '/')) {
-                    return p;
-                }
-            }
+            return ProjectPathIndex.getProject(env.getProjects(),
+                    path.replace(File.separatorChar, '/'));
         }
 
         return null;
@@ -0,0 +1,98 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Index of the projects by their paths. It finds the project of a path with
+ * a hash lookup per directory level of the path instead of comparing the
+ * path with the paths of all projects.
+ * <p>
+ * The index is built on first use and rebuilt when the map of projects is
+ * replaced (e.g. by a new configuration) or its size changes. Code which
+ * changes the projects in place otherwise, e.g. replaces a project or
+ * changes its path, has to call {@link #invalidate()}.
+ */
+public final class ProjectPathIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectPathIndex.class);
+
+    private static volatile ProjectPathIndex current;
+
+    private final Map<String, Project> projects;
+    private final int size;
+    private final Map<String, Project> byPath;
+
+    private ProjectPathIndex(Map<String, Project> projects) {
+        this.projects = projects;
+        this.size = projects.size();
+        this.byPath = new HashMap<>(size * 2);
+        for (Project p : projects.values()) {
+            String path = p.getPath();
+            if (path == null) {
+                LOGGER.log(Level.WARNING, "Path of project {0} is not set", p.getName());
+            } else {
+                byPath.put(path, p);
+            }
+        }
+    }
+
+    /**
+     * Discard the index, it is rebuilt by the next lookup.
+     */
+    public static void invalidate() {
+        current = null;
+    }
+
+    /**
+     * Get the project whose path is the longest prefix of the path. The
+     * project's path must be followed by a separator or be the whole path:
+     * "/foo" is a prefix for "/foo" and "/foo/bar", but not for "/foof".
+     *
+     * @param projects the projects
+     * @param path path relative to source root with {@code /} as separator
+     * @return the project or {@code null}
+     */
+    static Project getProject(Map<String, Project> projects, String path) {
+        ProjectPathIndex index = current;
+        if (index == null || index.projects != projects || index.size != projects.size()) {
+            index = new ProjectPathIndex(projects);
+            current = index;
+        }
+        return index.lookup(path);
+    }
+
+    private Project lookup(String path) {
+        Project p = byPath.get(path);
+        int i = path.length();
+        while (p == null && (i = path.lastIndexOf('/', i - 1)) > 0) {
+            p = byPath.get(path.substring(0, i));
+        }
+        return p;
+    }
+}
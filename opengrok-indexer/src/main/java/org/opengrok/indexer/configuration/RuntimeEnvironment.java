@@ -37,6 +37,8 @@ import org.opengrok.indexer.index.Filter;
 import org.opengrok.indexer.index.IgnoredNames;
 import org.opengrok.indexer.index.IndexDatabase;
 import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.metrics.Histogram;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.indexer.util.CtagsUtil;
 import org.opengrok.indexer.util.ForbiddenSymlinkException;
 import org.opengrok.indexer.util.PathUtils;
@@ -64,7 +66,9 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -84,15 +88,23 @@ public final class RuntimeEnvironment {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeEnvironment.class);
 
+    private static final Histogram SEARCHER_REFRESH_TIME = MetricsRegistry.getInstance().histogram(
+            "opengrok_searcher_manager_refresh_seconds", "Time spent refreshing index searchers.");
+
     /** {@code "/source"} + {@link Prefix#SEARCH_R} + {@code "?"} */
     private static final String URL_PREFIX = "/source" + Prefix.SEARCH_R + "?";
 
-    private Configuration configuration;
+    /**
+     * The getters read the configuration without locking. Every modification
+     * is done with the write lock of {@link #configLock} held and followed by
+     * a write to this field, so the readers see the new values.
+     */
+    private volatile Configuration configuration;
     private ReentrantReadWriteLock configLock;
     private static final RuntimeEnvironment instance = new RuntimeEnvironment();
     private static ExecutorService historyExecutor = null;
     private static ExecutorService historyRenamedExecutor = null;
-    private static ExecutorService searchExecutor = null;
+    private static ThreadPoolExecutor searchExecutor = null;
 
     private final Map<Project, List<RepositoryInfo>> repository_map = new ConcurrentHashMap<>();
     private final Map<String, SearcherManager> searcherManagerMap = new ConcurrentHashMap<>();
@@ -163,8 +175,10 @@ public final class RuntimeEnvironment {
     /* Get thread pool used for multi-project searches. */
     public synchronized ExecutorService getSearchExecutor() {
         if (searchExecutor == null) {
-            searchExecutor = Executors.newFixedThreadPool(
-                this.getMaxSearchThreadCount(),
+            // same as Executors.newFixedThreadPool() but keeps the queue observable
+            searchExecutor = new ThreadPoolExecutor(
+                this.getMaxSearchThreadCount(), this.getMaxSearchThreadCount(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
                 new ThreadFactory() {
                 @Override
                 public Thread newThread(Runnable runnable) {
@@ -173,6 +187,11 @@ public final class RuntimeEnvironment {
                     return thread;
                 }
             });
+            ThreadPoolExecutor executor = searchExecutor;
+            MetricsRegistry.getInstance().gauge("opengrok_search_executor_queue_size",
+                    "Number of tasks waiting for a search thread.", () -> executor.getQueue().size());
+            MetricsRegistry.getInstance().gauge("opengrok_search_executor_active_threads",
+                    "Number of search threads executing tasks.", executor::getActiveCount);
         }
 
         return searchExecutor;
@@ -224,12 +243,9 @@ public final class RuntimeEnvironment {
      */
     public Object getConfigurationValue(String fieldName) {
         try {
-            configLock.readLock().lock();
             return getFieldValue(configuration, fieldName);
         } catch (IOException e) {
             return null;
-        } finally {
-            configLock.readLock().unlock();
         }
     }
 
@@ -241,12 +257,9 @@ public final class RuntimeEnvironment {
      */
     public Object getConfigurationValueException(String fieldName) throws IOException {
         try {
-            configLock.readLock().lock();
             return getFieldValue(configuration, fieldName);
         } catch (IOException e) {
             throw new IOException("getter", e);
-        } finally {
-            configLock.readLock().unlock();
         }
     }
 
@@ -258,7 +271,7 @@ public final class RuntimeEnvironment {
     public void setConfigurationValue(String fieldName, String value) {
         try {
             configLock.writeLock().lock();
-            setFieldValue(configuration, fieldName, value);
+            setConfigurationField(fieldName, value);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "failed to set value of field {}: {}", new Object[]{fieldName, e});
         } finally {
@@ -274,7 +287,7 @@ public final class RuntimeEnvironment {
     public void setConfigurationValue(String fieldName, Object value) {
         try {
             configLock.writeLock().lock();
-            setFieldValue(configuration, fieldName, value);
+            setConfigurationField(fieldName, value);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "failed to set value of field {}: {}", new Object[]{fieldName, e});
         } finally {
@@ -290,7 +303,7 @@ public final class RuntimeEnvironment {
     public void setConfigurationValueException(String fieldName, Object value) throws IOException {
         try {
             configLock.writeLock().lock();
-            setFieldValue(configuration, fieldName, value);
+            setConfigurationField(fieldName, value);
         } finally {
             configLock.writeLock().unlock();
         }
@@ -304,22 +317,54 @@ public final class RuntimeEnvironment {
     public void setConfigurationValueException(String fieldName, String value) throws IOException {
         try {
             configLock.writeLock().lock();
-            setFieldValue(configuration, fieldName, value);
+            setConfigurationField(fieldName, value);
         } finally {
             configLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Modify the configuration and publish the change to the readers. Must be
+     * called with the write lock held.
+     */
+    private void setConfigurationField(String fieldName, String value) throws IOException {
+        Configuration config = configuration;
+        setFieldValue(config, fieldName, value);
+        configuration = config;
+    }
+
+    private void setConfigurationField(String fieldName, Object value) throws IOException {
+        Configuration config = configuration;
+        setFieldValue(config, fieldName, value);
+        configuration = config;
+    }
+
     public int getScanningDepth() {
-        return (int)getConfigurationValue("scanningDepth");
+        return configuration.getScanningDepth();
     }
 
     public void setScanningDepth(int scanningDepth) {
         setConfigurationValue("scanningDepth", scanningDepth);
     }
 
+    public boolean isFastRepositoryDiscovery() {
+        return configuration.isFastRepositoryDiscovery();
+    }
+
+    public void setFastRepositoryDiscovery(boolean fastRepositoryDiscovery) {
+        setConfigurationValue("fastRepositoryDiscovery", fastRepositoryDiscovery);
+    }
+
+    public boolean isRepositoryMetadataCache() {
+        return configuration.isRepositoryMetadataCache();
+    }
+
+    public void setRepositoryMetadataCache(boolean repositoryMetadataCache) {
+        setConfigurationValue("repositoryMetadataCache", repositoryMetadataCache);
+    }
+
     public int getCommandTimeout() {
-        return (int)getConfigurationValue("commandTimeout");
+        return configuration.getCommandTimeout();
     }
 
     public void setCommandTimeout(int timeout) {
@@ -327,7 +372,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getInteractiveCommandTimeout() {
-        return (int)getConfigurationValue("interactiveCommandTimeout");
+        return configuration.getInteractiveCommandTimeout();
     }
 
     public void setInteractiveCommandTimeout(int timeout) {
@@ -347,7 +392,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isLastEditedDisplayMode() {
-        return (boolean)getConfigurationValue("lastEditedDisplayMode");
+        return configuration.isLastEditedDisplayMode();
     }
 
     /**
@@ -356,7 +401,7 @@ public final class RuntimeEnvironment {
      * @return the path to the web application include files
      */
     public String getIncludeRootPath() {
-        return (String)getConfigurationValue("includeRoot");
+        return configuration.getIncludeRoot();
     }
 
     /**
@@ -373,7 +418,7 @@ public final class RuntimeEnvironment {
      * @return the path to the index database
      */
     public String getDataRootPath() {
-        return (String)getConfigurationValue("dataRoot");
+        return configuration.getDataRoot();
     }
 
     /**
@@ -406,7 +451,7 @@ public final class RuntimeEnvironment {
      * @return path to where the sources are located
      */
     public String getSourceRootPath() {
-        return (String)getConfigurationValue("sourceRoot");
+        return configuration.getSourceRoot();
     }
 
     /**
@@ -474,7 +519,7 @@ public final class RuntimeEnvironment {
      * @return a Map with all of the projects
      */
     public Map<String,Project> getProjects() {
-        return (Map<String,Project>)getConfigurationValue("projects");
+        return configuration.getProjects();
     }
 
     /**
@@ -518,7 +563,7 @@ public final class RuntimeEnvironment {
      * @return a set containing all of the groups (may be null)
      */
     public Set<Group> getGroups() {
-        return (Set<Group>)getConfigurationValue("groups");
+        return configuration.getGroups();
     }
 
     /**
@@ -561,7 +606,7 @@ public final class RuntimeEnvironment {
     public String getCtags() {
         String value;
         return ctags != null ? ctags :
-                (value = (String)getConfigurationValue("ctags")) != null ? value :
+                (value = configuration.getCtags()) != null ? value :
                 System.getProperty(CtagsUtil.SYSTEM_CTAGS_PROPERTY,"ctags");
     }
 
@@ -590,7 +635,7 @@ public final class RuntimeEnvironment {
     public String getMandoc() {
         String value;
         return mandoc != null ? mandoc : (value =
-                (String)getConfigurationValue("mandoc")) != null ? value :
+                configuration.getMandoc()) != null ? value :
             System.getProperty("org.opengrok.indexer.analysis.Mandoc");
     }
 
@@ -609,7 +654,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getCachePages() {
-        return (int)getConfigurationValue("cachePages");
+        return configuration.getCachePages();
     }
 
     public void setCachePages(int cachePages) {
@@ -617,7 +662,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getHitsPerPage() {
-        return (int)getConfigurationValue("hitsPerPage");
+        return configuration.getHitsPerPage();
     }
 
     public void setHitsPerPage(int hitsPerPage) {
@@ -648,7 +693,7 @@ public final class RuntimeEnvironment {
      * @return the max time
      */
     public int getHistoryReaderTimeLimit() {
-        return (int)getConfigurationValue("historyCacheTime");
+        return configuration.getHistoryCacheTime();
     }
 
     /**
@@ -667,7 +712,7 @@ public final class RuntimeEnvironment {
      * @return true if history cache is enabled
      */
     public boolean useHistoryCache() {
-        return (boolean)getConfigurationValue("historyCache");
+        return configuration.isHistoryCache();
     }
 
     /**
@@ -679,13 +724,58 @@ public final class RuntimeEnvironment {
         setConfigurationValue("historyCache", useHistoryCache);
     }
 
+    /**
+     * Is annotation cache enabled?
+     *
+     * @return true if annotation cache is enabled
+     */
+    public boolean isAnnotationCache() {
+        return configuration.isAnnotationCache();
+    }
+
+    /**
+     * Specify if we should cache file annotations or not
+     *
+     * @param annotationCache set false if you do not want to use annotation cache
+     */
+    public void setAnnotationCache(boolean annotationCache) {
+        setConfigurationValue("annotationCache", annotationCache);
+    }
+
+    /**
+     * Get the number of the most viewed files whose annotations are cached
+     * in the background after reindex.
+     *
+     * @return number of files
+     */
+    public int getAnnotationCachePrefetch() {
+        return configuration.getAnnotationCachePrefetch();
+    }
+
+    public int getDiffCacheLines() {
+        return configuration.getDiffCacheLines();
+    }
+
+    /**
+     * Is changeset index enabled?
+     *
+     * @return true if changeset index is enabled
+     */
+    public boolean isChangesetIndex() {
+        return configuration.isChangesetIndex();
+    }
+
+    public void setChangesetIndex(boolean changesetIndex) {
+        setConfigurationValue("changesetIndex", changesetIndex);
+    }
+
     /**
      * Should we generate HTML or not during the indexing phase
      *
      * @return true if HTML should be generated during the indexing phase
      */
     public boolean isGenerateHtml() {
-        return (boolean)getConfigurationValue("generateHtml");
+        return configuration.isGenerateHtml();
     }
 
     /**
@@ -713,11 +803,29 @@ public final class RuntimeEnvironment {
      * @return {@code true} if the html-files should be compressed.
      */
     public boolean isCompressXref() {
-        return (boolean)getConfigurationValue("compressXref");
+        return configuration.isCompressXref();
+    }
+
+    /**
+     * Get the compression level of the xref files.
+     *
+     * @return 0-9, or -1 for the default level of {@link java.util.zip.Deflater}
+     */
+    public int getXrefCompressionLevel() {
+        return configuration.getXrefCompressionLevel();
+    }
+
+    /**
+     * Set the compression level of the xref files.
+     *
+     * @param level 0-9, or -1 for the default level
+     */
+    public void setXrefCompressionLevel(int level) {
+        setConfigurationValue("xrefCompressionLevel", level);
     }
 
     public boolean isQuickContextScan() {
-        return (boolean)getConfigurationValue("quickContextScan");
+        return configuration.isQuickContextScan();
     }
 
     public void setQuickContextScan(boolean quickContextScan) {
@@ -725,7 +833,7 @@ public final class RuntimeEnvironment {
     }
 
     public List<RepositoryInfo> getRepositories() {
-        return (List<RepositoryInfo>)getConfigurationValue("repositories");
+        return configuration.getRepositories();
     }
 
     /**
@@ -792,7 +900,7 @@ public final class RuntimeEnvironment {
      * @return the default projects (may be null if not specified)
      */
     public Set<Project> getDefaultProjects() {
-        Set<Project> projects = (Set<Project>)getConfigurationValue("defaultProjects");
+        Set<Project> projects = configuration.getDefaultProjects();
         if (projects == null) {
             return null;
         }
@@ -804,7 +912,7 @@ public final class RuntimeEnvironment {
      * @return at what size (in MB) we should flush the buffer
      */
     public double getRamBufferSize() {
-        return (double)getConfigurationValue("ramBufferSize");
+        return configuration.getRamBufferSize();
     }
 
     /**
@@ -823,19 +931,35 @@ public final class RuntimeEnvironment {
     }
 
     public String getPluginDirectory() {
-        return (String)getConfigurationValue("pluginDirectory");
+        return configuration.getPluginDirectory();
     }
 
     public boolean isAuthorizationWatchdog() {
-        return (boolean)getConfigurationValue("authorizationWatchdogEnabled");
+        return configuration.isAuthorizationWatchdogEnabled();
     }
 
     public void setAuthorizationWatchdog(boolean authorizationWatchdogEnabled) {
         setConfigurationValue("authorizationWatchdogEnabled", authorizationWatchdogEnabled);
     }
 
+    public int getAuthorizationCacheSize() {
+        return configuration.getAuthorizationCacheSize();
+    }
+
+    public void setAuthorizationCacheSize(int size) {
+        setConfigurationValue("authorizationCacheSize", size);
+    }
+
+    public int getAuthorizationCacheTTL() {
+        return configuration.getAuthorizationCacheTTL();
+    }
+
+    public void setAuthorizationCacheTTL(int ttl) {
+        setConfigurationValue("authorizationCacheTTL", ttl);
+    }
+
     public AuthorizationStack getPluginStack() {
-        return (AuthorizationStack)getConfigurationValue("pluginStack");
+        return configuration.getPluginStack();
     }
 
     public void setPluginStack(AuthorizationStack pluginStack) {
@@ -848,7 +972,7 @@ public final class RuntimeEnvironment {
      * @return true if we can print per project progress %
      */
     public boolean isPrintProgress() {
-        return (boolean)getConfigurationValue("printProgress");
+        return configuration.isPrintProgress();
     }
 
     /**
@@ -877,11 +1001,11 @@ public final class RuntimeEnvironment {
      * @return true if a search may start with a wildcard
      */
     public boolean isAllowLeadingWildcard() {
-        return (boolean)getConfigurationValue("allowLeadingWildcard");
+        return configuration.isAllowLeadingWildcard();
     }
 
     public IgnoredNames getIgnoredNames() {
-        return (IgnoredNames)getConfigurationValue("ignoredNames");
+        return configuration.getIgnoredNames();
     }
 
     public void setIgnoredNames(IgnoredNames ignoredNames) {
@@ -889,7 +1013,7 @@ public final class RuntimeEnvironment {
     }
 
     public Filter getIncludedNames() {
-        return (Filter)getConfigurationValue("includedNames");
+        return configuration.getIncludedNames();
     }
 
     public void setIncludedNames(Filter includedNames) {
@@ -902,7 +1026,7 @@ public final class RuntimeEnvironment {
      * @return the URL string fragment preceeding the username
      */
     public String getUserPage() {
-        return (String)getConfigurationValue("userPage");
+        return configuration.getUserPage();
     }
 
     /**
@@ -962,7 +1086,7 @@ public final class RuntimeEnvironment {
      * @return the URL string fragment following the username
      */
     public String getUserPageSuffix() {
-        return (String)getConfigurationValue("userPageSuffix");
+        return configuration.getUserPageSuffix();
     }
 
     /**
@@ -981,7 +1105,7 @@ public final class RuntimeEnvironment {
      * @return the URL string fragment preceeding the bug ID
      */
     public String getBugPage() {
-        return (String)getConfigurationValue("bugPage");
+        return configuration.getBugPage();
     }
 
     /**
@@ -999,7 +1123,7 @@ public final class RuntimeEnvironment {
      * @return the regex that is looked for in history comments
      */
     public String getBugPattern() {
-        return (String)getConfigurationValue("bugPattern");
+        return configuration.getBugPattern();
     }
 
     /**
@@ -1018,7 +1142,7 @@ public final class RuntimeEnvironment {
      * @return the URL string fragment preceeding the review page ID
      */
     public String getReviewPage() {
-        return (String)getConfigurationValue("reviewPage");
+        return configuration.getReviewPage();
     }
 
     /**
@@ -1036,7 +1160,7 @@ public final class RuntimeEnvironment {
      * @return the regex that is looked for in history comments
      */
     public String getReviewPattern() {
-        return (String)getConfigurationValue("reviewPattern");
+        return configuration.getReviewPattern();
     }
 
     /**
@@ -1050,7 +1174,7 @@ public final class RuntimeEnvironment {
     }
 
     public String getWebappLAF() {
-        return (String)getConfigurationValue("webappLAF");
+        return configuration.getWebappLAF();
     }
 
     public void setWebappLAF(String laf) {
@@ -1058,7 +1182,7 @@ public final class RuntimeEnvironment {
     }
 
     public Configuration.RemoteSCM getRemoteScmSupported() {
-        return (Configuration.RemoteSCM)getConfigurationValue("remoteScmSupported");
+        return configuration.getRemoteScmSupported();
     }
 
     public void setRemoteScmSupported(Configuration.RemoteSCM supported) {
@@ -1066,7 +1190,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isOptimizeDatabase() {
-        return (boolean)getConfigurationValue("optimizeDatabase");
+        return configuration.isOptimizeDatabase();
     }
 
     public void setOptimizeDatabase(boolean optimizeDatabase) {
@@ -1074,24 +1198,32 @@ public final class RuntimeEnvironment {
     }
 
     public LuceneLockName getLuceneLocking() {
-        return (LuceneLockName)getConfigurationValue("luceneLocking");
+        return configuration.getLuceneLocking();
     }
 
     public boolean isIndexVersionedFilesOnly() {
-        return (boolean)getConfigurationValue("indexVersionedFilesOnly");
+        return configuration.isIndexVersionedFilesOnly();
     }
 
     public void setIndexVersionedFilesOnly(boolean indexVersionedFilesOnly) {
         setConfigurationValue("indexVersionedFilesOnly", indexVersionedFilesOnly);
     }
 
+    public boolean isJointLexing() {
+        return configuration.isJointLexing();
+    }
+
+    public void setJointLexing(boolean jointLexing) {
+        setConfigurationValue("jointLexing", jointLexing);
+    }
+
     /**
      * Gets the value of {@link Configuration#getIndexingParallelism()} -- or
      * if zero, then as a default gets the number of available processors.
      * @return a natural number &gt;= 1
      */
     public int getIndexingParallelism() {
-        int parallelism = (int)getConfigurationValue("indexingParallelism");
+        int parallelism = configuration.getIndexingParallelism();
         return parallelism < 1 ? Runtime.getRuntime().availableProcessors() :
             parallelism;
     }
@@ -1102,7 +1234,7 @@ public final class RuntimeEnvironment {
      * @return a natural number &gt;= 1
      */
     public int getHistoryParallelism() {
-        int parallelism = (int)getConfigurationValue("historyParallelism");
+        int parallelism = configuration.getHistoryParallelism();
         return parallelism < 1 ? Runtime.getRuntime().availableProcessors() :
             parallelism;
     }
@@ -1113,13 +1245,13 @@ public final class RuntimeEnvironment {
      * @return a natural number &gt;= 1
      */
     public int getHistoryRenamedParallelism() {
-        int parallelism = (int)getConfigurationValue("historyRenamedParallelism");
+        int parallelism = configuration.getHistoryRenamedParallelism();
         return parallelism < 1 ? Runtime.getRuntime().availableProcessors() :
             parallelism;
     }
 
     public boolean isTagsEnabled() {
-        return (boolean)getConfigurationValue("tagsEnabled");
+        return configuration.isTagsEnabled();
     }
 
     public void setTagsEnabled(boolean tagsEnabled) {
@@ -1127,7 +1259,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isScopesEnabled() {
-        return (boolean)getConfigurationValue("scopesEnabled");
+        return configuration.isScopesEnabled();
     }
 
     public void setScopesEnabled(boolean scopesEnabled) {
@@ -1135,7 +1267,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isProjectsEnabled() {
-        return (boolean)getConfigurationValue("projectsEnabled");
+        return configuration.isProjectsEnabled();
     }
 
     public void setProjectsEnabled(boolean projectsEnabled) {
@@ -1143,7 +1275,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isFoldingEnabled() {
-        return (boolean)getConfigurationValue("foldingEnabled");
+        return configuration.isFoldingEnabled();
     }
 
     public void setFoldingEnabled(boolean foldingEnabled) {
@@ -1155,7 +1287,7 @@ public final class RuntimeEnvironment {
     }
 
     public String getCTagsExtraOptionsFile() {
-        return (String)getConfigurationValue("CTagsExtraOptionsFile");
+        return configuration.getCTagsExtraOptionsFile();
     }
 
     public void setCTagsExtraOptionsFile(String filename) {
@@ -1163,7 +1295,7 @@ public final class RuntimeEnvironment {
     }
 
     public Set<String> getAllowedSymlinks() {
-        return (Set<String>)getConfigurationValue("allowedSymlinks");
+        return configuration.getAllowedSymlinks();
     }
 
     public void setAllowedSymlinks(Set<String> allowedSymlinks) {
@@ -1175,7 +1307,7 @@ public final class RuntimeEnvironment {
      * @return if we obfuscate emails
      */
     public boolean isObfuscatingEMailAddresses() {
-        return (boolean)getConfigurationValue("obfuscatingEMailAddresses");
+        return configuration.isObfuscatingEMailAddresses();
     }
 
     /**
@@ -1193,7 +1325,7 @@ public final class RuntimeEnvironment {
      * {@code false} otherwise
      */
     public boolean isChattyStatusPage() {
-        return (boolean)getConfigurationValue("chattyStatusPage");
+        return configuration.isChattyStatusPage();
     }
 
     /**
@@ -1211,11 +1343,11 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isFetchHistoryWhenNotInCache() {
-        return (boolean)getConfigurationValue("fetchHistoryWhenNotInCache");
+        return configuration.isFetchHistoryWhenNotInCache();
     }
 
     public boolean isHistoryCache() {
-        return (boolean)getConfigurationValue("historyCache");
+        return configuration.isHistoryCache();
     }
 
     public void setHandleHistoryOfRenamedFiles(boolean enable) {
@@ -1223,7 +1355,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isHandleHistoryOfRenamedFiles() {
-        return (boolean)getConfigurationValue("handleHistoryOfRenamedFiles");
+        return configuration.isHandleHistoryOfRenamedFiles();
     }
 
     public void setNavigateWindowEnabled(boolean enable) {
@@ -1231,7 +1363,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isNavigateWindowEnabled() {
-        return (boolean)getConfigurationValue("navigateWindowEnabled");
+        return configuration.isNavigateWindowEnabled();
     }
 
     public void setRevisionMessageCollapseThreshold(int threshold) {
@@ -1239,7 +1371,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getRevisionMessageCollapseThreshold() {
-        return (int)getConfigurationValue("revisionMessageCollapseThreshold");
+        return configuration.getRevisionMessageCollapseThreshold();
     }
 
     public void setMaxSearchThreadCount(int count) {
@@ -1247,11 +1379,11 @@ public final class RuntimeEnvironment {
     }
 
     public int getMaxSearchThreadCount() {
-        return (int)getConfigurationValue("maxSearchThreadCount");
+        return configuration.getMaxSearchThreadCount();
     }
 
     public int getCurrentIndexedCollapseThreshold() {
-        return (int)getConfigurationValue("currentIndexedCollapseThreshold");
+        return configuration.getCurrentIndexedCollapseThreshold();
     }
 
     public void setCurrentIndexedCollapseThreshold(int currentIndexedCollapseThreshold) {
@@ -1259,7 +1391,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getGroupsCollapseThreshold() {
-        return (int)getConfigurationValue("groupsCollapseThreshold");
+        return configuration.getGroupsCollapseThreshold();
     }
 
     // The URI is not necessary to be present in the configuration
@@ -1274,7 +1406,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean isHistoryEnabled() {
-        return (boolean)getConfigurationValue("historyEnabled");
+        return configuration.isHistoryEnabled();
     }
 
     public void setHistoryEnabled(boolean flag) {
@@ -1282,7 +1414,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean getDisplayRepositories() {
-        return (boolean)getConfigurationValue("displayRepositories");
+        return configuration.getDisplayRepositories();
     }
 
     public void setDisplayRepositories(boolean flag) {
@@ -1290,7 +1422,7 @@ public final class RuntimeEnvironment {
     }
 
     public boolean getListDirsFirst() {
-        return (boolean)getConfigurationValue("listDirsFirst");
+        return configuration.getListDirsFirst();
     }
 
     public void setListDirsFirst(boolean flag) {
@@ -1302,7 +1434,7 @@ public final class RuntimeEnvironment {
     }
 
     public int getTabSize() {
-        return (int)getConfigurationValue("tabSize");
+        return configuration.getTabSize();
     }
 
     /**
@@ -1310,7 +1442,7 @@ public final class RuntimeEnvironment {
      * @return a value greater than zero
      */
     public short getContextLimit() {
-        return (short)getConfigurationValue("contextLimit");
+        return configuration.getContextLimit();
     }
 
     /**
@@ -1318,7 +1450,7 @@ public final class RuntimeEnvironment {
      * @return a value greater than or equal to zero
      */
     public short getContextSurround() {
-        return (short)getConfigurationValue("contextSurround");
+        return configuration.getContextSurround();
     }
 
     /**
@@ -1548,7 +1680,7 @@ public final class RuntimeEnvironment {
     }
 
     public String getStatisticsFilePath() {
-        return (String)getConfigurationValue("statisticsFilePath");
+        return configuration.getStatisticsFilePath();
     }
 
     public void setStatisticsFilePath(String path) {
@@ -1633,6 +1765,8 @@ public final class RuntimeEnvironment {
             maybeRefreshIndexSearchers();
             // Force timestamp to update itself upon new config arrival.
             refreshDateForLastIndexRun();
+            // The history cache may know about new revisions now.
+            HistoryGuru.getInstance().refreshAnnotationCache();
         }
 
         // start/stop the watchdog if necessary
@@ -1659,8 +1793,10 @@ public final class RuntimeEnvironment {
     }
 
     private void maybeRefreshSearcherManager(SearcherManager sm) {
+        long start = System.nanoTime();
         try {
             sm.maybeRefresh();
+            SEARCHER_REFRESH_TIME.observeSince(start);
         }  catch (AlreadyClosedException ex) {
             // This is a case of removed project. See refreshSearcherManagerMap() for details.
         } catch (IOException ex) {
@@ -1788,7 +1924,7 @@ public final class RuntimeEnvironment {
     }
 
     public void startExpirationTimer() {
-        messagesContainer.setMessageLimit((int)getConfigurationValue("messageLimit"));
+        messagesContainer.setMessageLimit(configuration.getMessageLimit());
         messagesContainer.startExpirationTimer();
     }
 
@@ -1868,12 +2004,12 @@ public final class RuntimeEnvironment {
     }
 
     public SuggesterConfig getSuggesterConfig() {
-        return (SuggesterConfig)getConfigurationValue("suggesterConfig");
+        return configuration.getSuggesterConfig();
     }
 
     public void setSuggesterConfig(SuggesterConfig config) {
         setConfigurationValue("suggesterConfig", config);
     }
 
-    public int getMessageLimit() { return (int)getConfigurationValue("messageLimit"); }
+    public int getMessageLimit() { return configuration.getMessageLimit(); }
 }
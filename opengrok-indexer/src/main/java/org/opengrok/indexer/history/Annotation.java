@@ -23,9 +23,12 @@
 
 package org.opengrok.indexer.history;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -190,6 +193,107 @@ public class Annotation {
         return fileVersions.size();
     }
 
+    /**
+     * Writes the annotation in a compact binary form. The revision and author
+     * strings are written only once and lines refer to them by index.
+     * @param out stream to write to
+     * @throws IOException on I/O error
+     * @see #readCompact(DataInputStream)
+     */
+    void writeCompact(DataOutputStream out) throws IOException {
+        writeString(out, filename);
+
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (Line line : lines) {
+            for (String str : new String[] {line.revision, line.author}) {
+                if (!strings.containsKey(str)) {
+                    strings.put(str, table.size());
+                    table.add(str);
+                }
+            }
+        }
+        out.writeInt(table.size());
+        for (String str : table) {
+            writeString(out, str);
+        }
+
+        out.writeInt(lines.size());
+        for (Line line : lines) {
+            out.writeInt(strings.get(line.revision));
+            out.writeInt(strings.get(line.author));
+            out.writeBoolean(line.enabled);
+        }
+
+        out.writeInt(desc.size());
+        for (Entry<String, String> entry : desc.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+
+        out.writeInt(fileVersions.size());
+        for (Entry<String, Integer> entry : fileVersions.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the annotation written by {@link #writeCompact(DataOutputStream)}.
+     * @param in stream to read from
+     * @return annotation
+     * @throws IOException on I/O error
+     */
+    static Annotation readCompact(DataInputStream in) throws IOException {
+        Annotation annotation = new Annotation(readString(in));
+
+        String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readString(in);
+        }
+
+        int lineCount = in.readInt();
+        for (int i = 0; i < lineCount; i++) {
+            String revision = table[in.readInt()];
+            String author = table[in.readInt()];
+            annotation.addLine(revision, author, in.readBoolean());
+        }
+
+        int descCount = in.readInt();
+        for (int i = 0; i < descCount; i++) {
+            // the description is stored already encoded
+            annotation.desc.put(readString(in), readString(in));
+        }
+
+        int versionCount = in.readInt();
+        for (int i = 0; i < versionCount; i++) {
+            annotation.addFileVersion(readString(in), in.readInt());
+        }
+
+        return annotation;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        // not writeUTF() because commit messages can be longer than 64KB
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     /** Class representing one line in the file. */
     private static class Line {
         final String revision;
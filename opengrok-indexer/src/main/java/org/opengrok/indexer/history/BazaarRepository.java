@@ -62,6 +62,7 @@ public class BazaarRepository extends Repository {
         };
 
         ignoredDirs.add(".bzr");
+        markers.add(".bzr");
     }
 
     /**
@@ -91,6 +91,7 @@ public class BitKeeperRepository extends Repository {
         datePatterns = new String[] {"yyyy-MM-dd HH:mm:ss z"};
 
         ignoredDirs.add(".bk");
+        markers.add(".bk");
     }
 
     /**
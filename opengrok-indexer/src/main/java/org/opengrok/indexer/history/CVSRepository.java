@@ -78,6 +78,7 @@ public class CVSRepository extends RCSRepository {
         ignoredFiles.add(".cvsignore");
         ignoredDirs.add("CVS");
         ignoredDirs.add("CVSROOT");
+        markers.add("CVS");
     }
 
     @Override
@@ -0,0 +1,470 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.opengrok.indexer.analysis.CompatibleAnalyser;
+import org.opengrok.indexer.configuration.Project;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.search.QueryBuilder;
+import org.opengrok.indexer.util.IOUtils;
+
+/**
+ * Lucene index with one document per changeset, stored next to the history
+ * cache. Like the main index there is one index per project under
+ * {@code <dataRoot>/changesets}, or a single one if projects are not used.
+ * Each document holds the revision, author, date and message of the
+ * changeset together with the paths of the changed files and all their parent
+ * directories, so the history of a project, a directory or a file is a single
+ * query sorted by date.
+ * <p>
+ * The message is indexed in the {@link QueryBuilder#HIST} field with the same
+ * analyzer as in the main index, so the history part of a search query can be
+ * run against this index directly.
+ */
+public final class ChangesetIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangesetIndex.class);
+
+    public static final String CHANGESET_INDEX_DIR_NAME = "changesets";
+
+    /** Unique key of the changeset: repository and revision. */
+    static final String ID = "id";
+    /** Path of the repository relative to source root. */
+    static final String REPOSITORY = "repository";
+    static final String REVISION = "revision";
+    static final String AUTHOR = "author";
+    static final String DATE = "date";
+    static final String MESSAGE = QueryBuilder.HIST;
+    /** Paths of the changed files relative to source root. */
+    static final String PATHS = "paths";
+    /** Parent directories of the changed files. */
+    static final String DIRS = "dirs";
+
+    private static final Sort BY_DATE = new Sort(new SortField(DATE, SortField.Type.LONG, true));
+
+    private static final ConcurrentMap<String, ChangesetIndex> instances = new ConcurrentHashMap<>();
+
+    private final String projectPath;
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    /**
+     * Page of changesets matching a query.
+     */
+    public static final class Result {
+
+        private final long totalHits;
+        private final List<HistoryEntry> entries;
+
+        Result(long totalHits, List<HistoryEntry> entries) {
+            this.totalHits = totalHits;
+            this.entries = entries;
+        }
+
+        /**
+         * @return total number of matching changesets
+         */
+        public long getTotalHits() {
+            return totalHits;
+        }
+
+        /**
+         * @return the changesets on the page, the newest first
+         */
+        public List<HistoryEntry> getEntries() {
+            return entries;
+        }
+    }
+
+    private ChangesetIndex(String projectPath) {
+        this.projectPath = projectPath;
+    }
+
+    /**
+     * Get the changeset index of the project.
+     *
+     * @param project the project or {@code null} if projects are not used
+     * @return the index
+     */
+    public static ChangesetIndex getInstance(Project project) {
+        return instances.computeIfAbsent(project == null ? "" : project.getPath(),
+                ChangesetIndex::new);
+    }
+
+    /**
+     * Get the changeset index holding the history of the path.
+     *
+     * @param path path of a file or directory relative to source root
+     * @return the index or {@code null} if projects are used and the path does
+     * not belong to any project
+     */
+    public static ChangesetIndex forPath(String path) {
+        if (!RuntimeEnvironment.getInstance().hasProjects()) {
+            return getInstance(null);
+        }
+        Project project = Project.getProject(path);
+        return project == null ? null : getInstance(project);
+    }
+
+    /**
+     * Close the index of the project and delete it from the disk. This has to
+     * be done while the project is still known, see {@link #forPath(String)}.
+     *
+     * @param project the project
+     * @throws IOException if the index cannot be deleted
+     */
+    public static void remove(Project project) throws IOException {
+        ChangesetIndex index = instances.remove(project.getPath());
+        if (index != null) {
+            index.close();
+        }
+        File dir = getIndexDir(project.getPath());
+        if (dir.exists()) {
+            IOUtils.removeRecursive(dir.toPath());
+        }
+    }
+
+    /**
+     * Close the indexes of all projects.
+     */
+    public static void closeAll() {
+        for (ChangesetIndex index : instances.values()) {
+            index.close();
+        }
+    }
+
+    /**
+     * Add the changesets of the repository to the index. Changesets which are
+     * already indexed are replaced.
+     *
+     * @param repository repository the history belongs to
+     * @param entries changesets with the file lists
+     * @throws IOException if the index cannot be written
+     */
+    public void add(Repository repository, List<HistoryEntry> entries) throws IOException {
+        String repoPath = repository.getDirectoryNameRelative();
+        IndexWriter w = getWriter();
+        for (HistoryEntry entry : entries) {
+            w.updateDocument(new Term(ID, repoPath + "@" + entry.getRevision()),
+                    createDocument(repoPath, entry));
+        }
+        w.commit();
+    }
+
+    /**
+     * Remove all changesets of the repository from the index.
+     *
+     * @param repository repository
+     * @throws IOException if the index cannot be written
+     */
+    public void clear(Repository repository) throws IOException {
+        IndexWriter w = getWriter();
+        w.deleteDocuments(new Term(REPOSITORY, repository.getDirectoryNameRelative()));
+        w.commit();
+    }
+
+    /**
+     * Get the changesets which changed the file or any file under the
+     * directory.
+     *
+     * @param path path of a file or directory relative to source root
+     * @param start index of the first changeset to return
+     * @param max maximum number of changesets to return
+     * @return the changesets or {@code null} if the index does not exist
+     * @throws IOException if the index cannot be read
+     */
+    public Result getHistory(String path, int start, int max) throws IOException {
+        return search(getPathQuery(Collections.singletonList(path)), start, max);
+    }
+
+    /**
+     * Get the changesets which changed any of the files or any file under
+     * the directories.
+     *
+     * @param paths paths of files or directories relative to source root
+     * @param start index of the first changeset to return
+     * @param max maximum number of changesets to return
+     * @return the changesets or {@code null} if the index does not exist
+     * @throws IOException if the index cannot be read
+     */
+    public Result getHistory(List<String> paths, int start, int max) throws IOException {
+        return search(getPathQuery(paths), start, max);
+    }
+
+    /**
+     * Get the changesets under the path whose message matches the history
+     * part of the query. The clauses for other fields are ignored.
+     *
+     * @param query search query, usually built by {@link QueryBuilder}
+     * @param path path of a file or directory relative to source root
+     * @param start index of the first changeset to return
+     * @param max maximum number of changesets to return
+     * @return the changesets or {@code null} if the index does not exist
+     * @throws IOException if the index cannot be read
+     */
+    public Result search(Query query, String path, int start, int max) throws IOException {
+        Query histQuery = getHistoryQuery(query);
+        if (histQuery == null) {
+            return new Result(0, Collections.emptyList());
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(histQuery, Occur.MUST);
+        builder.add(getPathQuery(Collections.singletonList(path)), Occur.FILTER);
+        return search(builder.build(), start, max);
+    }
+
+    /**
+     * Get the revision of the changeset which changed the file before the
+     * given changeset.
+     *
+     * @param path path of a file relative to source root
+     * @param entry changeset which changed the file
+     * @return the revision or {@code null} if there is no older changeset
+     * in the index
+     * @throws IOException if the index cannot be read
+     */
+    public String getPreviousRevision(String path, HistoryEntry entry) throws IOException {
+        if (entry.getDate() == null) {
+            return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(new TermQuery(new Term(PATHS, path)), Occur.FILTER);
+        builder.add(LongPoint.newRangeQuery(DATE, Long.MIN_VALUE,
+                entry.getDate().getTime() - 1), Occur.FILTER);
+        Result result = search(builder.build(), 0, 1);
+        if (result == null || result.getEntries().isEmpty()) {
+            return null;
+        }
+        return result.getEntries().get(0).getRevision();
+    }
+
+    /**
+     * Close the index. It is opened again on the next use.
+     */
+    public synchronized void close() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close changeset index", e);
+        } finally {
+            writer = null;
+            searcherManager = null;
+            directory = null;
+        }
+    }
+
+    private Result search(Query query, int start, int max) throws IOException {
+        SearcherManager manager = getSearcherManager();
+        if (manager == null) {
+            return null;
+        }
+        manager.maybeRefresh();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            TopFieldDocs top = searcher.search(query, Math.max(1, start + max), BY_DATE);
+            List<HistoryEntry> entries = new ArrayList<>();
+            ScoreDoc[] docs = top.scoreDocs;
+            for (int i = start; i < docs.length && i < start + max; i++) {
+                entries.add(createEntry(searcher.doc(docs[i].doc)));
+            }
+            return new Result(top.totalHits, entries);
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    private static Query getPathQuery(List<String> paths) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String path : paths) {
+            if (path == null || path.isEmpty() || path.equals("/")) {
+                return new MatchAllDocsQuery();
+            }
+            if (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            builder.add(new TermQuery(new Term(PATHS, path)), Occur.SHOULD);
+            builder.add(new TermQuery(new Term(DIRS, path)), Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Extract the part of the query which applies to the history field.
+     *
+     * @param query the query
+     * @return query for the {@link #MESSAGE} field or {@code null} if the
+     * query has no such part
+     */
+    static Query getHistoryQuery(Query query) {
+        if (query instanceof BooleanQuery) {
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            boolean positive = false;
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                Query sub = getHistoryQuery(clause.getQuery());
+                if (sub != null) {
+                    builder.add(sub, clause.getOccur());
+                    positive |= clause.getOccur() != Occur.MUST_NOT;
+                }
+            }
+            return positive ? builder.build() : null;
+        } else if (query instanceof BoostQuery) {
+            BoostQuery boost = (BoostQuery) query;
+            Query sub = getHistoryQuery(boost.getQuery());
+            return sub == null ? null : new BoostQuery(sub, boost.getBoost());
+        }
+
+        String field = null;
+        if (query instanceof TermQuery) {
+            field = ((TermQuery) query).getTerm().field();
+        } else if (query instanceof PhraseQuery) {
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            field = terms.length > 0 ? terms[0].field() : null;
+        } else if (query instanceof MultiTermQuery) {
+            field = ((MultiTermQuery) query).getField();
+        }
+        return MESSAGE.equals(field) ? query : null;
+    }
+
+    private static Document createDocument(String repoPath, HistoryEntry entry) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, repoPath + "@" + entry.getRevision(), Field.Store.NO));
+        doc.add(new StringField(REPOSITORY, repoPath, Field.Store.YES));
+        doc.add(new StringField(REVISION, entry.getRevision(), Field.Store.YES));
+        if (entry.getAuthor() != null) {
+            doc.add(new StringField(AUTHOR, entry.getAuthor(), Field.Store.YES));
+        }
+        long time = entry.getDate() == null ? 0 : entry.getDate().getTime();
+        doc.add(new LongPoint(DATE, time));
+        doc.add(new NumericDocValuesField(DATE, time));
+        doc.add(new StoredField(DATE, time));
+        doc.add(new TextField(MESSAGE, entry.getMessage(), Field.Store.YES));
+
+        TreeSet<String> dirs = new TreeSet<>();
+        for (String file : entry.getFiles()) {
+            doc.add(new StringField(PATHS, file, Field.Store.YES));
+            for (int i = file.lastIndexOf('/'); i > 0; i = file.lastIndexOf('/', i - 1)) {
+                if (!dirs.add(file.substring(0, i))) {
+                    break; // the parents were added with another file
+                }
+            }
+        }
+        for (String dir : dirs) {
+            doc.add(new StringField(DIRS, dir, Field.Store.NO));
+        }
+        return doc;
+    }
+
+    private static HistoryEntry createEntry(Document doc) {
+        IndexableField date = doc.getField(DATE);
+        HistoryEntry entry = new HistoryEntry(doc.get(REVISION),
+                new Date(date == null ? 0 : date.numericValue().longValue()),
+                doc.get(AUTHOR), null, doc.get(MESSAGE), true);
+        TreeSet<String> files = new TreeSet<>();
+        Collections.addAll(files, doc.getValues(PATHS));
+        entry.setFiles(files);
+        return entry;
+    }
+
+    private FSDirectory getDirectory() throws IOException {
+        if (directory == null) {
+            directory = FSDirectory.open(getIndexDir(projectPath).toPath());
+        }
+        return directory;
+    }
+
+    private static File getIndexDir(String projectPath) {
+        File dir = new File(RuntimeEnvironment.getInstance().getDataRootFile(),
+                CHANGESET_INDEX_DIR_NAME);
+        return projectPath.isEmpty() ? dir : new File(dir, projectPath);
+    }
+
+    private synchronized IndexWriter getWriter() throws IOException {
+        if (writer == null) {
+            IndexWriterConfig iwc = new IndexWriterConfig(new CompatibleAnalyser());
+            iwc.setOpenMode(OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(getDirectory(), iwc);
+        }
+        return writer;
+    }
+
+    private synchronized SearcherManager getSearcherManager() throws IOException {
+        if (searcherManager == null) {
+            FSDirectory dir = getDirectory();
+            if (!DirectoryReader.indexExists(dir)) {
+                return null;
+            }
+            searcherManager = new SearcherManager(dir, null);
+        }
+        return searcherManager;
+    }
+}
@@ -64,6 +64,8 @@ public class ClearCaseRepository extends Repository {
         datePatterns = new String[]{
             "yyyyMMdd.HHmmss"
         };
+
+        markers.add("view.dat");
     }
 
     /**
@@ -25,6 +25,7 @@ package org.opengrok.indexer.history;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -60,6 +61,9 @@ import org.opengrok.indexer.search.QueryBuilder;
  *
  * The sole purpose of this class is to produce history for generating RSS feed
  * for directory changes.
+ * <p>
+ * If the {@link ChangesetIndex} is enabled the changesets are taken directly
+ * from it.
  *
  * @author Chandan
  * @author Lubos Kosco update for lucene 4.x
@@ -83,6 +87,22 @@ public class DirectoryHistoryReader {
 
     private static final int MAX_RESULTS=40;
 
+    /**
+     * @return the changeset index holding the history of all the paths or
+     * {@code null} if they belong to different projects
+     */
+    private static ChangesetIndex getChangesetIndex(List<String> paths) {
+        ChangesetIndex index = null;
+        for (String p : paths) {
+            ChangesetIndex i = ChangesetIndex.forPath(p);
+            if (i == null || (index != null && i != index)) {
+                return null;
+            }
+            index = i;
+        }
+        return index;
+    }
+
     /**
      * The main task of this method is to produce list of history entries for
      * the specified directory and store them in @code history. This is done by
@@ -93,6 +113,19 @@ public class DirectoryHistoryReader {
      * @throws IOException when index cannot be accessed
      */
     public DirectoryHistoryReader(String path) throws IOException {
+        if (!path.isEmpty() && RuntimeEnvironment.getInstance().isChangesetIndex()) {
+            // Each changeset is a single document there, no need to merge
+            // the histories of the files.
+            List<String> paths = Arrays.asList(path.split(" "));
+            ChangesetIndex index = getChangesetIndex(paths);
+            ChangesetIndex.Result result = index == null ? null :
+                    index.getHistory(paths, 0, MAX_RESULTS);
+            if (result != null && result.getTotalHits() > 0) {
+                history = new History(result.getEntries());
+                return;
+            }
+        }
+
         //TODO can we introduce paging here ???  this class is used just for rss.jsp !
         int hitsPerPage = RuntimeEnvironment.getInstance().getHitsPerPage();
         int cachePages = RuntimeEnvironment.getInstance().getCachePages();
@@ -0,0 +1,293 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.util.ForbiddenSymlinkException;
+import org.opengrok.indexer.util.IOUtils;
+
+/**
+ * File based storage of file annotations. There is one file per (source file,
+ * revision) pair stored in directory hierarchy resembling the source root,
+ * next to the history cache.
+ * <p>
+ * An annotation of a given revision never changes so these entries are never
+ * invalidated. The annotation of the current version of a file is stored under
+ * the latest revision known to the history cache, so it is naturally replaced
+ * once the history cache learns about a newer revision. In addition, the size
+ * and modification time of the source file are stored with it in case the
+ * working copy changed without the history cache being updated.
+ */
+class FileAnnotationCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileAnnotationCache.class);
+
+    static final String ANNOTATION_CACHE_DIR_NAME = "annotationcache";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum number of files whose views are tracked.
+     */
+    private static final int MAX_TRACKED_FILES = 10000;
+
+    private final Object lock = new Object();
+
+    /**
+     * Number of annotation requests for the current version of the files,
+     * keyed by the path relative to source root.
+     */
+    private final Map<String, AtomicLong> views = new ConcurrentHashMap<>();
+
+    /**
+     * Get the annotation of the file in specified revision from the cache.
+     * @param file source file
+     * @param revision revision of the file
+     * @param current whether the annotation is requested for the current
+     * version of the file (i.e. for the working copy)
+     * @return cached annotation or {@code null} if not found
+     */
+    Annotation get(File file, String revision, boolean current) {
+        File cacheFile = getCachedFile(file, revision);
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile))))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long length = in.readLong();
+            long lastModified = in.readLong();
+            if (current && (length != file.length() || lastModified != file.lastModified())) {
+                return null;
+            }
+            return Annotation.readCompact(in);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read annotation cache file " + cacheFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the annotation of the file in specified revision.
+     * @param file source file
+     * @param revision revision of the file
+     * @param current whether the annotation is for the current version of
+     * the file
+     * @param annotation annotation to store
+     */
+    void store(File file, String revision, boolean current, Annotation annotation) {
+        File cacheFile = getCachedFile(file, revision);
+        if (cacheFile == null) {
+            return;
+        }
+        File dir = cacheFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Unable to create annotation cache directory {0}", dir);
+            return;
+        }
+
+        // Write to temporary file first and rename it so that the readers
+        // never see partially written data.
+        File output;
+        try {
+            output = File.createTempFile("ogannot", null, dir);
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(output))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(current ? file.length() : -1);
+                out.writeLong(current ? file.lastModified() : -1);
+                annotation.writeCompact(out);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write annotation of " + file, e);
+            return;
+        }
+
+        synchronized (lock) {
+            if (!cacheFile.delete() && cacheFile.exists()) {
+                LOGGER.log(Level.WARNING, "Failed to remove annotation cache file {0}", cacheFile);
+            }
+            if (!output.renameTo(cacheFile)) {
+                LOGGER.log(Level.WARNING, "Failed to rename annotation cache file {0}", output);
+            }
+            if (output.exists() && !output.delete()) {
+                LOGGER.log(Level.WARNING, "Failed to remove temporary annotation cache file {0}", output);
+            }
+        }
+    }
+
+    /**
+     * Record that annotation of the current version of the file was requested.
+     * @param file source file
+     */
+    void recordView(File file) {
+        String path = getRelativePath(file);
+        if (path == null) {
+            return;
+        }
+        AtomicLong count = views.get(path);
+        if (count == null) {
+            if (views.size() >= MAX_TRACKED_FILES) {
+                return;
+            }
+            count = views.computeIfAbsent(path, p -> new AtomicLong());
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Get the most viewed files and age the view counts so that the files
+     * which are no longer viewed eventually drop out.
+     * @param max maximum number of files to return
+     * @return paths of the files relative to source root, the most viewed
+     * first
+     */
+    List<String> pollMostViewed(int max) {
+        List<String> result = views.entrySet().stream()
+                .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get()))
+                .limit(max)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        List<String> unused = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> entry : views.entrySet()) {
+            if (entry.getValue().updateAndGet(v -> v / 2) == 0) {
+                unused.add(entry.getKey());
+            }
+        }
+        unused.forEach(views::remove);
+
+        return result;
+    }
+
+    /**
+     * Remove all cached annotations for the repository.
+     * @param repository repository
+     */
+    void clear(Repository repository) {
+        File dir = getCacheDir(new File(repository.getDirectoryName()));
+        if (dir == null) {
+            return;
+        }
+        try {
+            IOUtils.removeRecursive(dir.toPath());
+        } catch (NoSuchFileException ex) {
+            // nothing was cached
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to remove annotation cache " + dir, ex);
+        }
+    }
+
+    /**
+     * Remove all cached annotations for the file.
+     * @param path path to the file relative to the source root
+     */
+    void clearFile(String path) {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        File dir = new File(getCacheRoot(env), path);
+        try {
+            IOUtils.removeRecursive(dir.toPath());
+        } catch (NoSuchFileException ex) {
+            // nothing was cached
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to remove annotation cache " + dir, ex);
+        }
+        views.remove(path);
+    }
+
+    private static File getCacheRoot(RuntimeEnvironment env) {
+        return Paths.get(env.getDataRootPath(), ANNOTATION_CACHE_DIR_NAME).toFile();
+    }
+
+    private static String getRelativePath(File file) {
+        try {
+            return RuntimeEnvironment.getInstance().getPathRelativeToSourceRoot(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to get path relative to source root for " + file, e);
+        } catch (ForbiddenSymlinkException e) {
+            LOGGER.log(Level.FINER, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return directory holding all cache files of the source file or
+     * directory
+     */
+    private static File getCacheDir(File file) {
+        String path = getRelativePath(file);
+        if (path == null) {
+            return null;
+        }
+        return new File(getCacheRoot(RuntimeEnvironment.getInstance()), path);
+    }
+
+    private static File getCachedFile(File file, String revision) {
+        File dir = getCacheDir(file);
+        if (dir == null) {
+            return null;
+        }
+        return new File(dir, encodeRevision(revision) + ".gz");
+    }
+
+    /**
+     * Make the revision usable as a file name. Revisions consisting of safe
+     * characters only (which is the case for most SCMs) are used almost as
+     * they are, others are hex encoded.
+     */
+    static String encodeRevision(String revision) {
+        if (revision.matches("[A-Za-z0-9._-]+") && revision.length() < 100) {
+            return "r" + revision;
+        }
+        StringBuilder sb = new StringBuilder("x");
+        for (byte b : revision.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
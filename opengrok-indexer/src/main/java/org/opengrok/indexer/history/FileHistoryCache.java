@@ -49,6 +49,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -57,6 +59,8 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
 import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.metrics.Counter;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.indexer.util.ForbiddenSymlinkException;
 import org.opengrok.indexer.util.IOUtils;
 
@@ -67,6 +71,9 @@ class FileHistoryCache implements HistoryCache {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileHistoryCache.class);
 
+    private static final Counter CACHE_REQUESTS = MetricsRegistry.getInstance().counter(
+            "opengrok_history_cache_requests_total", "Number of history cache lookups.", "result");
+
     private final Object lock = new Object();
 
     private final static String HISTORY_CACHE_DIR_NAME = "historycache";
@@ -75,6 +82,12 @@ class FileHistoryCache implements HistoryCache {
 
     private boolean historyIndexDone = false;
 
+    /**
+     * Directory names of repositories whose history index phase is done
+     * while it is still running for the others.
+     */
+    private final Set<String> historyIndexDoneRepositories = ConcurrentHashMap.newKeySet();
+
     @Override
     public void setHistoryIndexDone() {
         historyIndexDone = true;
@@ -85,6 +98,16 @@ class FileHistoryCache implements HistoryCache {
         return historyIndexDone;
     }
 
+    @Override
+    public void setHistoryIndexDone(Repository repository) {
+        historyIndexDoneRepositories.add(repository.getDirectoryName());
+    }
+
+    @Override
+    public boolean isHistoryIndexDone(Repository repository) {
+        return historyIndexDone || historyIndexDoneRepositories.contains(repository.getDirectoryName());
+    }
+
     /**
      * Generate history for single file.
      * @param filename name of the file
@@ -421,6 +444,17 @@ class FileHistoryCache implements HistoryCache {
             "Storing history for repository {0}",
             new Object[] {repository.getDirectoryName()});
 
+        ChangesetIndex index = env.isChangesetIndex() ?
+                ChangesetIndex.forPath(repository.getDirectoryNameRelative()) : null;
+        if (index != null) {
+            try {
+                index.add(repository, entries);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to index changesets of repository "
+                        + repository.getDirectoryName(), e);
+            }
+        }
+
         // Firstly store the history for the top-level directory.
         doFileHistory(repository.getDirectoryName(), history.getHistoryEntries(),
                 env, repository, env.getSourceRootFile(), null, false);
@@ -574,12 +608,15 @@ class FileHistoryCache implements HistoryCache {
         File cache = getCachedFile(file);
         if (isUpToDate(file, cache)) {
             try {
-                return readCache(cache);
+                History history = readCache(cache);
+                CACHE_REQUESTS.inc("hit");
+                return history;
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING,
                         "Error when reading cache file '" + cache, e);
             }
         }
+        CACHE_REQUESTS.inc("miss");
 
         /*
          * Some mirrors of repositories which are capable of fetching history
@@ -589,7 +626,7 @@ class FileHistoryCache implements HistoryCache {
          * fetched in the first phase of indexing.
          */
         RuntimeEnvironment env = RuntimeEnvironment.getInstance();
-        if (isHistoryIndexDone() && repository.isHistoryEnabled() &&
+        if (isHistoryIndexDone(repository) && repository.isHistoryEnabled() &&
             repository.hasHistoryForDirectories() &&
             !env.isFetchHistoryWhenNotInCache()) {
                 return null;
@@ -796,6 +833,17 @@ class FileHistoryCache implements HistoryCache {
                 LOGGER.log(Level.SEVERE, "tried removeRecursive()", ex);
             }
         }
+
+        ChangesetIndex index = RuntimeEnvironment.getInstance().isChangesetIndex() ?
+                ChangesetIndex.forPath(repository.getDirectoryNameRelative()) : null;
+        if (index != null) {
+            try {
+                index.clear(repository);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to remove changesets of repository "
+                        + repository.getDirectoryName(), ex);
+            }
+        }
     }
 
     @Override
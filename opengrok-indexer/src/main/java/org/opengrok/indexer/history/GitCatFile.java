@@ -0,0 +1,357 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Long-lived {@code git cat-file --batch} process serving the contents of
+ * files in given revisions of a Git repository, so that retrieving old
+ * revisions of files does not pay the process start-up cost each time.
+ * <p>
+ * The requests are serialized over the single process. The process is
+ * started on demand and stopped after it has not been used for
+ * {@link #IDLE_TIMEOUT} milliseconds or after it failed. A request which
+ * does not finish within the interactive command timeout kills the process,
+ * like {@link org.opengrok.indexer.util.Executor} does. Contents of files
+ * requested by commit hash, which cannot change, are kept in a small least
+ * recently used cache shared by all repositories.
+ */
+final class GitCatFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitCatFile.class);
+
+    static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private static final int MAX_CACHED_BYTES = 16 * 1024 * 1024;
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-fA-F]{7,40}");
+
+    private static final ScheduledExecutorService REAPER = newScheduler("git-cat-file-reaper");
+
+    /**
+     * Kills the processes whose request timed out. This cannot be done by
+     * the reaper which waits for the running request.
+     */
+    private static final ScheduledExecutorService WATCHDOG = newScheduler("git-cat-file-watchdog");
+
+    private static final BlobCache CACHE = new BlobCache(MAX_CACHED_BYTES);
+
+    private final String command;
+    private final File directory;
+
+    private Process process;
+    private OutputStream out;
+    private InputStream in;
+    private long lastUsed;
+    private boolean reaperScheduled;
+
+    /**
+     * Object printed by {@code git cat-file --batch}.
+     */
+    private static final class GitObject {
+
+        private final String id;
+        private final String type;
+        private final byte[] content;
+
+        GitObject(String id, String type, byte[] content) {
+            this.id = id;
+            this.type = type;
+            this.content = content;
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param command the git command
+     * @param directory root of the repository
+     */
+    GitCatFile(String command, File directory) {
+        this.command = command;
+        this.directory = directory;
+    }
+
+    /**
+     * Get the contents of a file in given revision.
+     * @param revision the revision
+     * @param path path of the file relative to the repository root
+     * @return the contents or {@code null} if the file does not exist in the
+     * revision or is not a regular file. The array must not be modified.
+     * @throws IOException if the process failed or the request cannot be
+     * expressed in the batch protocol
+     */
+    byte[] get(String revision, String path) throws IOException {
+        String object = revision + ":" + path.replace(File.separatorChar, '/');
+        if (object.indexOf('\n') >= 0 || object.indexOf('\r') >= 0) {
+            throw new IOException("Cannot request object with line break in its name");
+        }
+
+        String key = null;
+        if (HASH.matcher(revision).matches()) {
+            key = directory.getPath() + "\0" + object;
+            byte[] content = CACHE.get(key);
+            if (content != null) {
+                return content;
+            }
+        }
+
+        GitObject blob;
+        boolean immutable = false;
+        synchronized (this) {
+            try {
+                blob = request(object);
+                if (blob != null && key != null) {
+                    // A branch or a tag can look like a hash as well, so
+                    // make sure the revision really names a commit.
+                    GitObject commit = request(revision + "^{commit}");
+                    immutable = commit != null &&
+                            commit.id.startsWith(revision.toLowerCase(Locale.ROOT));
+                }
+            } catch (IOException e) {
+                stop();
+                throw e;
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        if (blob == null || !"blob".equals(blob.type)) {
+            return null;
+        }
+        if (immutable) {
+            CACHE.put(key, blob.content);
+        }
+        return blob.content;
+    }
+
+    /**
+     * Send the request and read the response. The process is killed if this
+     * does not finish within the interactive command timeout.
+     */
+    private GitObject request(String object) throws IOException {
+        if (process == null) {
+            start();
+        }
+
+        final Process p = process;
+        final int timeout = RuntimeEnvironment.getInstance().getInteractiveCommandTimeout();
+        ScheduledFuture<?> watchdog = timeout == 0 ? null : WATCHDOG.schedule(() -> {
+            LOGGER.log(Level.WARNING, "Terminating git cat-file in {0} due to timeout {1} seconds",
+                    new Object[]{directory, timeout});
+            p.destroy();
+        }, timeout, TimeUnit.SECONDS);
+        try {
+            return readObject(object);
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+    }
+
+    private GitObject readObject(String object) throws IOException {
+        out.write(object.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+        out.flush();
+
+        String header = readLine();
+        if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+            return null;
+        }
+        String[] parts = header.split(" ");
+        long size;
+        try {
+            size = parts.length == 3 ? Long.parseLong(parts[2]) : -1;
+        } catch (NumberFormatException e) {
+            size = -1;
+        }
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Unexpected output of git cat-file: " + header);
+        }
+
+        byte[] content = new byte[(int) size];
+        int off = 0;
+        while (off < content.length) {
+            int n = in.read(content, off, content.length - off);
+            if (n < 0) {
+                throw new EOFException("git cat-file terminated");
+            }
+            off += n;
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Unexpected output of git cat-file after " + header);
+        }
+        return new GitObject(parts[0], parts[1], content);
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException("git cat-file terminated");
+            }
+            line.write(c);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void start() throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(Arrays.asList(command, "cat-file", "--batch"));
+        pb.directory(directory);
+        process = pb.start();
+        out = process.getOutputStream();
+        in = new BufferedInputStream(process.getInputStream());
+
+        final InputStream err = process.getErrorStream();
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(err))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LOGGER.log(Level.FINE, "git cat-file in {0}: {1}", new Object[]{directory, line});
+                }
+            } catch (IOException e) {
+                // the process is gone
+            }
+        }, "git-cat-file-stderr");
+        thread.setDaemon(true);
+        thread.start();
+
+        LOGGER.log(Level.FINE, "Started git cat-file in {0}", directory);
+        if (!reaperScheduled) {
+            reaperScheduled = true;
+            REAPER.schedule(this::reap, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void reap() {
+        reaperScheduled = false;
+        if (process == null) {
+            return;
+        }
+        long idle = System.currentTimeMillis() - lastUsed;
+        if (idle >= IDLE_TIMEOUT) {
+            stop();
+        } else {
+            reaperScheduled = true;
+            REAPER.schedule(this::reap, IDLE_TIMEOUT - idle, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the process. It is started again on the next request.
+     */
+    synchronized void stop() {
+        if (process == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the process is being stopped anyway
+        }
+        process.destroy();
+        process = null;
+        out = null;
+        in = null;
+        LOGGER.log(Level.FINE, "Stopped git cat-file in {0}", directory);
+    }
+
+    synchronized boolean isRunning() {
+        return process != null;
+    }
+
+    /**
+     * Least recently used cache of file contents bounded by their total size.
+     */
+    static final class BlobCache {
+
+        private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxBytes;
+        private long bytes;
+
+        BlobCache(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Add the content and evict the least recently used entries exceeding
+         * the limit. Contents larger than a quarter of the limit are not
+         * cached.
+         */
+        synchronized void put(String key, byte[] content) {
+            if (content.length > maxBytes / 4) {
+                return;
+            }
+            byte[] old = entries.put(key, content);
+            if (old != null) {
+                bytes -= old.length;
+            }
+            bytes += content.length;
+
+            Iterator<byte[]> it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().length;
+                it.remove();
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.io.Reader;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -85,6 +86,18 @@ public class GitRepository extends Repository {
      */
     private static final String GIT_DATE_OPT = "--date=iso8601-strict";
 
+    /**
+     * Files which change when the remote, the checked out branch or its head
+     * change.
+     */
+    private static final List<String> METADATA_SIGNALS = Collections.unmodifiableList(Arrays.asList(
+            ".git/HEAD", ".git/config", ".git/logs/HEAD", ".git/packed-refs", ".git/refs/heads"));
+
+    /**
+     * Helper process serving file contents in given revisions.
+     */
+    private transient GitCatFile catFile;
+
     public GitRepository() {
         type = "git";
         /*
@@ -97,6 +110,7 @@ public class GitRepository extends Repository {
 
         ignoredDirs.add(".git");
         ignoredFiles.add(".gitignore");
+        markers.add(".git");
     }
 
     /**
@@ -178,9 +192,16 @@ public class GitRepository extends Repository {
         InputStream ret = null;
         File directory = new File(getDirectoryName());
 
+        String filename = fullpath.substring(getDirectoryName().length() + 1);
+        ensureCommand(CMD_PROPERTY_KEY, CMD_FALLBACK);
+        try {
+            byte[] content = getCatFile().get(rev, filename);
+            return content == null ? null : new ByteArrayInputStream(content);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "git cat-file failed, falling back to git show", e);
+        }
+
         try {
-            String filename = fullpath.substring(getDirectoryName().length() + 1);
-            ensureCommand(CMD_PROPERTY_KEY, CMD_FALLBACK);
             String argv[] = {
                 RepoCommand,
                 "show",
@@ -220,6 +241,13 @@ public class GitRepository extends Repository {
         return ret;
     }
 
+    private synchronized GitCatFile getCatFile() {
+        if (catFile == null) {
+            catFile = new GitCatFile(RepoCommand, new File(getDirectoryName()));
+        }
+        return catFile;
+    }
+
     @Override
     public InputStream getHistoryGet(String parent, String basename, String rev) {
         String fullpath;
@@ -514,6 +542,11 @@ public class GitRepository extends Repository {
         return false;
     }
 
+    @Override
+    List<String> getMetadataSignals() {
+        return METADATA_SIGNALS;
+    }
+
     @Override
     boolean supportsSubRepositories() {
         return true;
@@ -153,4 +153,12 @@ interface HistoryCache {
     // Set and query if history index phase is done.
     void setHistoryIndexDone();
     boolean isHistoryIndexDone();
+
+    // Set and query if history index phase is done for single repository.
+    default void setHistoryIndexDone(Repository repository) {
+    }
+
+    default boolean isHistoryIndexDone(Repository repository) {
+        return isHistoryIndexDone();
+    }
 }
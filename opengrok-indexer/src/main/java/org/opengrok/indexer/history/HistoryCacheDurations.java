@@ -0,0 +1,126 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Durations of the history cache creation of individual repositories in the
+ * previous indexer run, stored in the data root. They are used to start the
+ * most expensive repositories first.
+ */
+final class HistoryCacheDurations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryCacheDurations.class);
+
+    static final String FILE_NAME = "historycache-durations.properties";
+
+    private final File file;
+
+    /**
+     * Durations in milliseconds keyed by repository path relative to source
+     * root.
+     */
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    private HistoryCacheDurations(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the durations from the data root.
+     * @return the durations, empty if there are none
+     */
+    static HistoryCacheDurations load() {
+        String dataRoot = RuntimeEnvironment.getInstance().getDataRootPath();
+        HistoryCacheDurations result = new HistoryCacheDurations(
+                dataRoot == null ? null : new File(dataRoot, FILE_NAME));
+        if (result.file == null || !result.file.isFile()) {
+            return result;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(result.file)) {
+            props.load(in);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + result.file, e);
+            return result;
+        }
+        for (String name : props.stringPropertyNames()) {
+            try {
+                result.durations.put(name, Long.parseLong(props.getProperty(name)));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINE, "Ignoring invalid duration of {0}", name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the duration of the previous history cache creation.
+     * @param repository the repository
+     * @return duration in milliseconds or -1 if unknown
+     */
+    long get(Repository repository) {
+        Long duration = durations.get(repository.getDirectoryNameRelative());
+        return duration == null ? -1 : duration;
+    }
+
+    void put(Repository repository, long duration) {
+        durations.put(repository.getDirectoryNameRelative(), duration);
+    }
+
+    /**
+     * Write the durations to the data root.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        Properties props = new Properties();
+        durations.forEach((name, duration) -> props.setProperty(name, Long.toString(duration)));
+        try {
+            File output = File.createTempFile("oghistdur", null, file.getParentFile());
+            try (OutputStream out = new FileOutputStream(output)) {
+                props.store(out, "Duration of history cache creation in milliseconds");
+            }
+            Files.move(output.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + file, e);
+        }
+    }
+}
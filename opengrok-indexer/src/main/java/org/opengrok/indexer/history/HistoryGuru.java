@@ -32,17 +32,21 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -51,7 +55,6 @@ import org.opengrok.indexer.configuration.RuntimeEnvironment;
 import org.opengrok.indexer.index.IgnoredNames;
 import org.opengrok.indexer.logger.LoggerFactory;
 import org.opengrok.indexer.util.ForbiddenSymlinkException;
-import org.opengrok.indexer.util.PathUtils;
 import org.opengrok.indexer.util.Statistics;
 
 /**
@@ -74,16 +77,51 @@ public final class HistoryGuru {
      */
     private final HistoryCache historyCache;
 
+    /**
+     * The annotation cache to use, {@code null} if disabled
+     */
+    private final FileAnnotationCache annotationCache;
+
+    /**
+     * Executor of the annotation cache prefetching, created on first use
+     */
+    private ExecutorService annotationPrefetchExecutor;
+
+    /**
+     * The last submitted annotation cache prefetching
+     */
+    private Future<?> annotationPrefetch;
+
     /**
      * map of repositories, with {@code DirectoryName} as key
      */
-    private Map<String, Repository> repositories = new ConcurrentHashMap<>();
+    private volatile Map<String, Repository> repositories = new ConcurrentHashMap<>();
+
+    /**
+     * version of {@link #repositories}, incremented on every change
+     */
+    private final AtomicLong repositoriesVersion = new AtomicLong();
+
+    /**
+     * longest-prefix map of the repositories, rebuilt when
+     * {@link #repositoriesVersion} changes
+     */
+    private volatile RepositoryLookup repositoryLookup = RepositoryLookup.EMPTY;
+
+    private final Object repositoryLookupLock = new Object();
+
+    /**
+     * Pending history cache creation of repositories, keyed by their
+     * directory names.
+     */
+    private final Map<String, CompletableFuture<Void>> pendingCaches = new ConcurrentHashMap<>();
 
     /**
-     * set of repository roots (using ConcurrentHashMap but a throwaway value)
-     * with parent of {@code DirectoryName} as key
+     * Deferred finishing steps of history cache creation.
      */
-    private Map<String, String> repositoryRoots = new ConcurrentHashMap<>();
+    private final List<Runnable> pendingCompletions = new ArrayList<>();
+
+    private volatile boolean deferCacheCompletion;
 
     private final int scanningDepth;
 
@@ -109,6 +147,7 @@ public final class HistoryGuru {
             }
         }
         historyCache = cache;
+        annotationCache = (cache != null && env.isAnnotationCache()) ? new FileAnnotationCache() : null;
     }
 
     /**
@@ -150,46 +189,143 @@ public final class HistoryGuru {
      * @throws IOException if I/O exception occurs
      */
     public Annotation annotate(File file, String rev) throws IOException {
-        Annotation ret = null;
+        return annotate(file, rev, true);
+    }
 
+    private Annotation annotate(File file, String rev, boolean recordView) throws IOException {
         Repository repo = getRepository(file);
-        if (repo != null) {
-            ret = repo.annotate(file, rev);
-            History hist = null;
-            try {
-                hist = repo.getHistory(file);
-            } catch (HistoryException ex) {
-                LOGGER.log(Level.FINEST,
-                        "Cannot get messages for tooltip: ", ex);
+        if (repo == null) {
+            return null;
+        }
+
+        History hist = null;
+        boolean histLoaded = false;
+        String cacheRev = rev;
+        if (annotationCache != null) {
+            if (rev == null) {
+                if (recordView) {
+                    annotationCache.recordView(file);
+                }
+                // the current version is cached under the latest known revision
+                hist = getHistoryForAnnotate(repo, file);
+                histLoaded = true;
+                cacheRev = (hist == null || hist.getHistoryEntries().isEmpty()) ? null :
+                        hist.getHistoryEntries().get(0).getRevision();
             }
-            if (hist != null && ret != null) {
-                Set<String> revs = ret.getRevisions();
-                int revsMatched = 0;
-             // !!! cannot do this because of not matching rev ids (keys)
-                // first is the most recent one, so we need the position of "rev"
-                // until the end of the list
-                //if (hent.indexOf(rev)>0) {
-                //     hent = hent.subList(hent.indexOf(rev), hent.size());
-                //}
-                for (HistoryEntry he : hist.getHistoryEntries()) {
-                    String hist_rev = he.getRevision();
-                    String short_rev = repo.getRevisionForAnnotate(hist_rev);
-                    if (revs.contains(short_rev)) {
-                        ret.addDesc(short_rev, "changeset: " + he.getRevision()
-                                + "\nsummary: " + he.getMessage() + "\nuser: "
-                                + he.getAuthor() + "\ndate: " + he.getDate());
-                         // History entries are coming from recent to older,
-                         // file version should be from oldest to newer.
-                        ret.addFileVersion(short_rev, revs.size() - revsMatched);
-                        revsMatched++;
-                    }
+            if (cacheRev != null) {
+                Annotation cached = annotationCache.get(file, cacheRev, rev == null);
+                if (cached != null) {
+                    return cached;
                 }
             }
         }
 
+        Annotation ret = repo.annotate(file, rev);
+        if (!histLoaded) {
+            hist = getHistoryForAnnotate(repo, file);
+        }
+        if (hist != null && ret != null) {
+            Set<String> revs = ret.getRevisions();
+            int revsMatched = 0;
+         // !!! cannot do this because of not matching rev ids (keys)
+            // first is the most recent one, so we need the position of "rev"
+            // until the end of the list
+            //if (hent.indexOf(rev)>0) {
+            //     hent = hent.subList(hent.indexOf(rev), hent.size());
+            //}
+            for (HistoryEntry he : hist.getHistoryEntries()) {
+                String hist_rev = he.getRevision();
+                String short_rev = repo.getRevisionForAnnotate(hist_rev);
+                if (revs.contains(short_rev)) {
+                    ret.addDesc(short_rev, "changeset: " + he.getRevision()
+                            + "\nsummary: " + he.getMessage() + "\nuser: "
+                            + he.getAuthor() + "\ndate: " + he.getDate());
+                     // History entries are coming from recent to older,
+                     // file version should be from oldest to newer.
+                    ret.addFileVersion(short_rev, revs.size() - revsMatched);
+                    revsMatched++;
+                }
+            }
+        }
+
+        if (ret != null && annotationCache != null && cacheRev != null) {
+            annotationCache.store(file, cacheRev, rev == null, ret);
+        }
+
         return ret;
     }
 
+    /**
+     * Get the history used for the annotation tooltips, from the history
+     * cache if possible.
+     */
+    private History getHistoryForAnnotate(Repository repo, File file) {
+        try {
+            if (useCache() && historyCache.supportsRepository(repo)) {
+                return historyCache.get(file, repo, false);
+            }
+            return repo.getHistory(file);
+        } catch (HistoryException ex) {
+            LOGGER.log(Level.FINEST,
+                    "Cannot get messages for tooltip: ", ex);
+        } catch (ForbiddenSymlinkException ex) {
+            LOGGER.log(Level.FINER, ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Build in the background the annotation cache entries for the current
+     * version of the most viewed files. This is meant to be called after
+     * reindex, when the history cache may know about new revisions of the
+     * files. The run is done on a single background thread; a run which did
+     * not finish yet is cancelled in favor of the new one.
+     */
+    public synchronized void refreshAnnotationCache() {
+        if (annotationCache == null) {
+            return;
+        }
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        int max = env.getAnnotationCachePrefetch();
+        if (max <= 0) {
+            return;
+        }
+
+        if (annotationPrefetch != null) {
+            annotationPrefetch.cancel(true);
+        }
+        if (annotationPrefetchExecutor == null) {
+            annotationPrefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setName("annotation-cache-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        List<String> paths = annotationCache.pollMostViewed(max);
+        annotationPrefetch = annotationPrefetchExecutor.submit(() -> {
+            int count = 0;
+            for (String path : paths) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOGGER.log(Level.FINE, "Annotation cache refresh cancelled after {0} files", count);
+                    return;
+                }
+                File file = new File(env.getSourceRootFile(), path);
+                if (!file.isFile()) {
+                    continue;
+                }
+                try {
+                    annotate(file, null, false);
+                    count++;
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Failed to annotate " + file, e);
+                }
+            }
+            LOGGER.log(Level.FINE, "Annotation cache refreshed for {0} files", count);
+        });
+    }
+
     /**
      * Get the appropriate history reader for given file.
      *
@@ -463,7 +599,23 @@ public final class HistoryGuru {
     public Collection<RepositoryInfo> addRepositories(File[] files,
             IgnoredNames ignoredNames) {
 
-        return HistoryGuru.this.addRepositories(files, ignoredNames, true, 0);
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        if (env.isFastRepositoryDiscovery()) {
+            List<RepositoryInfo> repoList = new ArrayList<>();
+            for (Repository repository : RepositoryDiscovery.discover(files,
+                    ignoredNames, scanningDepth, env.getHistoryParallelism())) {
+                LOGGER.log(Level.CONFIG, "Adding <{0}> repository: <{1}>",
+                        new Object[]{repository.getClass().getName(), repository.getDirectoryName()});
+                repoList.add(new RepositoryInfo(repository));
+                putRepository(repository);
+            }
+            RepositoryMetadataCache.getInstance().save();
+            return repoList;
+        }
+
+        Collection<RepositoryInfo> repoList = HistoryGuru.this.addRepositories(files, ignoredNames, true, 0);
+        RepositoryMetadataCache.getInstance().save();
+        return repoList;
     }
 
     /**
@@ -586,24 +738,41 @@ public final class HistoryGuru {
         }
     }
 
+    /**
+     * Estimate the time needed to create history cache of the repository.
+     * @param durations durations of the previous run
+     * @param repository the repository
+     * @param latestRev latest cached revision of the repository
+     * @return the estimate in milliseconds
+     */
+    private static long estimateCacheTime(HistoryCacheDurations durations,
+            Repository repository, String latestRev) {
+        long duration = durations.get(repository);
+        if (duration >= 0) {
+            return duration;
+        }
+        // The whole history needs to be fetched if there is none yet.
+        return latestRev == null ? Long.MAX_VALUE : 0;
+    }
+
     private void createCacheReal(Collection<Repository> repositories) {
         Statistics elapsed = new Statistics();
         ExecutorService executor = RuntimeEnvironment.getHistoryExecutor();
-        // Since we know each repository object from the repositories
-        // collection is unique, we can abuse HashMap to create a list of
-        // repository,revision tuples with repository as key (as the revision
-        // string does not have to be unique - surely it is not unique
-        // for the initial index case).
-        HashMap<Repository, String> repos2process = new HashMap<>();
-
-        // Collect the list of <latestRev,repo> pairs first so that we
-        // do not have to deal with latch decrementing in the cycle below.
+        HistoryCacheDurations durations = HistoryCacheDurations.load();
+        List<Repository> repos2process = new ArrayList<>();
+        Map<Repository, String> latestRevs = new HashMap<>();
+        Map<Repository, Long> estimates = new HashMap<>();
+
+        // Collect the latest cached revisions first so that the
+        // repositories can be ordered by the expected time.
         for (final Repository repo : repositories) {
             final String latestRev;
 
             try {
                 latestRev = historyCache.getLatestCachedRevision(repo);
-                repos2process.put(repo, latestRev);
+                repos2process.add(repo);
+                latestRevs.put(repo, latestRev);
+                estimates.put(repo, estimateCacheTime(durations, repo, latestRev));
             } catch (HistoryException he) {
                 LOGGER.log(Level.WARNING,
                         String.format(
@@ -612,36 +781,56 @@ public final class HistoryGuru {
             }
         }
 
+        // The executor runs the tasks in the order of submission, so start
+        // the repositories which are expected to take the longest first
+        // to prevent a single huge repository from finishing last.
+        repos2process.sort(Comparator.comparing((Repository r) -> estimates.get(r)).reversed()
+                .thenComparing(Repository::getDirectoryName));
+
         LOGGER.log(Level.INFO, "Creating historycache for {0} repositories",
                 repos2process.size());
-        final CountDownLatch latch = new CountDownLatch(repos2process.size());
-        for (final Map.Entry<Repository, String> entry : repos2process.entrySet()) {
-            executor.submit(new Runnable() {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(repos2process.size());
+        for (final Repository repo : repos2process) {
+            CompletableFuture<Void> future = CompletableFuture.runAsync(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        createCache(entry.getKey(), entry.getValue());
+                        long start = System.currentTimeMillis();
+                        createCache(repo, latestRevs.get(repo));
+                        durations.put(repo, System.currentTimeMillis() - start);
                     } catch (Exception ex) {
                         // We want to catch any exception since we are in thread.
                         LOGGER.log(Level.WARNING,
                                 "createCacheReal() got exception{0}", ex);
                     } finally {
-                        latch.countDown();
+                        historyCache.setHistoryIndexDone(repo);
                     }
                 }
-            });
+            }, executor);
+            futures.add(future);
+            pendingCaches.put(repo.getDirectoryName(), future);
+        }
+
+        Runnable completion = () -> finishCache(executor, futures, durations, elapsed);
+        if (deferCacheCompletion) {
+            synchronized (pendingCompletions) {
+                pendingCompletions.add(completion);
+            }
+        } else {
+            completion.run();
         }
+    }
 
+    private void finishCache(ExecutorService executor, List<CompletableFuture<Void>> futures,
+            HistoryCacheDurations durations, Statistics elapsed) {
         /*
          * Wait until the history of all repositories is done. This is necessary
          * since the next phase of generating index will need the history to
          * be ready as it is recorded in Lucene index.
          */
-        try {
-            latch.await();
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE,
-                    "latch exception{0}", ex);
+        for (CompletableFuture<Void> future : futures) {
+            future.join();
+            pendingCaches.values().remove(future);
         }
 
         executor.shutdown();
@@ -671,10 +860,56 @@ public final class HistoryGuru {
             LOGGER.log(Level.WARNING,
                     "Failed optimizing the history cache database", he);
         }
+        durations.save();
         elapsed.report(LOGGER, "Done historycache for all repositories");
         historyCache.setHistoryIndexDone();
     }
 
+    /**
+     * Set whether the history cache creation methods should return as soon
+     * as the work is scheduled. The completion then has to be awaited via
+     * {@link #awaitCacheCompletion()}, while the history of individual
+     * repositories can be awaited via {@link #awaitCache(File)}. This allows
+     * the indexing of a project to start as soon as the history of its
+     * repositories is done.
+     * @param defer whether to defer the completion
+     */
+    public void setDeferCacheCompletion(boolean defer) {
+        this.deferCacheCompletion = defer;
+    }
+
+    /**
+     * Wait until the history cache creation started with deferred completion
+     * is done for all repositories which contain the directory or are
+     * contained in it.
+     * @param directory the directory
+     */
+    public void awaitCache(File directory) {
+        if (pendingCaches.isEmpty()) {
+            return;
+        }
+        Path dir = directory.toPath();
+        for (Map.Entry<String, CompletableFuture<Void>> entry : pendingCaches.entrySet()) {
+            Path repoDir = Paths.get(entry.getKey());
+            if (repoDir.startsWith(dir) || dir.startsWith(repoDir)) {
+                entry.getValue().join();
+            }
+        }
+    }
+
+    /**
+     * Wait until all history cache creation started with deferred completion
+     * is done and finish it.
+     */
+    public void awaitCacheCompletion() {
+        List<Runnable> completions;
+        synchronized (pendingCompletions) {
+            completions = new ArrayList<>(pendingCompletions);
+            pendingCompletions.clear();
+        }
+        completions.forEach(Runnable::run);
+    }
+
     /**
      * Create history cache for selected repositories.
      * For this to work the repositories have to be already present in the
@@ -709,6 +944,9 @@ public final class HistoryGuru {
         for (Repository r : getReposFromString(repositories)) {
             try {
                 cache.clear(r);
+                if (annotationCache != null) {
+                    annotationCache.clear(r);
+                }
                 clearedRepos.add(r.getDirectoryName());
                 LOGGER.log(Level.INFO,
                         "History cache for {0} cleared.", r.getDirectoryName());
@@ -732,6 +970,9 @@ public final class HistoryGuru {
         }
 
         historyCache.clearFile(path);
+        if (annotationCache != null) {
+            annotationCache.clearFile(path);
+        }
     }
 
     /**
@@ -823,37 +1064,28 @@ public final class HistoryGuru {
     }
 
     protected Repository getRepository(File path) {
-        File file = path;
-        Set<String> rootKeys = repositoryRoots.keySet();
+        return getRepositoryLookup().find(path);
+    }
 
-        while (file != null) {
-            String nextPath = file.getPath();
-            for (String rootKey : rootKeys) {
-                String rel;
-                try {
-                    rel = PathUtils.getRelativeToCanonical(nextPath, rootKey);
-                } catch (IOException e) {
-                    LOGGER.log(Level.WARNING,
-                        "Failed to get relative to canonical for " + nextPath,
-                        e);
-                    return null;
-                }
-                Repository repo;
-                if (rel.equals(nextPath)) {
-                    repo = repositories.get(nextPath);
-                } else {
-                    String inRootPath = Paths.get(rootKey, rel).toString();
-                    repo = repositories.get(inRootPath);
-                }
-                if (repo != null) {
-                    return repo;
-                }
+    /**
+     * Get the lookup map matching the current set of repositories, rebuild it
+     * if the repositories changed since it was built.
+     */
+    private RepositoryLookup getRepositoryLookup() {
+        RepositoryLookup lookup = repositoryLookup;
+        long version = repositoriesVersion.get();
+        if (lookup.getVersion() == version) {
+            return lookup;
+        }
+        synchronized (repositoryLookupLock) {
+            lookup = repositoryLookup;
+            version = repositoriesVersion.get();
+            if (lookup.getVersion() != version) {
+                lookup = RepositoryLookup.build(repositories.values(), version);
+                repositoryLookup = lookup;
             }
-
-            file = file.getParentFile();
+            return lookup;
         }
-
-        return null;
     }
 
     /**
@@ -866,11 +1098,7 @@ public final class HistoryGuru {
         for (String repo : repos) {
             repositories.remove(repo);
         }
-
-        // Re-map the repository roots.
-        repositoryRoots.clear();
-        List<Repository> ccopy = new ArrayList<>(repositories.values());
-        ccopy.forEach((repo) -> { putRepository(repo); });
+        repositoriesVersion.incrementAndGet();
     }
 
     /**set
@@ -912,8 +1140,8 @@ public final class HistoryGuru {
      */
     public void invalidateRepositories(Collection<? extends RepositoryInfo> repos, boolean interactive) {
         if (repos == null || repos.isEmpty()) {
-            repositoryRoots.clear();
-            repositories.clear();
+            repositories = new ConcurrentHashMap<>();
+            repositoriesVersion.incrementAndGet();
             return;
         }
 
@@ -972,23 +1200,22 @@ public final class HistoryGuru {
         }
         executor.shutdown();
 
-        repositoryRoots.clear();
-        repositories.clear();
-        newrepos.forEach((_key, repo) -> { putRepository(repo); });
+        // Swap the map as a whole so that the lookups never see it half filled.
+        repositories = new ConcurrentHashMap<>(newrepos);
+        repositoriesVersion.incrementAndGet();
+        getRepositoryLookup();
+        RepositoryMetadataCache.getInstance().save();
 
         elapsed.report(LOGGER, "done invalidating repositories");
     }
 
     /**
      * Adds the specified {@code repository} to this instance's repository map
-     * and repository-root map (if not already there).
+     * (if not already there).
      * @param repository a defined instance
      */
     private void putRepository(Repository repository) {
-        String repoDirectoryName = repository.getDirectoryName();
-        File repoDirectoryFile = new File(repoDirectoryName);
-        String repoDirParent = repoDirectoryFile.getParent();
-        repositoryRoots.put(repoDirParent, "");
-        repositories.put(repoDirectoryName, repository);
+        repositories.put(repository.getDirectoryName(), repository);
+        repositoriesVersion.incrementAndGet();
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.IOException;
+
+/**
+ * Access to the history parsers for tools which already have the output of
+ * the log command, e.g. the benchmarks. The repositories run the command
+ * themselves and do not need this class.
+ */
+public final class HistoryParsers {
+
+    private HistoryParsers() {
+    }
+
+    /**
+     * Parse the output of the {@code git log} command run by
+     * {@link GitRepository}. The file paths are relative to source root.
+     *
+     * @param log the output of the command
+     * @return the parsed history
+     * @throws IOException if the log cannot be parsed
+     */
+    public static History parseGitLog(String log) throws IOException {
+        return new GitHistoryParser(false).parse(log);
+    }
+
+    /**
+     * Parse the XML output of the {@code svn log} command run by
+     * {@link SubversionRepository}.
+     *
+     * @param log the output of the command
+     * @return the parsed history
+     * @throws IOException if the log cannot be parsed
+     */
+    public static History parseSubversionLog(String log) throws IOException {
+        return new SubversionHistoryParser().parse(log);
+    }
+}
@@ -32,6 +32,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TreeSet;
@@ -105,6 +106,13 @@ public class MercurialRepository extends Repository {
     private static final Pattern LOG_COPIES_PATTERN
             = Pattern.compile("^(\\d+):(.*)");
 
+    /**
+     * Files which change when the default path, the branch or the changesets
+     * change.
+     */
+    private static final List<String> METADATA_SIGNALS = Collections.unmodifiableList(Arrays.asList(
+            ".hg/hgrc", ".hg/branch", ".hg/dirstate", ".hg/store/00changelog.i"));
+
     public MercurialRepository() {
         type = "Mercurial";
         datePatterns = new String[]{
@@ -114,6 +122,7 @@ public class MercurialRepository extends Repository {
         ignoredFiles.add(".hgtags");
         ignoredFiles.add(".hgignore");
         ignoredDirs.add(".hg");
+        markers.add(".hg");
     }
 
     /**
@@ -500,6 +509,11 @@ public class MercurialRepository extends Repository {
         return false;
     }
 
+    @Override
+    List<String> getMetadataSignals() {
+        return METADATA_SIGNALS;
+    }
+
     @Override
     boolean supportsSubRepositories() {
         String val = System.getenv(NOFOREST_PROPERTY_KEY);
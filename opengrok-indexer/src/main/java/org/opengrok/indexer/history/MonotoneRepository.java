@@ -64,6 +64,8 @@ public class MonotoneRepository extends Repository {
         datePatterns = new String[]{
             "yyyy-MM-dd'T'hh:mm:ss"
         };
+
+        markers.add("_MTN");
     }
 
     @Override
@@ -60,6 +60,7 @@ public class RCSRepository extends Repository {
         type = "RCS";
 
         ignoredDirs.add("RCS");
+        markers.add("RCS");
     }
 
     @Override
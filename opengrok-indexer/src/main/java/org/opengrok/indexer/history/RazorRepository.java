@@ -153,6 +153,7 @@ public class RazorRepository extends Repository {
         };
 
         ignoredDirs.add(RAZOR_DIR);
+        markers.add(RAZOR_DIR);
     }
 
     @Override
@@ -56,6 +56,7 @@ public class RepoRepository extends Repository {
         setWorking(Boolean.TRUE);
 
         ignoredDirs.add(".repo");
+        markers.add(".repo");
     }
 
     @Override
@@ -32,6 +32,7 @@ import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -63,6 +64,12 @@ public abstract class Repository extends RepositoryInfo {
 
     protected final List<String> ignoredDirs;
 
+    /**
+     * Names of directory entries which indicate that the directory might be
+     * the root of a repository of this type.
+     */
+    protected final List<String> markers;
+
     /**
      * List of &lt;revision, tags&gt; pairs for repositories which display tags
      * only for files changed by the tagged commit.
@@ -92,6 +99,7 @@ public abstract class Repository extends RepositoryInfo {
         super();
         ignoredFiles = new ArrayList<>();
         ignoredDirs = new ArrayList<>();
+        markers = new ArrayList<>();
     }
 
     /**
@@ -428,6 +436,28 @@ public abstract class Repository extends RepositoryInfo {
         return ignoredDirs;
     }
 
+    /**
+     * Get names of the entries whose presence in a directory indicates that
+     * the directory might be a repository of this type, so that
+     * {@link #isRepositoryFor(File, boolean)} is worth trying.
+     * @return list of names, empty if the repositories of this type cannot be
+     * recognized by a marker entry
+     */
+    List<String> getMarkers() {
+        return markers;
+    }
+
+    /**
+     * Get paths of the files relative to the repository root which change
+     * whenever the parent, branch or current version of the repository may
+     * change. Their sizes and modification times are used to tell whether
+     * the cached values of these properties are still valid.
+     * @return list of paths, empty if the properties cannot be cached
+     */
+    List<String> getMetadataSignals() {
+        return Collections.emptyList();
+    }
+
     /**
      * Determine and return the current version of the repository.
      *
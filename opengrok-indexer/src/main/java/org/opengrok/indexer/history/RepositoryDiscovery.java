@@ -0,0 +1,203 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.opengrok.indexer.index.IgnoredNames;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Parallel discovery of repositories in a directory tree.
+ * <p>
+ * The tree is walked by a fork/join pool and each directory is listed only
+ * once. Its entries are matched against the marker entries of the repository
+ * types (see {@link Repository#getMarkers()}) so that only the likely
+ * candidates are checked by the repository types. The found repositories are
+ * created in a separate bounded pool while the walk continues, since that
+ * involves running SCM commands to determine their parent, branch and current
+ * version.
+ * <p>
+ * The walk follows the same rules as
+ * {@link HistoryGuru#addRepositories(File[], IgnoredNames)}, i.e. it does not
+ * descend below the scanning depth, into ignored directories or into
+ * repositories which do not support sub-repositories. Repository types which
+ * cannot be recognized by a marker entry are not discovered.
+ */
+final class RepositoryDiscovery {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryDiscovery.class);
+
+    private final IgnoredNames ignoredNames;
+    private final int scanningDepth;
+    private final ExecutorService executor;
+    private final List<Future<Repository>> results = Collections.synchronizedList(new ArrayList<>());
+
+    private RepositoryDiscovery(IgnoredNames ignoredNames, int scanningDepth, int parallelism) {
+        this.ignoredNames = ignoredNames;
+        this.scanningDepth = scanningDepth;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("discover-repos-" + thread.getId());
+            return thread;
+        });
+    }
+
+    /**
+     * Discover repositories in the given directories and their
+     * sub-directories.
+     * @param files directories to search
+     * @param ignoredNames what files to ignore
+     * @param scanningDepth maximum depth of the search
+     * @param parallelism number of repositories created in parallel
+     * @return the repositories sorted by their directory names
+     */
+    static List<Repository> discover(File[] files, IgnoredNames ignoredNames,
+            int scanningDepth, int parallelism) {
+        return new RepositoryDiscovery(ignoredNames, scanningDepth, parallelism).discover(files);
+    }
+
+    private List<Repository> discover(File[] files) {
+        List<Repository> repos = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<WalkTask> tasks = new ArrayList<>();
+            for (File file : files) {
+                tasks.add(new WalkTask(file, true, 0));
+            }
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+            // The walk is done so no more results will be added.
+            for (Future<Repository> result : results) {
+                try {
+                    Repository repository = result.get();
+                    if (repository != null) {
+                        repos.add(repository);
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Could not create repository", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Interrupted while discovering repositories", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+            executor.shutdownNow();
+        }
+
+        repos.sort(Comparator.comparing(Repository::getDirectoryName));
+        return repos;
+    }
+
+    private Repository createRepository(File file, Repository type) {
+        try {
+            return RepositoryFactory.createRepository(file, type, false);
+        } catch (InstantiationException | NoSuchMethodException | InvocationTargetException e) {
+            LOGGER.log(Level.WARNING, "Could not create repository for '"
+                    + file + "', could not instantiate the repository.", e);
+        } catch (IllegalAccessException e) {
+            LOGGER.log(Level.WARNING, "Could not create repository for '"
+                    + file + "', missing access rights.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Checks single directory and forks the walk of its sub-directories.
+     */
+    private final class WalkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient File file;
+        private final boolean recursiveSearch;
+        private final int depth;
+
+        WalkTask(File file, boolean recursiveSearch, int depth) {
+            this.file = file;
+            this.recursiveSearch = recursiveSearch;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (!file.isDirectory()) {
+                return;
+            }
+            String[] names = file.list();
+            if (names == null) {
+                LOGGER.log(Level.WARNING,
+                        "Failed to get sub directories for ''{0}'', check access permissions.",
+                        file.getAbsolutePath());
+                return;
+            }
+
+            Repository type = RepositoryFactory.getRepositoryType(file,
+                    new HashSet<>(Arrays.asList(names)));
+            boolean descend;
+            boolean subRecursiveSearch = recursiveSearch;
+            if (type == null) {
+                // Not a repository, search its sub-dirs.
+                descend = !ignoredNames.ignore(file);
+            } else {
+                LOGGER.log(Level.CONFIG, "Found <{0}> repository: <{1}>",
+                        new Object[]{type.getClass().getName(), file});
+                results.add(executor.submit(() -> createRepository(file, type)));
+                // Search only one level down - if not: too much
+                // stat'ing for huge Mercurial repositories
+                descend = recursiveSearch && type.supportsSubRepositories();
+                subRecursiveSearch = false;
+            }
+
+            if (descend && depth <= scanningDepth) {
+                List<WalkTask> tasks = new ArrayList<>(names.length);
+                for (String name : names) {
+                    tasks.add(new WalkTask(new File(file, name), subRecursiveSearch, depth + 1));
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -104,72 +105,136 @@ public final class RepositoryFactory {
      */
     public static Repository getRepository(File file, boolean interactive)
             throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
-        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
-        Repository repo = null;
-
         for (Repository rep : repositories) {
             if (rep.isRepositoryFor(file, interactive)) {
-                repo = rep.getClass().getDeclaredConstructor().newInstance();
-                repo.setDirectoryName(file);
-
-                if (!repo.isWorking()) {
-                    LOGGER.log(Level.WARNING,
-                            "{0} not working (missing binaries?): {1}",
-                            new Object[]{
-                                repo.getClass().getSimpleName(),
-                                file.getPath()
-                            });
-                }
+                return createRepository(file, rep, interactive);
+            }
+        }
 
-                if (repo.getType() == null || repo.getType().length() == 0) {
-                    repo.setType(repo.getClass().getSimpleName());
-                }
+        return null;
+    }
 
-                if (repo.getParent() == null || repo.getParent().length() == 0) {
-                    try {
-                        repo.setParent(repo.determineParent(interactive));
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.WARNING,
-                                "Failed to get parent for {0}: {1}",
-                                new Object[]{file.getAbsolutePath(), ex});
+    /**
+     * Returns the type of repository in the given directory among the types
+     * which can be recognized by a marker entry (see
+     * {@link Repository#getMarkers()}). Only the types whose marker is
+     * present are asked, which makes this much cheaper than
+     * {@link #getRepository(File, boolean)}.
+     *
+     * @param file directory that might contain a repository
+     * @param names names of the entries in the directory
+     * @return prototype of the repository type or {@code null}
+     */
+    static Repository getRepositoryType(File file, Set<String> names) {
+        for (Repository rep : repositories) {
+            for (String marker : rep.getMarkers()) {
+                if (names.contains(marker)) {
+                    if (rep.isRepositoryFor(file, false)) {
+                        return rep;
                     }
+                    break;
                 }
+            }
+        }
+        return null;
+    }
 
-                if (repo.getBranch() == null || repo.getBranch().length() == 0) {
-                    try {
-                        repo.setBranch(repo.determineBranch(interactive));
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.WARNING,
-                                "Failed to get branch for {0}: {1}",
-                                new Object[]{file.getAbsolutePath(), ex});
-                    }
-                }
+    /**
+     * Create repository of given type for the directory and determine its
+     * properties. This runs the external commands of the repository type.
+     *
+     * @param file root directory of the repository
+     * @param type prototype of the repository type
+     * @param interactive true if running in interactive mode
+     * @return the repository
+     * @throws InstantiationException in case we cannot create the repository object
+     * @throws IllegalAccessException in case no permissions to repository file
+     * @throws NoSuchMethodException in case we cannot create the repository object
+     * @throws InvocationTargetException in case we cannot create the repository object
+     */
+    static Repository createRepository(File file, Repository type, boolean interactive)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        Repository repo = type.getClass().getDeclaredConstructor().newInstance();
+        repo.setDirectoryName(file);
 
-                if (repo.getCurrentVersion() == null || repo.getCurrentVersion().length() == 0) {
-                    try {
-                        repo.setCurrentVersion(repo.determineCurrentVersion(interactive));
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.WARNING,
-                                "Failed to determineCurrentVersion for {0}: {1}",
-                                new Object[]{file.getAbsolutePath(), ex});
-                    }
-                }
+        if (!repo.isWorking()) {
+            LOGGER.log(Level.WARNING,
+                    "{0} not working (missing binaries?): {1}",
+                    new Object[]{
+                        repo.getClass().getSimpleName(),
+                        file.getPath()
+                    });
+        }
 
-                // If this repository displays tags only for files changed by tagged
-                // revision, we need to prepare list of all tags in advance.
-                if (env.isTagsEnabled() && repo.hasFileBasedTags()) {
-                    repo.buildTagList(file, interactive);
-                }
+        if (repo.getType() == null || repo.getType().length() == 0) {
+            repo.setType(repo.getClass().getSimpleName());
+        }
 
-                repo.fillFromProject();
-                
-                break;
+        RepositoryMetadataCache metadataCache = RepositoryMetadataCache.getInstance();
+        String signature = env.isRepositoryMetadataCache() ?
+                RepositoryMetadataCache.getSignature(repo) : null;
+        if (signature == null || !metadataCache.restore(repo, signature)) {
+            if (determineMetadata(repo, file, interactive) && signature != null) {
+                metadataCache.store(repo, signature);
             }
         }
-        
+
+        // If this repository displays tags only for files changed by tagged
+        // revision, we need to prepare list of all tags in advance.
+        if (env.isTagsEnabled() && repo.hasFileBasedTags()) {
+            repo.buildTagList(file, interactive);
+        }
+
+        repo.fillFromProject();
+
         return repo;
     }
 
+    /**
+     * Run the commands determining parent, branch and current version of the
+     * repository.
+     * @return {@code true} if all the commands succeeded
+     */
+    private static boolean determineMetadata(Repository repo, File file, boolean interactive) {
+        boolean complete = true;
+
+        if (repo.getParent() == null || repo.getParent().length() == 0) {
+            try {
+                repo.setParent(repo.determineParent(interactive));
+            } catch (IOException ex) {
+                complete = false;
+                LOGGER.log(Level.WARNING,
+                        "Failed to get parent for {0}: {1}",
+                        new Object[]{file.getAbsolutePath(), ex});
+            }
+        }
+
+        if (repo.getBranch() == null || repo.getBranch().length() == 0) {
+            try {
+                repo.setBranch(repo.determineBranch(interactive));
+            } catch (IOException ex) {
+                complete = false;
+                LOGGER.log(Level.WARNING,
+                        "Failed to get branch for {0}: {1}",
+                        new Object[]{file.getAbsolutePath(), ex});
+            }
+        }
+
+        if (repo.getCurrentVersion() == null || repo.getCurrentVersion().length() == 0) {
+            try {
+                repo.setCurrentVersion(repo.determineCurrentVersion(interactive));
+            } catch (IOException ex) {
+                complete = false;
+                LOGGER.log(Level.WARNING,
+                        "Failed to determineCurrentVersion for {0}: {1}",
+                        new Object[]{file.getAbsolutePath(), ex});
+            }
+        }
+
+        return complete;
+    }
+
     /**
      * Returns a repository for the given file, or null if no repository was
      * found.
@@ -0,0 +1,127 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Immutable longest-prefix map of repositories keyed by their root
+ * directories. A lookup probes the ancestors of the path from the deepest one,
+ * so it takes one hash lookup per path component and no file system calls for
+ * paths below one of the repository roots as they are known to
+ * {@link HistoryGuru}.
+ * <p>
+ * Paths which do not match lexically (e.g. paths going through symbolic
+ * links) are canonicalized once and matched against the canonical repository
+ * roots computed when the map is built.
+ */
+final class RepositoryLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryLookup.class);
+
+    static final RepositoryLookup EMPTY = new RepositoryLookup(new HashMap<>(), new HashMap<>(), -1);
+
+    private final Map<String, Repository> byPath;
+    private final Map<String, Repository> byCanonicalPath;
+    private final long version;
+
+    private RepositoryLookup(Map<String, Repository> byPath,
+            Map<String, Repository> byCanonicalPath, long version) {
+        this.byPath = byPath;
+        this.byCanonicalPath = byCanonicalPath;
+        this.version = version;
+    }
+
+    /**
+     * Build the lookup map.
+     * @param repositories the repositories
+     * @param version version of the repository collection
+     * @return the map
+     */
+    static RepositoryLookup build(Collection<Repository> repositories, long version) {
+        Map<String, Repository> byPath = new HashMap<>(repositories.size() * 2);
+        Map<String, Repository> byCanonicalPath = new HashMap<>(repositories.size() * 2);
+        for (Repository repository : repositories) {
+            String dir = new File(repository.getDirectoryName()).getPath();
+            byPath.put(dir, repository);
+            byCanonicalPath.put(dir, repository);
+        }
+        for (Repository repository : repositories) {
+            String dir = new File(repository.getDirectoryName()).getPath();
+            try {
+                String canonical = new File(dir).getCanonicalPath();
+                // lexical roots take precedence
+                byCanonicalPath.putIfAbsent(canonical, repository);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Cannot get canonical path of " + dir, e);
+            }
+        }
+        return new RepositoryLookup(byPath, byCanonicalPath, version);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Find the repository with the deepest root directory containing the file.
+     * @param file the file or directory
+     * @return the repository or {@code null} if the file is not in any
+     * repository
+     */
+    Repository find(File file) {
+        if (byPath.isEmpty()) {
+            return null;
+        }
+        Repository repository = findLongestPrefix(byPath, file);
+        if (repository != null) {
+            return repository;
+        }
+
+        File canonical;
+        try {
+            canonical = file.getCanonicalFile();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to get canonical path for " + file, e);
+            return null;
+        }
+        return findLongestPrefix(byCanonicalPath, canonical);
+    }
+
+    private static Repository findLongestPrefix(Map<String, Repository> map, File file) {
+        for (File f = file; f != null; f = f.getParentFile()) {
+            Repository repository = map.get(f.getPath());
+            if (repository != null) {
+                return repository;
+            }
+        }
+        return null;
+    }
+}
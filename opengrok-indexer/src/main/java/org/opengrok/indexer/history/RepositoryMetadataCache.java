@@ -0,0 +1,247 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Persistent cache of the repository properties which are expensive to
+ * determine, i.e. parent, branch and current version. Each entry is stored
+ * with a signature made of the sizes and modification times of the files
+ * which change when the properties change (see
+ * {@link Repository#getMetadataSignals()}), so the SCM commands run only for
+ * the repositories which changed since the previous run.
+ * <p>
+ * The cache is kept in a single JSON file in the data root. Repository types
+ * which do not declare any signal files are never cached.
+ */
+final class RepositoryMetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryMetadataCache.class);
+
+    static final String FILE_NAME = "repository-metadata.json";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final RepositoryMetadataCache INSTANCE = new RepositoryMetadataCache();
+
+    private static final class Entry {
+        final String signature;
+        final String parent;
+        final String branch;
+        final String currentVersion;
+
+        Entry(String signature, String parent, String branch, String currentVersion) {
+            this.signature = signature;
+            this.parent = parent;
+            this.branch = branch;
+            this.currentVersion = currentVersion;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * File whose content is held in {@link #entries}.
+     */
+    private File loaded;
+
+    private volatile boolean dirty;
+
+    static RepositoryMetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the signature of the repository metadata.
+     * @param repository the repository
+     * @return the signature or {@code null} if the repository metadata
+     * cannot be cached
+     */
+    static String getSignature(Repository repository) {
+        if (repository.getMetadataSignals().isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String name : repository.getMetadataSignals()) {
+            File file = new File(repository.getDirectoryName(), name);
+            sb.append(name).append(':');
+            if (file.exists()) {
+                sb.append(file.lastModified()).append(':').append(file.length());
+            } else {
+                sb.append('-');
+            }
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Fill in the cached properties of the repository.
+     * @param repository the repository
+     * @param signature current signature of the repository metadata
+     * @return {@code true} if the cached properties are up to date and were
+     * used
+     */
+    boolean restore(Repository repository, String signature) {
+        if (!ensureLoaded()) {
+            return false;
+        }
+        Entry entry = entries.get(repository.getDirectoryNameRelative());
+        if (entry == null || !entry.signature.equals(signature)) {
+            return false;
+        }
+        if (isEmpty(repository.getParent())) {
+            repository.setParent(entry.parent);
+        }
+        if (isEmpty(repository.getBranch())) {
+            repository.setBranch(entry.branch);
+        }
+        if (isEmpty(repository.getCurrentVersion())) {
+            repository.setCurrentVersion(entry.currentVersion);
+        }
+        return true;
+    }
+
+    /**
+     * Remember the properties of the repository.
+     * @param repository the repository
+     * @param signature signature of the repository metadata the properties
+     * were determined for
+     */
+    void store(Repository repository, String signature) {
+        if (!ensureLoaded()) {
+            return;
+        }
+        entries.put(repository.getDirectoryNameRelative(), new Entry(signature,
+                repository.getParent(), repository.getBranch(), repository.getCurrentVersion()));
+        dirty = true;
+    }
+
+    /**
+     * Write the cache to the data root if it changed.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void save() {
+        if (!dirty || loaded == null) {
+            return;
+        }
+
+        JSONObject repositories = new JSONObject();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            JSONObject entry = new JSONObject();
+            entry.put("signature", e.getValue().signature);
+            entry.put("parent", e.getValue().parent);
+            entry.put("branch", e.getValue().branch);
+            entry.put("currentVersion", e.getValue().currentVersion);
+            repositories.put(e.getKey(), entry);
+        }
+        JSONObject root = new JSONObject();
+        root.put("version", FORMAT_VERSION);
+        root.put("repositories", repositories);
+
+        File dir = loaded.getParentFile();
+        try {
+            // the data root may not exist yet on the first run
+            Files.createDirectories(dir.toPath());
+            File output = File.createTempFile("ogrepometa", null, dir);
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(output),
+                    StandardCharsets.UTF_8)) {
+                root.writeJSONString(out);
+            }
+            Files.move(output.toPath(), loaded.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write repository metadata cache " + loaded, e);
+        }
+    }
+
+    /**
+     * Make sure the entries held in memory belong to the current data root.
+     * @return {@code false} if there is no data root
+     */
+    private synchronized boolean ensureLoaded() {
+        String dataRoot = RuntimeEnvironment.getInstance().getDataRootPath();
+        if (dataRoot == null) {
+            return false;
+        }
+        File file = new File(dataRoot, FILE_NAME);
+        if (file.equals(loaded)) {
+            return true;
+        }
+
+        entries.clear();
+        dirty = false;
+        loaded = file;
+        if (!file.isFile()) {
+            return true;
+        }
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(in);
+            Object version = root.get("version");
+            if (!(version instanceof Number) || ((Number) version).intValue() != FORMAT_VERSION) {
+                return true;
+            }
+            JSONObject repositories = (JSONObject) root.get("repositories");
+            if (repositories == null) {
+                return true;
+            }
+            for (Object key : repositories.keySet()) {
+                JSONObject entry = (JSONObject) repositories.get(key);
+                String signature = (String) entry.get("signature");
+                if (signature != null) {
+                    entries.put((String) key, new Entry(signature,
+                            (String) entry.get("parent"), (String) entry.get("branch"),
+                            (String) entry.get("currentVersion")));
+                }
+            }
+        } catch (IOException | ParseException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Failed to read repository metadata cache " + file, e);
+            entries.clear();
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+}
@@ -66,6 +66,9 @@ public class SCCSRepository extends Repository {
         };
 
         ignoredDirs.add("SCCS");
+        markers.add("SCCS");
+        markers.add(CODEMGR_WSDATA);
+        markers.add(CODEMGR_WSDATA.toLowerCase());
     }
 
     @Override
@@ -75,6 +75,8 @@ public class SSCMRepository extends Repository {
         datePatterns = new String[]{
             "M/d/yyyy h:mm a"
         };
+
+        markers.add(MYSCMSERVERINFO_FILE);
     }
 
     @Override
@@ -27,6 +27,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -69,6 +71,13 @@ public class SubversionRepository extends Repository {
 
     private static final String URLattr = "url";
 
+    /**
+     * Working copy database of current and older working copy formats,
+     * updated whenever the working copy is updated or switched.
+     */
+    private static final List<String> METADATA_SIGNALS = Collections.unmodifiableList(Arrays.asList(
+            ".svn/wc.db", ".svn/entries"));
+
     protected String reposPath;
 
     public SubversionRepository() {
@@ -80,6 +89,7 @@ public class SubversionRepository extends Repository {
         };
 
         ignoredDirs.add(".svn");
+        markers.add(".svn");
     }
 
     private String getValue(Node node) {
@@ -436,4 +446,9 @@ public class SubversionRepository extends Repository {
 
         return curVersion;
     }
+
+    @Override
+    List<String> getMetadataSignals() {
+        return METADATA_SIGNALS;
+    }
 }
@@ -29,16 +29,44 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.opengrok.indexer.logger.LoggerFactory;
 
+/**
+ * Matcher of file names and paths against a list of exact names, glob
+ * patterns and paths.
+ * <p>
+ * The exact names are looked up in a set. The patterns, and the paths which
+ * are matched as suffixes of the absolute path, are compiled on first use
+ * into two combined automata, one for the file name and one for the absolute
+ * path, so that a match costs a single pass over the name regardless of the
+ * number of patterns. Should an automaton get too complex, the patterns are
+ * split into several automata, and a pattern which is too complex on its own
+ * is matched as a regular expression.
+ */
 public class Filter implements Serializable {
-    private static final long serialVersionUID = 3L;
+    private static final long serialVersionUID = 4L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Filter.class);
+
+    /**
+     * Limit of the states of a combined automaton, its transition table takes
+     * the number of states times the number of character classes ints.
+     */
+    private static final int MAX_DETERMINIZED_STATES = 1000;
 
     /** The list of exact filenames */
     private final Set<String> filenames;
     /** The list of filenames with wildcards */
-    private final List<Pattern> patterns;
+    private final List<String> patterns;
     /** The list of paths */
     private final List<String> paths;
     /**
@@ -46,6 +74,8 @@ public class Filter implements Serializable {
      * configuration file (if used)
      */
     private final List<String> items;
+    /** The compiled patterns and paths, {@code null} until first use. */
+    private transient volatile Compiled compiled;
 
     public Filter() {
         filenames = new HashSet<>();
@@ -97,6 +127,7 @@ public class Filter implements Serializable {
         filenames.clear();
         paths.clear();
         items.clear();
+        compiled = null;
     }
 
     /**
@@ -107,36 +138,21 @@ public class Filter implements Serializable {
      */
     public boolean match(File file, boolean checkAbsolute) {
         String fileName = file.getName(); // basename
-        String absolute = file.getAbsolutePath();
 
         if (filenames.contains(fileName)) {
             return true;
         }
 
-        for (Pattern p : patterns) {
-            // Try to match the basename first.
-            Matcher m = p.matcher(fileName);
-            if (m.matches()) {
-                return true;
-            }
-            // Try the full path next.
-            if (checkAbsolute && p.pattern().contains("/")) {
-                m = p.matcher(absolute);
-                if (m.matches()) {
-                    return true;
-                }
-            }
+        Compiled c = compiled;
+        if (c == null) {
+            c = compile();
         }
-
-        if (checkAbsolute) {
-            for (String path : paths) {
-                if (absolute.endsWith(path)) {
-                    return true;
-                }
-            }
+        if (c.names != null && c.names.test(fileName)) {
+            return true;
         }
-
-        return false;
+        // Patterns with a slash and the paths are matched against the full path.
+        return checkAbsolute && c.paths != null
+                && c.paths.test(file.getAbsolutePath());
     }
 
     /**
@@ -167,8 +183,9 @@ public class Filter implements Serializable {
      * @param pattern the pattern to add
      */
     private void addPattern(String pattern) {
+        compiled = null;
         if (pattern.contains("*") || pattern.contains("?")) {
-            patterns.add(compilePattern(pattern));
+            patterns.add(pattern);
         } else if (pattern.contains(File.separator)) {
             if (pattern.charAt(0) == File.separatorChar) {
                 paths.add(pattern);
@@ -180,6 +197,110 @@ public class Filter implements Serializable {
         }
     }
 
+    private synchronized Compiled compile() {
+        if (compiled == null) {
+            List<Automaton> names = new ArrayList<>();
+            List<Predicate<String>> nameRegexes = new ArrayList<>();
+            List<Automaton> absolute = new ArrayList<>();
+            List<Predicate<String>> absoluteRegexes = new ArrayList<>();
+            for (String pattern : patterns) {
+                Pattern regex = compilePattern(pattern);
+                // A pattern with a slash never matches the basename.
+                List<Automaton> automata = pattern.contains("/") ? absolute : names;
+                List<Predicate<String>> regexes = pattern.contains("/") ? absoluteRegexes : nameRegexes;
+                automata.add(toAutomaton(pattern));
+                regexes.add(s -> regex.matcher(s).matches());
+            }
+            for (String path : paths) {
+                absolute.add(Operations.concatenate(Automata.makeAnyString(),
+                        Automata.makeString(path)));
+                absoluteRegexes.add(s -> s.endsWith(path));
+            }
+            compiled = new Compiled(compile(names, nameRegexes),
+                    compile(absolute, absoluteRegexes));
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile the automata into as few deterministic automata as possible.
+     *
+     * @param automata the automata of the patterns
+     * @param regexes equivalent regular expression matchers of the patterns
+     * @return predicate which is true if any of the patterns matches, or
+     * {@code null} if there are none
+     */
+    private static Predicate<String> compile(List<Automaton> automata,
+            List<Predicate<String>> regexes) {
+        List<Predicate<String>> matchers = new ArrayList<>();
+        compile(automata, regexes, 0, automata.size(), matchers);
+        switch (matchers.size()) {
+            case 0:
+                return null;
+            case 1:
+                return matchers.get(0);
+            default:
+                return s -> {
+                    for (Predicate<String> matcher : matchers) {
+                        if (matcher.test(s)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+        }
+    }
+
+    /**
+     * Determinize the union of the automata in the range. If it is too
+     * complex, e.g. because of several patterns with multiple {@code *},
+     * split the range in halves. A single pattern which is still too complex
+     * is matched by its regular expression.
+     */
+    private static void compile(List<Automaton> automata, List<Predicate<String>> regexes,
+            int from, int to, List<Predicate<String>> matchers) {
+        if (from == to) {
+            return;
+        }
+        try {
+            Automaton union = Operations.union(automata.subList(from, to));
+            CharacterRunAutomaton automaton = new CharacterRunAutomaton(union,
+                    MAX_DETERMINIZED_STATES);
+            matchers.add(automaton::run);
+        } catch (TooComplexToDeterminizeException e) {
+            if (to - from == 1) {
+                LOGGER.log(Level.FINE, "Pattern too complex for an automaton, using regular expression", e);
+                matchers.add(regexes.get(from));
+            } else {
+                int mid = (from + to) >>> 1;
+                compile(automata, regexes, from, mid, matchers);
+                compile(automata, regexes, mid, to, matchers);
+            }
+        }
+    }
+
+    /**
+     * Convert the glob pattern (examples: *.c, *.?xx) to an automaton.
+     *
+     * @param pattern a pattern to match file names against
+     * @return automaton accepting the strings matched by the pattern
+     */
+    private static Automaton toAutomaton(String pattern) {
+        List<Automaton> parts = new ArrayList<>();
+        for (int i = 0; i < pattern.length(); ) {
+            int c = pattern.codePointAt(i);
+            if (c == '*') {
+                parts.add(Automata.makeAnyString());
+            } else if (c == '?') {
+                parts.add(Automata.makeAnyChar());
+            } else {
+                parts.add(Automata.makeChar(c));
+            }
+            i += Character.charCount(c);
+        }
+        return Operations.concatenate(parts);
+    }
+
     /**
      * Convert the glob pattern (examples: *.c, *.?xx) to a regular expression
      * and compile it.
@@ -187,12 +308,12 @@ public class Filter implements Serializable {
      * @param pattern a pattern to match file names against
      * @return a compiled regular expression representing the pattern
      */
-    private Pattern compilePattern(String pattern) {
+    private static Pattern compilePattern(String pattern) {
         // Build the regex by replacing "*" with ".*" and "?" with ".". All
         // other characters should be quoted to ensure exact match.
         StringBuilder regex = new StringBuilder();
         int pos = 0;
-        String[] components = pattern.split("[*?]");
+        String[] components = pattern.split("[*?]", -1); // keep trailing wildcards
         for (String str : components) {
             if (str.length() > 0) {
                 // Quote the characters up to next wildcard or end of string.
@@ -215,6 +336,19 @@ public class Filter implements Serializable {
         return Pattern.compile(regex.toString());
     }
 
+    /**
+     * The compiled patterns for the file name and for the absolute path.
+     */
+    private static final class Compiled {
+        final Predicate<String> names;
+        final Predicate<String> paths;
+
+        Compiled(Predicate<String> names, Predicate<String> paths) {
+            this.names = names;
+            this.paths = paths;
+        }
+    }
+
     public static class PatternList extends ArrayList<String> {
         private final Filter owner;
 
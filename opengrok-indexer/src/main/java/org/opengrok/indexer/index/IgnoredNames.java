@@ -75,10 +75,11 @@ public class IgnoredNames implements Serializable {
      * @return true if this file should be ignored, false otherwise
      */
     public boolean ignore(File file) {
+        // Call match() directly, ignore() would stat the file once more.
         if (file.isFile()) {
-            return ignoredFiles.ignore(file);
+            return ignoredFiles.match(file);
         } else {
-            return ignoredDirs.ignore(file);
+            return file.isDirectory() && ignoredDirs.match(file);
         }
     }
 
@@ -31,8 +31,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -50,7 +53,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPOutputStream;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
@@ -90,14 +92,20 @@ import org.opengrok.indexer.analysis.FileAnalyzer.Genre;
 import org.opengrok.indexer.analysis.FileAnalyzerFactory;
 import org.opengrok.indexer.configuration.Project;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.configuration.SuperIndexSearcher;
 import org.opengrok.indexer.history.HistoryException;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.metrics.Counter;
+import org.opengrok.indexer.metrics.Histogram;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.indexer.search.QueryBuilder;
 import org.opengrok.indexer.util.ForbiddenSymlinkException;
 import org.opengrok.indexer.util.IOUtils;
 import org.opengrok.indexer.util.ObjectPool;
+import org.opengrok.indexer.util.SpliceableGZIPOutputStream;
 import org.opengrok.indexer.util.Statistics;
+import org.opengrok.indexer.util.Utf8Writer;
 import org.opengrok.indexer.web.Util;
 
 import javax.ws.rs.client.ClientBuilder;
@@ -115,6 +123,11 @@ public class IndexDatabase {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(IndexDatabase.class);
 
+    private static final Counter DOCUMENTS_ADDED = MetricsRegistry.getInstance().counter(
+            "opengrok_indexer_documents_added_total", "Number of documents added to the index.", "analyzer");
+    private static final Histogram CTAGS_POOL_WAIT = MetricsRegistry.getInstance().histogram(
+            "opengrok_ctags_pool_wait_seconds", "Time spent waiting for a ctags instance.");
+
     private static final Comparator<File> FILENAME_COMPARATOR =
         (File p1, File p2) -> p1.getName().compareTo(p2.getName());
 
@@ -452,6 +465,11 @@ public class IndexDatabase {
                 }
 
                 if (env.isHistoryEnabled()) {
+                    // The history cache creation might still be running
+                    // for other repositories.
+                    long stageStart = IndexingProfiler.beginStage();
+                    HistoryGuru.getInstance().awaitCache(sourceRoot);
+                    IndexingProfiler.endStage(IndexingProfiler.Stage.HISTORY, stageStart);
                     try {
                         HistoryGuru.getInstance().ensureHistoryCacheExists(
                             sourceRoot);
@@ -497,13 +515,17 @@ public class IndexDatabase {
                     args.cur_count = 0;
                     Statistics elapsed = new Statistics();
                     LOGGER.log(Level.INFO, "Starting traversal of directory {0}", dir);
+                    long stageStart = IndexingProfiler.beginStage();
                     indexDown(sourceRoot, dir, args);
+                    IndexingProfiler.endStage(IndexingProfiler.Stage.TRAVERSAL, stageStart);
                     elapsed.report(LOGGER, String.format("Done traversal of directory %s", dir));
 
                     args.cur_count = 0;
                     elapsed = new Statistics();
                     LOGGER.log(Level.INFO, "Starting indexing of directory {0}", dir);
+                    stageStart = IndexingProfiler.beginStage();
                     indexParallel(args);
+                    IndexingProfiler.endStage(IndexingProfiler.Stage.ANALYSIS, stageStart);
                     elapsed.report(LOGGER, String.format("Done indexing of directory %s", dir));
 
                     // Remove data for the trailing terms that indexDown()
@@ -525,8 +547,10 @@ public class IndexDatabase {
                 }
             }
 
+            long stageStart = IndexingProfiler.beginStage();
             try {
                 finishWriting();
+                IndexingProfiler.endStage(IndexingProfiler.Stage.COMMIT, stageStart);
             } catch (IOException e) {
                 finishingException = e;
             }
@@ -624,8 +648,10 @@ public class IndexDatabase {
             IndexWriterConfig conf = new IndexWriterConfig(analyzer);
             conf.setOpenMode(OpenMode.CREATE_OR_APPEND);
 
+            long stageStart = IndexingProfiler.beginStage();
             wrt = new IndexWriter(indexDirectory, conf);
             wrt.forceMerge(1); // this is deprecated and not needed anymore
+            IndexingProfiler.endStage(IndexingProfiler.Stage.OPTIMIZE, stageStart);
             elapsed.report(LOGGER, String.format("Done optimizing index%s", projectDetail));
             synchronized (lock) {
                 if (dirtyFile.exists() && !dirtyFile.delete()) {
@@ -740,7 +766,26 @@ public class IndexDatabase {
      */
     private void addFile(File file, String path, Ctags ctags)
             throws IOException, InterruptedException {
-        FileAnalyzer fa = getAnalyzerFor(file, path);
+        IndexingProfiler.beginFile();
+        FileAnalyzer fa = null;
+        try {
+            IndexingProfiler.enter(IndexingProfiler.Phase.DETECT);
+            try {
+                fa = getAnalyzerFor(file, path);
+            } finally {
+                IndexingProfiler.exit();
+            }
+            addFile(file, path, ctags, fa);
+        } finally {
+            if (IndexingProfiler.isEnabled()) {
+                IndexingProfiler.endFile(path, fa == null ? "unknown"
+                        : fa.getFactory().getClass().getSimpleName(), file.length());
+            }
+        }
+    }
+
+    private void addFile(File file, String path, Ctags ctags, FileAnalyzer fa)
+            throws IOException, InterruptedException {
 
         for (IndexChangedListener listener : listeners) {
             listener.fileAdd(path, fa.getClass().getSimpleName());
@@ -753,6 +798,7 @@ public class IndexDatabase {
         fa.setProject(Project.getProject(path));
         fa.setScopesEnabled(RuntimeEnvironment.getInstance().isScopesEnabled());
         fa.setFoldingEnabled(RuntimeEnvironment.getInstance().isFoldingEnabled());
+        fa.setJointLexingEnabled(RuntimeEnvironment.getInstance().isJointLexing());
 
         Document doc = new Document();
         try (Writer xrefOut = newXrefWriter(fa, path)) {
@@ -781,16 +827,21 @@ public class IndexDatabase {
             fa.setCtags(null);
         }
 
+        IndexingProfiler.enter(IndexingProfiler.Phase.INDEX);
         try {
             writer.addDocument(doc);
         } catch (Throwable t) {
             cleanupResources(doc);
             throw t;
+        } finally {
+            IndexingProfiler.exit();
         }
 
         setDirty();
+        String analyzer = fa.getClass().getSimpleName();
+        DOCUMENTS_ADDED.inc(analyzer);
         for (IndexChangedListener listener : listeners) {
-            listener.fileAdded(path, fa.getClass().getSimpleName());
+            listener.fileAdded(path, analyzer);
         }
     }
 
@@ -1182,7 +1233,9 @@ public class IndexDatabase {
                             if (alreadyClosedCounter.get() > 0) {
                                 ret = false;
                             } else {
+                                long start = System.nanoTime();
                                 pctags = ctagsPool.get();
+                                CTAGS_POOL_WAIT.observeSince(start);
                                 addFile(x.file, x.path, pctags);
                                 successCounter.incrementAndGet();
                                 ret = true;
@@ -1516,16 +1569,10 @@ public class IndexDatabase {
      */
     public static Definitions getDefinitions(File file)
             throws IOException, ParseException, ClassNotFoundException {
-        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
-        String path;
-        try {
-            path = env.getPathRelativeToSourceRoot(file);
-        } catch (ForbiddenSymlinkException e) {
-            LOGGER.log(Level.FINER, e.getMessage());
+        String path = getIndexPath(file);
+        if (path == null) {
             return null;
         }
-        // Sanitize Windows path delimiters in order not to conflict with Lucene escape character.
-        path = path.replace("\\", "/");
 
         IndexReader ireader = getIndexReader(path);
 
@@ -1535,31 +1582,110 @@ public class IndexDatabase {
         }
 
         try {
-            Query q = new QueryBuilder().setPath(path).build();
-            IndexSearcher searcher = new IndexSearcher(ireader);
-            TopDocs top = searcher.search(q, 1);
-            if (top.totalHits == 0) {
-                // No hits, no definitions...
-                return null;
-            }
-            Document doc = searcher.doc(top.scoreDocs[0].doc);
-            String foundPath = doc.get(QueryBuilder.PATH);
-
-            // Only use the definitions if we found an exact match.
-            if (path.equals(foundPath)) {
-                IndexableField tags = doc.getField(QueryBuilder.TAGS);
-                if (tags != null) {
-                    return Definitions.deserialize(tags.binaryValue().bytes);
-                }
-            }
+            return getDefinitions(getDocument(new IndexSearcher(ireader), path));
         } finally {
             ireader.close();
         }
+    }
+
+    /**
+     * Get the definitions stored in the document of a file.
+     *
+     * @param doc the document or {@code null}
+     * @return definitions for the file, or {@code null} if the document has
+     * none
+     * @throws IOException if the stored definitions cannot be read
+     * @throws ClassNotFoundException if the class for the stored definitions
+     * instance cannot be found
+     */
+    public static Definitions getDefinitions(Document doc)
+            throws IOException, ClassNotFoundException {
+        if (doc != null) {
+            IndexableField tags = doc.getField(QueryBuilder.TAGS);
+            if (tags != null) {
+                return Definitions.deserialize(tags.binaryValue().bytes);
+            }
+        }
 
         // Didn't find any definitions.
         return null;
     }
 
+    /**
+     * Get the latest document of a file from the index through the
+     * {@link SuperIndexSearcher} of its project which is shared by the web
+     * application, so the index is not opened again for each request. The
+     * document holds both the {@link QueryBuilder#TYPE} detected by the
+     * indexer and the definitions, see {@link #getDefinitions(Document)}.
+     *
+     * @param file the file whose document to find
+     * @return the document, or {@code null} if the file is not indexed
+     * @throws IOException if an error happens when accessing the index
+     * @throws ParseException if an error happens when building the Lucene query
+     */
+    public static Document getDocument(File file)
+            throws IOException, ParseException {
+        String path = getIndexPath(file);
+        if (path == null) {
+            return null;
+        }
+
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        String proj = "";
+        if (env.hasProjects()) {
+            Project p = Project.getProject(path);
+            if (p == null) {
+                return null;
+            }
+            proj = p.getName();
+        }
+        if (!new File(new File(env.getDataRootFile(), INDEX_DIR), proj).isDirectory()) {
+            // No index, no document...
+            return null;
+        }
+
+        SuperIndexSearcher searcher = env.getIndexSearcher(proj);
+        if (searcher == null) {
+            return null;
+        }
+        try {
+            return getDocument(searcher, path);
+        } finally {
+            searcher.getSearcherManager().release(searcher);
+        }
+    }
+
+    /**
+     * @return path of the file relative to source root with '/' delimiters
+     * or {@code null} if the file is not accessible
+     */
+    private static String getIndexPath(File file) throws IOException {
+        String path;
+        try {
+            path = RuntimeEnvironment.getInstance().getPathRelativeToSourceRoot(file);
+        } catch (ForbiddenSymlinkException e) {
+            LOGGER.log(Level.FINER, e.getMessage());
+            return null;
+        }
+        // Sanitize Windows path delimiters in order not to conflict with Lucene escape character.
+        return path.replace("\\", "/");
+    }
+
+    private static Document getDocument(IndexSearcher searcher, String path)
+            throws IOException, ParseException {
+        Query q = new QueryBuilder().setPath(path).build();
+        TopDocs top = searcher.search(q, 1);
+        if (top.totalHits == 0) {
+            // No hits, no document...
+            return null;
+        }
+        Document doc = searcher.doc(top.scoreDocs[0].doc);
+        String foundPath = doc.get(QueryBuilder.PATH);
+
+        // Only use the document if we found an exact match.
+        return path.equals(foundPath) ? doc : null;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
@@ -1615,9 +1741,19 @@ public class IndexDatabase {
                 transientXref.getAbsolutePath());
             completer.add(ren);
 
-            return new BufferedWriter(new OutputStreamWriter(compressed ?
-                new GZIPOutputStream(new FileOutputStream(transientXref)) :
-                new FileOutputStream(transientXref)));
+            OutputStream out = new FileOutputStream(transientXref);
+            if (compressed) {
+                out = new SpliceableGZIPOutputStream(out,
+                    env.getXrefCompressionLevel());
+            }
+            /*
+             * The xrefs are read using the system default charset, so the
+             * direct UTF-8 encoding is only usable if it is the default.
+             */
+            if (StandardCharsets.UTF_8.equals(Charset.defaultCharset())) {
+                return new Utf8Writer(out);
+            }
+            return new BufferedWriter(new OutputStreamWriter(out));
         }
 
         // no Xref for this analyzer
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
@@ -55,7 +56,9 @@ import org.opengrok.indexer.configuration.Configuration;
 import org.opengrok.indexer.configuration.ConfigurationHelp;
 import org.opengrok.indexer.configuration.LuceneLockName;
 import org.opengrok.indexer.configuration.Project;
+import org.opengrok.indexer.configuration.ProjectPathIndex;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.ChangesetIndex;
 import org.opengrok.indexer.history.HistoryException;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.history.Repository;
@@ -64,6 +67,9 @@ import org.opengrok.indexer.history.RepositoryInfo;
 import org.opengrok.indexer.index.IndexVersion.IndexVersionException;
 import org.opengrok.indexer.logger.LoggerFactory;
 import org.opengrok.indexer.logger.LoggerUtil;
+import org.opengrok.indexer.metrics.JvmMetrics;
+import org.opengrok.indexer.metrics.MetricsHttpServer;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.indexer.util.Executor;
 import org.opengrok.indexer.util.OptionParser;
 import org.opengrok.indexer.util.Statistics;
@@ -93,6 +99,9 @@ public final class Indexer {
     private static boolean searchRepositories = false;
     private static boolean noindex = false;
     private static boolean awaitProfiler;
+    private static InetSocketAddress metricsAddress;
+    private static String profileReport;
+    private static int profileSlowest = 100;
 
     private static boolean help;
     private static String helpUsage;
@@ -153,6 +162,11 @@ public final class Indexer {
 
             env = RuntimeEnvironment.getInstance();
 
+            if (metricsAddress != null) {
+                JvmMetrics.register(MetricsRegistry.getInstance());
+                new MetricsHttpServer(metricsAddress, MetricsRegistry.getInstance());
+            }
+
             // Complete the configuration of repository types.
             List<Class<? extends Repository>> repositoryClasses
                     = RepositoryFactory.getRepositoryClasses();
@@ -305,7 +319,9 @@ public final class Indexer {
             LOGGER.log(Level.INFO, "Indexer version {0} ({1})",
                     new Object[]{Info.getVersion(), Info.getRevision()});
             
-            // Get history first.
+            // Get history first. The indexing of each project waits only
+            // for the history of its own repositories.
+            HistoryGuru.getInstance().setDeferCacheCompletion(runIndex && update);
             getInstance().prepareIndexer(env, searchRepositories, addProjects,
                     defaultProjects,
                     listFiles, createDict, subFiles, new ArrayList(repositories),
@@ -317,8 +333,17 @@ public final class Indexer {
             // And now index it all.
             if (runIndex || (optimizedChanged && env.isOptimizeDatabase())) {
                 IndexChangedListener progress = new DefaultIndexChangedListener();
-                getInstance().doIndexerExecution(update, subFiles, progress);
+                if (profileReport != null) {
+                    IndexingProfiler.start(profileSlowest);
+                }
+                try {
+                    getInstance().doIndexerExecution(update, subFiles, progress);
+                } finally {
+                    writeProfileReport();
+                }
             }
+            HistoryGuru.getInstance().awaitCacheCompletion();
+            ChangesetIndex.closeAll();
 
             writeConfigToFile(env, configFilename);
 
@@ -419,6 +444,7 @@ public final class Indexer {
 
         // An example of how to add a data type for option parsing
         OptionParser.accept(WebAddress.class, s -> { return parseWebAddress(s); });
+        OptionParser.accept(InetSocketAddress.class, MetricsHttpServer::parseAddress);
 
         optParser = OptionParser.Do(parser -> {
             parser.setPrologue(
@@ -505,6 +531,13 @@ public final class Indexer {
                 cfg.setGenerateHtml(false);
             });
 
+            parser.on("--fastRepositoryDiscovery",
+                "Discover repositories by a parallel walk of the source tree which",
+                "recognizes them by marker entries (e.g. .git, .hg, CVS). Repository",
+                "types without such an entry (e.g. Perforce, AccuRev) are not found.").Do(v -> {
+                cfg.setFastRepositoryDiscovery(true);
+            });
+
             parser.on("-G", "--assignTags",
                 "Assign commit tags to all entries in history for all repositories.").Do(v -> {
                 cfg.setTagsEnabled(true);
@@ -542,6 +575,13 @@ public final class Indexer {
                 }
             });
 
+            parser.on("--jointLexing", "=on|off", ON_OFF, Boolean.class,
+                "Collect the symbols while writing the xref instead of lexing the",
+                "files again for the symbol index (supported for C, C++, Java and",
+                "Python).").Do(v -> {
+                    cfg.setJointLexing((Boolean)v);
+            });
+
             parser.on("--leadingWildCards", "=on|off", ON_OFF, Boolean.class,
                 "Allow or disallow leading wildcards in a search.").Do(v -> {
                 cfg.setAllowLeadingWildcard((Boolean)v);
@@ -575,6 +615,15 @@ public final class Indexer {
                 }
             );
 
+            parser.on("--metricsPort", "=[host:]port", InetSocketAddress.class,
+                "Expose indexer metrics in Prometheus text format on",
+                "http://host:port/metrics while the indexer runs.",
+                "The metrics are not protected by authentication; without",
+                "a host only the loopback interface is used.").Do(address -> {
+                    metricsAddress = (InetSocketAddress)address;
+                }
+            );
+
             parser.on("-n", "--noIndex",
                 "Do not generate indexes, but process all other command line options.").Do(v -> {
                 runIndex = false;
@@ -621,6 +670,23 @@ public final class Indexer {
                 defaultProjects.add((String)v);
             });
 
+            parser.on("--profile", "=/path/to/report.json",
+                "Profile the indexing and write wall and CPU time spent in",
+                "individual phases (ctags, xref, history, Lucene etc.) overall",
+                "and per analyzer, and the slowest files to the JSON file.").Do(v -> {
+                    profileReport = (String)v;
+                }
+            );
+
+            parser.on("--profileSlowest", "=number", Integer.class,
+                "Number of the slowest files listed by --profile. Default is 100.").Do(v -> {
+                    profileSlowest = (Integer)v;
+                    if (profileSlowest < 0) {
+                        die("--profileSlowest must not be negative");
+                    }
+                }
+            );
+
             parser.on("--profiler", "Pause to await profiler or debugger.").
                 Do(v -> awaitProfiler = true);
 
@@ -686,6 +752,20 @@ public final class Indexer {
                     cfg.setHandleHistoryOfRenamedFiles((Boolean)v);
             });
 
+            parser.on("--changesetIndex", "=on|off", ON_OFF, Boolean.class,
+                "Enable or disable the index of changesets (one document per commit)",
+                "built along with the history cache. It is used for history search",
+                "context and for the RSS feed of directories.").Do(v -> {
+                    cfg.setChangesetIndex((Boolean)v);
+            });
+
+            parser.on("--repositoryMetadataCache", "=on|off", ON_OFF, Boolean.class,
+                "Enable or disable caching of parent, branch and current version of",
+                "repositories in the data root. The SCM commands determining them",
+                "are then run only for repositories whose metadata files changed.").Do(v -> {
+                    cfg.setRepositoryMetadataCache((Boolean)v);
+            });
+
             parser.on("-S", "--search",
                 "Search for \"external\" source repositories and add them.").Do(v -> {
                 searchRepositories = true;
@@ -785,6 +865,16 @@ public final class Indexer {
                 "(so that the web application can use the same configuration)").Do(configFile -> {
                 configFilename = (String)configFile;
             });
+
+            parser.on("--xrefCompressionLevel", "=number", Integer.class,
+                "Compression level (0-9) of the xref files if they are compressed.",
+                "Default is -1, i.e. the default level of the zlib library.").Do(level -> {
+                try {
+                    cfg.setXrefCompressionLevel((Integer)level);
+                } catch (IllegalArgumentException e) {
+                    die(e.getMessage());
+                }
+            });
         });
 
         // Need to read the configuration file first
@@ -946,6 +1036,7 @@ public final class Indexer {
                     projects.put(name, new Project(name, path));
                 }
             }
+            ProjectPathIndex.invalidate();
         }
         
         if (searchRepositories || listRepoPaths || !zapCache.isEmpty()) {
@@ -1129,6 +1220,9 @@ public final class Indexer {
                 LOGGER.log(Level.WARNING, "Received interrupt while waiting for executor to finish", exp);
             }
         }
+        // Finish the history cache creation which may have been running
+        // along with the indexing.
+        HistoryGuru.getInstance().awaitCacheCompletion();
         try {
             // It can happen that history index is not done in prepareIndexer()
             // but via db.update() above in which case we must make sure the
@@ -1164,6 +1258,20 @@ public final class Indexer {
         LOGGER.info("Configuration update routine done, check log output for errors.");
     }
 
+    private static void writeProfileReport() {
+        IndexingProfiler profiler = IndexingProfiler.stop();
+        if (profiler == null) {
+            return;
+        }
+        try {
+            profiler.writeReport(new File(profileReport));
+            LOGGER.log(Level.INFO, "Indexing profile of {0} files written to {1}",
+                    new Object[]{profiler.getFileCount(), profileReport});
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write indexing profile to " + profileReport, e);
+        }
+    }
+
     private static void pauseToAwaitProfiler() {
         Scanner scan = new Scanner(System.in);
         String in;
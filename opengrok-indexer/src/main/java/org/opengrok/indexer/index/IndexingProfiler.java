@@ -0,0 +1,531 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Opt-in profiler of the parallel indexing stage. It records wall and CPU
+ * time spent in the individual phases of indexing a file, aggregated overall
+ * and per analyzer factory, and keeps track of the slowest files.
+ * <p>
+ * The phases may nest (e.g. ctags runs inside the analysis), the time is
+ * always charged to the innermost phase only, so the phase times of a file add
+ * up to the total time of the file. Lucene consumes the token streams and the
+ * history reader lazily in {@code addDocument()}, hence the tokenization is
+ * part of the {@link Phase#INDEX} phase. CPU time is the time of the indexer
+ * thread, the CPU time of the ctags process itself is not included.
+ * <p>
+ * Besides the phases of the individual files, the profiler records the wall
+ * time of the coarse {@link Stage stages} of updating an index database.
+ * <p>
+ * When the profiler is not enabled, {@link #enter(Phase)} and {@link #exit()}
+ * only read a volatile field.
+ */
+public final class IndexingProfiler {
+
+    /**
+     * Phases of indexing a single file.
+     */
+    public enum Phase {
+        /** Everything not covered by the other phases. */
+        OTHER("other"),
+        /** Finding the analyzer for the file. */
+        DETECT("detect"),
+        /** Reading the history of the file. */
+        HISTORY("history"),
+        /** Analysis of the file not covered by ctags and xref. */
+        ANALYSIS("analysis"),
+        /** Running ctags on the file. */
+        CTAGS("ctags"),
+        /** Writing the cross reference of the file. */
+        XREF("xref"),
+        /** Adding the document to the Lucene index (incl. tokenization). */
+        INDEX("index");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Stages of updating an index database. The databases of the projects are
+     * updated in parallel, so the times of a stage are summed over them.
+     */
+    public enum Stage {
+        /** Waiting for the history cache of the repositories. */
+        HISTORY("history_wait"),
+        /** Traversal of the source tree to find the files to index. */
+        TRAVERSAL("traversal"),
+        /** Parallel analysis and indexing of the files. */
+        ANALYSIS("analysis"),
+        /** Committing the index and completing the pending files. */
+        COMMIT("commit"),
+        /** Merging the index segments. */
+        OPTIMIZE("optimize");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    private static final int STAGES = Stage.values().length;
+
+    private static final int MAX_DEPTH = 16;
+
+    private static volatile IndexingProfiler current;
+
+    private static final ThreadLocal<FileState> STATE = ThreadLocal.withInitial(FileState::new);
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+    private final int slowestCount;
+    private final long startNanos = System.nanoTime();
+
+    private final Costs total = new Costs();
+    private final AtomicLongArray stageWall = new AtomicLongArray(STAGES);
+    private final Map<String, Costs> byFactory = new ConcurrentHashMap<>();
+    private final PriorityQueue<FileCost> slowest =
+            new PriorityQueue<>(Comparator.comparingLong(f -> f.wall));
+
+    private IndexingProfiler(int slowestCount) {
+        this.slowestCount = slowestCount;
+        boolean supported;
+        try {
+            supported = threadBean.isCurrentThreadCpuTimeSupported();
+            if (supported && !threadBean.isThreadCpuTimeEnabled()) {
+                threadBean.setThreadCpuTimeEnabled(true);
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            supported = false;
+        }
+        cpuTimeSupported = supported;
+    }
+
+    /**
+     * Start profiling. Any previously running profiler is discarded.
+     * @param slowestCount number of the slowest files to keep track of
+     * @return the profiler
+     */
+    public static IndexingProfiler start(int slowestCount) {
+        if (slowestCount < 0) {
+            throw new IllegalArgumentException("slowestCount must not be negative");
+        }
+        IndexingProfiler profiler = new IndexingProfiler(slowestCount);
+        current = profiler;
+        return profiler;
+    }
+
+    /**
+     * Stop profiling.
+     * @return the profiler which was running or {@code null}
+     */
+    public static IndexingProfiler stop() {
+        IndexingProfiler profiler = current;
+        current = null;
+        return profiler;
+    }
+
+    /**
+     * @return whether the profiler is running
+     */
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * Start profiling of a file on the current thread.
+     */
+    static void beginFile() {
+        IndexingProfiler profiler = current;
+        if (profiler == null) {
+            return;
+        }
+        FileState state = STATE.get();
+        state.reset();
+        state.profiler = profiler;
+        state.push(Phase.OTHER, profiler.wallTime(), profiler.cpuTime());
+    }
+
+    /**
+     * Finish profiling of the file started by {@link #beginFile()} on the
+     * current thread. The file is not recorded if the profiler was started or
+     * stopped in between.
+     * @param path path of the file relative to source root
+     * @param factory name of the analyzer factory used for the file
+     * @param size size of the file in bytes
+     */
+    static void endFile(String path, String factory, long size) {
+        FileState state = STATE.get();
+        IndexingProfiler profiler = state.profiler;
+        if (profiler == null) {
+            return;
+        }
+        state.charge(profiler.wallTime(), profiler.cpuTime());
+        state.profiler = null;
+        if (profiler == current) {
+            profiler.record(path, factory, size, state);
+        }
+    }
+
+    /**
+     * Enter the phase on the current thread. Each call must be paired with
+     * {@link #exit()}, typically in a {@code finally} block.
+     * @param phase the phase
+     */
+    public static void enter(Phase phase) {
+        if (current == null) {
+            return;
+        }
+        FileState state = STATE.get();
+        IndexingProfiler profiler = state.profiler;
+        if (profiler != null) {
+            state.push(phase, profiler.wallTime(), profiler.cpuTime());
+        }
+    }
+
+    /**
+     * Leave the phase entered by the last {@link #enter(Phase)} call on the
+     * current thread.
+     */
+    public static void exit() {
+        if (current == null) {
+            return;
+        }
+        FileState state = STATE.get();
+        IndexingProfiler profiler = state.profiler;
+        if (profiler != null) {
+            state.pop(profiler.wallTime(), profiler.cpuTime());
+        }
+    }
+
+    /**
+     * Start timing of a stage.
+     * @return the start time to pass to {@link #endStage(Stage, long)} or
+     * {@code 0} if the profiler is not running
+     */
+    static long beginStage() {
+        return current == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Finish timing of a stage started by {@link #beginStage()}.
+     * @param stage the stage
+     * @param start the value returned by {@link #beginStage()}
+     */
+    static void endStage(Stage stage, long start) {
+        IndexingProfiler profiler = current;
+        if (profiler != null && start != 0) {
+            profiler.stageWall.addAndGet(stage.ordinal(), System.nanoTime() - start);
+        }
+    }
+
+    private long wallTime() {
+        return System.nanoTime();
+    }
+
+    private long cpuTime() {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private void record(String path, String factory, long size, FileState state) {
+        total.add(size, state);
+        byFactory.computeIfAbsent(factory, f -> new Costs()).add(size, state);
+
+        if (slowestCount == 0) {
+            return;
+        }
+        long wall = state.totalWall();
+        synchronized (slowest) {
+            if (slowest.size() < slowestCount) {
+                slowest.add(new FileCost(path, factory, size, wall, state.totalCpu()));
+            } else if (slowest.peek().wall < wall) {
+                slowest.poll();
+                slowest.add(new FileCost(path, factory, size, wall, state.totalCpu()));
+            }
+        }
+    }
+
+    /**
+     * @param phase the phase
+     * @return the total wall time spent in the phase by all threads in
+     * nanoseconds
+     */
+    public long getWallTime(Phase phase) {
+        return total.getWallTime(phase);
+    }
+
+    /**
+     * @param stage the stage
+     * @return the total wall time spent in the stage by all index databases
+     * in nanoseconds
+     */
+    public long getStageTime(Stage stage) {
+        return stageWall.get(stage.ordinal());
+    }
+
+    /**
+     * @return number of profiled files
+     */
+    public long getFileCount() {
+        return total.getFiles();
+    }
+
+    /**
+     * @return total size of the profiled files in bytes
+     */
+    public long getByteCount() {
+        return total.getBytes();
+    }
+
+    /**
+     * @return the profile as a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("elapsed_ms", toMillis(System.nanoTime() - startNanos));
+        json.put("cpu_time_supported", cpuTimeSupported);
+        json.put("total", total.toJson());
+
+        JSONObject stages = new JSONObject();
+        for (Stage stage : Stage.values()) {
+            JSONObject st = new JSONObject();
+            st.put("wall_ms", toMillis(getStageTime(stage)));
+            stages.put(stage.getKey(), st);
+        }
+        json.put("stages", stages);
+
+        Map<String, JSONObject> factories = new TreeMap<>();
+        byFactory.forEach((name, costs) -> factories.put(name, costs.toJson()));
+        JSONObject analyzers = new JSONObject();
+        analyzers.putAll(factories);
+        json.put("analyzers", analyzers);
+
+        List<FileCost> files;
+        synchronized (slowest) {
+            files = new ArrayList<>(slowest);
+        }
+        files.sort(Comparator.comparingLong((FileCost f) -> f.wall).reversed());
+        JSONArray slowestFiles = new JSONArray();
+        for (FileCost f : files) {
+            JSONObject file = new JSONObject();
+            file.put("path", f.path);
+            file.put("analyzer", f.factory);
+            file.put("size", f.size);
+            file.put("wall_ms", toMillis(f.wall));
+            file.put("cpu_ms", toMillis(f.cpu));
+            slowestFiles.add(file);
+        }
+        json.put("slowest_files", slowestFiles);
+        return json;
+    }
+
+    /**
+     * Write the profile as JSON to the file.
+     * @param file output file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(File file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8)) {
+            toJson().writeJSONString(out);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * Phase times of the file being indexed by a thread.
+     */
+    private static final class FileState {
+        private IndexingProfiler profiler;
+        private final long[] wall = new long[PHASES];
+        private final long[] cpu = new long[PHASES];
+        private final Phase[] stack = new Phase[MAX_DEPTH];
+        private int depth;
+        private int overflow;
+        private long lastWall;
+        private long lastCpu;
+
+        void reset() {
+            for (int i = 0; i < PHASES; i++) {
+                wall[i] = 0;
+                cpu[i] = 0;
+            }
+            depth = 0;
+            overflow = 0;
+        }
+
+        void push(Phase phase, long nowWall, long nowCpu) {
+            if (depth == MAX_DEPTH) {
+                // too deep, keep charging the current phase
+                overflow++;
+                return;
+            }
+            if (depth > 0) {
+                charge(nowWall, nowCpu);
+            }
+            stack[depth++] = phase;
+            lastWall = nowWall;
+            lastCpu = nowCpu;
+        }
+
+        void pop(long nowWall, long nowCpu) {
+            if (overflow > 0) {
+                overflow--;
+            } else if (depth > 1) {
+                // the bottom phase is left by endFile()
+                charge(nowWall, nowCpu);
+                depth--;
+            }
+        }
+
+        void charge(long nowWall, long nowCpu) {
+            int phase = stack[depth - 1].ordinal();
+            wall[phase] += nowWall - lastWall;
+            cpu[phase] += nowCpu - lastCpu;
+            lastWall = nowWall;
+            lastCpu = nowCpu;
+        }
+
+        long totalWall() {
+            long sum = 0;
+            for (long w : wall) {
+                sum += w;
+            }
+            return sum;
+        }
+
+        long totalCpu() {
+            long sum = 0;
+            for (long c : cpu) {
+                sum += c;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Aggregated costs of a set of files.
+     */
+    private static final class Costs {
+        private long files;
+        private long bytes;
+        private final long[] wall = new long[PHASES];
+        private final long[] cpu = new long[PHASES];
+
+        synchronized void add(long size, FileState state) {
+            files++;
+            bytes += size;
+            for (int i = 0; i < PHASES; i++) {
+                wall[i] += state.wall[i];
+                cpu[i] += state.cpu[i];
+            }
+        }
+
+        synchronized long getFiles() {
+            return files;
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        synchronized long getWallTime(Phase phase) {
+            return wall[phase.ordinal()];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("files", files);
+            json.put("bytes", bytes);
+            long wallSum = 0;
+            long cpuSum = 0;
+            JSONObject phases = new JSONObject();
+            for (Phase phase : Phase.values()) {
+                int i = phase.ordinal();
+                JSONObject p = new JSONObject();
+                p.put("wall_ms", toMillis(wall[i]));
+                p.put("cpu_ms", toMillis(cpu[i]));
+                phases.put(phase.getKey(), p);
+                wallSum += wall[i];
+                cpuSum += cpu[i];
+            }
+            json.put("wall_ms", toMillis(wallSum));
+            json.put("cpu_ms", toMillis(cpuSum));
+            json.put("phases", phases);
+            return json;
+        }
+    }
+
+    private static final class FileCost {
+        final String path;
+        final String factory;
+        final long size;
+        final long wall;
+        final long cpu;
+
+        FileCost(String path, String factory, long size, long wall, long cpu) {
+            this.path = path;
+            this.factory = factory;
+            this.size = size;
+            this.wall = wall;
+            this.cpu = cpu;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter, optionally split by label values.
+ */
+public final class Counter extends Metric {
+
+    private final String[] labelNames;
+    private final Map<List<String>, LongAdder> children = new ConcurrentHashMap<>();
+
+    Counter(String name, String help, String... labelNames) {
+        super(name, help);
+        this.labelNames = labelNames.clone();
+    }
+
+    /**
+     * Increment the counter by one.
+     * @param labelValues values of the labels the counter was created with
+     */
+    public void inc(String... labelValues) {
+        add(1, labelValues);
+    }
+
+    /**
+     * Increment the counter.
+     * @param value the increment, should not be negative
+     * @param labelValues values of the labels the counter was created with
+     */
+    public void add(long value, String... labelValues) {
+        child(labelValues).add(value);
+    }
+
+    /**
+     * @param labelValues values of the labels the counter was created with
+     * @return current value of the counter
+     */
+    public long get(String... labelValues) {
+        LongAdder adder = children.get(Arrays.asList(labelValues));
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private LongAdder child(String[] labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length
+                    + " label values for " + getName() + ", got " + labelValues.length);
+        }
+        List<String> key = Arrays.asList(labelValues);
+        LongAdder adder = children.get(key);
+        if (adder == null) {
+            adder = children.computeIfAbsent(Arrays.asList(labelValues.clone()), k -> new LongAdder());
+        }
+        return adder;
+    }
+
+    @Override
+    String getType() {
+        return "counter";
+    }
+
+    @Override
+    void writeSamples(StringBuilder out) {
+        Map<String, Long> sorted = new TreeMap<>();
+        for (Map.Entry<List<String>, LongAdder> entry : children.entrySet()) {
+            StringBuilder sample = new StringBuilder(getName());
+            writeLabels(labelNames, entry.getKey().toArray(new String[0]), sample);
+            sorted.put(sample.toString(), entry.getValue().sum());
+        }
+        if (sorted.isEmpty() && labelNames.length == 0) {
+            sorted.put(getName(), 0L);
+        }
+        for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+    }
+}
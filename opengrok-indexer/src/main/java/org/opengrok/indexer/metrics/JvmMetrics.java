@@ -0,0 +1,74 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Metrics of the JVM memory, garbage collection and threads.
+ */
+public final class JvmMetrics {
+
+    private JvmMetrics() {
+        // utility class
+    }
+
+    /**
+     * Register the JVM metrics. Calling this repeatedly is harmless.
+     * @param registry the registry
+     */
+    public static void register(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registry.gauge("jvm_memory_heap_used_bytes", "Used heap memory.",
+                () -> memory.getHeapMemoryUsage().getUsed());
+        registry.gauge("jvm_memory_heap_committed_bytes", "Committed heap memory.",
+                () -> memory.getHeapMemoryUsage().getCommitted());
+        registry.gauge("jvm_memory_heap_max_bytes", "Maximum heap memory, -1 if undefined.",
+                () -> memory.getHeapMemoryUsage().getMax());
+        registry.gauge("jvm_memory_nonheap_used_bytes", "Used non-heap memory.",
+                () -> memory.getNonHeapMemoryUsage().getUsed());
+
+        registry.counterFunction("jvm_gc_collections_total", "Number of garbage collections of all collectors.",
+                () -> {
+                    long count = 0;
+                    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                        count += Math.max(0, gc.getCollectionCount());
+                    }
+                    return count;
+                });
+        registry.counterFunction("jvm_gc_collection_seconds_total", "Time spent in garbage collections of all collectors.",
+                () -> {
+                    long millis = 0;
+                    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                        millis += Math.max(0, gc.getCollectionTime());
+                    }
+                    return millis / 1000.0;
+                });
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        registry.gauge("jvm_threads_live", "Number of live threads.", threads::getThreadCount);
+    }
+}
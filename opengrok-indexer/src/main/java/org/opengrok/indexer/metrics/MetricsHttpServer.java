@@ -0,0 +1,133 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.opengrok.indexer.logger.LoggerFactory;
+
+/**
+ * Minimal HTTP server exposing the metrics on {@code /metrics}, used by the
+ * indexer which does not run in a servlet container.
+ */
+public final class MetricsHttpServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+
+    /**
+     * Start the server in a daemon thread, listening on the loopback
+     * interface.
+     * @param port port to listen on
+     * @param registry metrics to expose
+     * @throws IOException if the server cannot be started
+     */
+    public MetricsHttpServer(int port, MetricsRegistry registry) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), registry);
+    }
+
+    /**
+     * Start the server in a daemon thread.
+     * @param address address to listen on, see {@link #parseAddress(String)}
+     * @param registry metrics to expose
+     * @throws IOException if the server cannot be started
+     */
+    public MetricsHttpServer(InetSocketAddress address, MetricsRegistry registry) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext(PATH, exchange -> handle(exchange, registry));
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        LOGGER.log(Level.INFO, "Metrics are available on {0}", server.getAddress());
+    }
+
+    /**
+     * Parse the listen address of the server. The metrics are not protected
+     * by any authentication so the loopback interface is used unless a host
+     * is given explicitly.
+     * @param address address in the form {@code [host:]port}, an IPv6 host
+     * is expected in brackets
+     * @return socket address
+     * @throws IllegalArgumentException if the address is not valid or the
+     * host cannot be resolved
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int i = address.lastIndexOf(':');
+        int port = Integer.parseInt(address.substring(i + 1));
+        if (i < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+
+        String host = address.substring(0, i);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            throw new IllegalArgumentException("Missing host in " + address);
+        }
+        InetSocketAddress result = new InetSocketAddress(host, port);
+        if (result.isUnresolved()) {
+            throw new IllegalArgumentException("Unknown host " + host);
+        }
+        return result;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void handle(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try {
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", MetricsRegistry.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the metrics of the indexer and the web application. The
+ * metrics are exposed in the Prometheus text exposition format (version
+ * 0.0.4) by the {@code /api/v1/metrics} endpoint of the web application or,
+ * for the indexer, by {@link MetricsHttpServer}.
+ * <p>
+ * The metrics are meant to be created once and kept in static fields of the
+ * instrumented classes.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the counter of given name, creating it if necessary.
+     * @param name metric name
+     * @param help description of the metric
+     * @param labelNames names of the labels
+     * @return the counter
+     */
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, () -> new Counter(name, help, labelNames));
+    }
+
+    /**
+     * Get the duration histogram of given name, creating it if necessary.
+     * @param name metric name, should end with {@code _seconds}
+     * @param help description of the metric
+     * @return the histogram
+     */
+    public Histogram histogram(String name, String help) {
+        return register(name, Histogram.class, () -> new Histogram(name, help));
+    }
+
+    /**
+     * Register gauge of given name. An existing gauge of the same name is
+     * replaced.
+     * @param name metric name
+     * @param help description of the metric
+     * @param supplier supplier of the current value
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        metrics.put(name, new Gauge(name, help, supplier));
+    }
+
+    /**
+     * Register counter of given name whose value is maintained outside of
+     * the registry. An existing metric of the same name is replaced.
+     * @param name metric name, should end with {@code _total}
+     * @param help description of the metric
+     * @param supplier supplier of the current value, which should never
+     * decrease
+     */
+    public void counterFunction(String name, String help, DoubleSupplier supplier) {
+        metrics.put(name, new CounterFunction(name, help, supplier));
+    }
+
+    private <T extends Metric> T register(String name, Class<T> type,
+            Supplier<T> factory) {
+        Metric metric = metrics.computeIfAbsent(name, n -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name
+                    + " is already registered as " + metric.getType());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * @return all metrics in the text exposition format sorted by name
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : new TreeMap<>(metrics).values()) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+}
@@ -36,6 +36,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.lucene.search.Query;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.ChangesetIndex;
 import org.opengrok.indexer.history.History;
 import org.opengrok.indexer.history.HistoryEntry;
 import org.opengrok.indexer.history.HistoryException;
@@ -54,6 +56,9 @@ public class HistoryContext {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HistoryContext.class);
 
+    private static final int MAX_MATCHED_LINES = 10;
+
+    private final Query query;
     private final LineMatcher[] m;
     HistoryLineTokenizer tokens;
 
@@ -66,6 +71,7 @@ public class HistoryContext {
             Collections.singletonMap(QueryBuilder.HIST, Boolean.TRUE);
 
     public HistoryContext(Query query) {
+        this.query = query;
         QueryMatchers qm = new QueryMatchers();
         m = qm.getMatchers(query, tokenFields);
         if(m != null) {
@@ -82,6 +88,9 @@ public class HistoryContext {
         if (m == null) {
             return false;
         }
+        if (getIndexedContext(path, null, hits, null)) {
+            return true;
+        }
         File f = new File(filename);
         return getHistoryContext(HistoryGuru.getInstance().getHistory(f),
                                  path, null, hits,null);
@@ -114,10 +123,49 @@ public class HistoryContext {
         if (m == null) {
             return false;
         }
+        if (getIndexedContext(path, out, null, context)) {
+            return true;
+        }
         History hist = HistoryGuru.getInstance().getHistory(src);
         return getHistoryContext(hist, path, out, null,context);
     }
 
+    /**
+     * Write matching changesets of the file found in the changeset index, if
+     * it is enabled. Only the changesets whose message matches the query are
+     * loaded instead of the complete history of the file.
+     *
+     * @return {@code true} if at least one line has been written out
+     */
+    private boolean getIndexedContext(String path, Writer out, List<Hit> hits, String wcontext) {
+        if (!RuntimeEnvironment.getInstance().isChangesetIndex()) {
+            return false;
+        }
+
+        ChangesetIndex index = ChangesetIndex.forPath(path);
+        if (index == null) {
+            return false;
+        }
+
+        int matchedLines = 0;
+        try {
+            ChangesetIndex.Result result = index.search(query, path, 0, MAX_MATCHED_LINES);
+            if (result == null) {
+                return false;
+            }
+            for (HistoryEntry he : result.getEntries()) {
+                if (matchedLines >= MAX_MATCHED_LINES) {
+                    break;
+                }
+                matchedLines += writeMatches(he, index.getPreviousRevision(path, he),
+                        path, out, hits, wcontext);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not get indexed history context for " + path, e);
+        }
+        return matchedLines > 0;
+    }
+
     /**
      * Writes matching History log entries from 'in' to 'out' or to 'hits'
      * @param in the history to fetch entries from
@@ -148,46 +196,15 @@ public class HistoryContext {
             HistoryEntry he;
             HistoryEntry nhe=null;
             String nrev;
-            while(( it.hasNext()||(nhe!=null) ) && matchedLines < 10) {
+            while(( it.hasNext()||(nhe!=null) ) && matchedLines < MAX_MATCHED_LINES) {
                 if (nhe==null) { he=it.next(); }
                 else { he=nhe; } //nhe is the lookahead revision
-                String line = he.getLine();
-                String rev = he.getRevision();
                 if (it.hasNext()) { nhe=it.next();  } //this prefetch mechanism is here because of the diff link generation
                                     // we currently generate the diff to previous revision
                 else {nhe=null;}
                 if (nhe==null) { nrev=null; }
                 else { nrev=nhe.getRevision(); }
-                tokens.reInit(line);
-                String token;
-                int matchState;
-                int start = -1;
-                while ((token = tokens.next()) != null) {
-                    for (int i = 0; i< m.length; i++) {
-                        matchState = m[i].match(token);
-                        if (matchState == LineMatcher.MATCHED) {
-                            if (start < 0) {
-                                start = tokens.getMatchStart();
-                            }
-                            int end = tokens.getMatchEnd();
-                            if (out == null) {
-                                StringBuilder sb = new StringBuilder();
-                                writeMatch(sb, line, start, end, true,path,wcontext,nrev,rev);
-                                hits.add(new Hit(path, sb.toString(), "", false, false));
-                            } else {
-                                writeMatch(out, line, start, end, false,path,wcontext,nrev,rev);
-                            }
-                            matchedLines++;
-                            break;
-                        } else if (matchState == LineMatcher.WAIT) {
-                            if (start < 0) {
-                                start = tokens.getMatchStart();
-                            }
-                        } else {
-                            start = -1;
-                        }
-                    }
-                }
+                matchedLines += writeMatches(he, nrev, path, out, hits, wcontext);
             }
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Could not get history context for " + path, e);
@@ -195,6 +212,50 @@ public class HistoryContext {
         return matchedLines > 0;
     }
 
+    /**
+     * Writes the matches in a single history entry to 'out' or to 'hits'.
+     * @param he the history entry
+     * @param nrev previous revision of the file
+     * @return number of matched lines
+     */
+    private int writeMatches(HistoryEntry he, String nrev, String path,
+            Writer out, List<Hit> hits, String wcontext) throws IOException {
+        int matchedLines = 0;
+        String line = he.getLine();
+        String rev = he.getRevision();
+        tokens.reInit(line);
+        String token;
+        int matchState;
+        int start = -1;
+        while ((token = tokens.next()) != null) {
+            for (int i = 0; i< m.length; i++) {
+                matchState = m[i].match(token);
+                if (matchState == LineMatcher.MATCHED) {
+                    if (start < 0) {
+                        start = tokens.getMatchStart();
+                    }
+                    int end = tokens.getMatchEnd();
+                    if (out == null) {
+                        StringBuilder sb = new StringBuilder();
+                        writeMatch(sb, line, start, end, true,path,wcontext,nrev,rev);
+                        hits.add(new Hit(path, sb.toString(), "", false, false));
+                    } else {
+                        writeMatch(out, line, start, end, false,path,wcontext,nrev,rev);
+                    }
+                    matchedLines++;
+                    break;
+                } else if (matchState == LineMatcher.WAIT) {
+                    if (start < 0) {
+                        start = tokens.getMatchStart();
+                    }
+                } else {
+                    start = -1;
+                }
+            }
+        }
+        return matchedLines;
+    }
+
     /**
      * Write a match to a stream.
      *
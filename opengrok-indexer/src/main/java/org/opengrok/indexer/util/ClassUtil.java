@@ -31,6 +31,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -245,27 +247,8 @@ public class ClassUtil {
     public static Object getFieldValue(Object obj, String field) throws IOException {
 
         try {
-            PropertyDescriptor desc = new PropertyDescriptor(field, obj.getClass());
-            Method getter = desc.getReadMethod();
-
-            if (getter == null) {
-                throw new IOException(
-                        String.format("No getter for the name \"%s\".", field));
-            }
-
-            if (getter.getParameterCount() != 0) {
-                /*
-                 * Actually should not happen as it is not considered as a
-                 * read method so an exception would be thrown earlier.
-                 */
-                throw new IOException(
-                        String.format("The getter \"%s\" for the name \"%s\" takes a parameter.",
-                                getter.getName(), field));
-            }
-            
-            return getter.invoke(obj);
-        } catch (IntrospectionException
-                | IllegalAccessException
+            return getGetter(obj, field).invoke(obj);
+        } catch (IllegalAccessException
                 | InvocationTargetException
                 | IllegalArgumentException ex) {
             throw new IOException(
@@ -278,4 +261,54 @@ public class ClassUtil {
                     ex);
         }
     }
+
+    /**
+     * Getters resolved by {@link #getGetter(Object, String)}. The lookup via
+     * {@link PropertyDescriptor} is way more expensive than the invocation
+     * itself, so it is done only once for each class and property.
+     */
+    private static final ClassValue<Map<String, Method>> GETTERS = new ClassValue<Map<String, Method>>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static Method getGetter(Object obj, String field) throws IOException {
+        Map<String, Method> getters = GETTERS.get(obj.getClass());
+        Method getter = getters.get(field);
+        if (getter != null) {
+            return getter;
+        }
+
+        try {
+            PropertyDescriptor desc = new PropertyDescriptor(field, obj.getClass());
+            getter = desc.getReadMethod();
+        } catch (IntrospectionException ex) {
+            throw new IOException(
+                    String.format("Unsupported operation with object of class %s for name \"%s\" - %s.",
+                            obj.getClass().toString(),
+                            field,
+                            ex.getLocalizedMessage()),
+                    ex);
+        }
+
+        if (getter == null) {
+            throw new IOException(
+                    String.format("No getter for the name \"%s\".", field));
+        }
+
+        if (getter.getParameterCount() != 0) {
+            /*
+             * Actually should not happen as it is not considered as a
+             * read method so an exception would be thrown earlier.
+             */
+            throw new IOException(
+                    String.format("The getter \"%s\" for the name \"%s\" takes a parameter.",
+                            getter.getName(), field));
+        }
+
+        getters.put(field, getter);
+        return getter;
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Output stream which writes a gzip member (RFC 1952) whose deflate data can
+ * be copied into another deflate stream without decompressing them.
+ * <p>
+ * The member is readable by any gzip decoder. It differs from the output of
+ * {@link java.util.zip.GZIPOutputStream} in two ways:
+ * <ul>
+ * <li>the header carries an extra field which marks the member as
+ * spliceable, see {@link #readHeader(InputStream)};</li>
+ * <li>the compressed data are ended with a sync flush and are followed by an
+ * empty final block, so that all data are byte-aligned and the last
+ * {@link #TAIL_LENGTH} bytes of the member are the final block and the gzip
+ * trailer.</li>
+ * </ul>
+ * A member spliced into another stream therefore consists of the bytes
+ * between the header and the tail; the CRC32 and the length from the trailer
+ * are needed to compute the trailer of the combined stream.
+ */
+public class SpliceableGZIPOutputStream extends DeflaterOutputStream {
+
+    /**
+     * Number of bytes at the end of the member which are not part of the
+     * spliceable data: the empty final block and the gzip trailer.
+     */
+    public static final int TAIL_LENGTH = 10;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * gzip header with the FEXTRA flag and an empty {@code OG} subfield.
+     */
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0x04, // ID1, ID2, CM, FLG
+        0, 0, 0, 0, // MTIME
+        0, (byte) 0xff, // XFL, OS (unknown)
+        4, 0, // XLEN
+        'O', 'G', 0, 0 // SI1, SI2, LEN
+    };
+
+    /**
+     * Empty final block with fixed Huffman codes.
+     */
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+
+    /**
+     * Creates a new instance and writes the gzip header.
+     * @param out the stream to write the member to
+     * @param level compression level
+     * @throws IOException if the header cannot be written
+     */
+    public SpliceableGZIPOutputStream(OutputStream out, int level)
+            throws IOException {
+        super(out, new Deflater(level, true), BUFFER_SIZE);
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("write beyond end of stream");
+        }
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        int len;
+        do {
+            len = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+            out.write(buf, 0, len);
+        } while (len == buf.length);
+        out.write(FINAL_BLOCK);
+
+        byte[] trailer = new byte[8];
+        putInt(trailer, 0, crc.getValue());
+        putInt(trailer, 4, def.getBytesRead());
+        out.write(trailer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            def.end();
+        }
+    }
+
+    /**
+     * Reads the header of a gzip member if it was written by this class.
+     * @param in stream positioned at the start of a gzip member, it must
+     * support {@link InputStream#mark(int)}
+     * @return {@code true} if the member is spliceable, in which case the
+     * stream is positioned after the header; {@code false} otherwise, in
+     * which case the stream is reset to its original position
+     * @throws IOException on I/O error
+     */
+    public static boolean readHeader(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER.length];
+        in.mark(header.length);
+        int len = 0;
+        int n;
+        while (len < header.length &&
+                (n = in.read(header, len, header.length - len)) != -1) {
+            len += n;
+        }
+        if (len == header.length && Arrays.equals(header, HEADER)) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+
+    /**
+     * Checks that the tail of a spliceable member starts with the expected
+     * empty final block.
+     * @param tail the last {@link #TAIL_LENGTH} bytes of the member
+     * @return {@code true} if the tail is well-formed
+     */
+    public static boolean isTail(byte[] tail) {
+        return tail.length == TAIL_LENGTH &&
+                tail[0] == FINAL_BLOCK[0] && tail[1] == FINAL_BLOCK[1];
+    }
+
+    private static void putInt(byte[] b, int off, long value) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.opengrok.indexer.analysis.FileAnalyzer.Genre;
+import org.suigeneris.jrcs.diff.Revision;
+
+/**
+ * Least recently used cache of computed diffs. Since both compared revisions
+ * are immutable the entries never need to be invalidated. The size of the
+ * cache is bounded by the total number of lines of the cached files.
+ */
+final class DiffCache {
+
+    /**
+     * Cached result of a diff. The instances are shared, so the content must
+     * not be modified.
+     */
+    static final class Entry {
+        final Genre genre;
+        final String[][] file;
+        final Revision revision;
+
+        Entry(Genre genre, String[][] file, Revision revision) {
+            this.genre = genre;
+            this.file = file;
+            this.revision = revision;
+        }
+
+        int lines() {
+            return file[0].length + file[1].length;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long lines;
+
+    /**
+     * Get the key identifying the diff of two revisions.
+     * @param path1 path of the original file relative to source root
+     * @param rev1 revision of the original file
+     * @param path2 path of the new file relative to source root
+     * @param rev2 revision of the new file
+     * @return cache key
+     */
+    static String key(String path1, String rev1, String path2, String rev2) {
+        return path1 + "@" + rev1 + "\n" + path2 + "@" + rev2;
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Add the entry to the cache and evict the least recently used entries
+     * exceeding the limit. Entries larger than half of the limit are not
+     * cached at all.
+     * @param key cache key
+     * @param entry the diff
+     * @param maxLines maximum number of lines held by the cache
+     */
+    synchronized void put(String key, Entry entry, int maxLines) {
+        if (entry.lines() > maxLines / 2) {
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            lines -= old.lines();
+        }
+        lines += entry.lines();
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (lines > maxLines && it.hasNext()) {
+            lines -= it.next().lines();
+            it.remove();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        lines = 0;
+    }
+}
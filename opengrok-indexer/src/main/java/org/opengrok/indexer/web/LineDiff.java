@@ -0,0 +1,298 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.web;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.suigeneris.jrcs.diff.DiffAlgorithm;
+import org.suigeneris.jrcs.diff.Revision;
+import org.suigeneris.jrcs.diff.delta.Chunk;
+import org.suigeneris.jrcs.diff.delta.Delta;
+
+/**
+ * Line based implementation of the Myers' O(ND) difference algorithm in its
+ * linear space variant, as used by GNU diff.
+ * <p>
+ * The lines are first mapped to integers so that they are compared only once
+ * by their {@code equals()}. Common prefix and suffix are skipped before the
+ * search. To bound the time spent on files with lots of differences (e.g.
+ * regenerated files) the search for the middle snake gives up after a number
+ * of edit steps proportional to the square root of the input size and picks
+ * the furthest reaching point instead, which produces a correct but possibly
+ * not minimal set of deltas.
+ */
+final class LineDiff implements DiffAlgorithm {
+
+    private static final int MIN_COST_LIMIT = 4096;
+
+    private int[] xv;
+    private int[] yv;
+    private boolean[] xchanged;
+    private boolean[] ychanged;
+    private int[] fd;
+    private int[] bd;
+    private int offset;
+    private int costLimit;
+    // bounds of the diagonals searched by diag()
+    private int fmin;
+    private int fmax;
+    private int bmin;
+    private int bmax;
+
+    @Override
+    public Revision diff(Object[] orig, Object[] rev) {
+        int n = orig.length;
+        int m = rev.length;
+        xv = new int[n];
+        yv = new int[m];
+        Map<Object, Integer> ids = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            xv[i] = ids.computeIfAbsent(orig[i], k -> ids.size());
+        }
+        for (int i = 0; i < m; i++) {
+            yv[i] = ids.computeIfAbsent(rev[i], k -> ids.size());
+        }
+
+        xchanged = new boolean[n];
+        ychanged = new boolean[m];
+        fd = new int[n + m + 3];
+        bd = new int[n + m + 3];
+        offset = m + 1;
+        costLimit = Math.max(MIN_COST_LIMIT,
+                1 << ((32 - Integer.numberOfLeadingZeros(n + m + 3)) / 2));
+
+        compareSeq(0, n, 0, m);
+
+        Revision revision = buildRevision(orig, rev);
+        xv = yv = fd = bd = null;
+        xchanged = ychanged = null;
+        return revision;
+    }
+
+    /**
+     * Mark the changed lines of {@code xv[xoff, xlim)} and
+     * {@code yv[yoff, ylim)}.
+     */
+    private void compareSeq(int xoff, int xlim, int yoff, int ylim) {
+        while (true) {
+            while (xoff < xlim && yoff < ylim && xv[xoff] == yv[yoff]) {
+                xoff++;
+                yoff++;
+            }
+            while (xlim > xoff && ylim > yoff && xv[xlim - 1] == yv[ylim - 1]) {
+                xlim--;
+                ylim--;
+            }
+
+            if (xoff == xlim) {
+                for (int i = yoff; i < ylim; i++) {
+                    ychanged[i] = true;
+                }
+                return;
+            }
+            if (yoff == ylim) {
+                for (int i = xoff; i < xlim; i++) {
+                    xchanged[i] = true;
+                }
+                return;
+            }
+
+            long split = diag(xoff, xlim, yoff, ylim);
+            int xmid = (int) (split >> 32);
+            int ymid = (int) split;
+            if ((xmid == xoff && ymid == yoff) || (xmid == xlim && ymid == ylim)) {
+                // no progress, should not happen
+                for (int i = xoff; i < xlim; i++) {
+                    xchanged[i] = true;
+                }
+                for (int i = yoff; i < ylim; i++) {
+                    ychanged[i] = true;
+                }
+                return;
+            }
+
+            // recurse into the smaller part, iterate over the other one
+            if ((xmid - xoff) + (ymid - yoff) < (xlim - xmid) + (ylim - ymid)) {
+                compareSeq(xoff, xmid, yoff, ymid);
+                xoff = xmid;
+                yoff = ymid;
+            } else {
+                compareSeq(xmid, xlim, ymid, ylim);
+                xlim = xmid;
+                ylim = ymid;
+            }
+        }
+    }
+
+    /**
+     * Find the midpoint of the shortest edit script for the given part of
+     * the sequences.
+     * @return the split point with x in the upper 32 bits and y in the lower
+     */
+    private long diag(int xoff, int xlim, int yoff, int ylim) {
+        final int dmin = xoff - ylim;
+        final int dmax = xlim - yoff;
+        final int fmid = xoff - yoff;
+        final int bmid = xlim - ylim;
+        final boolean odd = ((fmid - bmid) & 1) != 0;
+        fmin = fmid;
+        fmax = fmid;
+        bmin = bmid;
+        bmax = bmid;
+
+        fd[offset + fmid] = xoff;
+        bd[offset + bmid] = xlim;
+
+        for (int c = 1;; c++) {
+            // extend the forward search by one edit step
+            if (fmin > dmin) {
+                fd[offset + --fmin - 1] = -1;
+            } else {
+                ++fmin;
+            }
+            if (fmax < dmax) {
+                fd[offset + ++fmax + 1] = -1;
+            } else {
+                --fmax;
+            }
+            for (int d = fmax; d >= fmin; d -= 2) {
+                int tlo = fd[offset + d - 1];
+                int thi = fd[offset + d + 1];
+                int x = tlo >= thi ? tlo + 1 : thi;
+                int y = x - d;
+                while (x < xlim && y < ylim && xv[x] == yv[y]) {
+                    x++;
+                    y++;
+                }
+                fd[offset + d] = x;
+                if (odd && bmin <= d && d <= bmax && bd[offset + d] <= x) {
+                    return pack(x, y);
+                }
+            }
+
+            // extend the backward search by one edit step
+            if (bmin > dmin) {
+                bd[offset + --bmin - 1] = Integer.MAX_VALUE;
+            } else {
+                ++bmin;
+            }
+            if (bmax < dmax) {
+                bd[offset + ++bmax + 1] = Integer.MAX_VALUE;
+            } else {
+                --bmax;
+            }
+            for (int d = bmax; d >= bmin; d -= 2) {
+                int tlo = bd[offset + d - 1];
+                int thi = bd[offset + d + 1];
+                int x = tlo < thi ? tlo : thi - 1;
+                int y = x - d;
+                while (x > xoff && y > yoff && xv[x - 1] == yv[y - 1]) {
+                    x--;
+                    y--;
+                }
+                bd[offset + d] = x;
+                if (!odd && fmin <= d && d <= fmax && x <= fd[offset + d]) {
+                    return pack(x, y);
+                }
+            }
+
+            if (c >= costLimit) {
+                return bestSplit(xoff, xlim, yoff, ylim);
+            }
+        }
+    }
+
+    /**
+     * The search is too expensive, use the point which is the furthest along
+     * either the forward or the backward search.
+     */
+    private long bestSplit(int xoff, int xlim, int yoff, int ylim) {
+        int fxybest = -1;
+        int fxbest = xoff;
+        for (int d = fmax; d >= fmin; d -= 2) {
+            int x = Math.min(fd[offset + d], xlim);
+            int y = x - d;
+            if (ylim < y) {
+                x = ylim + d;
+                y = ylim;
+            }
+            if (fxybest < x + y) {
+                fxybest = x + y;
+                fxbest = x;
+            }
+        }
+
+        int bxybest = Integer.MAX_VALUE;
+        int bxbest = xlim;
+        for (int d = bmax; d >= bmin; d -= 2) {
+            int x = Math.max(xoff, bd[offset + d]);
+            int y = x - d;
+            if (y < yoff) {
+                x = yoff + d;
+                y = yoff;
+            }
+            if (x + y < bxybest) {
+                bxybest = x + y;
+                bxbest = x;
+            }
+        }
+
+        if ((xlim + ylim) - bxybest < fxybest - (xoff + yoff)) {
+            return pack(fxbest, fxybest - fxbest);
+        } else {
+            return pack(bxbest, bxybest - bxbest);
+        }
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private Revision buildRevision(Object[] orig, Object[] rev) {
+        Revision revision = new Revision();
+        int i = 0;
+        int j = 0;
+        while (i < xchanged.length || j < ychanged.length) {
+            if (i < xchanged.length && j < ychanged.length
+                    && !xchanged[i] && !ychanged[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int i0 = i;
+            int j0 = j;
+            while (i < xchanged.length && xchanged[i]) {
+                i++;
+            }
+            while (j < ychanged.length && ychanged[j]) {
+                j++;
+            }
+            if (i == i0 && j == j0) {
+                break; // unbalanced change marks, should not happen
+            }
+            revision.addDelta(Delta.newDelta(new Chunk(orig, i0, i - i0),
+                    new Chunk(rev, j0, j - j0)));
+        }
+        return revision;
+    }
+}
@@ -54,6 +54,8 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.HttpHeaders;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.opengrok.indexer.Info;
 import org.opengrok.indexer.analysis.AnalyzerGuru;
 import org.opengrok.indexer.analysis.ExpandTabsReader;
@@ -68,6 +70,7 @@ import org.opengrok.indexer.history.HistoryEntry;
 import org.opengrok.indexer.history.HistoryException;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.index.IgnoredNames;
+import org.opengrok.indexer.index.IndexDatabase;
 import org.opengrok.indexer.logger.LoggerFactory;
 import org.opengrok.indexer.search.QueryBuilder;
 import org.opengrok.indexer.util.IOUtils;
@@ -133,6 +136,8 @@ public final class PageConfig {
      */
     private final Scripts scripts = new Scripts();
 
+    private static final DiffCache DIFF_CACHE = new DiffCache();
+
     private static final String ATTR_NAME = PageConfig.class.getCanonicalName();
     private HttpServletRequest req;
 
@@ -240,6 +245,18 @@ public final class PageConfig {
         data.genre = AnalyzerGuru.getGenre(getResourceFile().getName());
 
         if (data.genre == null || txtGenres.contains(data.genre)) {
+            String cacheKey = DiffCache.key(filepath[0], data.rev[0], filepath[1], data.rev[1]);
+            DiffCache.Entry cached = DIFF_CACHE.get(cacheKey);
+            if (cached != null) {
+                // diff.jsp modifies the lines, so give it a copy
+                data.genre = cached.genre;
+                data.file[0] = cached.file[0].clone();
+                data.file[1] = cached.file[1].clone();
+                data.revision = cached.revision;
+                setDiffParams(data, filepath);
+                return data;
+            }
+
             InputStream[] in = new InputStream[2];
             try {
                 // Get input stream for both older and newer file.
@@ -254,6 +271,12 @@ public final class PageConfig {
                     }
                 }
 
+                // Reuse the file type detected by the indexer for the latest
+                // revision before inspecting the contents of the revisions.
+                if (data.genre == null) {
+                    data.genre = getIndexedGenre();
+                }
+
                 /*
                  * If the genre of the older revision cannot be determined,
                  * (this can happen if the file was empty), try with newer
@@ -300,26 +323,52 @@ public final class PageConfig {
                 return data;
             }
             try {
-                data.revision = Diff.diff(data.file[0], data.file[1]);
+                data.revision = Diff.diff(data.file[0], data.file[1], new LineDiff());
+                int cacheLines = getEnv().getDiffCacheLines();
+                if (cacheLines > 0) {
+                    DIFF_CACHE.put(cacheKey, new DiffCache.Entry(data.genre,
+                            new String[][]{data.file[0].clone(), data.file[1].clone()},
+                            data.revision), cacheLines);
+                }
             } catch (DifferentiationFailedException e) {
                 data.errorMsg = "Unable to get diffs: "
                         + Util.htmlize(e.getMessage());
             }
-            for (int i = 0; i < 2; i++) {
-                try {
-                    URI u = new URI(null, null, null,
-                            filepath[i] + "@" + data.rev[i], null);
-                    data.param[i] = u.getRawQuery();
-                } catch (URISyntaxException e) {
-                    LOGGER.log(Level.WARNING, "Failed to create URI: ", e);
-                }
-            }
-            data.full = fullDiff();
-            data.type = getDiffType();
+            setDiffParams(data, filepath);
         }
         return data;
     }
 
+    private void setDiffParams(DiffData data, String[] filepath) {
+        for (int i = 0; i < 2; i++) {
+            try {
+                URI u = new URI(null, null, null,
+                        filepath[i] + "@" + data.rev[i], null);
+                data.param[i] = u.getRawQuery();
+            } catch (URISyntaxException e) {
+                LOGGER.log(Level.WARNING, "Failed to create URI: ", e);
+            }
+        }
+        data.full = fullDiff();
+        data.type = getDiffType();
+    }
+
+    /**
+     * Get the genre of the file type which the indexer detected for the latest
+     * revision of the requested file.
+     *
+     * @return the genre or {@code null} if the file is not indexed
+     */
+    private Genre getIndexedGenre() {
+        try {
+            Document doc = IndexDatabase.getDocument(getResourceFile());
+            return doc == null ? null : AnalyzerGuru.getGenre(
+                    AnalyzerGuru.findByFileTypeName(doc.get(QueryBuilder.TYPE)));
+        } catch (IOException | ParseException e) {
+            LOGGER.log(Level.FINE, "Failed to get the indexed file type", e);
+            return null;
+        }
+    }
     /**
      * Get the diff display type to use wrt. the request parameter
      * {@code format}.
@@ -25,6 +25,12 @@ package org.opengrok.indexer.web;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import org.json.simple.JSONArray;
@@ -32,6 +38,11 @@ import org.json.simple.JSONObject;
 
 /**
  * Framework for statistics gathering. So far used only by the webapp.
+ * <p>
+ * The statistics are updated on every request from several places, so all
+ * counters are lock-free ({@link LongAdder} and {@link LongAccumulator}) to
+ * avoid contention. The request times of each category are also recorded in
+ * a {@link LatencyHistogram} to provide percentiles.
  *
  * @author Krystof Tulinger
  */
@@ -41,6 +52,10 @@ public class Statistics {
     protected static final String STATISTIC_TIMING_MIN = "timing_min";
     protected static final String STATISTIC_TIMING_MAX = "timing_max";
     protected static final String STATISTIC_TIMING_AVG = "timing_avg";
+    protected static final String STATISTIC_TIMING_P50 = "timing_p50";
+    protected static final String STATISTIC_TIMING_P95 = "timing_p95";
+    protected static final String STATISTIC_TIMING_P99 = "timing_p99";
+    protected static final String STATISTIC_TIMING_HISTOGRAM = "timing_histogram";
     protected static final String STATISTIC_REQUEST_CATEGORIES = "request_categories";
     protected static final String STATISTIC_REQUESTS = "requests";
     protected static final String STATISTIC_MINUTES = "minutes";
@@ -51,72 +66,115 @@ public class Statistics {
     protected static final String STATISTIC_DAY_HISTOGRAM = "day_histogram";
     protected static final String STATISTIC_MONTH_HISTOGRAM = "month_histogram";
 
-    private Map<String, Long> requestCategories = new TreeMap<>();
-    private Map<String, Long> timing = new TreeMap<>();
-    private Map<String, Long> timingMin = new TreeMap<>();
-    private Map<String, Long> timingMax = new TreeMap<>();
-    private long[] dayHistogram = new long[24];
-    private long[] monthHistogram = new long[31];
-    private long timeStart = System.currentTimeMillis();
-    private long requests = 0;
-    private long minutes = 1;
-    private long requestsPerMinute = 0;
-    private long requestsPerMinuteMin = Long.MAX_VALUE;
-    private long requestsPerMinuteMax = Long.MIN_VALUE;
+    /**
+     * Counters of a single request category.
+     */
+    private static final class Category {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder timing = new LongAdder();
+        private final LongAccumulator timingMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator timingMax = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private volatile boolean timed;
+    }
+
+    /**
+     * Hour of day and day of month valid for the current hour, so that the
+     * calendar does not have to be consulted on every request.
+     */
+    private static final class HourOfDay {
+        private final int hour;
+        private final int day;
+        private final long from;
+        private final long until;
+
+        private HourOfDay(long now) {
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(now);
+            hour = cal.get(Calendar.HOUR_OF_DAY);
+            day = cal.get(Calendar.DAY_OF_MONTH);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            from = cal.getTimeInMillis();
+            cal.add(Calendar.HOUR_OF_DAY, 1);
+            until = cal.getTimeInMillis();
+        }
+    }
+
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+    private final AtomicLongArray dayHistogram = new AtomicLongArray(24);
+    private final AtomicLongArray monthHistogram = new AtomicLongArray(31);
+    private final AtomicLong timeStart = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder requests = new LongAdder();
+    private final AtomicLong minutes = new AtomicLong(1);
+    private final LongAdder requestsPerMinute = new LongAdder();
+    private final LongAccumulator requestsPerMinuteMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator requestsPerMinuteMax = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private volatile HourOfDay hourOfDay = new HourOfDay(System.currentTimeMillis());
 
     /**
      * Adds a single request into all requests.
      */
-    synchronized public void addRequest() {
+    public void addRequest() {
         maybeRefresh();
 
-        requestsPerMinute++;
-        requests++;
+        requestsPerMinute.increment();
+        requests.increment();
 
-        if (requestsPerMinute > requestsPerMinuteMax) {
-            requestsPerMinuteMax = requestsPerMinute;
-        }
-        if (requestsPerMinute < requestsPerMinuteMin) {
-            requestsPerMinuteMin = requestsPerMinute;
-        }
+        long perMinute = requestsPerMinute.sum();
+        requestsPerMinuteMax.accumulate(perMinute);
+        requestsPerMinuteMin.accumulate(perMinute);
 
-        dayHistogram[Calendar.getInstance().get(Calendar.HOUR_OF_DAY)]++;
-        monthHistogram[Calendar.getInstance().get(Calendar.DAY_OF_MONTH) - 1]++;
+        HourOfDay now = getHourOfDay();
+        dayHistogram.incrementAndGet(now.hour);
+        monthHistogram.incrementAndGet(now.day - 1);
+    }
+
+    private HourOfDay getHourOfDay() {
+        long now = System.currentTimeMillis();
+        HourOfDay current = hourOfDay;
+        if (now < current.from || now >= current.until) {
+            current = new HourOfDay(now);
+            hourOfDay = current;
+        }
+        return current;
     }
 
     /**
      * Refreshes the last timestamp and number of minutes since start if needed.
      */
-    synchronized protected void maybeRefresh() {
-        if (timeStart + 60 * 1000 <= System.currentTimeMillis()) {
+    protected void maybeRefresh() {
+        long now = System.currentTimeMillis();
+        long start = timeStart.get();
+        if (start + 60 * 1000 <= now && timeStart.compareAndSet(start, now)) {
             // several minutes have passed
-            minutes += (System.currentTimeMillis() - timeStart) / (60 * 1000);
-            timeStart = System.currentTimeMillis();
-            requestsPerMinute = 0;
+            minutes.addAndGet((now - start) / (60 * 1000));
+            requestsPerMinute.reset();
         }
     }
 
+    private Category getCategory(String category) {
+        return categories.computeIfAbsent(category, c -> new Category());
+    }
+
     /**
      * Adds a request into the category
      *
      * @param category category
      */
-    synchronized public void addRequest(String category) {
-        Long val = requestCategories.get(category);
-        if (val == null) {
-            val = 0L;
-        }
-        val += 1;
-        requestCategories.put(category, val);
+    public void addRequest(String category) {
+        getCategory(category).requests.increment();
     }
-    
+
     /**
      * Get value of given counter
      * @param category category
      * @return Long value
      */
-    synchronized public Long getRequest(String category) {
-        return requestCategories.get(category);
+    public Long getRequest(String category) {
+        Category c = categories.get(category);
+        return c == null ? null : c.requests.sum();
     }
 
     /**
@@ -125,43 +183,47 @@ public class Statistics {
      * @param category category
      * @param v time spent on processing this request
      */
-    synchronized public void addRequestTime(String category, long v) {
-        addRequest(category);
-        Long val = timing.get(category);
-        Long min = timingMin.get(category);
-        Long max = timingMax.get(category);
-
-        if (val == null) {
-            val = 0L;
-        }
-        if (max == null || v > max) {
-            max = v;
-        }
-        if (min == null || v < min) {
-            min = v;
-        }
-
-        val += v;
+    public void addRequestTime(String category, long v) {
+        Category c = getCategory(category);
+        c.requests.increment();
+        c.timing.add(v);
+        c.timingMin.accumulate(v);
+        c.timingMax.accumulate(v);
+        c.histogram.record(v);
+        c.timed = true;
+    }
 
-        timing.put(category, val);
-        timingMin.put(category, min);
-        timingMax.put(category, max);
+    /**
+     * Get a snapshot of a value of all categories.
+     * @param value the value of the category
+     * @param timedOnly whether only categories with request times should be
+     * included
+     * @return the map of values sorted by category
+     */
+    private Map<String, Long> snapshot(ToLongFunction<Category> value, boolean timedOnly) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Category> entry : categories.entrySet()) {
+            if (!timedOnly || entry.getValue().timed) {
+                result.put(entry.getKey(), value.applyAsLong(entry.getValue()));
+            }
+        }
+        return result;
     }
 
     public Map<String, Long> getRequestCategories() {
-        return requestCategories;
+        return snapshot(c -> c.requests.sum(), false);
     }
 
     public Map<String, Long> getTiming() {
-        return timing;
+        return snapshot(c -> c.timing.sum(), true);
     }
 
     public Map<String, Long> getTimingMin() {
-        return timingMin;
+        return snapshot(c -> c.timingMin.get(), true);
     }
 
     public Map<String, Long> getTimingMax() {
-        return timingMax;
+        return snapshot(c -> c.timingMax.get(), true);
     }
 
     /**
@@ -172,104 +234,180 @@ public class Statistics {
      */
     public Map<String, Double> getTimingAvg() {
         Map<String, Double> timingAvg = new TreeMap<>();
-        for (Map.Entry<String, Long> entry : timing.entrySet()) {
-            timingAvg.put(entry.getKey(), entry.getValue().doubleValue()
-                    / requestCategories.get(entry.getKey()));
+        for (Map.Entry<String, Category> entry : categories.entrySet()) {
+            Category c = entry.getValue();
+            if (c.timed) {
+                timingAvg.put(entry.getKey(), c.timing.sum() / (double) c.requests.sum());
+            }
         }
         return timingAvg;
     }
 
-    synchronized public void setRequestCategories(Map<String, Long> requestCategories) {
-        this.requestCategories = requestCategories;
+    /**
+     * Get the request time at given percentile for all categories. Only the
+     * request times recorded since the histograms were introduced are taken
+     * into account.
+     *
+     * @param percentile percentile in range (0, 100]
+     * @return map of values for each category
+     */
+    public Map<String, Long> getTimingPercentile(double percentile) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Category> entry : categories.entrySet()) {
+            Category c = entry.getValue();
+            long value = c.histogram.getValueAtPercentile(percentile);
+            if (value >= 0) {
+                result.put(entry.getKey(), Math.min(value, c.timingMax.get()));
+            }
+        }
+        return result;
     }
 
-    synchronized public void setTiming(Map<String, Long> timing) {
-        this.timing = timing;
+    private Map<String, Map<String, Long>> getTimingHistogram() {
+        Map<String, Map<String, Long>> result = new TreeMap<>();
+        for (Map.Entry<String, Category> entry : categories.entrySet()) {
+            Map<String, Long> counts = new TreeMap<>();
+            entry.getValue().histogram.getCounts().forEach((k, v) -> counts.put(k.toString(), v));
+            if (!counts.isEmpty()) {
+                result.put(entry.getKey(), counts);
+            }
+        }
+        return result;
+    }
+
+    private void setTimingHistogram(Map<String, Map<String, Long>> histograms) {
+        for (Map.Entry<String, Map<String, Long>> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = getCategory(entry.getKey()).histogram;
+            for (Map.Entry<String, Long> count : entry.getValue().entrySet()) {
+                try {
+                    histogram.addCount(Integer.parseInt(count.getKey()), count.getValue());
+                } catch (NumberFormatException e) {
+                    // ignore the bucket
+                }
+            }
+        }
     }
 
-    synchronized public void setTimingMin(Map<String, Long> timing_min) {
-        this.timingMin = timing_min;
+    public void setRequestCategories(Map<String, Long> requestCategories) {
+        categories.values().forEach(c -> c.requests.reset());
+        requestCategories.forEach((k, v) -> getCategory(k).requests.add(v));
     }
 
-    synchronized public void setTimingMax(Map<String, Long> timing_max) {
-        this.timingMax = timing_max;
+    public void setTiming(Map<String, Long> timing) {
+        categories.values().forEach(c -> {
+            c.timing.reset();
+            c.timed = false;
+        });
+        timing.forEach((k, v) -> {
+            Category c = getCategory(k);
+            c.timing.add(v);
+            c.timed = true;
+        });
+    }
+
+    public void setTimingMin(Map<String, Long> timing_min) {
+        categories.values().forEach(c -> c.timingMin.reset());
+        timing_min.forEach((k, v) -> getCategory(k).timingMin.accumulate(v));
+    }
+
+    public void setTimingMax(Map<String, Long> timing_max) {
+        categories.values().forEach(c -> c.timingMax.reset());
+        timing_max.forEach((k, v) -> getCategory(k).timingMax.accumulate(v));
     }
 
     public long getTimeStart() {
-        return timeStart;
+        return timeStart.get();
     }
 
-    synchronized public void setTimeStart(long timeStart) {
-        this.timeStart = timeStart;
+    public void setTimeStart(long timeStart) {
+        this.timeStart.set(timeStart);
     }
 
     public long getRequests() {
-        return requests;
+        return requests.sum();
     }
 
-    synchronized public void setRequests(long requests) {
-        this.requests = requests;
+    public void setRequests(long requests) {
+        this.requests.reset();
+        this.requests.add(requests);
     }
 
     public long getMinutes() {
         maybeRefresh();
-        return minutes;
+        return minutes.get();
     }
 
-    synchronized public void setMinutes(long minutes) {
-        this.minutes = minutes;
+    public void setMinutes(long minutes) {
+        this.minutes.set(minutes);
     }
 
     public long getRequestsPerMinute() {
         maybeRefresh();
-        return requestsPerMinute;
+        return requestsPerMinute.sum();
     }
 
-    synchronized public void setRequestsPerMinute(long requestsPerMinute) {
-        this.requestsPerMinute = requestsPerMinute;
+    public void setRequestsPerMinute(long requestsPerMinute) {
+        this.requestsPerMinute.reset();
+        this.requestsPerMinute.add(requestsPerMinute);
     }
 
     public long getRequestsPerMinuteMin() {
         if (getRequests() <= 0) {
             return 0;
         }
-        return requestsPerMinuteMin;
+        return requestsPerMinuteMin.get();
     }
 
-    synchronized public void setRequestsPerMinuteMin(long requestsPerMinuteMin) {
-        this.requestsPerMinuteMin = requestsPerMinuteMin;
+    public void setRequestsPerMinuteMin(long requestsPerMinuteMin) {
+        this.requestsPerMinuteMin.reset();
+        this.requestsPerMinuteMin.accumulate(requestsPerMinuteMin);
     }
 
     public long getRequestsPerMinuteMax() {
         if (getRequests() <= 0) {
             return 0;
         }
-        return requestsPerMinuteMax;
+        return requestsPerMinuteMax.get();
     }
 
-    synchronized public void setRequestsPerMinuteMax(long requestsPerMinuteMax) {
-        this.requestsPerMinuteMax = requestsPerMinuteMax;
+    public void setRequestsPerMinuteMax(long requestsPerMinuteMax) {
+        this.requestsPerMinuteMax.reset();
+        this.requestsPerMinuteMax.accumulate(requestsPerMinuteMax);
     }
 
     public double getRequestsPerMinuteAvg() {
         maybeRefresh();
-        return requests / (double) minutes;
+        return getRequests() / (double) minutes.get();
     }
 
     public long[] getDayHistogram() {
-        return dayHistogram;
+        return toArray(dayHistogram);
     }
 
-    synchronized public void setDayHistogram(long[] dayHistogram) {
-        this.dayHistogram = dayHistogram;
+    public void setDayHistogram(long[] dayHistogram) {
+        fromArray(dayHistogram, this.dayHistogram);
     }
 
     public long[] getMonthHistogram() {
-        return monthHistogram;
+        return toArray(monthHistogram);
+    }
+
+    public void setMonthHistogram(long[] monthHistogram) {
+        fromArray(monthHistogram, this.monthHistogram);
     }
 
-    synchronized public void setMonthHistogram(long[] monthHistogram) {
-        this.monthHistogram = monthHistogram;
+    private static long[] toArray(AtomicLongArray array) {
+        long[] result = new long[array.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i);
+        }
+        return result;
+    }
+
+    private static void fromArray(long[] source, AtomicLongArray target) {
+        for (int i = 0; i < target.length(); i++) {
+            target.set(i, i < source.length ? source[i] : 0);
+        }
     }
 
     /**
@@ -324,6 +462,9 @@ public class Statistics {
         if ((o = input.get(STATISTIC_MONTH_HISTOGRAM)) != null) {
             stats.setMonthHistogram(convertJSONArrayToArray((JSONArray) o, stats.getMonthHistogram()));
         }
+        if ((o = input.get(STATISTIC_TIMING_HISTOGRAM)) != null) {
+            stats.setTimingHistogram((Map<String, Map<String, Long>>) o);
+        }
         stats.setTimeStart(System.currentTimeMillis());
         return stats;
     }
@@ -345,6 +486,10 @@ public class Statistics {
         output.put(STATISTIC_TIMING_MIN, new JSONObject(stats.getTimingMin()));
         output.put(STATISTIC_TIMING_MAX, new JSONObject(stats.getTimingMax()));
         output.put(STATISTIC_TIMING_AVG, new JSONObject(stats.getTimingAvg()));
+        output.put(STATISTIC_TIMING_P50, new JSONObject(stats.getTimingPercentile(50)));
+        output.put(STATISTIC_TIMING_P95, new JSONObject(stats.getTimingPercentile(95)));
+        output.put(STATISTIC_TIMING_P99, new JSONObject(stats.getTimingPercentile(99)));
+        output.put(STATISTIC_TIMING_HISTOGRAM, new JSONObject(stats.getTimingHistogram()));
         output.put(STATISTIC_MINUTES, stats.getMinutes());
         output.put(STATISTIC_REQUESTS, stats.getRequests());
         output.put(STATISTIC_REQUESTS_PER_MINUTE, stats.getRequestsPerMinute());
@@ -392,6 +537,9 @@ public class Statistics {
                 + "\nntimingMin = " + getTimingMin().toString()
                 + "\nntimingMax = " + getTimingMax().toString()
                 + "\nntimingAvg = " + getTimingAvg().toString()
+                + "\ntimingP50 = " + getTimingPercentile(50).toString()
+                + "\ntimingP95 = " + getTimingPercentile(95).toString()
+                + "\ntimingP99 = " + getTimingPercentile(99).toString()
                 + "\nminutes = " + getMinutes()
                 + "\nrequests = " + getRequests()
                 + "\nrequestsPerMinute = " + getRequestsPerMinute()
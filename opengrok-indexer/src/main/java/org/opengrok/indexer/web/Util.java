@@ -40,6 +40,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.text.DecimalFormat;
@@ -237,8 +238,23 @@ public final class Util {
      */
     public static void htmlize(CharSequence q, Appendable dest, boolean pre)
             throws IOException {
-        for (int i = 0; i < q.length(); i++) {
-            htmlize(q.charAt(i), dest, pre);
+        int len = q.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = q.charAt(i);
+            if (needsHtmlize(c, pre)) {
+                // write the run of characters which need no escaping at once
+                if (start < i) {
+                    dest.append(q, start, i);
+                }
+                htmlize(c, dest, pre);
+                start = i + 1;
+            }
+        }
+        if (start == 0) {
+            dest.append(q);
+        } else if (start < len) {
+            dest.append(q, start, len);
         }
     }
 
@@ -272,8 +288,20 @@ public final class Util {
         if (cs.length < length) {
             len = cs.length;
         }
-        for (int i = 0; i < len; i++) {
-            htmlize(cs[i], dest, false);
+        if (dest instanceof Writer) {
+            Writer out = (Writer) dest;
+            int start = 0;
+            for (int i = 0; i < len; i++) {
+                char c = cs[i];
+                if (needsHtmlize(c, false)) {
+                    out.write(cs, start, i - start);
+                    htmlize(c, dest, false);
+                    start = i + 1;
+                }
+            }
+            out.write(cs, start, len - start);
+        } else {
+            htmlize(CharBuffer.wrap(cs, 0, len), dest, false);
         }
     }
 
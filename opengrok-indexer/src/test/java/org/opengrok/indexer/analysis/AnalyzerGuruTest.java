@@ -24,6 +24,7 @@
 
 package org.opengrok.indexer.analysis;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -299,6 +300,45 @@ public class AnalyzerGuruTest {
             AnalyzerGuru.getAnalyzer(in, "dummy").getClass());
     }
 
+    @Test
+    public void shouldMatchHashbangAfterLongWhitespace() throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 90; i++) {
+            b.append(' ');
+        }
+        b.append("#!/usr/bin/perl -w");
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                b.toString().getBytes("US-ASCII"));
+        assertNotSame("despite hashbang past the opening limit,",
+            PerlAnalyzer.class,
+            AnalyzerGuru.getAnalyzer(in, "dummy").getClass());
+
+        in = new ByteArrayInputStream(
+                b.substring(80).getBytes("US-ASCII"));
+        assertSame("despite Perl hashbang after whitespace,",
+            PerlAnalyzer.class,
+            AnalyzerGuru.getAnalyzer(in, "dummy").getClass());
+    }
+
+    @Test
+    public void shouldMatchHashbangFromTricklingStream() throws IOException {
+        byte[] perl = "#!/usr/bin/perl -w\n".getBytes("US-ASCII");
+        InputStream trickle = new ByteArrayInputStream(perl) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+        InputStream in = new BufferedInputStream(trickle);
+        assertSame("despite single-byte reads,", PerlAnalyzer.class,
+            AnalyzerGuru.getAnalyzer(in, "dummy").getClass());
+    }
+
     @Test
     public void shouldMatchELFMagic() throws Exception {
         byte[] elfmt = {(byte)0x7F, 'E', 'L', 'F', (byte) 2, (byte) 2, (byte) 1,
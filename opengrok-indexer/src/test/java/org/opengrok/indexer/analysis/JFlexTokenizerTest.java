@@ -39,6 +39,7 @@ import org.opengrok.indexer.analysis.lisp.LispSymbolTokenizer;
 import org.opengrok.indexer.analysis.perl.PerlSymbolTokenizer;
 import org.opengrok.indexer.analysis.plain.PlainFullTokenizer;
 import org.opengrok.indexer.analysis.plain.PlainSymbolTokenizer;
+import org.opengrok.indexer.analysis.python.PythonSymbolTokenizer;
 import org.opengrok.indexer.analysis.scala.ScalaSymbolTokenizer;
 import org.opengrok.indexer.analysis.sh.ShSymbolTokenizer;
 import org.opengrok.indexer.analysis.tcl.TclSymbolTokenizer;
@@ -67,6 +68,7 @@ public class JFlexTokenizerTest {
         testOffsetAttribute(PerlSymbolTokenizer.class);
         testOffsetAttribute(PlainFullTokenizer.class);
         testOffsetAttribute(PlainSymbolTokenizer.class);
+        testOffsetAttribute(PythonSymbolTokenizer.class);
         testOffsetAttribute(ScalaSymbolTokenizer.class);
         testOffsetAttribute(ShSymbolTokenizer.class);
         testOffsetAttribute(TclSymbolTokenizer.class);
@@ -121,6 +123,37 @@ public class JFlexTokenizerTest {
         assertEquals("wrong number of tokens", expectedTokens.length, count);
     }
 
+    /**
+     * Test that symbols passed as ranges of the scanner buffer are copied
+     * correctly also when the buffer is refilled or enlarged in the middle
+     * of the input, and that keywords are still skipped.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSymbolsFromScannerBuffer() throws Exception {
+        StringBuilder input = new StringBuilder();
+        int count = 0;
+        while (input.length() < 100000) {
+            input.append("int sym").append(count).append(" = 0;\n");
+            count++;
+        }
+        // a symbol longer than the default scanner buffer
+        StringBuilder longSym = new StringBuilder("x");
+        while (longSym.length() < 20000) {
+            longSym.append("yz");
+        }
+        input.append(longSym).append("();\n");
+
+        String[] expectedTokens = new String[count + 1];
+        for (int i = 0; i < count; i++) {
+            expectedTokens[i] = "sym" + i;
+        }
+        expectedTokens[count] = longSym.toString();
+        testOffsetAttribute(CSymbolTokenizer.class, input.toString(),
+                expectedTokens);
+    }
+
     /**
      * The fix for bug #15858 caused a regression in ShSymbolTokenizer where
      * variables on the form {@code ${VARIABLE}} were not correctly indexed if
@@ -0,0 +1,145 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.junit.Test;
+import org.opengrok.indexer.analysis.c.CAnalyzerFactory;
+import org.opengrok.indexer.analysis.c.CxxAnalyzerFactory;
+import org.opengrok.indexer.analysis.java.JavaAnalyzerFactory;
+import org.opengrok.indexer.analysis.python.PythonAnalyzerFactory;
+import org.opengrok.indexer.search.QueryBuilder;
+
+/**
+ * Tests that the symbols collected by the xref lexers are the same as the
+ * tokens of the symbol tokenizers for the languages supporting joint lexing.
+ */
+public class JointLexingTest {
+
+    private static String readResource(String name) throws IOException {
+        InputStream res = JointLexingTest.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull(name + " as resource", res);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(res, StandardCharsets.UTF_8))) {
+            return in.lines().collect(Collectors.joining("\n", "", "\n"));
+        }
+    }
+
+    private static List<PendingToken> tokenize(FileAnalyzer analyzer, String text) throws IOException {
+        List<PendingToken> tokens = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream(QueryBuilder.REFS, new StringReader(text))) {
+            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offset = ts.addAttribute(OffsetAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(new PendingToken(term.toString(), offset.startOffset(), offset.endOffset()));
+            }
+            ts.end();
+        }
+        return tokens;
+    }
+
+    private static void testJointLexing(FileAnalyzerFactory factory, String resource)
+            throws IOException {
+        String text = readResource(resource);
+        FileAnalyzer analyzer = factory.getAnalyzer();
+        assertTrue(analyzer.supportsJointLexing());
+
+        List<PendingToken> expected = tokenize(analyzer, text);
+        assertTrue(expected.size() > 0);
+
+        StringWriter plainXref = new StringWriter();
+        analyzer.writeXref(new WriteXrefArgs(new StringReader(text), plainXref));
+
+        List<PendingToken> symbols = new ArrayList<>();
+        StringWriter jointXref = new StringWriter();
+        WriteXrefArgs args = new WriteXrefArgs(new StringReader(text), jointXref);
+        args.setSymbols(symbols);
+        assertTrue(analyzer.writeXref(args).canCollectSymbols());
+
+        assertEquals(plainXref.toString(), jointXref.toString());
+        assertEquals(expected.size(), symbols.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("symbol #" + i, expected.get(i), symbols.get(i));
+        }
+    }
+
+    @Test
+    public void testXrefWithoutSymbolCollector() throws IOException {
+        Xrefer xref = mock(Xrefer.class);
+        TextAnalyzer analyzer = new TextAnalyzer(new CAnalyzerFactory()) {
+            @Override
+            protected Xrefer newXref(Reader reader) {
+                return xref;
+            }
+        };
+
+        List<PendingToken> symbols = new ArrayList<>();
+        WriteXrefArgs args = new WriteXrefArgs(new StringReader("int a;"), new StringWriter());
+        args.setSymbols(symbols);
+        assertFalse(analyzer.writeXref(args).canCollectSymbols());
+        verify(xref, never()).setSymbolCollector(any());
+        assertTrue(symbols.isEmpty());
+    }
+
+    @Test
+    public void testC() throws IOException {
+        testJointLexing(new CAnalyzerFactory(), "analysis/c/sample.c");
+    }
+
+    @Test
+    public void testCxx() throws IOException {
+        testJointLexing(new CxxAnalyzerFactory(), "analysis/c/sample.cc");
+    }
+
+    @Test
+    public void testJava() throws IOException {
+        testJointLexing(new JavaAnalyzerFactory(), "analysis/java/Sample.jav");
+    }
+
+    @Test
+    public void testPython() throws IOException {
+        testJointLexing(new PythonAnalyzerFactory(), "analysis/python/sample.py");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.authorization;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengrok.indexer.configuration.Group;
+import org.opengrok.indexer.configuration.Project;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.web.DummyHttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AuthorizationDecisionCacheTest {
+
+    private final RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+    private final AtomicInteger checks = new AtomicInteger();
+    private int savedTTL;
+    private int savedSize;
+
+    @Before
+    public void setUp() {
+        savedTTL = env.getAuthorizationCacheTTL();
+        savedSize = env.getAuthorizationCacheSize();
+    }
+
+    @After
+    public void tearDown() {
+        env.setAuthorizationCacheTTL(savedTTL);
+        env.setAuthorizationCacheSize(savedSize);
+    }
+
+    @Test
+    public void testVersionAndSize() {
+        AuthorizationDecisionCache cache = new AuthorizationDecisionCache();
+        cache.configure(2, 60);
+        cache.put("a", true, 1);
+        cache.put("b", false, 1);
+        assertTrue(cache.get("a", 1));
+        cache.put("c", true, 1);
+
+        // "b" was the least recently used
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", 1));
+        assertTrue(cache.get("c", 1));
+
+        // computed with an older plugin version
+        assertNull(cache.get("a", 2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        AuthorizationDecisionCache cache = new AuthorizationDecisionCache();
+        cache.configure(10, 0);
+        assertFalse(cache.isEnabled());
+        cache.put("a", true, 1);
+        assertNull(cache.get("a", 1));
+    }
+
+    private AuthorizationFramework createFramework() {
+        AuthorizationStack stack = new AuthorizationStack(AuthControlFlag.REQUIRED, "stack");
+        stack.add(new AuthorizationPlugin(AuthControlFlag.REQUIRED, new TestPlugin() {
+            @Override
+            public boolean isAllowed(HttpServletRequest request, Project project) {
+                checks.incrementAndGet();
+                return project.getName().startsWith("allowed");
+            }
+
+            @Override
+            public boolean isAllowed(HttpServletRequest request, Group group) {
+                checks.incrementAndGet();
+                return group.getName().startsWith("allowed");
+            }
+        }));
+        AuthorizationFramework framework = new AuthorizationFramework(null, stack);
+        // no plugin directory, only configures the decision cache
+        framework.reload();
+        framework.loadAllPlugins(stack);
+        return framework;
+    }
+
+    private static DummyHttpServletRequest createRequest(String user) {
+        return new DummyHttpServletRequest() {
+            @Override
+            public String getRemoteUser() {
+                return user;
+            }
+        };
+    }
+
+    @Test
+    public void testCachedAcrossRequests() {
+        env.setAuthorizationCacheTTL(60);
+        env.setAuthorizationCacheSize(100);
+        AuthorizationFramework framework = createFramework();
+        Project allowed = new Project("allowed" + Math.random());
+        Project denied = new Project("denied" + Math.random());
+
+        DummyHttpServletRequest req = createRequest("alice");
+        assertTrue(framework.isAllowed(req, allowed));
+        assertFalse(framework.isAllowed(req, denied));
+        assertEquals(2, checks.get());
+
+        // next request of the same session
+        req.removeAttribute("plugin_framework_project_cache");
+        assertTrue(framework.isAllowed(req, allowed));
+        assertFalse(framework.isAllowed(req, denied));
+        assertEquals(2, checks.get());
+
+        // other session is evaluated separately
+        assertTrue(framework.isAllowed(createRequest("alice"), allowed));
+        assertEquals(3, checks.get());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        env.setAuthorizationCacheTTL(0);
+        AuthorizationFramework framework = createFramework();
+        Project allowed = new Project("allowed" + Math.random());
+
+        DummyHttpServletRequest req = createRequest(null);
+        assertTrue(framework.isAllowed(req, allowed));
+        req.removeAttribute("plugin_framework_project_cache");
+        assertTrue(framework.isAllowed(req, allowed));
+        assertEquals(2, checks.get());
+    }
+}
@@ -110,6 +110,51 @@ public class ProjectTest {
         assertNull(Project.getProject("/foof/ha.c"));
     }
 
+    /**
+     * Test that the project lookup follows the changes of the projects.
+     */
+    @Test
+    public void testGetProjectAfterChanges() {
+        Project foo = new Project("foo", "/foo");
+        Project nested = new Project("nested", "/foo/sub/nested");
+        HashMap<String, Project> projects = new HashMap<>();
+        projects.put("foo", foo);
+        projects.put("nested", nested);
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        env.setProjectsEnabled(true);
+        env.setProjects(projects);
+
+        // the longest project path wins
+        assertEquals(nested, Project.getProject("/foo/sub/nested/a/b.c"));
+        assertEquals(foo, Project.getProject("/foo/sub/b.c"));
+        assertNull(Project.getProject("/"));
+
+        // new project in the map
+        Project bar = new Project("bar", "/bar");
+        projects.put("bar", bar);
+        assertEquals(bar, Project.getProject("/bar/b.c"));
+
+        // changed path
+        bar.setPath("/baz");
+        assertNull(Project.getProject("/bar/b.c"));
+        assertEquals(bar, Project.getProject("/baz/b.c"));
+
+        // replaced project, the size of the map stays the same
+        Project qux = new Project("qux", "/qux");
+        projects.remove("bar");
+        projects.put("qux", qux);
+        ProjectPathIndex.invalidate();
+        assertNull(Project.getProject("/baz/b.c"));
+        assertEquals(qux, Project.getProject("/qux"));
+
+        // new map
+        HashMap<String, Project> other = new HashMap<>();
+        other.put("bar", bar);
+        env.setProjects(other);
+        assertNull(Project.getProject("/foo/b.c"));
+        assertEquals(bar, Project.getProject("/baz"));
+    }
+
     /**
      * Test getProjectDescriptions().
      */
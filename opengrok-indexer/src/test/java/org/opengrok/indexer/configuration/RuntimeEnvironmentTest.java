@@ -268,6 +268,17 @@ public class RuntimeEnvironmentTest {
         assertFalse(instance.isCompressXref());
     }
 
+    @Test
+    public void testXrefCompressionLevel() {
+        RuntimeEnvironment instance = RuntimeEnvironment.getInstance();
+        assertEquals(-1, instance.getXrefCompressionLevel());
+        instance.setXrefCompressionLevel(1);
+        assertEquals(1, instance.getXrefCompressionLevel());
+        // invalid levels are rejected by the configuration
+        instance.setXrefCompressionLevel(10);
+        assertEquals(1, instance.getXrefCompressionLevel());
+    }
+
     @Test
     public void testQuickContextScan() {
         RuntimeEnvironment instance = RuntimeEnvironment.getInstance();
@@ -23,6 +23,11 @@
 
 package org.opengrok.indexer.history;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -153,4 +158,46 @@ public class AnnotationTest {
         assertEquals("testfile.tst", instance.getFilename());
     }
 
+    /**
+     * Test of writeCompact and readCompact methods, of class Annotation.
+     */
+    @Test
+    public void compactRoundTrip() throws IOException {
+        Annotation instance = new Annotation("testfile.tst");
+        instance.addLine("1.0", "Author", true);
+        instance.addLine("1.1", "Author <2>", false);
+        instance.addLine("1.0", "Author", true);
+        instance.addDesc("1.0", "summary: first");
+        instance.addDesc("1.1", "summary: <second>");
+        instance.addFileVersion("1.0", 1);
+        instance.addFileVersion("1.1", 2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            instance.writeCompact(out);
+        }
+        Annotation copy;
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = Annotation.readCompact(in);
+        }
+
+        assertEquals("testfile.tst", copy.getFilename());
+        assertEquals(3, copy.size());
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(instance.getRevision(i), copy.getRevision(i));
+            assertEquals(instance.getAuthor(i), copy.getAuthor(i));
+            assertEquals(instance.isEnabled(i), copy.isEnabled(i));
+        }
+        assertEquals(instance.getDesc("1.1"), copy.getDesc("1.1"));
+        assertEquals(2, copy.getFileVersion("1.1"));
+        assertEquals(2, copy.getFileVersionsCount());
+        assertEquals(instance.getWidestAuthor(), copy.getWidestAuthor());
+    }
+
+    @Test
+    public void encodeCacheRevision() {
+        assertEquals("r1.2", FileAnnotationCache.encodeRevision("1.2"));
+        assertEquals("x612f62", FileAnnotationCache.encodeRevision("a/b"));
+    }
 }
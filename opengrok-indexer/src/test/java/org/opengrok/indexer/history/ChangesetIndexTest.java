@@ -0,0 +1,198 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengrok.indexer.configuration.Project;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.search.QueryBuilder;
+import org.opengrok.indexer.util.IOUtils;
+
+public class ChangesetIndexTest {
+
+    private RuntimeEnvironment env;
+    private File dataRoot;
+    private String originalDataRoot;
+    private ChangesetIndex index;
+    private Repository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        env = RuntimeEnvironment.getInstance();
+        originalDataRoot = env.getDataRootPath();
+        dataRoot = Files.createTempDirectory("data").toFile();
+        env.setDataRoot(dataRoot.getAbsolutePath());
+        index = ChangesetIndex.getInstance(null);
+        repository = new GitRepository();
+        repository.setDirectoryNameRelative("/proj");
+
+        index.add(repository, Arrays.asList(
+                entry("3", 3000, "fix crash in parser", "/proj/src/parser.c"),
+                entry("2", 2000, "update documentation", "/proj/doc/README", "/proj/src/main.c"),
+                entry("1", 1000, "initial parser", "/proj/src/parser.c", "/proj/src/main.c")));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ChangesetIndex.closeAll();
+        IOUtils.removeRecursive(dataRoot.toPath());
+        env.setDataRoot(originalDataRoot);
+    }
+
+    private static HistoryEntry entry(String revision, long time, String message, String... files) {
+        HistoryEntry entry = new HistoryEntry(revision, new Date(time), "author", null, message, true);
+        for (String file : files) {
+            entry.addFile(file);
+        }
+        return entry;
+    }
+
+    private static List<String> revisions(ChangesetIndex.Result result) {
+        return result.getEntries().stream().map(HistoryEntry::getRevision).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testHistoryOfPaths() throws IOException {
+        assertEquals(Arrays.asList("3", "2", "1"), revisions(index.getHistory("/proj", 0, 10)));
+        assertEquals(Arrays.asList("3", "2", "1"), revisions(index.getHistory("/proj/src/", 0, 10)));
+        assertEquals(Arrays.asList("2"), revisions(index.getHistory("/proj/doc", 0, 10)));
+        assertEquals(Arrays.asList("3", "1"), revisions(index.getHistory("/proj/src/parser.c", 0, 10)));
+        assertEquals(Arrays.asList("3", "2"),
+                revisions(index.getHistory(Arrays.asList("/proj/doc", "/proj/src/parser.c"), 0, 2)));
+        assertEquals(0, index.getHistory("/pro", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void testPaging() throws IOException {
+        ChangesetIndex.Result result = index.getHistory("/proj", 1, 1);
+        assertEquals(3, result.getTotalHits());
+        assertEquals(Arrays.asList("2"), revisions(result));
+        assertEquals(Arrays.asList("1"), revisions(index.getHistory("/proj", 2, 5)));
+    }
+
+    @Test
+    public void testEntryContent() throws IOException {
+        HistoryEntry entry = index.getHistory("/proj/doc", 0, 1).getEntries().get(0);
+        assertEquals("author", entry.getAuthor());
+        assertEquals("update documentation", entry.getMessage());
+        assertEquals(2000, entry.getDate().getTime());
+        assertEquals(Arrays.asList("/proj/doc/README", "/proj/src/main.c"),
+                Arrays.asList(entry.getFiles().toArray()));
+    }
+
+    @Test
+    public void testSearch() throws IOException, ParseException {
+        QueryBuilder builder = new QueryBuilder().setHist("parser").setFreetext("foo");
+        assertEquals(Arrays.asList("3", "1"),
+                revisions(index.search(builder.build(), "/proj", 0, 10)));
+        assertEquals(Arrays.asList("1"),
+                revisions(index.search(builder.build(), "/proj/src/main.c", 0, 10)));
+        assertEquals(0, index.search(new QueryBuilder().setFreetext("foo").build(),
+                "/proj", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void testPreviousRevision() throws IOException {
+        List<HistoryEntry> entries = index.getHistory("/proj/src/parser.c", 0, 10).getEntries();
+        assertEquals("1", index.getPreviousRevision("/proj/src/parser.c", entries.get(0)));
+        assertNull(index.getPreviousRevision("/proj/src/parser.c", entries.get(1)));
+    }
+
+    @Test
+    public void testUpdateAndClear() throws IOException {
+        index.add(repository, Arrays.asList(
+                entry("3", 3000, "fix crash in parser", "/proj/src/parser.c"),
+                entry("4", 4000, "new feature", "/proj/src/feature.c")));
+        assertEquals(Arrays.asList("4", "3", "2", "1"), revisions(index.getHistory("/proj", 0, 10)));
+
+        Repository other = new GitRepository();
+        other.setDirectoryNameRelative("/other");
+        index.add(other, Arrays.asList(entry("1", 500, "other", "/other/file")));
+        index.clear(repository);
+        assertEquals(0, index.getHistory("/proj", 0, 10).getTotalHits());
+        assertEquals(Arrays.asList("1"), revisions(index.getHistory("/", 0, 10)));
+    }
+
+    @Test
+    public void testProjects() throws IOException {
+        assertSame(index, ChangesetIndex.forPath("/proj"));
+
+        boolean projectsEnabled = env.isProjectsEnabled();
+        Map<String, Project> projects = env.getProjects();
+        try {
+            Project proj = new Project("proj", "/proj");
+            Map<String, Project> map = new TreeMap<>();
+            map.put(proj.getName(), proj);
+            env.setProjectsEnabled(true);
+            env.setProjects(map);
+
+            ChangesetIndex projIndex = ChangesetIndex.forPath("/proj/src/parser.c");
+            assertSame(ChangesetIndex.getInstance(proj), projIndex);
+            assertNull(ChangesetIndex.forPath("/other/file"));
+
+            projIndex.add(repository, Arrays.asList(entry("5", 5000, "project", "/proj/file")));
+            assertTrue(new File(dataRoot, "changesets/proj").isDirectory());
+            assertEquals(Arrays.asList("5"), revisions(projIndex.getHistory("/proj", 0, 10)));
+            assertEquals(Arrays.asList("3", "2", "1"), revisions(index.getHistory("/proj", 0, 10)));
+        } finally {
+            env.setProjects(projects);
+            env.setProjectsEnabled(projectsEnabled);
+        }
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        Project proj = new Project("proj", "/proj");
+        ChangesetIndex projIndex = ChangesetIndex.getInstance(proj);
+        projIndex.add(repository, Arrays.asList(entry("5", 5000, "project", "/proj/file")));
+        File dir = new File(dataRoot, "changesets/proj");
+        assertTrue(dir.isDirectory());
+
+        ChangesetIndex.remove(proj);
+        assertFalse(dir.exists());
+
+        // A project added again with the same name starts with an empty index.
+        ChangesetIndex added = ChangesetIndex.getInstance(proj);
+        assertNotSame(projIndex, added);
+        assertNull(added.getHistory("/proj", 0, 10));
+    }
+}
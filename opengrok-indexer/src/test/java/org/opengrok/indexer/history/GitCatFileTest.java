@@ -0,0 +1,192 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.util.IOUtils;
+
+public class GitCatFileTest {
+
+    private File repoDir;
+    private GitCatFile catFile;
+
+    private String git(String... args) throws IOException, InterruptedException {
+        String[] cmd = new String[args.length + 1];
+        cmd[0] = "git";
+        System.arraycopy(args, 0, cmd, 1, args.length);
+        Process process = new ProcessBuilder(cmd).directory(repoDir).redirectErrorStream(true).start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        }
+        assertEquals(0, process.waitFor());
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private void commit(String path, String content) throws IOException, InterruptedException {
+        File file = new File(repoDir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        git("add", path);
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "change " + path);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        repoDir = Files.createTempDirectory("gitcatfile").toFile();
+        try {
+            git("init", "-q");
+        } catch (IOException e) {
+            Assume.assumeNoException("git not available", e);
+        }
+        catFile = new GitCatFile("git", repoDir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (catFile != null) {
+            catFile.stop();
+        }
+        IOUtils.removeRecursive(repoDir.toPath());
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        commit("dir/a.txt", "first\n");
+        String first = git("rev-parse", "--short=8", "HEAD");
+        commit("dir/a.txt", "second\n");
+
+        assertArrayEquals("first\n".getBytes(StandardCharsets.UTF_8), catFile.get(first, "dir/a.txt"));
+        assertArrayEquals("second\n".getBytes(StandardCharsets.UTF_8), catFile.get("HEAD", "dir/a.txt"));
+        assertTrue(catFile.isRunning());
+
+        // missing file, unknown revision and directory
+        assertNull(catFile.get("HEAD", "dir/b.txt"));
+        assertNull(catFile.get("0000000000", "dir/a.txt"));
+        assertNull(catFile.get("HEAD", "dir"));
+
+        // the process still serves requests
+        assertArrayEquals("first\n".getBytes(StandardCharsets.UTF_8), catFile.get(first, "dir/a.txt"));
+    }
+
+    @Test
+    public void testCachedByHash() throws Exception {
+        commit("a.txt", "content\n");
+        String hash = git("rev-parse", "HEAD");
+        assertArrayEquals("content\n".getBytes(StandardCharsets.UTF_8), catFile.get(hash, "a.txt"));
+        catFile.stop();
+        assertArrayEquals("content\n".getBytes(StandardCharsets.UTF_8), catFile.get(hash, "a.txt"));
+        assertFalse(catFile.isRunning());
+
+        // symbolic revisions are not cached
+        catFile.get("HEAD", "a.txt");
+        assertTrue(catFile.isRunning());
+    }
+
+    @Test
+    public void testBranchNamedLikeHashNotCached() throws Exception {
+        commit("a.txt", "first\n");
+        git("branch", "deadbeef");
+        commit("a.txt", "second\n");
+        assertArrayEquals("first\n".getBytes(StandardCharsets.UTF_8), catFile.get("deadbeef", "a.txt"));
+        catFile.stop();
+
+        // the branch may move, so the content has to be read again
+        assertArrayEquals("first\n".getBytes(StandardCharsets.UTF_8), catFile.get("deadbeef", "a.txt"));
+        assertTrue(catFile.isRunning());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        File script = new File(repoDir, "stalled-git");
+        Files.write(script.toPath(), "#!/bin/sh\nexec sleep 60\n".getBytes(StandardCharsets.UTF_8));
+        Assume.assumeTrue(script.setExecutable(true));
+
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        int timeout = env.getInteractiveCommandTimeout();
+        env.setInteractiveCommandTimeout(1);
+        GitCatFile stalled = new GitCatFile(script.getAbsolutePath(), repoDir);
+        try {
+            long start = System.currentTimeMillis();
+            try {
+                stalled.get("HEAD", "a.txt");
+                fail("expected IOException");
+            } catch (IOException e) {
+                // the process was killed
+            }
+            assertTrue(System.currentTimeMillis() - start < 30000);
+            assertFalse(stalled.isRunning());
+        } finally {
+            stalled.stop();
+            env.setInteractiveCommandTimeout(timeout);
+        }
+    }
+
+    @Test
+    public void testRestartAfterStop() throws Exception {
+        commit("a.txt", "content\n");
+        assertArrayEquals("content\n".getBytes(StandardCharsets.UTF_8), catFile.get("HEAD", "a.txt"));
+        catFile.stop();
+        assertFalse(catFile.isRunning());
+        assertArrayEquals("content\n".getBytes(StandardCharsets.UTF_8), catFile.get("HEAD", "a.txt"));
+    }
+
+    @Test
+    public void testBlobCacheEviction() {
+        GitCatFile.BlobCache cache = new GitCatFile.BlobCache(100);
+        cache.put("a", new byte[20]);
+        cache.put("b", new byte[20]);
+        cache.put("huge", new byte[26]);
+        assertNull(cache.get("huge"));
+        cache.get("a");
+        cache.put("c", new byte[20]);
+        cache.put("d", new byte[20]);
+        cache.put("e", new byte[20]);
+        assertEquals(5, cache.size());
+        cache.put("f", new byte[20]);
+        // b is the least recently used one
+        assertNull(cache.get("b"));
+        assertEquals(5, cache.size());
+    }
+}
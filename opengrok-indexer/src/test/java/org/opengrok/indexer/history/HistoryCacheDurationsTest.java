@@ -0,0 +1,78 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.opengrok.indexer.index.IgnoredNames;
+import org.opengrok.indexer.util.TemporaryRootsRule;
+
+public class HistoryCacheDurationsTest {
+
+    @Rule
+    public TemporaryRootsRule roots = new TemporaryRootsRule();
+
+    @Test
+    public void testSaveAndLoad() {
+        Repository repo1 = new GitRepository();
+        repo1.setDirectoryNameRelative("/repo1");
+        Repository repo2 = new GitRepository();
+        repo2.setDirectoryNameRelative("/repo2");
+
+        HistoryCacheDurations durations = HistoryCacheDurations.load();
+        assertEquals(-1, durations.get(repo1));
+        durations.put(repo1, 1234);
+        durations.save();
+
+        durations = HistoryCacheDurations.load();
+        assertEquals(1234, durations.get(repo1));
+        assertEquals(-1, durations.get(repo2));
+    }
+
+    @Test
+    public void testDeferredCompletion() {
+        File repoDir = new File(roots.getSourceRoot(), "repo");
+        assertTrue(new File(repoDir, ".git").mkdirs());
+        HistoryGuru guru = HistoryGuru.getInstance();
+        guru.addRepositories(new File[]{roots.getSourceRoot()}, new IgnoredNames());
+        guru.setDeferCacheCompletion(true);
+        try {
+            guru.createCache(Collections.singletonList("/repo"));
+            guru.awaitCache(new File(repoDir, "dir"));
+            guru.awaitCacheCompletion();
+        } finally {
+            guru.setDeferCacheCompletion(false);
+            guru.invalidateRepositories(null, false);
+        }
+
+        Repository repo = new GitRepository();
+        repo.setDirectoryNameRelative("/repo");
+        assertTrue(new File(roots.getDataRoot(), HistoryCacheDurations.FILE_NAME).isFile());
+        assertTrue(HistoryCacheDurations.load().get(repo) >= 0);
+    }
+}
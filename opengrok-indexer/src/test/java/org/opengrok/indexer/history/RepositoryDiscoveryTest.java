@@ -0,0 +1,125 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.index.IgnoredNames;
+import org.opengrok.indexer.util.TemporaryRootsRule;
+
+public class RepositoryDiscoveryTest {
+
+    @Rule
+    public TemporaryRootsRule roots = new TemporaryRootsRule();
+
+    private void mkdirs(String path) {
+        File dir = new File(roots.getSourceRoot(), path);
+        assertTrue(dir.mkdirs());
+    }
+
+    private List<String> discover(IgnoredNames ignoredNames, int depth) {
+        return RepositoryDiscovery.discover(new File[]{roots.getSourceRoot()}, ignoredNames, depth, 2).stream().
+                map(r -> r.getClass().getSimpleName() + ":" + r.getDirectoryNameRelative()).
+                collect(Collectors.toList());
+    }
+
+    @Test
+    public void testGetRepositoryType() {
+        mkdirs("git/.git");
+        mkdirs("plain/src");
+        File git = new File(roots.getSourceRoot(), "git");
+        assertTrue(RepositoryFactory.getRepositoryType(git,
+                new HashSet<>(Arrays.asList("README", ".git"))) instanceof GitRepository);
+        // the marker must be a directory
+        assertNull(RepositoryFactory.getRepositoryType(new File(roots.getSourceRoot(), "plain"),
+                new HashSet<>(Arrays.asList("src", ".hg"))));
+        assertNull(RepositoryFactory.getRepositoryType(git, Collections.emptySet()));
+    }
+
+    @Test
+    public void testDiscover() {
+        mkdirs("a/.git");
+        mkdirs("b/nested/.svn");
+        mkdirs("c/CVS");
+        mkdirs("c/sub/CVS");
+        mkdirs("ignored/d/.git");
+        mkdirs("deep/1/2/3/4/.git");
+
+        IgnoredNames ignoredNames = new IgnoredNames();
+        ignoredNames.add("d:ignored");
+        assertEquals(Arrays.asList(
+                "GitRepository:" + File.separator + "a",
+                "SubversionRepository:" + File.separator + "b" + File.separator + "nested",
+                "CVSRepository:" + File.separator + "c"),
+                discover(ignoredNames, 3));
+    }
+
+    @Test
+    public void testSubRepositories() {
+        mkdirs("hg/.hg");
+        mkdirs("hg/sub/.git");
+        mkdirs("hg/sub/subsub/.git");
+
+        List<String> repos = discover(new IgnoredNames(), 3);
+        assertEquals(Arrays.asList(
+                "MercurialRepository:" + File.separator + "hg",
+                "GitRepository:" + File.separator + "hg" + File.separator + "sub"),
+                repos);
+    }
+
+    @Test
+    public void testMatchesFullSearch() throws Exception {
+        mkdirs("a/.git");
+        mkdirs("b/x/.hg");
+        mkdirs("b/y/RCS");
+        assertTrue(new File(roots.getSourceRoot(), "b/y/RCS/file.c,v").createNewFile());
+
+        HistoryGuru guru = HistoryGuru.getInstance();
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        File[] files = new File[]{roots.getSourceRoot()};
+        List<String> full = guru.addRepositories(files, new IgnoredNames()).stream().
+                map(RepositoryInfo::getDirectoryNameRelative).sorted().collect(Collectors.toList());
+        env.setFastRepositoryDiscovery(true);
+        try {
+            List<String> fast = guru.addRepositories(files, new IgnoredNames()).stream().
+                    map(RepositoryInfo::getDirectoryNameRelative).sorted().collect(Collectors.toList());
+            assertEquals(full, fast);
+            assertEquals(3, fast.size());
+        } finally {
+            env.setFastRepositoryDiscovery(false);
+            guru.invalidateRepositories(null, false);
+        }
+        assertNull(guru.getRepository(new File(roots.getSourceRoot(), "a")));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.opengrok.indexer.util.TemporaryRootsRule;
+
+public class RepositoryLookupTest {
+
+    @Rule
+    public TemporaryRootsRule roots = new TemporaryRootsRule();
+
+    private static Repository createRepository(String relativePath) {
+        Repository repository = new GitRepository();
+        repository.setDirectoryNameRelative(relativePath);
+        return repository;
+    }
+
+    @Test
+    public void testLongestPrefix() {
+        Repository outer = createRepository("/outer");
+        Repository inner = createRepository("/outer/sub/inner");
+        Repository other = createRepository("/outer2");
+        RepositoryLookup lookup = RepositoryLookup.build(Arrays.asList(inner, outer, other), 1);
+
+        assertSame(outer, lookup.find(new File(roots.getSourceRoot(), "outer")));
+        assertSame(outer, lookup.find(new File(roots.getSourceRoot(), "outer/sub/file.c")));
+        assertSame(inner, lookup.find(new File(roots.getSourceRoot(), "outer/sub/inner")));
+        assertSame(inner, lookup.find(new File(roots.getSourceRoot(), "outer/sub/inner/dir/file.c")));
+        assertSame(other, lookup.find(new File(roots.getSourceRoot(), "outer2/file.c")));
+        assertNull(lookup.find(new File(roots.getSourceRoot(), "outer3/file.c")));
+        assertNull(lookup.find(roots.getSourceRoot()));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertNull(RepositoryLookup.EMPTY.find(new File(roots.getSourceRoot(), "file.c")));
+        assertNull(RepositoryLookup.build(Arrays.asList(), 1).find(roots.getSourceRoot()));
+    }
+
+    @Test
+    public void testSymlink() throws IOException {
+        File dir = new File(roots.getSourceRoot(), "repo");
+        assertTrue(dir.mkdirs());
+        File link = new File(roots.getSourceRoot(), "link");
+        try {
+            Files.createSymbolicLink(link.toPath(), dir.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException(e);
+        }
+
+        Repository repository = createRepository("/repo");
+        RepositoryLookup lookup = RepositoryLookup.build(Arrays.asList(repository), 1);
+        assertSame(repository, lookup.find(new File(link, "file.c")));
+        assertSame(repository, lookup.find(link));
+    }
+}
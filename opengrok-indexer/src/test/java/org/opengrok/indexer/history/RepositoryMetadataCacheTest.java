@@ -0,0 +1,176 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.util.IOUtils;
+import org.opengrok.indexer.util.TemporaryRootsRule;
+
+public class RepositoryMetadataCacheTest {
+
+    private static int calls;
+    private static boolean fail;
+
+    /**
+     * Repository which counts the calls determining its metadata.
+     */
+    public static class CountingRepository extends GitRepository {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        String determineParent(boolean interactive) throws IOException {
+            calls++;
+            if (fail) {
+                throw new IOException("fail");
+            }
+            return "parent";
+        }
+
+        @Override
+        String determineBranch(boolean interactive) {
+            calls++;
+            return "branch";
+        }
+
+        @Override
+        public String determineCurrentVersion(boolean interactive) {
+            calls++;
+            return "version " + calls;
+        }
+
+        @Override
+        List<String> getMetadataSignals() {
+            return Collections.singletonList("signal");
+        }
+    }
+
+    @Rule
+    public TemporaryRootsRule roots = new TemporaryRootsRule();
+
+    private RuntimeEnvironment env;
+    private File repoDir;
+
+    @Before
+    public void setUp() throws IOException {
+        env = RuntimeEnvironment.getInstance();
+        env.setRepositoryMetadataCache(true);
+        repoDir = new File(roots.getSourceRoot(), "repo");
+        assertTrue(repoDir.mkdir());
+        assertTrue(new File(repoDir, "signal").createNewFile());
+        calls = 0;
+        fail = false;
+    }
+
+    @After
+    public void tearDown() {
+        env.setRepositoryMetadataCache(false);
+    }
+
+    private Repository create() throws Exception {
+        return RepositoryFactory.createRepository(repoDir, new CountingRepository(), false);
+    }
+
+    /**
+     * Make the cache forget the entries held in memory.
+     */
+    private void reload() throws Exception {
+        File other = Files.createTempDirectory("data").toFile();
+        env.setDataRoot(other.getPath());
+        create();
+        env.setDataRoot(roots.getDataRoot().getPath());
+        IOUtils.removeRecursive(other.toPath());
+        calls = 0;
+    }
+
+    @Test
+    public void testCachedAcrossRuns() throws Exception {
+        Repository repo = create();
+        assertEquals(3, calls);
+        RepositoryMetadataCache.getInstance().save();
+        assertTrue(new File(roots.getDataRoot(), RepositoryMetadataCache.FILE_NAME).isFile());
+
+        reload();
+        Repository cached = create();
+        assertEquals(0, calls);
+        assertEquals("parent", cached.getParent());
+        assertEquals("branch", cached.getBranch());
+        assertEquals(repo.getCurrentVersion(), cached.getCurrentVersion());
+    }
+
+    @Test
+    public void testSaveToNewDataRoot() throws Exception {
+        File newDataRoot = new File(roots.getDataRoot(), "new");
+        env.setDataRoot(newDataRoot.getPath());
+        create();
+        RepositoryMetadataCache.getInstance().save();
+        assertTrue(new File(newDataRoot, RepositoryMetadataCache.FILE_NAME).isFile());
+    }
+
+    @Test
+    public void testSignalChange() throws Exception {
+        create();
+        create();
+        assertEquals(3, calls);
+
+        File signal = new File(repoDir, "signal");
+        assertTrue(signal.setLastModified(signal.lastModified() - 10000));
+        Repository repo = create();
+        assertEquals(6, calls);
+        assertEquals("version 6", repo.getCurrentVersion());
+        create();
+        assertEquals(6, calls);
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        fail = true;
+        create();
+        assertEquals(3, calls);
+        fail = false;
+        create();
+        assertEquals(6, calls);
+        create();
+        assertEquals(6, calls);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        env.setRepositoryMetadataCache(false);
+        create();
+        create();
+        assertEquals(6, calls);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.junit.Test;
+
+public class FilterTest {
+
+    @Test
+    public void testNamesAndPatterns() {
+        Filter filter = new Filter();
+        assertFalse(filter.match("foo.c"));
+
+        filter.add("Makefile");
+        filter.add("*.c");
+        filter.add("?x*.h");
+        assertTrue(filter.match("Makefile"));
+        assertTrue(filter.match("foo.c"));
+        assertTrue(filter.match(".c"));
+        assertFalse(filter.match("foo.cc"));
+        assertTrue(filter.match("axy.h"));
+        assertFalse(filter.match("xy.h"));
+
+        filter.add("q??");
+        assertTrue(filter.match("q12"));
+        assertFalse(filter.match("q1"));
+        assertTrue(filter.match("/src/dir/foo.c"));
+        // the pattern is applied to the basename
+        assertFalse(filter.match("/src/foo.c/bar"));
+
+        // patterns added after the first match are used too
+        filter.add("*.java");
+        assertTrue(filter.match("Main.java"));
+
+        filter.clear();
+        assertFalse(filter.match("foo.c"));
+        assertFalse(filter.match("Makefile"));
+    }
+
+    @Test
+    public void testPaths() {
+        Filter filter = new Filter();
+        filter.add("usr/src/uts");
+        filter.add("/usr/src/Makefile");
+        filter.add("*/obj/*.o");
+
+        assertTrue(filter.match(new File("/ws/usr/src/uts")));
+        assertTrue(filter.match(new File("/ws/usr/src/Makefile")));
+        assertFalse(filter.match(new File("/ws/usr/src/uts/Makefile")));
+        assertTrue(filter.match(new File("/ws/lib/obj/foo.o")));
+        assertFalse(filter.match(new File("/ws/lib/foo.o")));
+        // the absolute path is not checked on request
+        assertFalse(filter.match(new File("/ws/usr/src/uts"), false));
+        // nor for relative names
+        assertFalse(filter.match("usr/src/uts"));
+    }
+
+    @Test
+    public void testSupplementaryCharacter() {
+        Filter filter = new Filter();
+        filter.add("a?b");
+        assertTrue(filter.match("a😀b"));
+        assertFalse(filter.match("a😀😀b"));
+    }
+
+    /**
+     * The automaton of the pattern has too many states, so it is matched as
+     * a regular expression.
+     */
+    @Test
+    public void testComplexPatterns() {
+        Filter filter = new Filter();
+        filter.add("*a????????????????????");
+        filter.add("*.o");
+        filter.add("/usr/src/tools");
+        assertTrue(filter.match("xxxa12345678901234567890"));
+        assertFalse(filter.match("xxxa1234567890123456789012"));
+        assertTrue(filter.match("foo.o"));
+        assertTrue(filter.match(new File("/ws/usr/src/tools")));
+        assertFalse(filter.match("foo.c"));
+    }
+}
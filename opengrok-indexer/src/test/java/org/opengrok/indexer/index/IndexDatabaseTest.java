@@ -129,6 +129,23 @@ public class IndexDatabaseTest {
         assertNull(defs2);
     }
 
+    @Test
+    public void testGetDocument() throws Exception {
+        // The document holds both the file type detected by the indexer and
+        // the definitions.
+        File f1 = new File(repository.getSourceRoot() + "/git/main.c");
+        Document doc = IndexDatabase.getDocument(f1);
+        assertNotNull(doc);
+        Assert.assertEquals("c", doc.get(QueryBuilder.TYPE));
+        Definitions defs = IndexDatabase.getDefinitions(doc);
+        assertNotNull(defs);
+        assertTrue(defs.hasSymbol("main"));
+
+        File f2 = new File(repository.getSourceRoot() + "/git/foobar.d");
+        assertNull(IndexDatabase.getDocument(f2));
+        assertNull(IndexDatabase.getDefinitions((Document) null));
+    }
+
     private void checkDataExistence(String fileName, boolean shouldExist) {
         RuntimeEnvironment env = RuntimeEnvironment.getInstance();
 
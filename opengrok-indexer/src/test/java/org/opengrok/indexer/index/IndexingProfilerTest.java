@@ -0,0 +1,137 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.index;
+
+import java.util.concurrent.TimeUnit;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.opengrok.indexer.index.IndexingProfiler.Phase;
+import org.opengrok.indexer.index.IndexingProfiler.Stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexingProfilerTest {
+
+    @After
+    public void tearDown() {
+        IndexingProfiler.stop();
+    }
+
+    private static void indexFile(String path, String factory, long sleepMillis)
+            throws InterruptedException {
+        IndexingProfiler.beginFile();
+        IndexingProfiler.enter(Phase.ANALYSIS);
+        try {
+            IndexingProfiler.enter(Phase.CTAGS);
+            try {
+                Thread.sleep(sleepMillis);
+            } finally {
+                IndexingProfiler.exit();
+            }
+        } finally {
+            IndexingProfiler.exit();
+        }
+        IndexingProfiler.endFile(path, factory, 10);
+    }
+
+    @Test
+    public void testDisabled() throws InterruptedException {
+        assertFalse(IndexingProfiler.isEnabled());
+        indexFile("/a.c", "CAnalyzerFactory", 0);
+        assertNull(IndexingProfiler.stop());
+    }
+
+    @Test
+    public void testNestedPhases() throws InterruptedException {
+        IndexingProfiler profiler = IndexingProfiler.start(10);
+        indexFile("/a.c", "CAnalyzerFactory", 50);
+
+        assertEquals(1, profiler.getFileCount());
+        long ctags = profiler.getWallTime(Phase.CTAGS);
+        assertTrue(ctags >= TimeUnit.MILLISECONDS.toNanos(50));
+        // the nested ctags time is not charged to the analysis
+        assertTrue(profiler.getWallTime(Phase.ANALYSIS) < ctags);
+        assertEquals(0, profiler.getWallTime(Phase.XREF));
+    }
+
+    @Test
+    public void testUnbalancedExit() throws InterruptedException {
+        IndexingProfiler profiler = IndexingProfiler.start(10);
+        IndexingProfiler.beginFile();
+        IndexingProfiler.exit();
+        IndexingProfiler.exit();
+        IndexingProfiler.endFile("/a.c", "CAnalyzerFactory", 1);
+        assertEquals(1, profiler.getFileCount());
+    }
+
+    @Test
+    public void testStages() throws InterruptedException {
+        long start = IndexingProfiler.beginStage();
+        assertEquals(0, start);
+        IndexingProfiler.endStage(Stage.COMMIT, start);
+
+        IndexingProfiler profiler = IndexingProfiler.start(0);
+        // started before the profiler, not recorded
+        IndexingProfiler.endStage(Stage.COMMIT, start);
+        for (int i = 0; i < 2; i++) {
+            start = IndexingProfiler.beginStage();
+            Thread.sleep(20);
+            IndexingProfiler.endStage(Stage.TRAVERSAL, start);
+        }
+
+        assertTrue(profiler.getStageTime(Stage.TRAVERSAL) >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(0, profiler.getStageTime(Stage.COMMIT));
+        JSONObject stages = (JSONObject) profiler.toJson().get("stages");
+        assertNotNull(stages.get("traversal"));
+        assertNotNull(stages.get("optimize"));
+    }
+
+    @Test
+    public void testReport() throws InterruptedException {
+        IndexingProfiler profiler = IndexingProfiler.start(2);
+        indexFile("/a.c", "CAnalyzerFactory", 1);
+        indexFile("/b.c", "CAnalyzerFactory", 30);
+        indexFile("/c.java", "JavaAnalyzerFactory", 15);
+
+        JSONObject json = profiler.toJson();
+        JSONObject total = (JSONObject) json.get("total");
+        assertEquals(3L, total.get("files"));
+        assertEquals(30L, total.get("bytes"));
+        assertNotNull(((JSONObject) total.get("phases")).get("ctags"));
+
+        JSONObject analyzers = (JSONObject) json.get("analyzers");
+        assertEquals(2L, ((JSONObject) analyzers.get("CAnalyzerFactory")).get("files"));
+        assertEquals(1L, ((JSONObject) analyzers.get("JavaAnalyzerFactory")).get("files"));
+
+        JSONArray slowest = (JSONArray) json.get("slowest_files");
+        assertEquals(2, slowest.size());
+        assertEquals("/b.c", ((JSONObject) slowest.get(0)).get("path"));
+        assertEquals("/c.java", ((JSONObject) slowest.get(1)).get("path"));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.metrics;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounter() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("test_total", "Test \\ counter.", "kind");
+        assertSame(counter, registry.counter("test_total", "Test \\ counter.", "kind"));
+        counter.inc("a");
+        counter.add(2, "b\"c");
+        counter.inc("a");
+
+        assertEquals(2, counter.get("a"));
+        assertEquals("# HELP test_total Test \\\\ counter.\n"
+                + "# TYPE test_total counter\n"
+                + "test_total{kind=\"a\"} 2\n"
+                + "test_total{kind=\"b\\\"c\"} 2\n", registry.scrape());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongLabels() {
+        new MetricsRegistry().counter("test_total", "Test.", "kind").inc();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeConflict() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test", "Test.");
+        registry.histogram("test", "Test.");
+    }
+
+    @Test
+    public void testHistogram() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("test_seconds", "Test.");
+        histogram.observeNanos(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.observeNanos(TimeUnit.MILLISECONDS.toNanos(200));
+        histogram.observeNanos(TimeUnit.SECONDS.toNanos(100));
+
+        String text = registry.scrape();
+        assertTrue(text, text.contains("# TYPE test_seconds histogram\n"));
+        assertTrue(text, text.contains("test_seconds_bucket{le=\"0.001\"} 1\n"));
+        assertTrue(text, text.contains("test_seconds_bucket{le=\"0.25\"} 2\n"));
+        assertTrue(text, text.contains("test_seconds_bucket{le=\"60\"} 2\n"));
+        assertTrue(text, text.contains("test_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text, text.contains("test_seconds_sum 100.2005\n"));
+        assertTrue(text, text.contains("test_seconds_count 3\n"));
+    }
+
+    @Test
+    public void testGauge() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("test_bytes", "Test.", () -> 1.5);
+        registry.gauge("test_bytes", "Test.", () -> 42);
+        assertEquals("# HELP test_bytes Test.\n# TYPE test_bytes gauge\ntest_bytes 42\n",
+                registry.scrape());
+    }
+
+    @Test
+    public void testCounterFunction() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counterFunction("test_total", "Test.", () -> 7);
+        assertEquals("# HELP test_total Test.\n# TYPE test_total counter\ntest_total 7\n",
+                registry.scrape());
+    }
+
+    @Test
+    public void testJvmMetricTypes() {
+        MetricsRegistry registry = new MetricsRegistry();
+        JvmMetrics.register(registry);
+        String text = registry.scrape();
+        assertTrue(text, text.contains("# TYPE jvm_gc_collections_total counter\n"));
+        assertTrue(text, text.contains("# TYPE jvm_gc_collection_seconds_total counter\n"));
+        assertTrue(text, text.contains("# TYPE jvm_threads_live gauge\n"));
+    }
+
+    @Test
+    public void testParseAddress() throws Exception {
+        InetSocketAddress address = MetricsHttpServer.parseAddress("9100");
+        assertTrue(address.getAddress().isLoopbackAddress());
+        assertEquals(9100, address.getPort());
+
+        address = MetricsHttpServer.parseAddress("127.0.0.1:9101");
+        assertEquals(InetAddress.getByName("127.0.0.1"), address.getAddress());
+        assertEquals(9101, address.getPort());
+
+        address = MetricsHttpServer.parseAddress("[::1]:9102");
+        assertEquals(InetAddress.getByName("::1"), address.getAddress());
+        assertEquals(9102, address.getPort());
+
+        address = MetricsHttpServer.parseAddress("0.0.0.0:9103");
+        assertTrue(address.getAddress().isAnyLocalAddress());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAddressWithoutHost() {
+        MetricsHttpServer.parseAddress(":9100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAddressWithoutPort() {
+        MetricsHttpServer.parseAddress("localhost:");
+    }
+
+    @Test
+    public void testHttpServer() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "Test.").inc();
+        MetricsHttpServer server = new MetricsHttpServer(0, registry);
+        try {
+            assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+            URL url = new URL("http://localhost:" + server.getPort() + MetricsHttpServer.PATH);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/plain"));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    conn.getInputStream(), StandardCharsets.UTF_8))) {
+                assertTrue(in.lines().collect(Collectors.toList()).contains("test_total 1"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}
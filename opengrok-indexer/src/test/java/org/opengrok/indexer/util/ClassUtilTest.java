@@ -140,4 +140,16 @@ public class ClassUtilTest {
         assertEquals(t, ClassUtil.getFieldValue(testObject, "objField"));
     }
 
+    @Test
+    public void getFieldValueRepeatedlyTest() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            testObject.intField = i;
+            assertEquals(i, ClassUtil.getFieldValue(testObject, "intField"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void getUnknownFieldTest() throws IOException {
+        ClassUtil.getFieldValue(testObject, "unknownField");
+    }
 }
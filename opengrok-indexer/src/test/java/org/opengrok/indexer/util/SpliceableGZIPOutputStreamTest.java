@@ -0,0 +1,112 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@code SpliceableGZIPOutputStream} class.
+ */
+public class SpliceableGZIPOutputStreamTest {
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SpliceableGZIPOutputStream gz = new SpliceableGZIPOutputStream(
+                out, Deflater.BEST_SPEED)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzipped))) {
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testReadableAsGzip() throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            b.append("line ").append(i).append('\n');
+        }
+        byte[][] samples = {
+            new byte[0],
+            "x".getBytes(StandardCharsets.UTF_8),
+            b.toString().getBytes(StandardCharsets.UTF_8)
+        };
+        for (byte[] sample : samples) {
+            assertArrayEquals(sample, gunzip(gzip(sample)));
+        }
+    }
+
+    @Test
+    public void testHeaderAndTail() throws IOException {
+        byte[] gzipped = gzip("abc".getBytes(StandardCharsets.UTF_8));
+
+        InputStream in = new BufferedInputStream(
+                new ByteArrayInputStream(gzipped));
+        assertTrue(SpliceableGZIPOutputStream.readHeader(in));
+        assertTrue(in.read() != -1);
+
+        int tailLength = SpliceableGZIPOutputStream.TAIL_LENGTH;
+        byte[] tail = Arrays.copyOfRange(gzipped,
+                gzipped.length - tailLength, gzipped.length);
+        assertTrue(SpliceableGZIPOutputStream.isTail(tail));
+        assertEquals(3, tail[tailLength - 4]);
+    }
+
+    @Test
+    public void testOtherGzipIsNotSpliceable() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write("abc".getBytes(StandardCharsets.UTF_8));
+        }
+
+        InputStream in = new BufferedInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertFalse(SpliceableGZIPOutputStream.readHeader(in));
+        assertEquals("stream is reset", 0x1f, in.read());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.rules.ExternalResource;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+
+/**
+ * Rule which points the source root and the data root of the
+ * {@link RuntimeEnvironment} to empty temporary directories for the duration
+ * of a test, and restores the original roots afterwards.
+ */
+public class TemporaryRootsRule extends ExternalResource {
+
+    private File sourceRoot;
+    private File dataRoot;
+    private String originalSourceRoot;
+    private String originalDataRoot;
+
+    @Override
+    protected void before() throws IOException {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        originalSourceRoot = env.getSourceRootPath();
+        originalDataRoot = env.getDataRootPath();
+        sourceRoot = Files.createTempDirectory("source").toFile().getCanonicalFile();
+        dataRoot = Files.createTempDirectory("data").toFile().getCanonicalFile();
+        env.setSourceRoot(sourceRoot.getPath());
+        env.setDataRoot(dataRoot.getPath());
+    }
+
+    @Override
+    protected void after() {
+        RuntimeEnvironment env = RuntimeEnvironment.getInstance();
+        env.setSourceRoot(originalSourceRoot);
+        env.setDataRoot(originalDataRoot);
+        try {
+            IOUtils.removeRecursive(sourceRoot.toPath());
+            IOUtils.removeRecursive(dataRoot.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public File getSourceRoot() {
+        return sourceRoot;
+    }
+
+    public File getDataRoot() {
+        return dataRoot;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit tests for the {@code Utf8Writer} class.
+ */
+public class Utf8WriterTest {
+
+    private static final String[] SAMPLES = {
+        "",
+        "plain ASCII &lt;text&gt;\n",
+        "Latin-1 éè and Greek αβγ",
+        "CJK 中文 and the euro €",
+        "astral 😀 𝄞 end",
+        "lone high \ud83d x and lone low \ude00 y",
+    };
+
+    private static byte[] expected(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test that the output is the same as of {@link OutputStreamWriter} with
+     * every kind of write and with buffer refills in the middle of multi-byte
+     * sequences.
+     */
+    @Test
+    public void testEncoding() throws IOException {
+        for (int size : new int[]{4, 5, 7, 8192}) {
+            for (String sample : SAMPLES) {
+                ByteArrayOutputStream jdk = new ByteArrayOutputStream();
+                try (Writer w = new OutputStreamWriter(jdk,
+                        StandardCharsets.UTF_8)) {
+                    w.write(sample);
+                }
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (Writer w = new Utf8Writer(bytes, size)) {
+                    w.write(sample);
+                }
+                assertArrayEquals(jdk.toByteArray(), bytes.toByteArray());
+
+                bytes = new ByteArrayOutputStream();
+                try (Writer w = new Utf8Writer(bytes, size)) {
+                    w.write(sample.toCharArray(), 0, sample.length());
+                }
+                assertArrayEquals(jdk.toByteArray(), bytes.toByteArray());
+
+                bytes = new ByteArrayOutputStream();
+                try (Writer w = new Utf8Writer(bytes, size)) {
+                    for (int i = 0; i < sample.length(); i++) {
+                        w.append(sample.charAt(i));
+                    }
+                }
+                assertArrayEquals(jdk.toByteArray(), bytes.toByteArray());
+
+                bytes = new ByteArrayOutputStream();
+                try (Writer w = new Utf8Writer(bytes, size)) {
+                    int half = sample.length() / 2;
+                    w.append(new StringBuilder(sample), 0, half);
+                    w.append(new StringBuilder(sample), half, sample.length());
+                }
+                assertArrayEquals(jdk.toByteArray(), bytes.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testSurrogatePairSplitAcrossWrites() throws IOException {
+        String sample = "a😀b";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer w = new Utf8Writer(bytes)) {
+            w.write(sample, 0, 2);
+            w.flush();
+            w.write(sample, 2, 2);
+        }
+        assertArrayEquals(expected(sample), bytes.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws IOException {
+        Writer w = new Utf8Writer(new ByteArrayOutputStream());
+        w.close();
+        w.write('x');
+    }
+}
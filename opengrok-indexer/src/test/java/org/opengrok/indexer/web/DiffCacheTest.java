@@ -0,0 +1,70 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.web;
+
+import org.junit.Test;
+import org.opengrok.indexer.analysis.FileAnalyzer.Genre;
+import org.suigeneris.jrcs.diff.Revision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DiffCacheTest {
+
+    private static DiffCache.Entry entry(int lines) {
+        return new DiffCache.Entry(Genre.PLAIN,
+                new String[][]{new String[lines], new String[0]}, new Revision());
+    }
+
+    @Test
+    public void testEviction() {
+        DiffCache cache = new DiffCache();
+        cache.put("a", entry(30), 100);
+        cache.put("b", entry(30), 100);
+        cache.put("c", entry(30), 100);
+        assertNotNull(cache.get("a")); // a is now the most recently used
+        cache.put("d", entry(30), 100);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testTooLargeEntry() {
+        DiffCache cache = new DiffCache();
+        cache.put("a", entry(51), 100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals(DiffCache.key("/a", "1", "/a", "2"), DiffCache.key("/a", "1", "/a", "2"));
+        assertNotNull(DiffCache.key("/a", "1", "/b", "2"));
+    }
+}
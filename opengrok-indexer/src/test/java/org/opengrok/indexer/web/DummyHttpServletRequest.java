@@ -69,6 +69,7 @@ public class DummyHttpServletRequest implements HttpServletRequest {
     
     private class DummyHttpSession implements HttpSession {
         private Map<String, Object> attrs = new HashMap<>();
+        private final String id = generate(32, "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.");
 
         @Override
         public long getCreationTime() {
@@ -77,7 +78,7 @@ public class DummyHttpServletRequest implements HttpServletRequest {
 
         @Override
         public String getId() {
-            return generate(32, "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.");
+            return id;
         }
 
         @Override
@@ -0,0 +1,124 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.indexer.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.suigeneris.jrcs.diff.Diff;
+import org.suigeneris.jrcs.diff.Revision;
+import org.suigeneris.jrcs.diff.delta.Chunk;
+import org.suigeneris.jrcs.diff.delta.Delta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineDiffTest {
+
+    private static Revision diff(String[] a, String[] b) throws Exception {
+        Revision rev = Diff.diff(a, b, new LineDiff());
+        assertArrayEquals(b, rev.patch(a));
+        return rev;
+    }
+
+    @Test
+    public void testSimpleChanges() throws Exception {
+        String[] a = {"a", "b", "c", "d", "e"};
+        assertEquals(0, diff(a, a.clone()).size());
+
+        Revision rev = diff(a, new String[]{"a", "b", "x", "d", "e"});
+        assertEquals(1, rev.size());
+        Delta d = rev.getDelta(0);
+        assertEquals(2, d.getOriginal().first());
+        assertEquals(2, d.getOriginal().last());
+        assertEquals(2, d.getRevised().first());
+
+        rev = diff(a, new String[]{"a", "b", "c", "d", "e", "f"});
+        assertEquals(1, rev.size());
+        assertEquals(0, rev.getDelta(0).getOriginal().size());
+
+        rev = diff(a, new String[]{"b", "c", "d", "e"});
+        assertEquals(1, rev.size());
+        assertEquals(0, rev.getDelta(0).getRevised().size());
+
+        diff(new String[0], a);
+        diff(a, new String[0]);
+    }
+
+    /**
+     * The number of changed lines should be the same as with the default
+     * (minimal) algorithm.
+     */
+    @Test
+    public void testRandomChanges() throws Exception {
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            List<String> a = new ArrayList<>();
+            int size = random.nextInt(100);
+            for (int i = 0; i < size; i++) {
+                a.add("line " + random.nextInt(20));
+            }
+            List<String> b = new ArrayList<>(a);
+            int edits = random.nextInt(10);
+            for (int i = 0; i < edits; i++) {
+                int pos = b.isEmpty() ? 0 : random.nextInt(b.size());
+                if (random.nextBoolean() && !b.isEmpty()) {
+                    b.remove(pos);
+                } else {
+                    b.add(pos, "new " + random.nextInt(5));
+                }
+            }
+            String[] aa = a.toArray(new String[0]);
+            String[] bb = b.toArray(new String[0]);
+            assertEquals(Arrays.toString(aa) + " / " + Arrays.toString(bb),
+                    changedLines(Diff.diff(aa, bb)), changedLines(diff(aa, bb)));
+        }
+    }
+
+    @Test
+    public void testLargeDifferentFiles() throws Exception {
+        // exceeds the cost limit, the result must still be a valid diff
+        Random random = new Random(1);
+        String[] a = new String[20000];
+        String[] b = new String[20000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = Integer.toString(random.nextInt(1000));
+            b[i] = Integer.toString(random.nextInt(1000));
+        }
+        assertTrue(diff(a, b).size() > 0);
+    }
+
+    private static int changedLines(Revision rev) {
+        int count = 0;
+        for (int i = 0; i < rev.size(); i++) {
+            Chunk c1 = rev.getDelta(i).getOriginal();
+            Chunk c2 = rev.getDelta(i).getRevised();
+            count += c1.size() + c2.size();
+        }
+        return count;
+    }
+}
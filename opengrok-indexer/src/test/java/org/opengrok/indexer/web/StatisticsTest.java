@@ -23,7 +23,9 @@
 package org.opengrok.indexer.web;
 
 import java.util.function.Function;
+import java.util.stream.LongStream;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -270,4 +272,57 @@ public class StatisticsTest {
         Assert.assertNotNull(result.get(Statistics.STATISTIC_REQUESTS_PER_MINUTE_MAX));
         Assert.assertEquals(106L, (long) result.get(Statistics.STATISTIC_REQUESTS_PER_MINUTE_MAX));
     }
+
+    @Test
+    public void testTimingPercentiles() {
+        Statistics stat = new Statistics();
+        for (long i = 1; i <= 1000; i++) {
+            stat.addRequestTime("xref", i);
+        }
+        stat.addRequest("search");
+
+        long p50 = stat.getTimingPercentile(50).get("xref");
+        long p99 = stat.getTimingPercentile(99).get("xref");
+        Assert.assertTrue(p50 >= 500 && p50 < 500 * 1.07);
+        Assert.assertTrue(p99 >= 990 && p99 <= 1000);
+        Assert.assertFalse(stat.getTimingPercentile(50).containsKey("search"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHistogramRoundTrip() throws Exception {
+        Statistics stat = new Statistics();
+        stat.addRequest();
+        for (long i = 1; i <= 100; i++) {
+            stat.addRequestTime("root", i * 10);
+        }
+        String json = stat.toJson().toJSONString();
+        Statistics loaded = Statistics.from((JSONObject) new JSONParser().parse(json));
+
+        Assert.assertEquals(stat.getTimingPercentile(95), loaded.getTimingPercentile(95));
+        Assert.assertEquals(stat.getTiming(), loaded.getTiming());
+        Assert.assertEquals(stat.getRequestCategories(), loaded.getRequestCategories());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        Statistics stat = new Statistics();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    stat.addRequest();
+                    stat.addRequestTime("*", j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(8000, stat.getRequests());
+        Assert.assertEquals(8000, stat.getRequestCategories().get("*").longValue());
+        Assert.assertEquals(8 * 999 * 1000 / 2, stat.getTiming().get("*").longValue());
+        Assert.assertEquals(8000, LongStream.of(stat.getDayHistogram()).sum());
+    }
 }
@@ -80,6 +80,18 @@ public class UtilTest {
             StringBuilder sb = new StringBuilder();
             Util.htmlize(in_out[0], sb);
             assertEquals(in_out[1], sb.toString());
+            // Writer destination
+            StringWriter sw = new StringWriter();
+            Util.htmlize(in_out[0], sw);
+            assertEquals(in_out[1], sw.toString());
+            // character array
+            sw = new StringWriter();
+            char[] cs = (in_out[0] + "tail").toCharArray();
+            Util.htmlize(cs, in_out[0].length(), sw);
+            assertEquals(in_out[1], sw.toString());
+            sb = new StringBuilder();
+            Util.htmlize(cs, in_out[0].length(), sb);
+            assertEquals(in_out[1], sb.toString());
         }
     }
 
@@ -0,0 +1,351 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2008, 2018, Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2011 Jens Elkner.
+ */
+package org.opengrok.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.opengrok.indexer.history.HistoryGuru;
+import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.web.PageConfig;
+import org.opengrok.indexer.web.Prefix;
+
+/**
+ * Serves the raw content of source files and their historical revisions for
+ * the {@code /raw} and {@code /download} prefixes.
+ * <p>
+ * Current files are sent via the container's sendfile support if available
+ * (Tomcat's {@code org.apache.tomcat.sendfile.*} request attributes), or via
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} otherwise.
+ * Single byte ranges and conditional requests with strong entity tags are
+ * supported for them. Historical revisions have no known length upfront, so
+ * they are streamed in full through a fixed size buffer; since their content
+ * never changes their entity tag is derived from the revision.
+ */
+public class DownloadServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadServlet.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        serve(req, resp, false);
+    }
+
+    private void serve(HttpServletRequest req, HttpServletResponse resp,
+            boolean sendBody) throws IOException {
+        PageConfig cfg = PageConfig.get(req);
+        cfg.checkSourceRootExistence();
+
+        String redir = cfg.canProcess();
+        if (redir == null || redir.length() > 0) {
+            if (redir != null) {
+                resp.sendRedirect(redir);
+            } else {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return;
+        }
+
+        File f = cfg.getResourceFile();
+        if (cfg.getPrefix() == Prefix.DOWNLOAD_P) {
+            resp.setContentType(getServletContext().getMimeType(f.getAbsolutePath()));
+            resp.setHeader("Content-Disposition", "attachment; filename=" + f.getName());
+        } else {
+            resp.setContentType("text/plain");
+        }
+
+        String revision = cfg.getRequestedRevision();
+        if (revision.length() == 0) {
+            serveFile(req, resp, f, sendBody);
+        } else {
+            serveRevision(req, resp, f, revision, sendBody);
+        }
+    }
+
+    private void serveFile(HttpServletRequest req, HttpServletResponse resp,
+            File f, boolean sendBody) throws IOException {
+        long length = f.length();
+        long lastModified = f.lastModified();
+        String etag = getETag(length, lastModified);
+
+        resp.setHeader("Accept-Ranges", "bytes");
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", lastModified);
+
+        if (isNotModified(req, etag, lastModified)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range = null;
+        String rangeHeader = req.getHeader("Range");
+        if (rangeHeader != null && isIfRangeSatisfied(req, etag, lastModified)) {
+            range = ByteRange.parse(rangeHeader, length);
+            if (range == ByteRange.UNSATISFIABLE) {
+                resp.setHeader("Content-Range", "bytes */" + length);
+                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        long start = 0;
+        long end = length; // exclusive
+        if (range != null) {
+            start = range.start;
+            end = range.end + 1;
+            resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            resp.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + length);
+        }
+        resp.setContentLengthLong(end - start);
+
+        if (!sendBody || start == end) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            req.setAttribute(SENDFILE_FILENAME, f.getCanonicalPath());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            OutputStream o = resp.getOutputStream();
+            WritableByteChannel out = Channels.newChannel(o);
+            long pos = start;
+            while (pos < end) {
+                long n = in.transferTo(pos, end - pos, out);
+                if (n <= 0) {
+                    break; // the file was truncated in the meantime
+                }
+                pos += n;
+            }
+            o.flush();
+        }
+    }
+
+    private void serveRevision(HttpServletRequest req, HttpServletResponse resp,
+            File f, String revision, boolean sendBody) throws IOException {
+        String etag = getRevisionETag(revision);
+        resp.setHeader("ETag", etag);
+        if (matchesETag(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        InputStream in;
+        try {
+            in = HistoryGuru.getInstance().getRevision(f.getParent(), f.getName(), revision);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Cannot get revision " + revision + " of " + f, e);
+            in = null;
+        }
+        if (in == null) {
+            resp.setHeader("ETag", null);
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try {
+            if (!sendBody) {
+                return;
+            }
+            OutputStream o = resp.getOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int nr;
+            while ((nr = in.read(buffer)) != -1) {
+                o.write(buffer, 0, nr);
+            }
+            o.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isNotModified(HttpServletRequest req, String etag,
+            long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            return matchesETag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+        return ifModifiedSince != -1 && ifModifiedSince >= truncateToSeconds(lastModified);
+    }
+
+    private static boolean isIfRangeSatisfied(HttpServletRequest req,
+            String etag, long lastModified) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = getDateHeader(req, "If-Range");
+        return date != -1 && date == truncateToSeconds(lastModified);
+    }
+
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static long truncateToSeconds(long millis) {
+        return millis / 1000 * 1000;
+    }
+
+    /**
+     * Checks the value of {@code If-None-Match} header against the entity tag.
+     * @param header value of the header
+     * @param etag entity tag of the resource
+     * @return {@code true} if the header matches the entity tag
+     */
+    static boolean matchesETag(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String getETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    static String getRevisionETag(String revision) {
+        return "\"r-" + revision.replaceAll("[^A-Za-z0-9._-]", "_") + "\"";
+    }
+
+    /**
+     * Single byte range of a resource with known length.
+     */
+    static final class ByteRange {
+
+        /**
+         * Marker of syntactically valid range which does not overlap the resource.
+         */
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        /**
+         * First byte position, inclusive.
+         */
+        final long start;
+
+        /**
+         * Last byte position, inclusive.
+         */
+        final long end;
+
+        private ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parses the value of {@code Range} header. Only a single range is
+         * supported, for multiple ranges the whole resource is sent.
+         * @param header value of the header
+         * @param length length of the resource
+         * @return the range, {@link #UNSATISFIABLE} or {@code null} if the
+         * header should be ignored
+         */
+        static ByteRange parse(String header, long length) {
+            String value = header.trim();
+            if (!value.startsWith("bytes=")) {
+                return null;
+            }
+            value = value.substring("bytes=".length()).trim();
+            if (value.contains(",")) {
+                return null;
+            }
+            int dash = value.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = value.substring(0, dash).trim();
+            String last = value.substring(dash + 1).trim();
+            try {
+                if (first.isEmpty()) {
+                    // suffix range: the last N bytes
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0 || length == 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new ByteRange(Math.max(0, length - suffix), length - 1);
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(start, Math.min(end, length - 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.web;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.opengrok.indexer.util.SpliceableGZIPOutputStream;
+
+/**
+ * Response wrapper which encodes the body with {@code Content-Encoding: gzip}
+ * and allows to insert already gzipped data into the body without
+ * decompressing them.
+ * <p>
+ * The body is written as a single gzip member (RFC 1952) because some
+ * clients stop decoding after the first member. Data written through
+ * {@link #getWriter()} or {@link #getOutputStream()} are deflated into the
+ * member; {@link #splice(InputStream)} ends the deflate data written so far
+ * on a byte boundary and copies the deflate data of a member written by
+ * {@link SpliceableGZIPOutputStream} as they are. The CRC32 of the
+ * uncompressed body is combined from the CRC32 values of the parts.
+ */
+public class GzipSplicingResponse extends HttpServletResponseWrapper {
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * gzip header without any optional fields.
+     */
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private final DeflatingOutputStream stream = new DeflatingOutputStream();
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+
+    private PrintWriter writer;
+
+    /**
+     * Deflater for the data written through the writer, {@code null} if the
+     * member was not started yet.
+     */
+    private Deflater deflater;
+
+    /**
+     * CRC32 of the data deflated since the member was started or since the
+     * last splice.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Length of the data covered by {@link #crc}.
+     */
+    private long crcLength;
+
+    /**
+     * CRC32 of the body up to the data covered by {@link #crc}.
+     */
+    private long bodyCrc;
+
+    /**
+     * Length of the uncompressed body.
+     */
+    private long bodyLength;
+
+    private boolean encodingSet;
+
+    /**
+     * Set if the response was handed over to the container (e.g. via
+     * {@link #sendError(int)}), in which case nothing more is written.
+     */
+    private boolean bypassed;
+
+    public GzipSplicingResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() was already called");
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(stream,
+                    getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    /**
+     * Ignored because the length of the encoded body is not known upfront.
+     * @param len ignored
+     */
+    @Override
+    public void setContentLength(int len) {
+        // the body is compressed so the length would not match
+    }
+
+    /**
+     * Ignored because the length of the encoded body is not known upfront.
+     * @param len ignored
+     */
+    @Override
+    public void setContentLengthLong(long len) {
+        // the body is compressed so the length would not match
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        discardMember();
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        discardMember();
+        encodingSet = false;
+        super.reset();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        bypass();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        bypass();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        bypass();
+        super.sendRedirect(location);
+    }
+
+    /**
+     * Copies the gzip stream into the response body. Anything written so far
+     * through the writer is flushed first.
+     * <p>
+     * The deflate data of a member written by
+     * {@link SpliceableGZIPOutputStream} are copied as they are. Other gzip
+     * streams are decompressed and deflated again.
+     * @param gzipped complete gzip stream
+     * @throws IOException on I/O error
+     */
+    public void splice(InputStream gzipped) throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (bypassed) {
+            return;
+        }
+        InputStream in = gzipped.markSupported() ? gzipped :
+                new BufferedInputStream(gzipped);
+        if (!SpliceableGZIPOutputStream.readHeader(in)) {
+            try (InputStream gz = new GZIPInputStream(in, BUFFER_SIZE)) {
+                int len;
+                while ((len = gz.read(buf)) != -1) {
+                    deflate(buf, 0, len);
+                }
+            }
+            return;
+        }
+
+        Deflater def = getDeflater();
+        OutputStream out = getResponse().getOutputStream();
+        deflate(def, Deflater.SYNC_FLUSH);
+        // the spliced data must not refer to the data deflated so far
+        // and the data deflated afterwards must not refer to the spliced data
+        def.reset();
+        bodyCrc = combine(bodyCrc, crc.getValue(), crcLength);
+        crc.reset();
+        crcLength = 0;
+
+        /*
+         * Copy the deflate data, holding back the last bytes which are the
+         * final block and the trailer of the spliced member.
+         */
+        int tailLength = SpliceableGZIPOutputStream.TAIL_LENGTH;
+        byte[] data = new byte[BUFFER_SIZE + tailLength];
+        int held = 0;
+        int len;
+        while ((len = in.read(data, held, data.length - held)) != -1) {
+            held += len;
+            if (held > tailLength) {
+                out.write(data, 0, held - tailLength);
+                System.arraycopy(data, held - tailLength, data, 0, tailLength);
+                held = tailLength;
+            }
+        }
+        byte[] tail = new byte[tailLength];
+        System.arraycopy(data, 0, tail, 0, held);
+        if (held < tailLength || !SpliceableGZIPOutputStream.isTail(tail)) {
+            throw new IOException("Corrupt gzip data");
+        }
+        long splicedLength = getInt(tail, tailLength - 4);
+        bodyCrc = combine(bodyCrc, getInt(tail, tailLength - 8),
+                splicedLength);
+        bodyLength += splicedLength;
+    }
+
+    /**
+     * Writes all pending data and finishes the gzip member.
+     * @throws IOException on I/O error
+     */
+    public void finish() throws IOException {
+        if (bypassed) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        if (deflater == null) {
+            return;
+        }
+        OutputStream out = getResponse().getOutputStream();
+        deflater.finish();
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+        deflater.end();
+        deflater = null;
+
+        bodyCrc = combine(bodyCrc, crc.getValue(), crcLength);
+        byte[] trailer = new byte[8];
+        putInt(trailer, 0, bodyCrc);
+        putInt(trailer, 4, bodyLength);
+        out.write(trailer);
+    }
+
+    private void setEncoding() {
+        if (!encodingSet) {
+            setHeader(CONTENT_ENCODING, GZIP);
+            encodingSet = true;
+        }
+    }
+
+    /**
+     * Gets the deflater, starting the member if needed.
+     */
+    private Deflater getDeflater() throws IOException {
+        if (deflater == null) {
+            setEncoding();
+            getResponse().getOutputStream().write(HEADER);
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        return deflater;
+    }
+
+    private void deflate(byte[] b, int off, int len) throws IOException {
+        Deflater def = getDeflater();
+        crc.update(b, off, len);
+        crcLength += len;
+        bodyLength += len;
+        def.setInput(b, off, len);
+        while (!def.needsInput()) {
+            deflate(def, Deflater.NO_FLUSH);
+        }
+    }
+
+    /**
+     * Writes the output of the deflater until its output buffer is drained.
+     */
+    private void deflate(Deflater def, int flush) throws IOException {
+        OutputStream out = getResponse().getOutputStream();
+        int len;
+        do {
+            len = def.deflate(buf, 0, buf.length, flush);
+            out.write(buf, 0, len);
+        } while (len == buf.length);
+    }
+
+    private void discardMember() {
+        if (writer != null) {
+            writer.flush();
+        }
+        // the compressed data already written are dropped with the buffer
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        crc.reset();
+        crcLength = 0;
+        bodyCrc = 0;
+        bodyLength = 0;
+    }
+
+    private void bypass() {
+        bypassed = true;
+        discardMember();
+        if (encodingSet && !isCommitted()) {
+            setHeader(CONTENT_ENCODING, null);
+            encodingSet = false;
+        }
+    }
+
+    private static long getInt(byte[] b, int off) {
+        long value = 0;
+        for (int i = 3; i >= 0; i--) {
+            value = (value << 8) | (b[off + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void putInt(byte[] b, int off, long value) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /**
+     * Computes the CRC32 of two concatenated blocks of data from their
+     * CRC32 values, like {@code crc32_combine()} of zlib does.
+     * @param crc1 CRC32 of the first block
+     * @param crc2 CRC32 of the second block
+     * @param len2 length of the second block
+     * @return CRC32 of the concatenated blocks
+     */
+    static long combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+
+        long[] even = new long[32]; // even-power-of-two zeros operator
+        long[] odd = new long[32]; // odd-power-of-two zeros operator
+
+        // put operator for one zero bit in odd
+        odd[0] = 0xedb88320L; // CRC-32 polynomial
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // two zero bits
+        gf2MatrixSquare(odd, even); // four zero bits
+
+        // apply len2 zeros to crc1
+        // (the first square puts the operator for one zero byte in even)
+        long len = len2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len >>= 1;
+            if (len == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len >>= 1;
+        } while (len != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+
+    private class DeflatingOutputStream extends ServletOutputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!bypassed) {
+                deflate(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflater != null) {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return getResponse().getOutputStream().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
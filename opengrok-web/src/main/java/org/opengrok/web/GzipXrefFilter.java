@@ -0,0 +1,166 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.web;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.web.Util;
+
+/**
+ * Filter for the xref pages which lets the compressed xref files be sent to
+ * the client as they are stored, i.e. without decompressing them and
+ * compressing the page again. This applies to the xref files written by
+ * {@link org.opengrok.indexer.util.SpliceableGZIPOutputStream}; xref files
+ * from older indexes are decompressed and compressed into the page.
+ * <p>
+ * The response is wrapped into {@link GzipSplicingResponse} only if the xref
+ * files are stored compressed, the client accepts gzip encoding and the
+ * stored data do not need to be transformed, i.e. the web application runs
+ * under the default {@code /source} context path (see
+ * {@link Util#dumpXref(Writer, InputStream, String)}) and the xref files
+ * were written with the same charset as is used for the response.
+ */
+public class GzipXrefFilter implements Filter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GzipXrefFilter.class);
+
+    private static final String RESPONSE_ATTRIBUTE = GzipSplicingResponse.class.getName();
+
+    private static final String DEFAULT_CONTEXT_PATH = "/source";
+
+    @Override
+    public void init(FilterConfig fc) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest sr, ServletResponse sr1, FilterChain fc)
+            throws IOException, ServletException {
+        HttpServletRequest httpReq = (HttpServletRequest) sr;
+        HttpServletResponse httpRes = (HttpServletResponse) sr1;
+
+        if (!RuntimeEnvironment.getInstance().isCompressXref() ||
+                !DEFAULT_CONTEXT_PATH.equals(httpReq.getContextPath()) ||
+                !acceptsGzip(httpReq)) {
+            fc.doFilter(sr, sr1);
+            return;
+        }
+
+        GzipSplicingResponse response = new GzipSplicingResponse(httpRes);
+        httpReq.setAttribute(RESPONSE_ATTRIBUTE, response);
+        httpRes.addHeader("Vary", "Accept-Encoding");
+        try {
+            fc.doFilter(sr, response);
+        } finally {
+            httpReq.removeAttribute(RESPONSE_ATTRIBUTE);
+        }
+        response.finish();
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Dumps the xref file into the page. If the response is handled by this
+     * filter and the file is stored compressed, its content is spliced into
+     * the response body, see {@link GzipSplicingResponse#splice(InputStream)}.
+     * Otherwise the file is dumped via
+     * {@link Util#dumpXref(Writer, File, boolean, String)}.
+     * @param request current request
+     * @param out page writer
+     * @param xrefFile xref file to dump
+     * @return {@code true} on success
+     */
+    public static boolean dumpXref(HttpServletRequest request, Writer out,
+            File xrefFile) {
+        boolean compressed = xrefFile.getName().endsWith(".gz");
+        Object response = request.getAttribute(RESPONSE_ATTRIBUTE);
+        if (compressed && response instanceof GzipSplicingResponse &&
+                sameCharset((GzipSplicingResponse) response)) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(xrefFile))) {
+                out.flush();
+                ((GzipSplicingResponse) response).splice(in);
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING,
+                        "An error occurred while splicing file " + xrefFile, e);
+                return false;
+            }
+        }
+        return Util.dumpXref(out, xrefFile, compressed,
+                request.getContextPath());
+    }
+
+    /**
+     * The xref files are written using the system default charset.
+     */
+    private static boolean sameCharset(GzipSplicingResponse response) {
+        String encoding = response.getCharacterEncoding();
+        return encoding != null && Charset.isSupported(encoding) &&
+                Charset.forName(encoding).equals(Charset.defaultCharset());
+    }
+
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader("Accept-Encoding");
+        if (accept == null) {
+            return false;
+        }
+        for (String coding : accept.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equals("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
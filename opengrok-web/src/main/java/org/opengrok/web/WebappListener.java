@@ -36,6 +36,8 @@ import org.opengrok.indexer.Info;
 import org.opengrok.indexer.authorization.AuthorizationFramework;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
 import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.metrics.JvmMetrics;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.indexer.web.PageConfig;
 import org.opengrok.indexer.web.SearchHelper;
 import org.opengrok.web.api.v1.suggester.provider.service.SuggesterServiceFactory;
@@ -83,6 +85,8 @@ public final class WebappListener
         env.setAuthorizationFramework(new AuthorizationFramework(env.getPluginDirectory(), env.getPluginStack()));
         env.getAuthorizationFramework().reload();
 
+        JvmMetrics.register(MetricsRegistry.getInstance());
+
         try {
             loadStatistics();
         } catch (IOException ex) {
@@ -24,7 +24,9 @@ package org.opengrok.web.api.v1.controller;
 
 import org.opengrok.indexer.configuration.Group;
 import org.opengrok.indexer.configuration.Project;
+import org.opengrok.indexer.configuration.ProjectPathIndex;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.ChangesetIndex;
 import org.opengrok.indexer.history.HistoryException;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.history.Repository;
@@ -92,6 +94,7 @@ public class ProjectsController {
             // Note that the project is inactive in the UI until it is indexed.
             // See {@code isIndexed()}
             env.getProjects().put(projectName, project);
+            ProjectPathIndex.invalidate();
 
             Set<Project> projectSet = new TreeSet<>();
             projectSet.add(project);
@@ -161,14 +164,24 @@ public class ProjectsController {
         }
         env.getProjectRepositoriesMap().remove(proj);
 
+        // The changeset index is found by the project, so it has to be
+        // dropped before the project is removed.
+        try {
+            ChangesetIndex.remove(proj);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not delete changeset index of project " + projectName, e);
+        }
+
         env.getProjects().remove(projectName, proj);
+        ProjectPathIndex.invalidate();
 
         // Prevent the project to be included in new searches.
         env.refreshSearcherManagerMap();
 
         // Lastly, remove data associated with the project.
         logger.log(Level.INFO, "deleting data for project {0}", projectName);
-        for (String dirName: new String[]{IndexDatabase.INDEX_DIR, IndexDatabase.XREF_DIR}) {
+        for (String dirName: new String[]{IndexDatabase.INDEX_DIR, IndexDatabase.XREF_DIR,
+                ChangesetIndex.CHANGESET_INDEX_DIR_NAME}) {
             java.nio.file.Path path = Paths.get(env.getDataRootPath(), dirName, projectName);
             try {
                 IOUtils.removeRecursive(path);
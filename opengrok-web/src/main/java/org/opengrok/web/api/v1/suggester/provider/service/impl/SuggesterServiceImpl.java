@@ -42,6 +42,8 @@ import org.opengrok.indexer.configuration.SuggesterConfig;
 import org.opengrok.indexer.configuration.SuperIndexSearcher;
 import org.opengrok.indexer.index.IndexDatabase;
 import org.opengrok.indexer.logger.LoggerFactory;
+import org.opengrok.indexer.metrics.Histogram;
+import org.opengrok.indexer.metrics.MetricsRegistry;
 import org.opengrok.web.api.v1.suggester.provider.service.SuggesterService;
 
 import java.io.File;
@@ -74,6 +76,9 @@ public class SuggesterServiceImpl implements SuggesterService {
 
     private static final Logger logger = LoggerFactory.getLogger(SuggesterServiceImpl.class);
 
+    private static final Histogram LOOKUP_TIME = MetricsRegistry.getInstance().histogram(
+            "opengrok_suggester_lookup_seconds", "Time spent looking up suggestions.");
+
     private static SuggesterServiceImpl instance;
 
     private Suggester suggester;
@@ -110,9 +115,12 @@ public class SuggesterServiceImpl implements SuggesterService {
             if (suggester == null) {
                 return new Suggestions(Collections.emptyList(), true);
             }
+            long start = System.nanoTime();
             List<NamedIndexReader> namedReaders = getNamedIndexReaders(projects, superIndexSearchers);
 
-            return suggester.search(namedReaders, suggesterQuery, query);
+            Suggestions suggestions = suggester.search(namedReaders, suggesterQuery, query);
+            LOOKUP_TIME.observeSince(start);
+            return suggestions;
         } finally {
             lock.readLock().unlock();
 
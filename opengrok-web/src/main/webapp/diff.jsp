@@ -22,14 +22,16 @@ Copyright (c) 2006, 2018, Oracle and/or its affiliates. All rights reserved.
 
 Portions Copyright 2011 Jens Elkner.
 --%><%@page errorPage="error.jsp" import="
-java.io.ByteArrayInputStream,
-java.io.OutputStream,
 java.io.BufferedReader,
+java.io.BufferedWriter,
 java.io.FileNotFoundException,
 java.io.InputStream,
 java.io.InputStreamReader,
+java.io.OutputStreamWriter,
 java.io.UnsupportedEncodingException,
+java.io.Writer,
 java.net.URLDecoder,
+java.nio.charset.StandardCharsets,
 java.util.ArrayList,
 
 org.suigeneris.jrcs.diff.delta.Chunk,
@@ -70,22 +72,19 @@ private String getAnnotateRevision(DiffData data) {
     if (data.type == DiffType.TEXT
             && request.getParameter("action") != null
             && request.getParameter("action").equals("download")) {
-        try (OutputStream o = response.getOutputStream()) {
+        response.setHeader("content-disposition", "attachment; filename="
+                + cfg.getResourceFile().getName() + "@" + data.rev[0]
+                + "-" + data.rev[1] + ".diff");
+        // stream the deltas one by one instead of building the whole diff
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                response.getOutputStream(), StandardCharsets.UTF_8))) {
+            StringBuffer sb = new StringBuffer();
             for (int i = 0; i < data.revision.size(); i++) {
-                Delta d = data.revision.getDelta(i);
-                try (InputStream in = new ByteArrayInputStream(d.toString().getBytes("UTF-8"))) {
-                    response.setHeader("content-disposition", "attachment; filename="
-                            + cfg.getResourceFile().getName() + "@" + data.rev[0]
-                            + "-" + data.rev[1] + ".diff");
-                    byte[] buffer = new byte[8192];
-                    int nr;
-                    while ((nr = in.read(buffer)) > 0) {
-                        o.write(buffer, 0, nr);
-                    }
-                }
+                sb.setLength(0);
+                data.revision.getDelta(i).toString(sb);
+                w.append(sb);
             }
-            o.flush();
-            o.close();
+            w.flush();
             return;
         }
     }
@@ -31,9 +31,11 @@ Portions Copyright (c) 2018, Chris Fraire <cfraire@me.com>.
 java.text.Format,
 java.text.SimpleDateFormat,
 java.util.Date,
+java.util.List,
 java.util.Set,
 java.util.regex.Pattern,
 
+org.opengrok.indexer.history.ChangesetIndex,
 org.opengrok.indexer.history.History,
 org.opengrok.indexer.history.HistoryEntry,
 org.opengrok.indexer.history.HistoryException,
@@ -54,7 +56,19 @@ org.opengrok.indexer.configuration.RuntimeEnvironment"
         File f = cfg.getResourceFile();
         History hist = null;
         try {
-            hist = HistoryGuru.getInstance().getHistoryUI(f);
+            HistoryGuru guru = HistoryGuru.getInstance();
+            ChangesetIndex index = cfg.isDir() && cfg.getEnv().isChangesetIndex()
+                    && guru.hasHistory(f) ? ChangesetIndex.forPath(path) : null;
+            ChangesetIndex.Result page = index == null ? null :
+                    index.getHistory(path, cfg.getSearchStart(), cfg.getSearchMaxItems());
+            if (page != null && page.getTotalHits() > 0) {
+                // Only the shown page of the directory history is loaded.
+                hist = new History();
+                hist.setHistoryEntries(page.getEntries());
+                request.setAttribute("history.jsp-total", page.getTotalHits());
+            } else {
+                hist = guru.getHistoryUI(f);
+            }
         } catch (Exception e) {
             // should not happen
             response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
@@ -116,7 +130,8 @@ include file="pageheader.jspf"
 
         int start = cfg.getSearchStart();
         int max = cfg.getSearchMaxItems();
-        long totalHits = hist.getHistoryEntries().size();
+        Long indexedTotal = (Long) request.getAttribute("history.jsp-total");
+        long totalHits = indexedTotal != null ? indexedTotal : hist.getHistoryEntries().size();
         long thispage = Math.min(totalHits - start, max);
 
         // We have a lots of results to show: create a slider for them
@@ -222,7 +237,9 @@ document.domReady.push(function() {domReadyHistory();});
     <tbody>
             <%
             int count=0;
-            for (HistoryEntry entry : hist.getHistoryEntries(max, start)) {
+            List<HistoryEntry> entries = request.getAttribute("history.jsp-total") != null ?
+                    hist.getHistoryEntries() : hist.getHistoryEntries(max, start);
+            for (HistoryEntry entry : entries) {
                 String rev = entry.getRevision();
                 if (rev == null || rev.length() == 0) {
                     rev = "";
@@ -41,6 +41,7 @@ java.util.Set,
 java.util.logging.Level,
 java.util.zip.GZIPInputStream,
 javax.servlet.http.HttpServletResponse,
+org.apache.lucene.document.Document,
 
 org.opengrok.indexer.analysis.AnalyzerGuru,
 org.opengrok.indexer.analysis.Definitions,
@@ -51,9 +52,11 @@ org.opengrok.indexer.index.IndexDatabase,
 org.opengrok.indexer.search.DirectoryEntry,
 org.opengrok.indexer.search.DirectoryExtraReader,
 org.opengrok.indexer.search.FileExtra,
+org.opengrok.indexer.search.QueryBuilder,
 org.opengrok.indexer.util.FileExtraZipper,
 org.opengrok.indexer.util.IOUtils,
 org.opengrok.web.DirectoryListing,
+org.opengrok.web.GzipXrefFilter,
 org.opengrok.indexer.web.SearchHelper"
 %><%
 {
@@ -185,10 +188,19 @@ document.pageReady.push(function() { pageReadyList();});
                 BufferedInputStream bin =
                     new BufferedInputStream(new FileInputStream(resourceFile));
                 try {
+                    // We're generating xref for the latest revision, so the
+                    // file type and the definitions are in the index.
+                    Document doc = IndexDatabase.getDocument(resourceFile);
                     FileAnalyzerFactory a = AnalyzerGuru.find(basename);
                     Genre g = AnalyzerGuru.getGenre(a);
                     if (g == null) {
-                        a = AnalyzerGuru.find(bin);
+                        // Reuse the file type detected by the indexer before
+                        // falling back to inspecting the contents.
+                        a = AnalyzerGuru.findByFileTypeName(
+                                doc == null ? null : doc.get(QueryBuilder.TYPE));
+                        if (a == null) {
+                            a = AnalyzerGuru.find(bin);
+                        }
                         g = AnalyzerGuru.getGenre(a);
                     }
                     if (g == Genre.IMAGE) {
@@ -208,9 +220,7 @@ document.pageReady.push(function() { pageReadyList();});
 %>
 <div id="src" data-navigate-window-enabled="<%= navigateWindowEnabled %>">
     <pre><%
-                        // We're generating xref for the latest revision, so we can
-                        // find the definitions in the index.
-                        Definitions defs = IndexDatabase.getDefinitions(resourceFile);
+                        Definitions defs = IndexDatabase.getDefinitions(doc);
                         Annotation annotation = cfg.getAnnotation();
                         // SRCROOT is read with UTF-8 as a default.
                         r = IOUtils.createBOMStrippedReader(bin,
@@ -238,9 +248,7 @@ Click <a href="<%= rawPath %>">download <%= basename %></a><%
 %>
 <div id="src" data-navigate-window-enabled="<%= navigateWindowEnabled %>">
     <pre><%
-                    boolean compressed = xrefFile.getName().endsWith(".gz");
-                    Util.dumpXref(out, xrefFile, compressed,
-                            request.getContextPath());
+                    GzipXrefFilter.dumpXref(request, out, xrefFile);
     %></pre>
 </div><%
             }
@@ -370,8 +378,7 @@ Click <a href="<%= rawPath %>">download <%= basename %></a><%
 %>
 <div id="src" data-navigate-window-enabled="<%= navigateWindowEnabled %>">
     <pre><%
-            boolean compressed = xrefFile.getName().endsWith(".gz");
-            Util.dumpXref(out, xrefFile, compressed, request.getContextPath());
+            GzipXrefFilter.dumpXref(request, out, xrefFile);
     %></pre>
 </div><%
         } else {
@@ -0,0 +1,84 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.web;
+
+import org.junit.Test;
+import org.opengrok.web.DownloadServlet.ByteRange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadServletTest {
+
+    private static void assertRange(long start, long end, ByteRange range) {
+        assertEquals(start, range.start);
+        assertEquals(end, range.end);
+    }
+
+    @Test
+    public void testParseRange() {
+        assertRange(0, 99, ByteRange.parse("bytes=0-99", 1000));
+        assertRange(500, 999, ByteRange.parse("bytes=500-", 1000));
+        assertRange(900, 999, ByteRange.parse("bytes=-100", 1000));
+        assertRange(0, 999, ByteRange.parse("bytes=-5000", 1000));
+        assertRange(990, 999, ByteRange.parse("bytes=990-5000", 1000));
+        // beyond 2GB
+        assertRange(3000000000L, 3999999999L, ByteRange.parse("bytes=3000000000-", 4000000000L));
+    }
+
+    @Test
+    public void testParseIgnoredRange() {
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+        assertNull(ByteRange.parse("bytes=5-1", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+    }
+
+    @Test
+    public void testParseUnsatisfiableRange() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+    }
+
+    @Test
+    public void testETag() {
+        String etag = DownloadServlet.getETag(10, 1000);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertNotEquals(etag, DownloadServlet.getETag(11, 1000));
+        assertNotEquals(etag, DownloadServlet.getETag(10, 1001));
+
+        assertTrue(DownloadServlet.matchesETag(etag, etag));
+        assertTrue(DownloadServlet.matchesETag("\"x\", " + etag, etag));
+        assertTrue(DownloadServlet.matchesETag("*", etag));
+        assertFalse(DownloadServlet.matchesETag("\"x\"", etag));
+        assertFalse(DownloadServlet.matchesETag(null, etag));
+
+        assertEquals("\"r-1.2_3\"", DownloadServlet.getRevisionETag("1.2\"3"));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengrok.indexer.util.SpliceableGZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GzipSplicingResponseTest {
+
+    private ByteArrayOutputStream body;
+    private HttpServletResponse response;
+
+    @Before
+    public void setUp() throws IOException {
+        body = new ByteArrayOutputStream();
+        response = mock(HttpServletResponse.class);
+        when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+    }
+
+    private static byte[] gzip(String str) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SpliceableGZIPOutputStream gz = new SpliceableGZIPOutputStream(out,
+                Deflater.DEFAULT_COMPRESSION)) {
+            gz.write(str.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] plainGzip(String str) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(str.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the body as a single gzip member, failing if anything follows
+     * the member, like a strict client would.
+     */
+    private String gunzipBody() throws IOException, DataFormatException {
+        byte[] data = body.toByteArray();
+        assertTrue(data.length > 18);
+        assertEquals(0x1f, data[0] & 0xff);
+        assertEquals(0x8b, data[1] & 0xff);
+        assertEquals(Deflater.DEFLATED, data[2]);
+        assertEquals("no optional header fields", 0, data[3]);
+
+        int headerLength = 10;
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(data, headerLength, data.length - headerLength);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64];
+        while (!inflater.finished()) {
+            int len = inflater.inflate(buf);
+            assertFalse("truncated deflate data",
+                    len == 0 && inflater.needsInput());
+            out.write(buf, 0, len);
+        }
+        assertEquals("only the trailer follows the deflate data", 8,
+                inflater.getRemaining());
+        inflater.end();
+
+        byte[] uncompressed = out.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(uncompressed);
+        ByteBuffer trailer = ByteBuffer.wrap(data, data.length - 8, 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(crc.getValue(), trailer.getInt() & 0xffffffffL);
+        assertEquals(uncompressed.length, trailer.getInt());
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            assertArrayEquals(uncompressed, IOUtils.toByteArray(in));
+        }
+        return new String(uncompressed, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSplice() throws Exception {
+        GzipSplicingResponse res = new GzipSplicingResponse(response);
+
+        PrintWriter out = res.getWriter();
+        out.write("<pre>");
+        res.splice(new ByteArrayInputStream(gzip("x = \u00e9;")));
+        out.write("</pre>");
+        res.finish();
+
+        assertEquals("<pre>x = \u00e9;</pre>", gunzipBody());
+        verify(response).setHeader("Content-Encoding", "gzip");
+    }
+
+    @Test
+    public void testSpliceOnly() throws Exception {
+        GzipSplicingResponse res = new GzipSplicingResponse(response);
+
+        res.splice(new ByteArrayInputStream(gzip("abc")));
+        res.finish();
+
+        assertEquals("abc", gunzipBody());
+    }
+
+    @Test
+    public void testSpliceMultiple() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append("<a href=\"#").append(i).append("\">").append(i)
+                    .append("</a>\n");
+        }
+        GzipSplicingResponse res = new GzipSplicingResponse(response);
+
+        PrintWriter out = res.getWriter();
+        out.write("<html><body>");
+        res.splice(new ByteArrayInputStream(gzip(large.toString())));
+        out.write("<hr/>");
+        res.splice(new ByteArrayInputStream(gzip("")));
+        res.splice(new ByteArrayInputStream(gzip("second")));
+        out.write("</body></html>");
+        res.finish();
+
+        assertEquals("<html><body>" + large + "<hr/>second</body></html>",
+                gunzipBody());
+    }
+
+    @Test
+    public void testSplicePlainGzip() throws Exception {
+        GzipSplicingResponse res = new GzipSplicingResponse(response);
+
+        PrintWriter out = res.getWriter();
+        out.write("<pre>");
+        res.splice(new ByteArrayInputStream(plainGzip("old xref")));
+        out.write("</pre>");
+        res.finish();
+
+        assertEquals("<pre>old xref</pre>", gunzipBody());
+    }
+
+    @Test
+    public void testCombine() {
+        byte[] a = "first part".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "and the second part".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(a);
+        long crcA = crc.getValue();
+        crc.reset();
+        crc.update(b);
+        long crcB = crc.getValue();
+        crc.reset();
+        crc.update(a);
+        crc.update(b);
+
+        assertEquals(crc.getValue(), GzipSplicingResponse.combine(crcA, crcB,
+                b.length));
+        assertEquals(crcB, GzipSplicingResponse.combine(0, crcB, b.length));
+        assertEquals(crcA, GzipSplicingResponse.combine(crcA, 0, 0));
+    }
+
+    @Test
+    public void testRedirectIsNotEncoded() throws IOException {
+        GzipSplicingResponse res = new GzipSplicingResponse(response);
+
+        res.sendRedirect("/source/xref/");
+        res.finish();
+
+        assertEquals(0, body.size());
+        verify(response, never()).setHeader("Content-Encoding", "gzip");
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getHeader(anyString())).thenReturn(null);
+        assertFalse(GzipXrefFilter.acceptsGzip(request));
+
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate, br");
+        assertTrue(GzipXrefFilter.acceptsGzip(request));
+
+        when(request.getHeader("Accept-Encoding")).thenReturn("deflate, GZIP;q=0.5");
+        assertTrue(GzipXrefFilter.acceptsGzip(request));
+
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, deflate");
+        assertFalse(GzipXrefFilter.acceptsGzip(request));
+
+        when(request.getHeader("Accept-Encoding")).thenReturn("identity");
+        assertFalse(GzipXrefFilter.acceptsGzip(request));
+    }
+}
@@ -38,6 +38,8 @@ import org.opengrok.indexer.condition.RepositoryInstalled;
 import org.opengrok.indexer.configuration.Group;
 import org.opengrok.indexer.configuration.Project;
 import org.opengrok.indexer.configuration.RuntimeEnvironment;
+import org.opengrok.indexer.history.ChangesetIndex;
+import org.opengrok.indexer.history.HistoryEntry;
 import org.opengrok.indexer.history.HistoryGuru;
 import org.opengrok.indexer.history.MercurialRepositoryTest;
 import org.opengrok.indexer.history.Repository;
@@ -59,6 +61,7 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -67,6 +70,7 @@ import java.util.stream.Collectors;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.opengrok.indexer.history.RepositoryFactory.getRepository;
 import static org.opengrok.indexer.util.IOUtils.removeRecursive;
@@ -347,6 +351,32 @@ public class ProjectsControllerTest extends JerseyTest {
         assertEquals(0, group.getProjects().size());
     }
 
+    /**
+     * Test that the changeset index of a deleted project is removed, so that
+     * a project added again with the same name does not show the changesets
+     * of the deleted one.
+     */
+    @Test
+    public void testDeleteChangesetIndex() throws Exception {
+        addProject("git");
+        Project project = env.getProjects().get("git");
+        assertNotNull(project);
+        Repository repo = getRepository(env.getProjectRepositoriesMap().get(project).get(0), false);
+
+        HistoryEntry entry = new HistoryEntry("1", new Date(), "author", null, "message", true);
+        entry.addFile("/git/main.c");
+        ChangesetIndex.forPath("/git").add(repo, Collections.singletonList(entry));
+        File dir = new File(env.getDataRootFile(),
+                ChangesetIndex.CHANGESET_INDEX_DIR_NAME + File.separator + "git");
+        assertTrue(dir.isDirectory());
+
+        delete("git");
+        assertFalse(dir.exists());
+
+        addProject("git");
+        assertNull(ChangesetIndex.forPath("/git").getHistory("/git", 0, 10));
+    }
+
     private void delete(final String project) {
         target("projects")
                 .path(project)
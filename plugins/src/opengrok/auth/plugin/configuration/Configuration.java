@@ -18,7 +18,7 @@
  */
 
  /*
- * Copyright (c) 2016, 2017, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016, 2018, Oracle and/or its affiliates. All rights reserved.
  */
 package opengrok.auth.plugin.configuration;
 
@@ -42,6 +42,8 @@ public class Configuration {
     private List<LdapServer> servers = new ArrayList<>();
     private int interval;
     private String searchBase;
+    private int cacheTTL;
+    private int cacheSize = 10000;
 
     public void setServers(List<LdapServer> servers) {
         this.servers = servers;
@@ -66,6 +68,29 @@ public class Configuration {
     public void setSearchBase(String base) {
         this.searchBase = base;
     }
+
+    /**
+     * @return time in milliseconds for which the results of LDAP lookups
+     * are cached, 0 means no caching
+     */
+    public int getCacheTTL() {
+        return cacheTTL;
+    }
+
+    public void setCacheTTL(int cacheTTL) {
+        this.cacheTTL = cacheTTL;
+    }
+
+    /**
+     * @return maximum number of cached results of LDAP lookups
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
     
     public String getXMLRepresentationAsString() {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
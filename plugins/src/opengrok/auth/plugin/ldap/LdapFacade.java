@@ -18,16 +18,19 @@
  */
 
 /*
- * Copyright (c) 2016, 2017, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016, 2018, Oracle and/or its affiliates. All rights reserved.
  */
 package opengrok.auth.plugin.ldap;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.naming.CommunicationException;
@@ -43,6 +46,16 @@ import javax.naming.directory.SearchResult;
 import opengrok.auth.plugin.configuration.Configuration;
 import opengrok.auth.plugin.entity.User;
 
+/**
+ * LDAP provider backed by a set of equivalent servers. Lookups are spread
+ * across the servers in round robin fashion, a server which fails is skipped
+ * and the lookup is retried on the next one. Each server keeps its own pool of
+ * connections, see {@link LdapServer}.
+ * <p>
+ * The results of the lookups can be cached for a configured time
+ * ({@link Configuration#getCacheTTL()}) so that repeated lookups of the same
+ * user or group do not need a round trip to the server.
+ */
 public class LdapFacade extends AbstractLdapProvider {
 
     private static final Logger LOGGER = Logger.getLogger(LdapFacade.class.getName());
@@ -89,10 +102,30 @@ public class LdapFacade extends AbstractLdapProvider {
      */
     private List<LdapServer> servers = new ArrayList<>();
 
-    private SearchControls controls;
-    private int actualServer = 0;
-    private long errorTimestamp = 0;
-    private boolean reported = false;
+    /**
+     * Index of the server to start the next lookup with.
+     */
+    private final AtomicInteger nextServer = new AtomicInteger();
+    private volatile long errorTimestamp = 0;
+    private volatile boolean reported = false;
+
+    private int cacheTTL;
+    private int cacheSize;
+
+    /**
+     * Cached lookup results, the least recently used first.
+     */
+    private final Map<String, CachedResult> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final class CachedResult {
+        final Map<String, Set<String>> result;
+        final long expires;
+
+        CachedResult(Map<String, Set<String>> result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+    }
 
     /**
      * Interface for converting LDAP results into user defined types.
@@ -171,18 +204,17 @@ public class LdapFacade extends AbstractLdapProvider {
         setServers(cfg.getServers());
         setInterval(cfg.getInterval());
         setSearchBase(cfg.getSearchBase());
-        prepareSearchControls();
+        setCache(cfg.getCacheTTL(), cfg.getCacheSize());
         prepareServers();
     }
 
     /**
-     * Finds first working server in the pool.
+     * Connects to the first working server in the pool.
      */
     private void prepareServers() {
         for (int i = 0; i < servers.size(); i++) {
             LdapServer server = servers.get(i);
             if (server.isWorking()) {
-                actualServer = i;
                 return;
             }
         }
@@ -224,6 +256,19 @@ public class LdapFacade extends AbstractLdapProvider {
         return searchBase;
     }
 
+    /**
+     * Configure the cache of lookup results.
+     *
+     * @param ttl time in milliseconds for which the results are cached, 0
+     * disables the cache
+     * @param size maximum number of cached results
+     */
+    public synchronized void setCache(int ttl, int size) {
+        this.cacheTTL = ttl;
+        this.cacheSize = size;
+        cache.clear();
+    }
+
     public void setSearchBase(String base) {
         this.searchBase = base;
     }
@@ -244,24 +289,65 @@ public class LdapFacade extends AbstractLdapProvider {
      */
     @Override
     public Map<String, Set<String>> lookupLdapContent(User user, String filter, String[] values) {
+        String dn = user != null ? user.getUsername() : getSearchBase();
+        String ldapFilter = filter == null ? LDAP_FILTER : filter;
+
+        String key = null;
+        synchronized (this) {
+            if (cacheTTL > 0 && cacheSize > 0) {
+                key = getCacheKey(dn, ldapFilter, values);
+                CachedResult cached = cache.get(key);
+                if (cached != null) {
+                    if (cached.expires - System.currentTimeMillis() > 0) {
+                        return cached.result;
+                    }
+                    cache.remove(key);
+                }
+            }
+        }
 
-        return lookup(
-                user != null ? user.getUsername() : getSearchBase(),
-                filter == null ? LDAP_FILTER : filter,
-                values,
+        Map<String, Set<String>> result = lookup(dn, ldapFilter, values,
                 new ContentAttributeMapper(values));
+
+        if (key != null && result != null) {
+            // the result is shared by all callers from now on
+            Map<String, Set<String>> shared = new HashMap<>();
+            result.forEach((k, v) -> shared.put(k, Collections.unmodifiableSet(v)));
+            result = Collections.unmodifiableMap(shared);
+            synchronized (this) {
+                cache.put(key, new CachedResult(result, System.currentTimeMillis() + cacheTTL));
+                while (cache.size() > cacheSize) {
+                    cache.remove(cache.keySet().iterator().next());
+                }
+            }
+        }
+        return result;
     }
 
-    private SearchControls prepareSearchControls() {
-        controls = new SearchControls();
+    private static String getCacheKey(String dn, String filter, String[] values) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dn).append('\0').append(filter);
+        if (values != null) {
+            for (String value : values) {
+                sb.append('\0').append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static SearchControls prepareSearchControls(String[] attributes) {
+        SearchControls controls = new SearchControls();
         controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
         controls.setTimeLimit(LDAP_TIMEOUT);
         controls.setCountLimit(LDAP_COUNT_LIMIT);
+        controls.setReturningAttributes(attributes);
         return controls;
     }
 
     /**
-     * Lookups the LDAP server for content
+     * Lookups the LDAP servers for content. The lookup starts with the next
+     * server in round robin order and falls over to the other servers on
+     * failure.
      *
      * @param <T> return type
      * @param dn search base for the query
@@ -269,25 +355,9 @@ public class LdapFacade extends AbstractLdapProvider {
      * @param attributes returning LDAP attributes
      * @param mapper mapper class implementing @code{AttributeMapper} closed
      *
-     * @return results transformed with mapper
-     */
-    private <T> T lookup(String dn, String filter, String[] attributes, AttributeMapper<T> mapper) {
-        return lookup(dn, filter, attributes, mapper, 0);
-    }
-
-    /**
-     * Lookups the LDAP server for content
-     *
-     * @param <T> return type
-     * @param dn search base for the query
-     * @param filter LDAP filter for the query
-     * @param attributes returning LDAP attributes
-     * @param mapper mapper class implementing @code{AttributeMapper} closed
-     * @param fail current count of failures
-     *
      * @return results transformed with mapper or {@code null} on failure
      */
-    private <T> T lookup(String dn, String filter, String[] attributes, AttributeMapper<T> mapper, int fail) {
+    private <T> T lookup(String dn, String filter, String[] attributes, AttributeMapper<T> mapper) {
 
         if (errorTimestamp > 0 && errorTimestamp + interval > System.currentTimeMillis()) {
             if (!reported) {
@@ -297,75 +367,55 @@ public class LdapFacade extends AbstractLdapProvider {
             return null;
         }
 
-        if (fail > servers.size() - 1) {
-            // did the whole rotation
-            LOGGER.log(Level.SEVERE, "Tried all servers in a pool but no server works");
-            errorTimestamp = System.currentTimeMillis();
-            reported = false;
-            return null;
-        }
-
         if (!isConfigured()) {
             LOGGER.log(Level.SEVERE, "LDAP is not configured");
             return null;
         }
 
-        NamingEnumeration<SearchResult> namingEnum = null;
-        try {
-            LdapServer server = servers.get(actualServer);
-            controls.setReturningAttributes(attributes);
-            for (namingEnum = server.search(dn, filter, controls); namingEnum.hasMore();) {
-                SearchResult sr = namingEnum.next();
-                reported = false;
-                return processResult(sr, mapper);
+        SearchControls controls = prepareSearchControls(attributes);
+        int start = Math.floorMod(nextServer.getAndIncrement(), servers.size());
+        for (int i = 0; i < servers.size(); i++) {
+            LdapServer server = servers.get((start + i) % servers.size());
+            if (!server.isWorking()) {
+                continue;
             }
-        } catch (NameNotFoundException ex) {
-            LOGGER.log(Level.SEVERE, "The LDAP name was not found.", ex);
-            return null;
-        } catch (SizeLimitExceededException ex) {
-            LOGGER.log(Level.SEVERE, "The maximum size of the LDAP result has exceeded.", ex);
-            closeActualServer();
-            actualServer = getNextServer();
-            return lookup(dn, filter, attributes, mapper, fail + 1);
-        } catch (TimeLimitExceededException ex) {
-            LOGGER.log(Level.SEVERE, "Time limit for LDAP operation has exceeded.", ex);
-            closeActualServer();
-            actualServer = getNextServer();
-            return lookup(dn, filter, attributes, mapper, fail + 1);
-        } catch (CommunicationException ex) {
-            LOGGER.log(Level.INFO, "Communication error received, reconnecting to next server.", ex);
-            closeActualServer();
-            actualServer = getNextServer();
-            return lookup(dn, filter, attributes, mapper, fail + 1);
-        } catch (NamingException ex) {
-            LOGGER.log(Level.SEVERE, "An arbitrary LDAP error occurred.", ex);
-            closeActualServer();
-            actualServer = getNextServer();
-            return lookup(dn, filter, attributes, mapper, fail + 1);
-        } finally {
-            if (namingEnum != null) {
-                try {
-                    namingEnum.close();
-                } catch (NamingException e) {
-                    LOGGER.log(Level.WARNING,
-                            "failed to close search result enumeration");
+
+            NamingEnumeration<SearchResult> namingEnum = null;
+            try {
+                namingEnum = server.search(dn, filter, controls);
+                reported = false;
+                if (namingEnum.hasMore()) {
+                    return processResult(namingEnum.next(), mapper);
+                }
+                return null;
+            } catch (NameNotFoundException ex) {
+                LOGGER.log(Level.SEVERE, "The LDAP name was not found.", ex);
+                return null;
+            } catch (SizeLimitExceededException ex) {
+                LOGGER.log(Level.SEVERE, "The maximum size of the LDAP result has exceeded.", ex);
+            } catch (TimeLimitExceededException ex) {
+                LOGGER.log(Level.SEVERE, "Time limit for LDAP operation has exceeded.", ex);
+            } catch (CommunicationException ex) {
+                LOGGER.log(Level.INFO, "Communication error received, trying next server.", ex);
+            } catch (NamingException ex) {
+                LOGGER.log(Level.SEVERE, "An arbitrary LDAP error occurred.", ex);
+            } finally {
+                if (namingEnum != null) {
+                    try {
+                        namingEnum.close();
+                    } catch (NamingException e) {
+                        LOGGER.log(Level.WARNING,
+                                "failed to close search result enumeration");
+                    }
                 }
             }
         }
-        return null;
-    }
-
-    private void closeActualServer() {
-        servers.get(actualServer).close();
-    }
 
-    /**
-     * Server take over algorithm behavior.
-     *
-     * @return the index of the next server to be used
-     */
-    private int getNextServer() {
-        return (actualServer + 1) % servers.size();
+        // did the whole rotation
+        LOGGER.log(Level.SEVERE, "Tried all servers in a pool but no server works");
+        errorTimestamp = System.currentTimeMillis();
+        reported = false;
+        return null;
     }
 
     /**
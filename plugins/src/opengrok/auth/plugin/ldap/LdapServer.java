@@ -18,11 +18,16 @@
  */
 
 /*
- * Copyright (c) 2016, 2017, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016, 2018, Oracle and/or its affiliates. All rights reserved.
  */
 package opengrok.auth.plugin.ldap;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.naming.CommunicationException;
@@ -34,6 +39,16 @@ import javax.naming.directory.SearchResult;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
 
+/**
+ * LDAP server with a bounded pool of connections.
+ * <p>
+ * JNDI contexts are not thread safe, so every search borrows a connection from
+ * the pool for its whole duration (including reading of the results) which
+ * lets concurrent searches run in parallel up to {@link #getMaxConnections()}.
+ * Connections which failed with a communication error are discarded,
+ * connections idle for longer than {@link #HEALTH_CHECK_IDLE_TIME} are checked
+ * by reading the root DSE before they are used again.
+ */
 public class LdapServer {
 
     private static final Logger LOGGER = Logger.getLogger(LdapServer.class.getName());
@@ -45,15 +60,46 @@ public class LdapServer {
      */
     private static final int LDAP_TIMEOUT = 5000; // ms
 
+    /**
+     * Connections idle for longer than this are checked before use.
+     */
+    static final long HEALTH_CHECK_IDLE_TIME = 60 * 1000; // ms
+
     private String url;
     private String username;
     private String password;
     private int timeout;
     private int interval = 10 * 1000;
+    private int maxConnections = 8;
 
     private Hashtable<String, String> env;
-    private LdapContext ctx;
-    private long errorTimestamp = 0;
+    private volatile long errorTimestamp = 0;
+
+    /**
+     * Idle connections, the most recently used first.
+     */
+    private final Deque<PooledContext> idle = new ArrayDeque<>();
+    /**
+     * Number of open connections, both idle and borrowed.
+     */
+    private int open;
+    /**
+     * Incremented by {@link #close()} so that the connections borrowed before
+     * are closed when they are returned.
+     */
+    private int generation;
+
+    private static final class PooledContext {
+        final LdapContext ctx;
+        final int generation;
+        long lastUsed;
+
+        PooledContext(LdapContext ctx, int generation) {
+            this.ctx = ctx;
+            this.generation = generation;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
 
     public LdapServer() {
         this(prepareEnv());
@@ -112,17 +158,72 @@ public class LdapServer {
         this.interval = interval;
     }
 
+    public synchronized int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Set the maximum number of connections opened to this server.
+     *
+     * @param maxConnections the number of connections, at least 1
+     * @return this server
+     */
+    public synchronized LdapServer setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be positive");
+        }
+        this.maxConnections = maxConnections;
+        notifyAll();
+        return this;
+    }
+
+    /**
+     * @return number of open connections, both idle and in use
+     */
+    public synchronized int getOpenConnections() {
+        return open;
+    }
+
     /**
-     * The LDAP server is working only when its connection is not null. This
-     * tries to establish the connection if it is not established already.
+     * The LDAP server is working when it has an open connection or when a new
+     * connection can be established. This tries to establish the connection if
+     * there is none.
      *
      * @return true if it is working
      */
-    public synchronized boolean isWorking() {
+    public boolean isWorking() {
+        if (isDown()) {
+            return false;
+        }
+        synchronized (this) {
+            if (open > 0) {
+                return true;
+            }
+            open++;
+        }
+        LdapContext ctx = connect();
         if (ctx == null) {
-            ctx = connect();
+            synchronized (this) {
+                open--;
+                notifyAll();
+            }
+            return false;
         }
-        return ctx != null;
+        release(new PooledContext(ctx, currentGeneration()), false);
+        return true;
+    }
+
+    /**
+     * @return whether the server failed recently and should not be contacted
+     * until the interval since the failure elapses
+     */
+    private boolean isDown() {
+        long failed = errorTimestamp;
+        return failed > 0 && failed + interval > System.currentTimeMillis();
+    }
+
+    private synchronized int currentGeneration() {
+        return generation;
     }
 
     /**
@@ -130,42 +231,125 @@ public class LdapServer {
      *
      * @return the new connection or null
      */
-    private synchronized LdapContext connect() {
+    private LdapContext connect() {
         LOGGER.log(Level.INFO, "Server {0} connecting", this.url);
 
-        if (errorTimestamp > 0 && errorTimestamp + interval > System.currentTimeMillis()) {
+        if (isDown()) {
             LOGGER.log(Level.INFO, "Server {0} is down", this.url);
-            close();
             return null;
         }
 
-        if (ctx == null) {
-            try {
-                env.put(Context.PROVIDER_URL, this.url);
+        Hashtable<String, String> connEnv = new Hashtable<>(env);
+        connEnv.put(Context.PROVIDER_URL, this.url);
+        if (this.username != null) {
+            connEnv.put(Context.SECURITY_PRINCIPAL, this.username);
+        }
+        if (this.password != null) {
+            connEnv.put(Context.SECURITY_CREDENTIALS, this.password);
+        }
+        if (this.timeout > 0) {
+            connEnv.put(LDAP_TIMEOUT_PARAMETER, Integer.toString(this.timeout));
+        }
 
-                if (this.username != null) {
-                    env.put(Context.SECURITY_PRINCIPAL, this.username);
+        try {
+            LdapContext ctx = new InitialLdapContext(connEnv, null);
+            ctx.reconnect(null);
+            ctx.setRequestControls(null);
+            LOGGER.log(Level.INFO, "Connected to server {0}", this.url);
+            errorTimestamp = 0;
+            return ctx;
+        } catch (NamingException ex) {
+            LOGGER.log(Level.INFO, "Server {0} is not responding", this.url);
+            errorTimestamp = System.currentTimeMillis();
+            return null;
+        }
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if there is no
+     * idle connection and the limit is not reached yet. Waits for a connection
+     * to be returned otherwise.
+     *
+     * @return the connection
+     * @throws NamingException if no connection can be established
+     */
+    private PooledContext acquire() throws NamingException {
+        long deadline = System.currentTimeMillis() + LDAP_TIMEOUT;
+        while (true) {
+            PooledContext pc;
+            int gen;
+            synchronized (this) {
+                pc = idle.pollFirst();
+                while (pc == null && open >= maxConnections) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new CommunicationException(String.format(
+                                "No connection to server \"%s\" available", url));
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CommunicationException("Interrupted while waiting for connection");
+                    }
+                    pc = idle.pollFirst();
                 }
-                if (this.password != null) {
-                    env.put(Context.SECURITY_CREDENTIALS, this.password);
+                if (pc == null) {
+                    open++;
                 }
-                if (this.timeout > 0) {
-                    env.put(LDAP_TIMEOUT_PARAMETER, Integer.toString(this.timeout));
+                gen = generation;
+            }
+
+            if (pc == null) {
+                LdapContext ctx = connect();
+                if (ctx == null) {
+                    synchronized (this) {
+                        open--;
+                        notifyAll();
+                    }
+                    throw new CommunicationException(String.format("Server \"%s\" is down", url));
                 }
+                return new PooledContext(ctx, gen);
+            }
 
-                ctx = new InitialLdapContext(env, null);
-                ctx.reconnect(null);
-                ctx.setRequestControls(null);
-                LOGGER.log(Level.INFO, "Connected to server {0}", env.get(Context.PROVIDER_URL));
-                errorTimestamp = 0;
-            } catch (NamingException ex) {
-                LOGGER.log(Level.INFO, "Server {0} is not responding", env.get(Context.PROVIDER_URL));
-                errorTimestamp = System.currentTimeMillis();
-                close();
-                return ctx = null;
+            if (System.currentTimeMillis() - pc.lastUsed < HEALTH_CHECK_IDLE_TIME || isHealthy(pc.ctx)) {
+                return pc;
             }
+            LOGGER.log(Level.INFO, "Discarding stale connection to server {0}", url);
+            release(pc, true);
+        }
+    }
+
+    private static boolean isHealthy(LdapContext ctx) {
+        try {
+            ctx.getAttributes("", new String[]{"objectClass"});
+            return true;
+        } catch (NamingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the connection to the pool.
+     *
+     * @param pc the connection
+     * @param broken whether the connection should be closed
+     */
+    private void release(PooledContext pc, boolean broken) {
+        boolean discard;
+        synchronized (this) {
+            discard = broken || pc.generation != generation;
+            if (discard) {
+                open--;
+            } else {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pc);
+            }
+            notifyAll();
+        }
+        if (discard) {
+            closeContext(pc.ctx);
         }
-        return ctx;
     }
 
     /**
@@ -183,7 +367,8 @@ public class LdapServer {
     }
 
     /**
-     * Lookups the LDAP server.
+     * Lookups the LDAP server. The results are read completely before the
+     * connection is returned to the pool.
      *
      * @param name base dn for the search
      * @param filter LDAP filter
@@ -196,41 +381,57 @@ public class LdapServer {
     public NamingEnumeration<SearchResult> search(String name, String filter, SearchControls controls, boolean reconnected)
             throws NamingException {
 
-        if (!isWorking()) {
-            close();
-            throw new CommunicationException(String.format("Server \"%s\" is down", env.get(Context.PROVIDER_URL)));
-        }
-
         if (reconnected) {
-            LOGGER.log(Level.INFO, "Server {0} reconnect", env.get(Context.PROVIDER_URL));
-            close();
-            if ((ctx = connect()) == null) {
-                throw new CommunicationException(String.format("Server \"%s\" cannot reconnect", env.get(Context.PROVIDER_URL)));
-            }
+            LOGGER.log(Level.INFO, "Server {0} reconnect", url);
         }
 
+        PooledContext pc = acquire();
+        List<SearchResult> results = new ArrayList<>();
         try {
-            synchronized (this) {
-                return ctx.search(name, filter, controls);
+            NamingEnumeration<SearchResult> namingEnum = pc.ctx.search(name, filter, controls);
+            try {
+                while (namingEnum.hasMore()) {
+                    results.add(namingEnum.next());
+                }
+            } finally {
+                namingEnum.close();
             }
         } catch (CommunicationException ex) {
+            release(pc, true);
             if (reconnected) {
                 throw ex;
             }
             return search(name, filter, controls, true);
+        } catch (NamingException | RuntimeException ex) {
+            release(pc, false);
+            throw ex;
         }
+        release(pc, false);
+        return new ResultEnumeration(results);
     }
 
     /**
-     * Closes the server context.
+     * Closes all connections to the server. Connections currently in use are
+     * closed once they are returned.
      */
-    public synchronized void close() {
-        if (ctx != null) {
-            try {
-                ctx.close();
-            } catch (NamingException ex) {
-            }
-            ctx = null;
+    public void close() {
+        List<PooledContext> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            open -= toClose.size();
+            generation++;
+            notifyAll();
+        }
+        for (PooledContext pc : toClose) {
+            closeContext(pc.ctx);
+        }
+    }
+
+    private static void closeContext(LdapContext ctx) {
+        try {
+            ctx.close();
+        } catch (NamingException ex) {
         }
     }
 
@@ -241,4 +442,44 @@ public class LdapServer {
         return e;
     }
 
+    /**
+     * Search results which were already read from the server.
+     */
+    private static final class ResultEnumeration implements NamingEnumeration<SearchResult> {
+
+        private final List<SearchResult> results;
+        private int index;
+
+        ResultEnumeration(List<SearchResult> results) {
+            this.results = results;
+        }
+
+        @Override
+        public SearchResult next() {
+            if (index >= results.size()) {
+                throw new NoSuchElementException();
+            }
+            return results.get(index++);
+        }
+
+        @Override
+        public boolean hasMore() {
+            return index < results.size();
+        }
+
+        @Override
+        public void close() {
+            index = results.size();
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return hasMore();
+        }
+
+        @Override
+        public SearchResult nextElement() {
+            return next();
+        }
+    }
 }
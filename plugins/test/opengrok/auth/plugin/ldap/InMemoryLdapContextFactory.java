@@ -0,0 +1,248 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package opengrok.auth.plugin.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * JNDI context factory serving a simple in-memory directory so that the LDAP
+ * code can be tested without a running LDAP server. The directory supports
+ * subtree searches with presence ({@code attr=*}) and equality
+ * ({@code attr=value}) filters only.
+ * <p>
+ * Servers are identified by {@link Context#PROVIDER_URL}. All servers share
+ * the same entries, individual servers can be marked as down.
+ */
+public class InMemoryLdapContextFactory implements InitialContextFactory {
+
+    /**
+     * Directory entries keyed by their distinguished name.
+     */
+    static final Map<String, Attributes> ENTRIES = new ConcurrentHashMap<>();
+
+    /**
+     * URLs of the servers which refuse connections and fail searches.
+     */
+    static final Set<String> DOWN = ConcurrentHashMap.newKeySet();
+
+    static final Map<String, AtomicInteger> CONNECTIONS = new ConcurrentHashMap<>();
+    static final Map<String, AtomicInteger> SEARCHES = new ConcurrentHashMap<>();
+
+    /**
+     * Time each search takes in milliseconds.
+     */
+    static volatile int searchDelay;
+
+    static void reset() {
+        ENTRIES.clear();
+        DOWN.clear();
+        CONNECTIONS.clear();
+        SEARCHES.clear();
+        searchDelay = 0;
+    }
+
+    static void addEntry(String dn, String... attributes) {
+        Attributes attrs = new BasicAttributes(true);
+        for (int i = 0; i + 1 < attributes.length; i += 2) {
+            Attribute attr = attrs.get(attributes[i]);
+            if (attr == null) {
+                attrs.put(attributes[i], attributes[i + 1]);
+            } else {
+                attr.add(attributes[i + 1]);
+            }
+        }
+        ENTRIES.put(dn, attrs);
+    }
+
+    static int getConnections(String url) {
+        AtomicInteger count = CONNECTIONS.get(url);
+        return count == null ? 0 : count.get();
+    }
+
+    static int getSearches(String url) {
+        AtomicInteger count = SEARCHES.get(url);
+        return count == null ? 0 : count.get();
+    }
+
+    static Hashtable<String, String> getEnvironment() {
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, InMemoryLdapContextFactory.class.getName());
+        return env;
+    }
+
+    @Override
+    public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+        String url = (String) environment.get(Context.PROVIDER_URL);
+        if (DOWN.contains(url)) {
+            throw new CommunicationException("Server " + url + " is down");
+        }
+        CONNECTIONS.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+        return (Context) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{LdapContext.class}, new ContextHandler(url));
+    }
+
+    private static final class ContextHandler implements InvocationHandler {
+
+        private final String url;
+        private boolean closed;
+
+        ContextHandler(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "reconnect":
+                case "setRequestControls":
+                    return null;
+                case "getAttributes":
+                    checkConnection();
+                    return new BasicAttributes(true);
+                case "search":
+                    if (args.length == 3 && args[1] instanceof String) {
+                        checkConnection();
+                        return search((String) args[0], (String) args[1], (SearchControls) args[2]);
+                    }
+                    break;
+                case "toString":
+                    return "in-memory context of " + url;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            throw new OperationNotSupportedException(method.getName());
+        }
+
+        private void checkConnection() throws NamingException {
+            if (closed) {
+                throw new CommunicationException("connection closed");
+            }
+            if (DOWN.contains(url)) {
+                throw new CommunicationException("Server " + url + " is down");
+            }
+        }
+
+        private NamingEnumeration<SearchResult> search(String base, String filter,
+                SearchControls controls) throws NamingException {
+            SEARCHES.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+            if (searchDelay > 0) {
+                try {
+                    Thread.sleep(searchDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            String f = filter.startsWith("(") && filter.endsWith(")")
+                    ? filter.substring(1, filter.length() - 1) : filter;
+            int eq = f.indexOf('=');
+            String attrName = f.substring(0, eq);
+            String value = f.substring(eq + 1);
+
+            List<SearchResult> results = new ArrayList<>();
+            for (Map.Entry<String, Attributes> entry : ENTRIES.entrySet()) {
+                String dn = entry.getKey();
+                if (!dn.equals(base) && !dn.endsWith("," + base)) {
+                    continue;
+                }
+                Attribute attr = entry.getValue().get(attrName);
+                boolean matches = attrName.equalsIgnoreCase("objectclass") && value.equals("*")
+                        || attr != null && (value.equals("*") || attr.contains(value));
+                if (matches) {
+                    results.add(new SearchResult(dn, null,
+                            select(entry.getValue(), controls.getReturningAttributes())));
+                }
+            }
+
+            Iterator<SearchResult> it = results.iterator();
+            return new NamingEnumeration<SearchResult>() {
+                @Override
+                public SearchResult next() {
+                    return it.next();
+                }
+
+                @Override
+                public boolean hasMore() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasMoreElements() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public SearchResult nextElement() {
+                    return it.next();
+                }
+            };
+        }
+
+        private static Attributes select(Attributes attrs, String[] names) {
+            if (names == null) {
+                return (Attributes) attrs.clone();
+            }
+            Attributes result = new BasicAttributes(true);
+            for (String name : names) {
+                Attribute attr = attrs.get(name);
+                if (attr != null) {
+                    result.put((Attribute) attr.clone());
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ */
+package opengrok.auth.plugin.ldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import opengrok.auth.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link LdapFacade} and {@link LdapServer} against an in-memory
+ * directory.
+ */
+public class LdapFacadeTest {
+
+    private static final String SERVER1 = "ldap://server1";
+    private static final String SERVER2 = "ldap://server2";
+
+    private LdapFacade facade;
+
+    @Before
+    public void setUp() {
+        InMemoryLdapContextFactory.reset();
+        InMemoryLdapContextFactory.addEntry("uid=alice,ou=people,dc=example,dc=com",
+                "uid", "alice", "mail", "alice@example.com", "ou", "dev", "ou", "ops");
+        InMemoryLdapContextFactory.addEntry("uid=bob,ou=people,dc=example,dc=com",
+                "uid", "bob", "mail", "bob@example.com", "ou", "qa");
+    }
+
+    @After
+    public void tearDown() {
+        if (facade != null) {
+            facade.close();
+        }
+    }
+
+    private LdapFacade createFacade(int cacheTTL, int maxConnections, String... urls) {
+        List<LdapServer> servers = new ArrayList<>();
+        for (String url : urls) {
+            servers.add(new LdapServer(InMemoryLdapContextFactory.getEnvironment())
+                    .setName(url).setMaxConnections(maxConnections));
+        }
+        Configuration cfg = new Configuration();
+        cfg.setServers(servers);
+        cfg.setInterval(60 * 1000);
+        cfg.setSearchBase("dc=example,dc=com");
+        cfg.setCacheTTL(cacheTTL);
+        return facade = new LdapFacade(cfg);
+    }
+
+    private Map<String, Set<String>> lookupAlice() {
+        return facade.lookupLdapContent(null, "(uid=alice)", new String[]{"uid", "mail", "ou"});
+    }
+
+    @Test
+    public void testLookup() {
+        createFacade(0, 1, SERVER1);
+        Map<String, Set<String>> records = lookupAlice();
+        assertNotNull(records);
+        assertEquals(3, records.size());
+        assertTrue(records.get("mail").contains("alice@example.com"));
+        assertEquals(2, records.get("ou").size());
+
+        assertNull(facade.lookupLdapContent(null, "(uid=carol)", new String[]{"uid"}));
+    }
+
+    @Test
+    public void testConnectionReuse() {
+        createFacade(0, 4, SERVER1);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(lookupAlice());
+        }
+        assertEquals(10, InMemoryLdapContextFactory.getSearches(SERVER1));
+        assertEquals(1, InMemoryLdapContextFactory.getConnections(SERVER1));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        createFacade(0, 3, SERVER1);
+        InMemoryLdapContextFactory.searchDelay = 20;
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Map<String, Set<String>>>> futures = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                futures.add(executor.submit(this::lookupAlice));
+            }
+            for (Future<Map<String, Set<String>>> future : futures) {
+                assertNotNull(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int connections = InMemoryLdapContextFactory.getConnections(SERVER1);
+        assertTrue("connections: " + connections, connections > 1 && connections <= 3);
+        assertEquals(connections, facade.getServers().get(0).getOpenConnections());
+    }
+
+    @Test
+    public void testLoadBalancing() {
+        createFacade(0, 1, SERVER1, SERVER2);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(lookupAlice());
+        }
+        assertEquals(5, InMemoryLdapContextFactory.getSearches(SERVER1));
+        assertEquals(5, InMemoryLdapContextFactory.getSearches(SERVER2));
+    }
+
+    @Test
+    public void testFailover() {
+        createFacade(0, 1, SERVER1, SERVER2);
+        assertNotNull(lookupAlice());
+        assertNotNull(lookupAlice());
+
+        InMemoryLdapContextFactory.DOWN.add(SERVER1);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(lookupAlice());
+        }
+        // the broken connection was discarded
+        assertEquals(0, facade.getServers().get(0).getOpenConnections());
+        assertEquals(5, InMemoryLdapContextFactory.getSearches(SERVER2));
+    }
+
+    @Test
+    public void testCache() {
+        createFacade(60 * 1000, 1, SERVER1);
+        Map<String, Set<String>> records = lookupAlice();
+        assertEquals(records, lookupAlice());
+        assertEquals(records, lookupAlice());
+        assertEquals(1, InMemoryLdapContextFactory.getSearches(SERVER1));
+
+        // different attributes are looked up separately
+        assertNotNull(facade.lookupLdapContent(null, "(uid=alice)", new String[]{"uid"}));
+        assertEquals(2, InMemoryLdapContextFactory.getSearches(SERVER1));
+
+        facade.setCache(60 * 1000, 10);
+        assertEquals(records, lookupAlice());
+        assertEquals(3, InMemoryLdapContextFactory.getSearches(SERVER1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedResultIsImmutable() {
+        createFacade(60 * 1000, 1, SERVER1);
+        lookupAlice().get("ou").add("hr");
+    }
+
+    @Test
+    public void testClose() {
+        createFacade(0, 2, SERVER1);
+        assertNotNull(lookupAlice());
+        LdapServer server = facade.getServers().get(0);
+        assertEquals(1, server.getOpenConnections());
+        server.close();
+        assertEquals(0, server.getOpenConnections());
+        assertEquals(Arrays.asList("alice"), new ArrayList<>(lookupAlice().get("uid")));
+        assertEquals(2, InMemoryLdapContextFactory.getConnections(SERVER1));
+    }
+}
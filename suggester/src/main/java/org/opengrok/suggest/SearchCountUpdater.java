@@ -0,0 +1,270 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.suggest;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects search events off the request thread, aggregates the resulting term increments in memory and writes them
+ * to the underlying popularity maps in batches.
+ * <p>
+ * The event queue is bounded. If it is full, the event is dropped because popularity data are only a heuristic and
+ * it is better to lose some increments than to slow down the searches.
+ */
+final class SearchCountUpdater implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(SearchCountUpdater.class.getName());
+
+    static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    static final int DEFAULT_MAX_PENDING_TERMS = 50000;
+
+    static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(5);
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final BlockingQueue<SearchEvent> queue;
+
+    private final SearchCountSink sink;
+
+    private final int maxPendingTerms;
+
+    private final long flushIntervalMillis;
+
+    /**
+     * Aggregated increments not yet written to the {@link #sink}: project name -> term -> increment.
+     * Guarded by {@link #flushLock}.
+     */
+    private final Map<String, Map<Term, Integer>> pending = new HashMap<>();
+
+    private int pendingTerms;
+
+    private final Object flushLock = new Object();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final Thread worker;
+
+    private volatile boolean closed;
+
+    /**
+     * Target of the aggregated increments.
+     */
+    @FunctionalInterface
+    interface SearchCountSink {
+
+        /**
+         * Increments search count of {@code term} in {@code project} by {@code value}.
+         * @param project project name
+         * @param term term for which to increment search count
+         * @param value positive value by which to increment the search count
+         */
+        void increment(String project, Term term, int value);
+
+    }
+
+    SearchCountUpdater(final SearchCountSink sink) {
+        this(sink, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_PENDING_TERMS, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param sink where to write the aggregated increments
+     * @param queueCapacity maximum number of search events waiting to be processed
+     * @param maxPendingTerms number of aggregated (project, term) pairs after which the data are written even if
+     * {@code flushInterval} did not elapse yet
+     * @param flushInterval how often to write the aggregated data
+     */
+    SearchCountUpdater(
+            final SearchCountSink sink,
+            final int queueCapacity,
+            final int maxPendingTerms,
+            final Duration flushInterval
+    ) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        if (maxPendingTerms <= 0) {
+            throw new IllegalArgumentException("Maximum number of pending terms must be positive");
+        }
+        if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxPendingTerms = maxPendingTerms;
+        this.flushIntervalMillis = flushInterval.toMillis();
+
+        worker = new Thread(this::run, "suggester-search-count-updater");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Enqueues the search event for later processing. Never blocks, if the queue is full the event is dropped.
+     * @param projects names of the projects that were searched
+     * @param query query that was used to perform the search
+     * @return {@code true} if the event was accepted, {@code false} if it was dropped
+     */
+    boolean submit(final List<String> projects, final Query query) {
+        if (closed || projects.isEmpty() || query == null) {
+            return false;
+        }
+        if (!queue.offer(new SearchEvent(projects, query))) {
+            long dropped = droppedEvents.incrementAndGet();
+            logger.log(Level.FINEST, "Search count queue is full, dropping event (dropped so far: {0})", dropped);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Synchronously processes all the queued events and writes the aggregated data.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            List<SearchEvent> events = new ArrayList<>(queue.size());
+            queue.drainTo(events);
+            for (SearchEvent event : events) {
+                aggregate(event);
+            }
+            writePending();
+        }
+    }
+
+    /**
+     * @return number of search events dropped because the queue was full
+     */
+    long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private void run() {
+        long nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+        while (!closed) {
+            try {
+                long wait = Math.max(0, nextFlush - System.currentTimeMillis());
+                SearchEvent event = queue.poll(wait, TimeUnit.MILLISECONDS);
+
+                synchronized (flushLock) {
+                    if (event != null) {
+                        aggregate(event);
+                    }
+                    if (pendingTerms >= maxPendingTerms || System.currentTimeMillis() >= nextFlush) {
+                        writePending();
+                        nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!closed) {
+                    logger.log(Level.WARNING, "Search count updater interrupted", e);
+                }
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not update search counts", e);
+            }
+        }
+    }
+
+    private void aggregate(final SearchEvent event) {
+        List<Term> terms;
+        try {
+            terms = SuggesterUtils.intoTerms(event.query);
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Could not extract terms from query " + event.query, e);
+            return;
+        }
+
+        for (String project : event.projects) {
+            Map<Term, Integer> projectCounts = pending.computeIfAbsent(project, p -> new HashMap<>());
+            for (Term t : terms) {
+                if (projectCounts.merge(t, 1, Integer::sum) == 1) {
+                    pendingTerms++;
+                }
+            }
+        }
+    }
+
+    private void writePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Map<Term, Integer>> projectEntry : pending.entrySet()) {
+            for (Map.Entry<Term, Integer> termEntry : projectEntry.getValue().entrySet()) {
+                try {
+                    sink.increment(projectEntry.getKey(), termEntry.getKey(), termEntry.getValue());
+                } catch (Exception e) {
+                    logger.log(Level.FINE, "Could not update search count for " + termEntry.getKey(), e);
+                }
+            }
+        }
+        pending.clear();
+        pendingTerms = 0;
+    }
+
+    /**
+     * Stops the background thread and writes all the remaining data.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join(CLOSE_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted while waiting for search count updater to finish", e);
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static class SearchEvent {
+
+        private final List<String> projects;
+        private final Query query;
+
+        SearchEvent(final List<String> projects, final Query query) {
+            this.projects = projects;
+            this.query = query;
+        }
+    }
+
+}
@@ -84,6 +84,8 @@ public final class Suggester implements Closeable {
 
     private final int timeThreshold;
 
+    private final SearchCountUpdater searchCountUpdater;
+
     // do NOT use fork join thread pool (work stealing thread pool) because it does not send interrupts upon cancellation
     private final ExecutorService executorService = Executors.newFixedThreadPool(
             Runtime.getRuntime().availableProcessors());
@@ -123,6 +125,12 @@ public final class Suggester implements Closeable {
         this.projectsEnabled = projectsEnabled;
         this.allowedFields = new HashSet<>(allowedFields);
         this.timeThreshold = timeThreshold;
+
+        if (allowMostPopular) {
+            searchCountUpdater = new SearchCountUpdater(this::incrementSearchCount);
+        } else {
+            searchCountUpdater = null;
+        }
     }
 
     /**
@@ -389,7 +397,8 @@ public final class Suggester implements Closeable {
     }
 
     /**
-     * Handler for search events.
+     * Handler for search events. The search counts are updated asynchronously in batches so the caller is not slowed
+     * down. Under heavy load some of the events might be dropped.
      * @param projects projects that the {@code query} was used to search in
      * @param query query that was used to perform the search
      */
@@ -397,28 +406,20 @@ public final class Suggester implements Closeable {
         if (!allowMostPopular || projects == null) {
             return;
         }
-        try {
-            List<Term> terms = SuggesterUtils.intoTerms(query);
+        List<String> projectNames;
+        if (!projectsEnabled) {
+            projectNames = Collections.singletonList(PROJECTS_DISABLED_KEY);
+        } else {
+            projectNames = new ArrayList<>();
+            projects.forEach(projectNames::add);
+        }
+        searchCountUpdater.submit(projectNames, query);
+    }
 
-            if (!projectsEnabled) {
-                for (Term t : terms) {
-                    SuggesterProjectData data = projectData.get(PROJECTS_DISABLED_KEY);
-                    if (data != null) {
-                        data.incrementSearchCount(t);
-                    }
-                }
-            } else {
-                for (String project : projects) {
-                    for (Term t : terms) {
-                        SuggesterProjectData data = projectData.get(project);
-                        if (data != null) {
-                            data.incrementSearchCount(t);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.log(Level.FINE, "Could not update search count map", e);
+    private void incrementSearchCount(final String project, final Term term, final int value) {
+        SuggesterProjectData data = projectData.get(project);
+        if (data != null) {
+            data.incrementSearchCount(term, value);
         }
     }
 
@@ -466,7 +467,8 @@ public final class Suggester implements Closeable {
     }
 
     /**
-     * Returns the searched terms sorted according to their popularity.
+     * Returns the searched terms sorted according to their popularity. Search counts not yet written by the
+     * asynchronous updater are written before the data are retrieved.
      * @param project project for which to return the data
      * @param field field for which to return the data
      * @param page which page of data to retrieve
@@ -479,6 +481,10 @@ public final class Suggester implements Closeable {
             final int page,
             final int pageSize
     ) {
+        if (searchCountUpdater != null) {
+            searchCountUpdater.flush();
+        }
+
         SuggesterProjectData data = projectData.get(project);
         if (data == null) {
             logger.log(Level.FINE, "Cannot retrieve search counts because data for project {0} were not found",
@@ -495,6 +501,9 @@ public final class Suggester implements Closeable {
     @Override
     public void close() {
         executorService.shutdownNow();
+        if (searchCountUpdater != null) {
+            searchCountUpdater.close();
+        }
         projectData.values().forEach(f -> {
             try {
                 f.close();
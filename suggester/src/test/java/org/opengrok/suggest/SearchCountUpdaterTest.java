@@ -0,0 +1,128 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ */
+
+/*
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ */
+package org.opengrok.suggest;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchCountUpdaterTest {
+
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    private void increment(final String project, final Term term, final int value) {
+        counts.merge(project + ":" + term, value, Integer::sum);
+    }
+
+    private static Query getQuery() {
+        return new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("test", "term1")), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term("test", "term2")), BooleanClause.Occur.MUST)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullSink() {
+        new SearchCountUpdater(null);
+    }
+
+    @Test
+    public void testFlushAggregates() {
+        SearchCountUpdater updater = new SearchCountUpdater(this::increment, 100, 100, Duration.ofHours(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(updater.submit(Arrays.asList("p1", "p2"), getQuery()));
+        }
+        updater.flush();
+
+        assertEquals(3, (int) counts.get("p1:test:term1"));
+        assertEquals(3, (int) counts.get("p2:test:term2"));
+        assertEquals(4, counts.size());
+
+        updater.close();
+    }
+
+    @Test
+    public void testBackgroundFlush() {
+        SearchCountUpdater updater = new SearchCountUpdater(this::increment, 100, 100, Duration.ofMillis(10));
+
+        updater.submit(Collections.singletonList("p"), getQuery());
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> counts.size() == 2);
+
+        updater.close();
+    }
+
+    @Test
+    public void testDropsEventsWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SearchCountUpdater updater = new SearchCountUpdater((project, term, value) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 1, Duration.ofHours(1));
+
+        // first event is taken by the worker thread which then blocks in the sink
+        updater.submit(Collections.singletonList("p"), getQuery());
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue(updater.submit(Collections.singletonList("p"), getQuery()));
+        assertFalse(updater.submit(Collections.singletonList("p"), getQuery()));
+        assertEquals(1, updater.getDroppedEvents());
+
+        release.countDown();
+        updater.close();
+    }
+
+    @Test
+    public void testCloseWritesPendingData() {
+        SearchCountUpdater updater = new SearchCountUpdater(this::increment, 100, 100, Duration.ofHours(1));
+
+        updater.submit(Collections.singletonList("p"), getQuery());
+        updater.close();
+
+        assertEquals(2, counts.size());
+        assertFalse(updater.submit(Collections.singletonList("p"), getQuery()));
+    }
+
+}